@@ -1,3 +1,8 @@
+plugins {
+    `java-test-fixtures`
+    id("me.champeau.jmh") version "0.7.2"
+}
+
 dependencies {
     implementation("org.msgpack:msgpack-core:0.9.8")
     implementation("io.vavr:vavr:0.10.4")
@@ -7,4 +12,21 @@ dependencies {
 
     // Testing
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.1")
+
+    // Benchmarks
+    jmhImplementation(testFixtures(project))
+    // Reference LZ4 implementation to compare against.
+    jmhImplementation("org.lz4:lz4-java:1.8.0")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // Pass e.g. -PjmhInclude=TransportLatency to run a single benchmark.
+    project.findProperty("jmhInclude")?.let { includes.add(it.toString()) }
+    // Pass e.g. -PjmhParams="transport=tcp,uds;payloadSize=16" to run a subset of parameters.
+    project.findProperty("jmhParams")?.toString()?.split(";")?.forEach { param ->
+        val (name, values) = param.split("=", limit = 2)
+        benchmarkParameters.put(name, objects.listProperty<String>().value(values.split(",")))
+    }
+    resultFormat.set("JSON")
 }
@@ -0,0 +1,82 @@
+package io.github.csolo.network.bench;
+
+import io.github.csolo.network.config.ListenerConfig;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.socket.Listener;
+import io.github.csolo.network.socket.Socket;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rate of connections accepted by {@link Listener}, including the handshake. Many clients connect
+ * at once, as after a cluster restart. One operation is one connect, handshake and close.
+ *
+ * <p>Run with {@code ./gradlew :elfo-java-network:jmh -PjmhInclude=AcceptRate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class AcceptRateBenchmark {
+
+  @Param({"tcp", "uds"})
+  public String transport;
+
+  /** Max handshakes per second, 0 for no limit. */
+  @Param({"0", "1000"})
+  public int handshakesPerSecond;
+
+  private Path directory;
+  private Listener listener;
+
+  @Setup
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("elfo-bench");
+    var listen =
+        transport.equals("tcp")
+            ? new Transport.Tcp("127.0.0.1:0")
+            : new Transport.Uds(directory.resolve("bench.sock"));
+    var config =
+        new ListenerConfig(
+            ListenerConfig.DEFAULT_MAX_CONCURRENT_HANDSHAKES,
+            handshakesPerSecond,
+            ListenerConfig.DEFAULT_HANDSHAKE_TIMEOUT);
+    listener =
+        Listener.start(listen, new SocketOptions(), config, (short) 2, 2L, 0, Socket::close);
+  }
+
+  @Benchmark
+  public Socket.Peer connect() throws IOException {
+    var socket = Socket.connect(listener.transport(), (short) 1, 1L, 0);
+    // Wait for the server to close first, so that TIME_WAIT doesn't eat up client ports.
+    socket.read(ByteBuffer.allocate(1));
+    socket.close();
+    return socket.peer();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    listener.close();
+    Files.deleteIfExists(directory);
+  }
+}
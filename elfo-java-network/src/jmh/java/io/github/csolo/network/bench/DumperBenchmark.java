@@ -0,0 +1,102 @@
+package io.github.csolo.network.bench;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.DumpConfig;
+import io.github.csolo.network.dump.DumpRecord;
+import io.github.csolo.network.dump.Dumper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rate of envelopes recorded by a {@link Dumper} from several threads, segments rolling over and
+ * being compressed meanwhile. The {@code dropped} counter shows how many of them it couldn't keep
+ * up with, it should stay at zero.
+ *
+ * <p>Segments go to {@code /dev/shm} if there is one, so the disk doesn't set the pace. Run with
+ * {@code ./gradlew :elfo-java-network:jmh -PjmhInclude=Dumper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class DumperBenchmark {
+  @Param({"64", "1024"})
+  public int payloadSize;
+
+  private Path directory;
+  private Dumper dumper;
+  private NetworkEnvelope envelope;
+
+  /** Envelopes dropped during the iteration, reported next to the rate. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Drops {
+    public long dropped;
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    var shm = Path.of("/dev/shm");
+    directory =
+        Files.isDirectory(shm)
+            ? Files.createTempDirectory(shm, "elfo-dump")
+            : Files.createTempDirectory("elfo-dump");
+    dumper =
+        Dumper.start(
+            new DumpConfig(
+                directory,
+                DumpConfig.DEFAULT_SEGMENT_SIZE,
+                DumpConfig.DEFAULT_BUFFER_SIZE,
+                4,
+                Duration.ofMillis(100),
+                true));
+    envelope =
+        new NetworkEnvelope(
+            1L << 48 | 7,
+            2L << 48 | 9,
+            42L,
+            "SomeEvent",
+            ByteBuffer.allocate(payloadSize).asReadOnlyBuffer());
+  }
+
+  @Benchmark
+  public void dump(Drops drops) {
+    if (!dumper.dump(DumpRecord.Direction.OUT, envelope)) {
+      drops.dropped++;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    dumper.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+}
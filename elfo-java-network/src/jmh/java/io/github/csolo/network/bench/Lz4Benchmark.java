@@ -0,0 +1,127 @@
+package io.github.csolo.network.bench;
+
+import io.github.csolo.network.codec.FrameCodec;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.compression.Lz4;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.msgpack.core.MessagePack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link Lz4} against lz4-java on write buffers full of msgpack-encoded envelopes,
+ * as compressed by stream connections. One operation is one {@link #BATCH_SIZE} batch.
+ *
+ * <p>Run with {@code ./gradlew :elfo-java-network:jmh -PjmhInclude=Lz4}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Lz4Benchmark {
+  static final int BATCH_SIZE = 64 * 1024;
+
+  private static final String[] STATUSES = {"new", "filled", "partially_filled", "cancelled"};
+  private static final String[] SYMBOLS = {"BTCUSDT", "ETHUSDT", "SOLUSDT", "XRPUSDT", "DOGEUSDT"};
+
+  /**
+   * {@code events}: maps with repeated keys and enum-like strings, {@code metrics}: arrays of
+   * doubles, which compress much worse.
+   */
+  @Param({"events", "metrics"})
+  public String payload;
+
+  @Param({"heap", "direct"})
+  public String buffer;
+
+  private final LZ4Compressor referenceCompressor = LZ4Factory.fastestInstance().fastCompressor();
+  private final LZ4FastDecompressor referenceDecompressor =
+      LZ4Factory.fastestInstance().fastDecompressor();
+
+  private ByteBuffer batch;
+  private ByteBuffer compressed;
+  private ByteBuffer output;
+  private int compressedLength;
+
+  @Setup
+  public void setup() throws IOException {
+    batch = allocate(BATCH_SIZE);
+    var random = new Random(42);
+    for (int i = 0; ; i++) {
+      var envelope =
+          new NetworkEnvelope(1L, 2L, i, payload, ByteBuffer.wrap(encode(payload, i, random)));
+      if (FrameCodec.encodedSize(envelope) > batch.remaining()) {
+        break;
+      }
+      FrameCodec.encode(envelope, batch);
+    }
+    batch.flip();
+
+    compressed = allocate(Lz4.maxCompressedLength(BATCH_SIZE));
+    output = allocate(BATCH_SIZE);
+    compressedLength = Lz4.compress(batch.duplicate(), compressed.duplicate());
+  }
+
+  private ByteBuffer allocate(int size) {
+    return buffer.equals("direct") ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  private static byte[] encode(String payload, int i, Random random) throws IOException {
+    try (var packer = MessagePack.newDefaultBufferPacker()) {
+      if (payload.equals("events")) {
+        packer.packMapHeader(6);
+        packer.packString("order_id").packLong(1_000_000L + i);
+        packer.packString("symbol").packString(SYMBOLS[random.nextInt(SYMBOLS.length)]);
+        packer.packString("status").packString(STATUSES[random.nextInt(STATUSES.length)]);
+        packer.packString("price").packDouble(100 + random.nextInt(1000) / 100.0);
+        packer.packString("quantity").packLong(random.nextInt(100));
+        packer.packString("client").packString("client-" + random.nextInt(20));
+      } else {
+        packer.packArrayHeader(16);
+        for (int j = 0; j < 16; j++) {
+          packer.packDouble(random.nextGaussian());
+        }
+      }
+      return packer.toByteArray();
+    }
+  }
+
+  @Benchmark
+  public int compress() {
+    return Lz4.compress(batch.duplicate(), compressed.duplicate());
+  }
+
+  @Benchmark
+  public int compressReference() {
+    return referenceCompressor.compress(
+        batch, 0, batch.limit(), compressed, 0, compressed.capacity());
+  }
+
+  @Benchmark
+  public ByteBuffer decompress() {
+    Lz4.decompress(compressed.duplicate().limit(compressedLength), output.clear(), batch.limit());
+    return output;
+  }
+
+  @Benchmark
+  public int decompressReference() {
+    return referenceDecompressor.decompress(compressed, 0, output, 0, batch.limit());
+  }
+}
@@ -0,0 +1,160 @@
+package io.github.csolo.network.bench;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.flow.FlowSender;
+import io.github.csolo.network.shard.ShardGroup;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rate of envelopes sent by several threads to echoing peers and handled once echoed back, with
+ * connections owned as by default or by a {@link ShardGroup}.
+ *
+ * <p>In the {@code virtual} mode senders go straight to the connection through a {@link
+ * FlowSender} and flush it, and a virtual thread per connection handles what it receives. In the
+ * {@code sharded} mode senders hand envelopes over to the shard owning the connection, which sends,
+ * flushes and handles echoes. One operation is one envelope, with at most {@code inFlight} of them
+ * not echoed yet, so that neither mode just fills up queues.
+ *
+ * <p>The comparison only makes sense on a multi-core machine with more cores than benchmark
+ * threads plus shards: every peer is served by threads of the same JVM.
+ *
+ * <p>Run with {@code ./gradlew :elfo-java-network:jmh -PjmhInclude=Sharding}, add e.g. {@code
+ * -PjmhParams="shards=2,4,8"} to see how the sharded mode scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ShardingBenchmark {
+  @Param({"virtual", "sharded"})
+  public String mode;
+
+  @Param({"4"})
+  public int peers;
+
+  /** Number of shard threads, ignored in the virtual mode. */
+  @Param({"4"})
+  public int shards;
+
+  @Param({"1024"})
+  public int inFlight;
+
+  private StandInNode[] nodes;
+  private NetworkEnvelope[] envelopes;
+  private Semaphore permits;
+  private ShardGroup group;
+  private Connection[] connections;
+  private FlowSender[] senders;
+
+  /** Peer the thread sends to next, threads go round all peers. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int peer;
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    permits = new Semaphore(inFlight);
+    nodes = new StandInNode[peers];
+    envelopes = new NetworkEnvelope[peers];
+    for (int i = 0; i < peers; i++) {
+      short nodeNo = (short) (i + 2);
+      nodes[i] = StandInNode.builder().node(nodeNo, nodeNo).start();
+      envelopes[i] =
+          new NetworkEnvelope(
+              1L, (long) nodeNo << 48 | 1, 0L, "Bench", ByteBuffer.allocate(64).asReadOnlyBuffer());
+    }
+
+    // Windows are out of the way, only ownership is compared.
+    int window = Integer.MAX_VALUE / 2;
+    switch (mode) {
+      case "virtual" -> {
+        connections = new Connection[peers];
+        senders = new FlowSender[peers];
+        for (int i = 0; i < peers; i++) {
+          var connection = connect(nodes[i]);
+          var sender = new FlowSender(connection, window);
+          connections[i] = connection;
+          senders[i] = sender;
+          Thread.ofVirtual().start(() -> receive(connection, sender));
+        }
+      }
+      case "sharded" -> {
+        group = new ShardGroup(shards, (link, envelope) -> permits.release());
+        for (var node : nodes) {
+          group.attach(connect(node), window);
+        }
+      }
+      default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+    }
+  }
+
+  private static Connection connect(StandInNode node) throws IOException {
+    return Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0));
+  }
+
+  private void receive(Connection connection, FlowSender sender) {
+    try {
+      Object frame;
+      while ((frame = connection.receive()) != null) {
+        if (frame instanceof NetworkEnvelope) {
+          permits.release();
+        } else {
+          sender.handle(frame);
+        }
+      }
+    } catch (IOException e) {
+      // Closed by the tear down.
+    }
+  }
+
+  @Benchmark
+  public void send(Cursor cursor) throws Exception {
+    int peer = cursor.peer;
+    cursor.peer = peer + 1 == peers ? 0 : peer + 1;
+    permits.acquire();
+    if (group != null) {
+      group.send(envelopes[peer]);
+    } else {
+      senders[peer].send(envelopes[peer]);
+      connections[peer].flush();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    if (group != null) {
+      group.close();
+    } else {
+      for (int i = 0; i < peers; i++) {
+        senders[i].close();
+        connections[i].close();
+      }
+    }
+    for (var node : nodes) {
+      node.close();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package io.github.csolo.network.bench;
+
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.socket.raw.ChannelOptions;
+import io.github.csolo.network.socket.raw.RawSocket;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loopback throughput for different socket buffer sizes, see {@link SocketOptions}. One operation
+ * writes {@link #WRITE_SIZE} bytes, which a reader on the other side discards.
+ *
+ * <p>Loopback has a tiny RTT, so this mostly shows the syscall and wakeup overhead of small
+ * buffers; the gain on high bandwidth-delay links is much larger.
+ *
+ * <p>Run with {@code ./gradlew :elfo-java-network:jmh -PjmhInclude=SocketBuffer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketBufferBenchmark {
+  static final int WRITE_SIZE = 1024 * 1024;
+
+  @Param({"tcp", "uds"})
+  public String transport;
+
+  /** Both send and receive buffer size, 0 for the OS default. */
+  @Param({"0", "65536", "1048576", "4194304"})
+  public int bufferSize;
+
+  private Path directory;
+  private ServerSocketChannel server;
+  private Thread reader;
+  private RawSocket client;
+  private final ByteBuffer data = ByteBuffer.allocateDirect(WRITE_SIZE);
+
+  @Setup
+  public void setup() throws IOException {
+    var options = new SocketOptions().withBufferSizes(bufferSize, bufferSize);
+    directory = Files.createTempDirectory("elfo-bench");
+    var path = directory.resolve("bench.sock");
+    server =
+        transport.equals("tcp")
+            ? ServerSocketChannel.open()
+            : ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    // Accepted sockets inherit the receive buffer, and with it the TCP window scale.
+    ChannelOptions.apply(server, options);
+    Transport target;
+    if (transport.equals("tcp")) {
+      server.bind(new InetSocketAddress("127.0.0.1", 0));
+      int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+      target = new Transport.Tcp("127.0.0.1:" + port);
+    } else {
+      server.bind(UnixDomainSocketAddress.of(path));
+      target = new Transport.Uds(path);
+    }
+
+    reader = Thread.ofPlatform().name("bench-reader").start(() -> drain(options));
+    client = RawSocket.connect(target, options);
+  }
+
+  private void drain(SocketOptions options) {
+    var buffer = ByteBuffer.allocateDirect(WRITE_SIZE);
+    try (var channel = server.accept()) {
+      ChannelOptions.apply(channel, options);
+      while (channel.read(buffer.clear()) >= 0) {
+        // Discard.
+      }
+    } catch (IOException e) {
+      // Closed by tearDown.
+    }
+  }
+
+  @Benchmark
+  public int write() throws IOException {
+    data.clear();
+    while (data.hasRemaining()) {
+      client.channel().write(data);
+    }
+    return data.position();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+    reader.join();
+    server.close();
+    Files.deleteIfExists(directory.resolve("bench.sock"));
+    Files.deleteIfExists(directory);
+  }
+}
@@ -0,0 +1,127 @@
+package io.github.csolo.network.bench;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.Capabilities;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round-trip latency of one envelope through an echoing {@link StandInNode} in the same JVM.
+ *
+ * <p>Sample time mode reports the distribution: p50, p90, p99, p99.9, p99.99 and max, both in the
+ * console and in {@code build/results/jmh/results.json} ({@code primaryMetric.scorePercentiles}),
+ * which can be compared between runs to track regressions.
+ *
+ * <p>Compression only applies to stream transports and Nagle's algorithm only to TCP, other
+ * combinations measure the same thing twice, so narrow down parameters for a quick run.
+ *
+ * <p>Run with {@code ./gradlew :elfo-java-network:jmh -PjmhInclude=TransportLatency}, add e.g.
+ * {@code -PjmhParams="transport=tcp;compression=false"} to run a subset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportLatencyBenchmark {
+  private static final String[] WORDS = {"order", "filled", "BTCUSDT", "price", "quantity"};
+
+  @Param({"tcp", "uds", "shm", "inproc"})
+  public String transport;
+
+  @Param({"16", "1024", "65536", "1048576"})
+  public int payloadSize;
+
+  /** Whether both sides announce LZ4, payloads are about as compressible as typical messages. */
+  @Param({"false", "true"})
+  public boolean compression;
+
+  /** Whether Nagle's algorithm coalesces small writes in the kernel, i.e. no TCP_NODELAY. */
+  @Param({"false", "true"})
+  public boolean coalescing;
+
+  private Path directory;
+  private StandInNode node;
+  private Connection connection;
+  private NetworkEnvelope envelope;
+
+  @Setup
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("elfo-bench");
+    var listen =
+        switch (transport) {
+          case "tcp" -> new Transport.Tcp("127.0.0.1:0");
+          case "uds" -> new Transport.Uds(directory.resolve("bench.sock"));
+          // Prefer tmpfs, so the segment never hits the disk.
+          case "shm" ->
+              new Transport.Shm(
+                  Files.isDirectory(Path.of("/dev/shm"))
+                      ? Path.of("/dev/shm", directory.getFileName().toString())
+                      : directory.resolve("bench.shm"));
+          case "inproc" -> new Transport.InProc(directory.getFileName().toString());
+          default -> throw new IllegalArgumentException("Unknown transport: " + transport);
+        };
+
+    var options = new SocketOptions().withTcpNoDelay(!coalescing);
+    int capabilities = compression ? Capabilities.LZ4 : 0;
+    node =
+        StandInNode.builder()
+            .transport(listen)
+            .socketOptions(options)
+            .capabilities(Capabilities.LZ4)
+            .start();
+    connection =
+        Connection.of(Socket.connect(node.transport(), (short) 1, 1L, capabilities, options));
+    envelope = new NetworkEnvelope(1L, 2L, 0L, "Bench", payload(payloadSize));
+  }
+
+  /** Text-like payload, so that compression has something to do but doesn't get it for free. */
+  private static ByteBuffer payload(int size) {
+    var random = new Random(42);
+    var text = new StringBuilder(size + 16);
+    while (text.length() < size) {
+      text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(1000)).append(' ');
+    }
+    var bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+    return ByteBuffer.wrap(bytes, 0, size).slice().asReadOnlyBuffer();
+  }
+
+  @Benchmark
+  public Object roundTrip() throws IOException {
+    connection.send(envelope);
+    connection.flush();
+    return connection.receive();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    connection.close();
+    node.close();
+    Files.deleteIfExists(directory.resolve("bench.sock"));
+    Files.deleteIfExists(directory.resolve("bench.shm"));
+    Files.deleteIfExists(directory);
+  }
+}
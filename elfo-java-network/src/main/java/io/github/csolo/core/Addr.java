@@ -97,6 +97,11 @@ public record Addr(long value) {
     return (value >> GROUP_NO_SHIFT);
   }
 
+  /** Gets the address of the group itself, with no slot, from {@link #nodeNoGroupNo()}. */
+  public static Addr fromNodeNoGroupNo(long nodeNoGroupNo) {
+    return new Addr(nodeNoGroupNo << GROUP_NO_SHIFT);
+  }
+
   /** Gets the slot key for the given launch ID. */
   public long slotKey(NodeLaunchId launchId) {
     // XOR the whole address with launch ID
@@ -0,0 +1,80 @@
+package io.github.csolo.network.codec;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Fragment of a large {@link NetworkEnvelope}, so that it can be interleaved with other frames.
+ *
+ * <p>Chunks of one message share the stream id, which is unique per connection and direction
+ * while the message is in flight. Only the first chunk carries the envelope's header.
+ *
+ * @param streamId Id of the message within the connection.
+ * @param head Envelope's header, present in the first chunk only.
+ * @param last Whether this chunk completes the message.
+ * @param data Next part of the payload.
+ */
+public record Chunk(int streamId, @Nullable Head head, boolean last, @NotNull ByteBuffer data) {
+
+  /** Checks if this chunk starts the message. */
+  public boolean isFirst() {
+    return head != null;
+  }
+
+  /**
+   * Header of a chunked envelope.
+   *
+   * @param sender Sender's address bits.
+   * @param recipient Recipient's address bits.
+   * @param traceId Trace id bits.
+   * @param name Message name.
+   * @param payloadSize Size of the whole payload in bytes.
+   */
+  public record Head(
+      long sender, long recipient, long traceId, @NotNull String name, int payloadSize) {
+
+    /** Gets the header of the envelope with an encoded payload. */
+    public static Head of(NetworkEnvelope envelope) {
+      return new Head(
+          envelope.sender(),
+          envelope.recipient(),
+          envelope.traceId(),
+          envelope.name(),
+          envelope.encodedPayload().remaining());
+    }
+
+    /** Creates the envelope with the given (reassembled) payload. */
+    public NetworkEnvelope toEnvelope(ByteBuffer payload) {
+      return new NetworkEnvelope(sender, recipient, traceId, name, payload);
+    }
+  }
+
+  /** Splits the envelope's payload into chunks, the payload is not copied. */
+  public static class Splitter {
+    private final int streamId;
+    private final NetworkEnvelope envelope;
+    private final ByteBuffer payload;
+    private boolean started;
+
+    public Splitter(int streamId, NetworkEnvelope envelope) {
+      this.streamId = streamId;
+      this.envelope = envelope;
+      this.payload = envelope.encodedPayload();
+    }
+
+    public NetworkEnvelope envelope() {
+      return envelope;
+    }
+
+    /** Cuts the next chunk of at most {@code maxData} payload bytes. */
+    public Chunk next(int maxData) {
+      var head = started ? null : Head.of(envelope);
+      started = true;
+      int length = Math.min(maxData, payload.remaining());
+      var data = payload.slice(payload.position(), length);
+      payload.position(payload.position() + length);
+      return new Chunk(streamId, head, !payload.hasRemaining(), data);
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package io.github.csolo.network.codec;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Consecutive frames compressed together as a single LZ4 block, sent only if both sides support
+ * {@link io.github.csolo.network.protocol.Capabilities#LZ4}.
+ *
+ * @param uncompressedSize Total size of the frames inside.
+ * @param block Compressed frames.
+ */
+public record CompressedBatch(int uncompressedSize, @NotNull ByteBuffer block) {}
@@ -0,0 +1,380 @@
+package io.github.csolo.network.codec;
+
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// spotless:off
+/**
+ * Frame format shared by all byte-oriented transports.
+ *
+ * Every frame starts with a 6-byte header, all numbers are little-endian:
+ *
+ *  0                   1                   2                   3
+ *  0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                   Frame Size (4 bytes)                        |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |   Kind (1)    |   Flags (1)   |          Body ...             |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ *
+ * Field descriptions:
+ * - Frame Size: Length of the whole frame including the header
+ * - Kind: One of KIND_* constants, defines the body layout
+ * - Flags: Zero for all kinds but Chunk, which uses FLAG_FIRST and FLAG_LAST
+ *
+ * Bodies:
+ * - Envelope:        sender (8), recipient (8), trace id (8), name (str), payload (rest)
+ * - SwitchToControl: group count (2), per group: group no (2), name (str),
+ *                    interest count (2), interests (str each)
+ * - SwitchToData:    my group no (2), your group no (2), initial window (4)
+ * - UpdateFlow:      addr (8), window delta (4)
+ * - CloseFlow:       addr (8)
+ * - Ping / Pong:     payload (8)
+ * - Chunk:           stream id (4), [first only: sender (8), recipient (8), trace id (8),
+ *                    name (str), payload size (4)], data (rest)
+ * - Compressed:      uncompressed size (4), LZ4 block with whole frames of other kinds (rest)
+ *
+ * Strings (str) are encoded as length (2) followed by UTF-8 bytes.
+ */
+// spotless:on
+public class FrameCodec {
+  public static final int HEADER_LENGTH = 6;
+  public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+  public static final byte KIND_ENVELOPE = 0;
+  public static final byte KIND_SWITCH_TO_CONTROL = 1;
+  public static final byte KIND_SWITCH_TO_DATA = 2;
+  public static final byte KIND_UPDATE_FLOW = 3;
+  public static final byte KIND_CLOSE_FLOW = 4;
+  public static final byte KIND_PING = 5;
+  public static final byte KIND_PONG = 6;
+  public static final byte KIND_CHUNK = 7;
+  public static final byte KIND_COMPRESSED = 8;
+
+  /** Size of the compressed frame carrying an empty block. */
+  public static final int COMPRESSED_OVERHEAD = HEADER_LENGTH + 4;
+
+  public static final byte FLAG_FIRST = 1;
+  public static final byte FLAG_LAST = 2;
+
+  private FrameCodec() {}
+
+  /**
+   * Returns the number of bytes {@link #encode(Object, ByteBuffer)} writes for the frame.
+   *
+   * @throws IllegalArgumentException if a string of the frame is longer than 65535 bytes in UTF-8
+   */
+  public static int encodedSize(Object frame) {
+    return HEADER_LENGTH
+        + switch (frame) {
+          case NetworkEnvelope envelope ->
+              24 + stringSize(envelope.name()) + envelope.encodedPayload().remaining();
+          case ProtocolMessages.SwitchToControl switchToControl -> {
+            int size = 2;
+            for (var group : switchToControl.groups()) {
+              size += 2 + stringSize(group.name()) + 2;
+              for (var interest : group.interests()) {
+                size += stringSize(interest);
+              }
+            }
+            yield size;
+          }
+          case ProtocolMessages.SwitchToData ignored -> 8;
+          case ProtocolMessages.UpdateFlow ignored -> 12;
+          case ProtocolMessages.CloseFlow ignored -> 8;
+          case ProtocolMessages.Ping ignored -> 8;
+          case ProtocolMessages.Pong ignored -> 8;
+          case CompressedBatch batch -> 4 + batch.block().remaining();
+          case Chunk chunk ->
+              4
+                  + (chunk.head() == null ? 0 : 28 + stringSize(chunk.head().name()))
+                  + chunk.data().remaining();
+          default -> throw unknownFrame(frame);
+        };
+  }
+
+  /**
+   * Encodes the frame into the buffer.
+   *
+   * @throws BufferOverflowException if there is not enough space, the buffer is left untouched
+   * @throws IllegalArgumentException if the frame can't be encoded, the buffer is left untouched
+   */
+  public static void encode(Object frame, ByteBuffer out) {
+    int size = encodedSize(frame);
+    if (size > MAX_FRAME_SIZE) {
+      throw new IllegalArgumentException(
+          String.format("Frame of %d bytes exceeds max frame size %d", size, MAX_FRAME_SIZE));
+    }
+    if (out.remaining() < size) {
+      throw new BufferOverflowException();
+    }
+
+    var order = out.order();
+    out.order(ByteOrder.LITTLE_ENDIAN);
+    putHeader(out, size, kindOf(frame), flagsOf(frame));
+
+    switch (frame) {
+      case NetworkEnvelope envelope -> {
+        out.putLong(envelope.sender());
+        out.putLong(envelope.recipient());
+        out.putLong(envelope.traceId());
+        putString(out, envelope.name());
+        out.put(envelope.encodedPayload());
+      }
+      case ProtocolMessages.SwitchToControl switchToControl -> {
+        out.putShort((short) switchToControl.groups().size());
+        for (var group : switchToControl.groups()) {
+          out.putShort(group.group_no());
+          putString(out, group.name());
+          out.putShort((short) group.interests().size());
+          for (var interest : group.interests()) {
+            putString(out, interest);
+          }
+        }
+      }
+      case ProtocolMessages.SwitchToData switchToData -> {
+        out.putShort(switchToData.myGroupNo());
+        out.putShort(switchToData.yourGroupNo());
+        out.putInt(switchToData.initialWindow());
+      }
+      case ProtocolMessages.UpdateFlow updateFlow -> {
+        out.putLong(updateFlow.addr());
+        out.putInt(updateFlow.windowDelta());
+      }
+      case ProtocolMessages.CloseFlow closeFlow -> out.putLong(closeFlow.addr());
+      case ProtocolMessages.Ping ping -> out.putLong(ping.payload());
+      case ProtocolMessages.Pong pong -> out.putLong(pong.payload());
+      case CompressedBatch batch -> {
+        out.putInt(batch.uncompressedSize());
+        out.put(batch.block().duplicate());
+      }
+      case Chunk chunk -> {
+        out.putInt(chunk.streamId());
+        var head = chunk.head();
+        if (head != null) {
+          out.putLong(head.sender());
+          out.putLong(head.recipient());
+          out.putLong(head.traceId());
+          putString(out, head.name());
+          out.putInt(head.payloadSize());
+        }
+        out.put(chunk.data().duplicate());
+      }
+      default -> throw unknownFrame(frame);
+    }
+    out.order(order);
+  }
+
+  /** Returns the number of bytes {@link #encodeHead} writes for the envelope. */
+  public static int headSize(NetworkEnvelope envelope) {
+    return HEADER_LENGTH + 24 + stringSize(envelope.name());
+  }
+
+  /**
+   * Encodes the envelope frame up to its payload of {@code payloadSize} bytes, which is written
+   * separately right after. The envelope's own payload is ignored.
+   *
+   * @throws BufferOverflowException if there is not enough space, the buffer is left untouched
+   * @throws IllegalArgumentException if the frame can't be encoded, the buffer is left untouched
+   */
+  public static void encodeHead(NetworkEnvelope envelope, int payloadSize, ByteBuffer out) {
+    int headSize = headSize(envelope);
+    if ((long) headSize + payloadSize > MAX_FRAME_SIZE) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Frame of %d bytes exceeds max frame size %d",
+              (long) headSize + payloadSize, MAX_FRAME_SIZE));
+    }
+    if (out.remaining() < headSize) {
+      throw new BufferOverflowException();
+    }
+
+    var order = out.order();
+    out.order(ByteOrder.LITTLE_ENDIAN);
+    putHeader(out, headSize + payloadSize, KIND_ENVELOPE, (byte) 0);
+    out.putLong(envelope.sender());
+    out.putLong(envelope.recipient());
+    out.putLong(envelope.traceId());
+    putString(out, envelope.name());
+    out.order(order);
+  }
+
+  /** Writes the frame header, the buffer must be little-endian. */
+  public static void putHeader(ByteBuffer out, int size, byte kind, byte flags) {
+    out.putInt(size);
+    out.put(kind);
+    out.put(flags);
+  }
+
+  /** Returns the size of the frame at the buffer's position, or -1 if the header is incomplete. */
+  public static int peekSize(ByteBuffer in) {
+    if (in.remaining() < HEADER_LENGTH) {
+      return -1;
+    }
+    int size = in.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(in.position());
+    if (size < HEADER_LENGTH || size > MAX_FRAME_SIZE) {
+      throw new IllegalArgumentException(String.format("Invalid frame size %d", size));
+    }
+    return size;
+  }
+
+  /**
+   * Decodes a single frame from the buffer.
+   *
+   * @return decoded frame, or {@code null} if the buffer doesn't contain a whole frame yet; in the
+   *     latter case the buffer's position is left untouched
+   */
+  public static Object decode(ByteBuffer in) {
+    int size = peekSize(in);
+    if (size < 0 || in.remaining() < size) {
+      return null;
+    }
+
+    var frame = in.slice(in.position(), size).order(ByteOrder.LITTLE_ENDIAN);
+    in.position(in.position() + size);
+
+    frame.position(4);
+    byte kind = frame.get();
+    byte flags = frame.get();
+
+    return switch (kind) {
+      case KIND_ENVELOPE -> {
+        long sender = frame.getLong();
+        long recipient = frame.getLong();
+        long traceId = frame.getLong();
+        String name = getString(frame);
+        var payload = ByteBuffer.allocate(frame.remaining());
+        payload.put(frame).flip();
+        yield new NetworkEnvelope(sender, recipient, traceId, name, payload);
+      }
+      case KIND_SWITCH_TO_CONTROL -> {
+        int count = Short.toUnsignedInt(frame.getShort());
+        var groups = new ArrayList<ProtocolMessages.GroupInfo>(count);
+        for (int i = 0; i < count; i++) {
+          short groupNo = frame.getShort();
+          String name = getString(frame);
+          int interestCount = Short.toUnsignedInt(frame.getShort());
+          var interests = new ArrayList<String>(interestCount);
+          for (int j = 0; j < interestCount; j++) {
+            interests.add(getString(frame));
+          }
+          groups.add(new ProtocolMessages.GroupInfo(groupNo, name, List.copyOf(interests)));
+        }
+        yield new ProtocolMessages.SwitchToControl(List.copyOf(groups));
+      }
+      case KIND_SWITCH_TO_DATA ->
+          new ProtocolMessages.SwitchToData(frame.getShort(), frame.getShort(), frame.getInt());
+      case KIND_UPDATE_FLOW -> new ProtocolMessages.UpdateFlow(frame.getLong(), frame.getInt());
+      case KIND_CLOSE_FLOW -> new ProtocolMessages.CloseFlow(frame.getLong());
+      case KIND_PING -> new ProtocolMessages.Ping(frame.getLong());
+      case KIND_PONG -> new ProtocolMessages.Pong(frame.getLong());
+      case KIND_COMPRESSED -> {
+        int uncompressedSize = frame.getInt();
+        var block = ByteBuffer.allocate(frame.remaining());
+        block.put(frame).flip();
+        yield new CompressedBatch(uncompressedSize, block);
+      }
+      case KIND_CHUNK -> {
+        int streamId = frame.getInt();
+        Chunk.Head head = null;
+        if ((flags & FLAG_FIRST) != 0) {
+          long sender = frame.getLong();
+          long recipient = frame.getLong();
+          long traceId = frame.getLong();
+          String name = getString(frame);
+          head = new Chunk.Head(sender, recipient, traceId, name, frame.getInt());
+        }
+        var data = ByteBuffer.allocate(frame.remaining());
+        data.put(frame).flip();
+        yield new Chunk(streamId, head, (flags & FLAG_LAST) != 0, data);
+      }
+      default -> throw new IllegalArgumentException("Unknown frame kind " + kind);
+    };
+  }
+
+  /** Returns the frame kind for the given frame object. */
+  public static byte kindOf(Object frame) {
+    return switch (frame) {
+      case NetworkEnvelope ignored -> KIND_ENVELOPE;
+      case ProtocolMessages.SwitchToControl ignored -> KIND_SWITCH_TO_CONTROL;
+      case ProtocolMessages.SwitchToData ignored -> KIND_SWITCH_TO_DATA;
+      case ProtocolMessages.UpdateFlow ignored -> KIND_UPDATE_FLOW;
+      case ProtocolMessages.CloseFlow ignored -> KIND_CLOSE_FLOW;
+      case ProtocolMessages.Ping ignored -> KIND_PING;
+      case ProtocolMessages.Pong ignored -> KIND_PONG;
+      case Chunk ignored -> KIND_CHUNK;
+      case CompressedBatch ignored -> KIND_COMPRESSED;
+      default -> throw unknownFrame(frame);
+    };
+  }
+
+  private static byte flagsOf(Object frame) {
+    if (frame instanceof Chunk chunk) {
+      return (byte) ((chunk.isFirst() ? FLAG_FIRST : 0) | (chunk.last() ? FLAG_LAST : 0));
+    }
+    return 0;
+  }
+
+  /** Gets the encoded size of the string, checked before anything is written. */
+  private static int stringSize(String value) {
+    int length = utf8Length(value);
+    if (length > 0xFFFF) {
+      throw new IllegalArgumentException("String is too long: " + length + " bytes");
+    }
+    return 2 + length;
+  }
+
+  private static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          length += 4;
+          i++;
+        } else {
+          // Unpaired surrogates are replaced with '?' by the encoder.
+          length += 1;
+        }
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static void putString(ByteBuffer out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.putShort((short) bytes.length);
+    out.put(bytes);
+  }
+
+  private static String getString(ByteBuffer in) {
+    int length = Short.toUnsignedInt(in.getShort());
+    if (in.hasArray()) {
+      var value =
+          new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+      in.position(in.position() + length);
+      return value;
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static IllegalArgumentException unknownFrame(Object frame) {
+    return new IllegalArgumentException(
+        "Unknown frame type: " + (frame == null ? "null" : frame.getClass().getName()));
+  }
+}
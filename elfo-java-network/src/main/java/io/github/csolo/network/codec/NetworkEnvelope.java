@@ -0,0 +1,35 @@
+package io.github.csolo.network.codec;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Message travelling between nodes.
+ *
+ * <p>On socket transports the payload is always a {@link ByteBuffer} with the msgpack-encoded
+ * message body. In-process connections hand the envelope over by reference, so the payload can be
+ * any Java object there.
+ *
+ * @param sender Sender's address bits.
+ * @param recipient Recipient's address bits, a group address for routed messages.
+ * @param traceId Trace id bits.
+ * @param name Message name, e.g. {@code "SomeEvent"}.
+ * @param payload Message body.
+ */
+public record NetworkEnvelope(
+    long sender, long recipient, long traceId, @NotNull String name, @NotNull Object payload) {
+
+  /** Checks if the payload is in the wire format. */
+  public boolean isEncoded() {
+    return payload instanceof ByteBuffer;
+  }
+
+  /** Gets the payload in the wire format, without consuming it. */
+  public ByteBuffer encodedPayload() {
+    if (payload instanceof ByteBuffer buffer) {
+      return buffer.duplicate();
+    }
+    throw new IllegalStateException(
+        "Payload of " + name + " is a Java object, it cannot be sent over the wire");
+  }
+}
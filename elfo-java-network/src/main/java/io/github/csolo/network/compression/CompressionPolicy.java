@@ -0,0 +1,137 @@
+package io.github.csolo.network.compression;
+
+import io.github.csolo.network.config.CompressionConfig;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which frames are worth compressing, based on the ratio sampled per message type.
+ *
+ * <p>A type starts unknown, and its first large enough message is compressed alone as a probe.
+ * Types that shrink join compressed batches and are re-probed every {@link #RESAMPLE_INTERVAL}
+ * messages to follow changes in the data. Types that don't shrink (e.g. already compressed
+ * payloads) are sent as is and re-probed every {@link #REPROBE_INTERVAL} messages.
+ *
+ * <p>A connection calls it under its write lock, only {@link #snapshot()} may be called from any
+ * thread.
+ */
+public final class CompressionPolicy {
+  static final int RESAMPLE_INTERVAL = 64;
+  static final int REPROBE_INTERVAL = 1024;
+  // Weight of a new sample in the moving average of the ratio.
+  private static final double ALPHA = 0.25;
+
+  private final int minSize;
+  private final double minRatio;
+  private final Map<String, TypeState> types = new ConcurrentHashMap<>();
+
+  public CompressionPolicy(CompressionConfig config) {
+    this.minSize = config.minSize();
+    this.minRatio = config.minRatio();
+  }
+
+  /** What to do with a frame. */
+  public enum Decision {
+    /** Send as is. */
+    RAW,
+    /** Join the compressed batch. */
+    BATCH,
+    /** Compress alone and report the result with {@link #probed(String, int, int)}. */
+    PROBE
+  }
+
+  public int minSize() {
+    return minSize;
+  }
+
+  public double minRatio() {
+    return minRatio;
+  }
+
+  /**
+   * Decides what to do with a frame of the message type.
+   *
+   * @param type Message name, {@code null} for protocol frames which always join the batch
+   * @param size Encoded size of the frame
+   */
+  public Decision decide(String type, int size) {
+    if (type == null) {
+      return Decision.BATCH;
+    }
+    var state = types.computeIfAbsent(type, ignored -> new TypeState());
+    state.messages++;
+    if (size < minSize) {
+      // Too small to sample, batching is the only chance to make it smaller.
+      if (state.samples > 0 && !state.compressible) {
+        state.skipped++;
+        return Decision.RAW;
+      }
+      return Decision.BATCH;
+    }
+
+    state.sinceProbe++;
+    if (state.samples == 0
+        || (state.compressible && state.sinceProbe >= RESAMPLE_INTERVAL)
+        || (!state.compressible && state.sinceProbe >= REPROBE_INTERVAL)) {
+      state.sinceProbe = 0;
+      return Decision.PROBE;
+    }
+    if (state.compressible) {
+      return Decision.BATCH;
+    }
+    state.skipped++;
+    return Decision.RAW;
+  }
+
+  /** Records the result of a probe. */
+  public void probed(String type, int uncompressed, int compressed) {
+    var state = types.computeIfAbsent(type, ignored -> new TypeState());
+    double ratio = (double) uncompressed / Math.max(compressed, 1);
+    state.ratio = state.samples == 0 ? ratio : state.ratio + ALPHA * (ratio - state.ratio);
+    state.samples++;
+    state.compressible = state.ratio >= minRatio;
+  }
+
+  /** Checks if compressing {@code uncompressed} bytes into {@code compressed} is worth it. */
+  public boolean isWorth(int uncompressed, int compressed) {
+    return uncompressed >= minRatio * compressed;
+  }
+
+  /** Takes a snapshot of per-type stats, sorted by type. */
+  public Map<String, TypeStats> snapshot() {
+    var snapshot = new TreeMap<String, TypeStats>();
+    types.forEach(
+        (type, state) ->
+            snapshot.put(
+                type,
+                new TypeStats(
+                    state.ratio,
+                    state.compressible,
+                    state.samples,
+                    state.messages,
+                    state.skipped)));
+    return snapshot;
+  }
+
+  /**
+   * Compression stats of a message type.
+   *
+   * @param ratio Moving average of uncompressed to compressed size ratio, 0 if never sampled.
+   * @param compressible Whether messages of the type are compressed now.
+   * @param samples Number of probes.
+   * @param messages Number of messages seen.
+   * @param skipped Number of messages sent uncompressed because the type doesn't shrink.
+   */
+  public record TypeStats(
+      double ratio, boolean compressible, long samples, long messages, long skipped) {}
+
+  private static final class TypeState {
+    double ratio;
+    boolean compressible;
+    long samples;
+    long messages;
+    long skipped;
+    int sinceProbe;
+  }
+}
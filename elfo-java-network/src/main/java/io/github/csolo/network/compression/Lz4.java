@@ -0,0 +1,367 @@
+package io.github.csolo.network.compression;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * LZ4 block format, as used by elfo for compressed frames.
+ *
+ * <p>A pure Java implementation working on heap and direct buffers, so that no native library is
+ * needed in our containers. The compressor is the greedy single-pass one of the reference "fast"
+ * mode, the decompressor checks every length and offset against both buffers.
+ *
+ * <p>Matches are extended 8 bytes at a time, comparing whole words and locating the first
+ * differing byte by its trailing zeros. Literals and non-overlapping matches are copied with bulk
+ * buffer copies.
+ */
+public final class Lz4 {
+  static final int MIN_MATCH = 4;
+  // The last 5 bytes are always literals, and the last match starts 12 bytes before the end.
+  static final int LAST_LITERALS = 5;
+  static final int MF_LIMIT = 12;
+  static final int MAX_DISTANCE = 65535;
+  static final int HASH_LOG = 12;
+  // After 2^SKIP_TRIGGER failed attempts the search step grows, so incompressible data is skipped.
+  static final int SKIP_TRIGGER = 6;
+  private static final int RUN_MASK = 15;
+  private static final int ML_MASK = 15;
+
+  private Lz4() {}
+
+  /** Returns the max size of the compressed block for the input of the given size. */
+  public static int maxCompressedLength(int length) {
+    if (length < 0) {
+      throw new IllegalArgumentException("Negative length: " + length);
+    }
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compresses remaining bytes of {@code src} into {@code dst}, advancing both buffers.
+   *
+   * @return size of the compressed block
+   * @throws IllegalArgumentException if {@code dst} has less than {@link #maxCompressedLength(int)}
+   *     bytes remaining
+   */
+  public static int compress(ByteBuffer src, ByteBuffer dst) {
+    int required = maxCompressedLength(src.remaining());
+    if (dst.remaining() < required) {
+      throw new IllegalArgumentException(
+          "Not enough space to compress " + src.remaining() + " bytes, need " + required);
+    }
+    var in = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    var out = dst.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int end = compressBlock(in, src.position(), src.limit(), out, dst.position());
+    int length = end - dst.position();
+    src.position(src.limit());
+    dst.position(end);
+    return length;
+  }
+
+  /**
+   * Decompresses the block at {@code src}'s position into {@code dst}, advancing both buffers. The
+   * block must span the rest of {@code src}.
+   *
+   * @param length Size of the uncompressed data.
+   * @throws IllegalArgumentException if the block is malformed
+   */
+  public static void decompress(ByteBuffer src, ByteBuffer dst, int length) {
+    if (dst.remaining() < length) {
+      throw new IllegalArgumentException("Not enough space to decompress " + length + " bytes");
+    }
+    int start = dst.position();
+    int end = decompressBlock(src, src.position(), src.limit(), dst, start, start + length);
+    if (end != start + length) {
+      throw malformed((end - start) + " bytes instead of " + length);
+    }
+    src.position(src.limit());
+    dst.position(end);
+  }
+
+  /**
+   * Reads the head of the block at {@code block}'s position, without advancing it.
+   *
+   * @throws IllegalArgumentException if the head is malformed
+   */
+  public static Head head(ByteBuffer block) {
+    int ip = block.position();
+    int end = block.limit();
+    if (ip >= end) {
+      throw malformed("unexpected end of block");
+    }
+    int token = block.get(ip++) & 0xFF;
+    int literals = token >>> 4;
+    if (literals == RUN_MASK) {
+      int b;
+      do {
+        if (ip >= end) {
+          throw malformed("unexpected end of block");
+        }
+        b = block.get(ip++) & 0xFF;
+        literals += b;
+      } while (b == 255);
+    }
+    if (literals > end - ip) {
+      throw malformed("literals out of bounds");
+    }
+    return new Head(token, literals, ip - block.position());
+  }
+
+  /**
+   * First token of a block with the length of the first literals.
+   *
+   * <p>Bytes are prepended to compressed data by rewriting the head only: they become part of the
+   * first literals, and matches refer back by distance, so the rest of the block stays valid. That
+   * lets one compressed payload be sent behind different frame headers.
+   *
+   * @param token First token.
+   * @param literals Number of the first literals.
+   * @param tail Offset of the first literals, i.e. where the part that is kept as is starts.
+   */
+  public record Head(int token, int literals, int tail) {
+
+    /** Returns the size of the head with {@code prefix} bytes prepended, not counting them. */
+    public int length(int prefix) {
+      int literals = this.literals + prefix;
+      return literals < RUN_MASK ? 1 : 2 + (literals - RUN_MASK) / 255;
+    }
+
+    /**
+     * Writes the head with {@code prefix} bytes prepended, advancing the buffer. The prefix bytes
+     * are to be written right after it, followed by the block from {@link #tail()} on.
+     */
+    public void put(ByteBuffer dst, int prefix) {
+      int literals = this.literals + prefix;
+      int pos = dst.position();
+      if (literals >= RUN_MASK) {
+        dst.put(pos++, (byte) (RUN_MASK << 4 | token & ML_MASK));
+        pos = writeLength(dst, pos, literals - RUN_MASK);
+      } else {
+        dst.put(pos++, (byte) (literals << 4 | token & ML_MASK));
+      }
+      dst.position(pos);
+    }
+  }
+
+  // Compression.
+
+  private static int compressBlock(
+      ByteBuffer in, int start, int end, ByteBuffer out, int outPos) {
+    int anchor = start;
+    if (end - start < MF_LIMIT + 1) {
+      return writeLastLiterals(in, anchor, end, out, outPos);
+    }
+
+    // Positions relative to start, a zeroed table points to the first byte which is always valid.
+    var table = new int[1 << HASH_LOG];
+    int mfLimit = end - MF_LIMIT;
+    int matchLimit = end - LAST_LITERALS;
+    int ip = start + 1;
+
+    search:
+    while (true) {
+      // Find a match, with the step growing on incompressible data.
+      int ref;
+      int attempts = 1 << SKIP_TRIGGER;
+      int next = ip;
+      do {
+        ip = next;
+        next = ip + (attempts++ >>> SKIP_TRIGGER);
+        if (next > mfLimit) {
+          break search;
+        }
+        int hash = hash(in.getInt(ip));
+        ref = start + table[hash];
+        table[hash] = ip - start;
+      } while (ip - ref > MAX_DISTANCE || in.getInt(ref) != in.getInt(ip));
+
+      // Extend backwards into the literals.
+      while (ip > anchor && ref > start && in.get(ip - 1) == in.get(ref - 1)) {
+        ip--;
+        ref--;
+      }
+
+      int tokenPos = outPos++;
+      int literals = ip - anchor;
+      int token;
+      if (literals >= RUN_MASK) {
+        token = RUN_MASK << 4;
+        outPos = writeLength(out, outPos, literals - RUN_MASK);
+      } else {
+        token = literals << 4;
+      }
+      out.put(outPos, in, anchor, literals);
+      outPos += literals;
+
+      while (true) {
+        out.putShort(outPos, (short) (ip - ref));
+        outPos += 2;
+
+        int matchLength =
+            matchLength(in, ip + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+        ip += MIN_MATCH + matchLength;
+        if (matchLength >= ML_MASK) {
+          token |= ML_MASK;
+          outPos = writeLength(out, outPos, matchLength - ML_MASK);
+        } else {
+          token |= matchLength;
+        }
+        out.put(tokenPos, (byte) token);
+        anchor = ip;
+
+        if (ip > mfLimit) {
+          break search;
+        }
+        table[hash(in.getInt(ip - 2))] = ip - 2 - start;
+
+        // Try an immediate match, without literals in between.
+        int hash = hash(in.getInt(ip));
+        ref = start + table[hash];
+        table[hash] = ip - start;
+        if (ip - ref > MAX_DISTANCE || in.getInt(ref) != in.getInt(ip)) {
+          break;
+        }
+        tokenPos = outPos++;
+        token = 0;
+      }
+      ip++;
+    }
+
+    return writeLastLiterals(in, anchor, end, out, outPos);
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  /** Counts equal bytes at {@code ip} and {@code ref}, up to {@code limit} for {@code ip}. */
+  static int matchLength(ByteBuffer in, int ip, int ref, int limit) {
+    int start = ip;
+    while (ip <= limit - Long.BYTES) {
+      long diff = in.getLong(ip) ^ in.getLong(ref);
+      if (diff != 0) {
+        // Little-endian, so the first differing byte is the lowest one.
+        return ip - start + (Long.numberOfTrailingZeros(diff) >>> 3);
+      }
+      ip += Long.BYTES;
+      ref += Long.BYTES;
+    }
+    while (ip < limit && in.get(ip) == in.get(ref)) {
+      ip++;
+      ref++;
+    }
+    return ip - start;
+  }
+
+  private static int writeLength(ByteBuffer out, int outPos, int length) {
+    while (length >= 255) {
+      out.put(outPos++, (byte) 255);
+      length -= 255;
+    }
+    out.put(outPos++, (byte) length);
+    return outPos;
+  }
+
+  private static int writeLastLiterals(
+      ByteBuffer in, int anchor, int end, ByteBuffer out, int pos) {
+    int literals = end - anchor;
+    if (literals >= RUN_MASK) {
+      out.put(pos++, (byte) (RUN_MASK << 4));
+      pos = writeLength(out, pos, literals - RUN_MASK);
+    } else {
+      out.put(pos++, (byte) (literals << 4));
+    }
+    out.put(pos, in, anchor, literals);
+    return pos + literals;
+  }
+
+  // Decompression.
+
+  private static int decompressBlock(
+      ByteBuffer in, int ip, int inEnd, ByteBuffer out, int outStart, int outEnd) {
+    int op = outStart;
+    while (true) {
+      if (ip >= inEnd) {
+        throw malformed("unexpected end of block");
+      }
+      int token = in.get(ip++) & 0xFF;
+
+      int literals = token >>> 4;
+      if (literals == RUN_MASK) {
+        int b;
+        do {
+          if (ip >= inEnd) {
+            throw malformed("unexpected end of block");
+          }
+          b = in.get(ip++) & 0xFF;
+          literals += b;
+          if (literals > outEnd - op) {
+            throw malformed("literals out of bounds");
+          }
+        } while (b == 255);
+      }
+      if (literals > inEnd - ip || literals > outEnd - op) {
+        throw malformed("literals out of bounds");
+      }
+      out.put(op, in, ip, literals);
+      ip += literals;
+      op += literals;
+      if (ip == inEnd) {
+        // The last sequence has literals only.
+        return op;
+      }
+
+      if (inEnd - ip < 2) {
+        throw malformed("unexpected end of block");
+      }
+      int offset = (in.get(ip) & 0xFF) | (in.get(ip + 1) & 0xFF) << 8;
+      ip += 2;
+      if (offset == 0 || offset > op - outStart) {
+        throw malformed("invalid offset " + offset);
+      }
+
+      int matchLength = token & ML_MASK;
+      if (matchLength == ML_MASK) {
+        int b;
+        do {
+          if (ip >= inEnd) {
+            throw malformed("unexpected end of block");
+          }
+          b = in.get(ip++) & 0xFF;
+          matchLength += b;
+          if (matchLength > outEnd - op) {
+            throw malformed("match out of bounds");
+          }
+        } while (b == 255);
+      }
+      matchLength += MIN_MATCH;
+      if (matchLength > outEnd - op) {
+        throw malformed("match out of bounds");
+      }
+      copyMatch(out, op, offset, matchLength);
+      op += matchLength;
+    }
+  }
+
+  private static void copyMatch(ByteBuffer out, int op, int offset, int length) {
+    int ref = op - offset;
+    if (offset >= length) {
+      out.put(op, out, ref, length);
+      return;
+    }
+    // Overlapping, the match repeats the last `offset` bytes. Doubling the copied run keeps the
+    // number of bulk copies logarithmic.
+    int copied = 0;
+    int run = offset;
+    while (copied < length) {
+      int n = Math.min(run, length - copied);
+      out.put(op + copied, out, ref, n);
+      copied += n;
+      run = copied + offset;
+    }
+  }
+
+  private static IllegalArgumentException malformed(String reason) {
+    return new IllegalArgumentException("Malformed LZ4 block: " + reason);
+  }
+}
@@ -1,7 +1,32 @@
 package io.github.csolo.network.config;
 
-/** Compression configuration for elfo-network. */
-public record CompressionConfig(CompressionAlgorithm algorithm) {
+/**
+ * Compression configuration for elfo-network.
+ *
+ * <p>Compression is used only if both nodes support the algorithm. Even then it is adaptive:
+ * batches smaller than {@code minSize} bytes are sent as is, and message types that don't shrink
+ * by {@code minRatio} are not compressed until they are probed again.
+ *
+ * @param algorithm Compression algorithm, {@link CompressionAlgorithm#NONE} disables compression.
+ * @param minSize Min size of a batch of frames worth compressing, in bytes. Default is 512.
+ * @param minRatio Min uncompressed to compressed size ratio worth the CPU. Default is 1.1.
+ */
+public record CompressionConfig(CompressionAlgorithm algorithm, int minSize, double minRatio) {
+  public static final int DEFAULT_MIN_SIZE = 512;
+  public static final double DEFAULT_MIN_RATIO = 1.1;
+
+  public CompressionConfig {
+    if (minSize < 0) {
+      throw new IllegalArgumentException("Min size to compress cannot be negative: " + minSize);
+    }
+    if (!(minRatio >= 1.0)) {
+      throw new IllegalArgumentException("Min compression ratio must be at least 1: " + minRatio);
+    }
+  }
+
+  public CompressionConfig(CompressionAlgorithm algorithm) {
+    this(algorithm, DEFAULT_MIN_SIZE, DEFAULT_MIN_RATIO);
+  }
 
   public CompressionConfig() {
     this(CompressionAlgorithm.NONE);
@@ -0,0 +1,62 @@
+package io.github.csolo.network.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Difference between two {@link NetworkConfig}s, so that a reload touches only what changed.
+ *
+ * <p>The discovery attempt interval is not tracked, it's read before every attempt anyway.
+ *
+ * @param added Predefined transports to connect to.
+ * @param removed Predefined transports to disconnect from.
+ * @param pingChanged Whether the ping interval changed.
+ * @param compressionChanged Whether the compression config changed.
+ * @param socketChanged Whether socket options changed.
+ * @param listenerChanged Whether listener limits changed, they apply to listeners started later.
+ */
+public record ConfigDiff(
+    List<Transport> added,
+    List<Transport> removed,
+    boolean pingChanged,
+    boolean compressionChanged,
+    boolean socketChanged,
+    boolean listenerChanged) {
+
+  /** Compares configs, duplicates and the order of predefined transports don't matter. */
+  public static ConfigDiff between(NetworkConfig previous, NetworkConfig updated) {
+    var before = new LinkedHashSet<>(previous.discovery().predefined());
+    var after = new LinkedHashSet<>(updated.discovery().predefined());
+    var added = new ArrayList<Transport>();
+    for (var transport : after) {
+      if (!before.contains(transport)) {
+        added.add(transport);
+      }
+    }
+    var removed = new ArrayList<Transport>();
+    for (var transport : before) {
+      if (!after.contains(transport)) {
+        removed.add(transport);
+      }
+    }
+    return new ConfigDiff(
+        List.copyOf(added),
+        List.copyOf(removed),
+        !previous.pingInterval().equals(updated.pingInterval()),
+        !Objects.equals(previous.compression(), updated.compression()),
+        !Objects.equals(previous.socket(), updated.socket()),
+        !Objects.equals(previous.listener(), updated.listener()));
+  }
+
+  /** Checks if nothing changed. */
+  public boolean isEmpty() {
+    return added.isEmpty()
+        && removed.isEmpty()
+        && !pingChanged
+        && !compressionChanged
+        && !socketChanged
+        && !listenerChanged;
+  }
+}
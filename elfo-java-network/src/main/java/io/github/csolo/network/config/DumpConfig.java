@@ -0,0 +1,54 @@
+package io.github.csolo.network.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Configuration of dumping envelopes into segment files, see {@code Dumper}.
+ *
+ * @param directory Directory of segment files, created if missing.
+ * @param segmentSize Size of a segment file, in bytes. Default is 64 MiB.
+ * @param bufferSize Size of every append buffer, in bytes. Default is 64 KiB.
+ * @param maxSegments Max number of sealed segments kept, older ones are deleted. Default is 16.
+ * @param flushInterval How often append buffers are written out even if not full, so that quiet
+ *     threads' records don't linger. Default is 100 ms.
+ * @param compress Whether sealed segments are compressed with LZ4. Default is true.
+ */
+public record DumpConfig(
+    Path directory,
+    int segmentSize,
+    int bufferSize,
+    int maxSegments,
+    Duration flushInterval,
+    boolean compress) {
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  public static final int DEFAULT_MAX_SEGMENTS = 16;
+  public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+  public DumpConfig {
+    if (bufferSize < 256) {
+      throw new IllegalArgumentException("Dump buffer size must be at least 256: " + bufferSize);
+    }
+    if (segmentSize < 2 * bufferSize || segmentSize > 1 << 30) {
+      throw new IllegalArgumentException(
+          "Dump segment size must be between 2 buffers and 1 GiB: " + segmentSize);
+    }
+    if (maxSegments < 1) {
+      throw new IllegalArgumentException("Max dump segments must be positive: " + maxSegments);
+    }
+    if (flushInterval.isNegative() || flushInterval.isZero()) {
+      throw new IllegalArgumentException("Dump flush interval must be positive: " + flushInterval);
+    }
+  }
+
+  public DumpConfig(Path directory) {
+    this(
+        directory,
+        DEFAULT_SEGMENT_SIZE,
+        DEFAULT_BUFFER_SIZE,
+        DEFAULT_MAX_SEGMENTS,
+        DEFAULT_FLUSH_INTERVAL,
+        true);
+  }
+}
@@ -0,0 +1,42 @@
+package io.github.csolo.network.config;
+
+import java.time.Duration;
+
+/**
+ * Limits of handshake work on inbound connections, so that an accept storm (e.g. after a cluster
+ * restart) can't starve established connections.
+ *
+ * <p>Connections beyond the limits wait in the OS backlog, not in memory.
+ *
+ * @param maxConcurrentHandshakes Max number of handshakes in progress. Default is 64.
+ * @param handshakesPerSecond Max rate of started handshakes, 0 for no limit. Up to a tenth of a
+ *     second's worth can start at once. Default is 1000.
+ * @param handshakeTimeout Time a peer has to complete the handshake. Default is 5 seconds.
+ */
+public record ListenerConfig(
+    int maxConcurrentHandshakes, int handshakesPerSecond, Duration handshakeTimeout) {
+  public static final int DEFAULT_MAX_CONCURRENT_HANDSHAKES = 64;
+  public static final int DEFAULT_HANDSHAKES_PER_SECOND = 1000;
+  public static final Duration DEFAULT_HANDSHAKE_TIMEOUT = Duration.ofSeconds(5);
+
+  public ListenerConfig {
+    if (maxConcurrentHandshakes < 1) {
+      throw new IllegalArgumentException(
+          "Max concurrent handshakes must be positive: " + maxConcurrentHandshakes);
+    }
+    if (handshakesPerSecond < 0) {
+      throw new IllegalArgumentException(
+          "Handshake rate cannot be negative: " + handshakesPerSecond);
+    }
+    if (handshakeTimeout.isNegative() || handshakeTimeout.isZero()) {
+      throw new IllegalArgumentException("Handshake timeout must be positive: " + handshakeTimeout);
+    }
+  }
+
+  public ListenerConfig() {
+    this(
+        DEFAULT_MAX_CONCURRENT_HANDSHAKES,
+        DEFAULT_HANDSHAKES_PER_SECOND,
+        DEFAULT_HANDSHAKE_TIMEOUT);
+  }
+}
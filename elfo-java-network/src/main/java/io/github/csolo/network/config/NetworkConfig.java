@@ -8,9 +8,28 @@ import java.time.Duration;
  * @param pingInterval Interval between pings to check connection health. Default is 5 seconds.
  * @param discovery Discovery configuration.
  * @param compression Compression configuration.
+ * @param socket Options of TCP and UDS sockets.
+ * @param listener Limits of handshake work on inbound connections.
  */
 public record NetworkConfig(
-    Duration pingInterval, DiscoveryConfig discovery, CompressionConfig compression) {
+    Duration pingInterval,
+    DiscoveryConfig discovery,
+    CompressionConfig compression,
+    SocketOptions socket,
+    ListenerConfig listener) {
+
+  public NetworkConfig(
+      Duration pingInterval,
+      DiscoveryConfig discovery,
+      CompressionConfig compression,
+      SocketOptions socket) {
+    this(pingInterval, discovery, compression, socket, new ListenerConfig());
+  }
+
+  public NetworkConfig(
+      Duration pingInterval, DiscoveryConfig discovery, CompressionConfig compression) {
+    this(pingInterval, discovery, compression, new SocketOptions());
+  }
 
   public NetworkConfig(DiscoveryConfig discovery, CompressionConfig compression) {
     this(Duration.ofSeconds(5), discovery, compression);
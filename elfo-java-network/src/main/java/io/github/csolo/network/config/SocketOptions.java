@@ -0,0 +1,118 @@
+package io.github.csolo.network.config;
+
+import java.time.Duration;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Options of TCP and UDS sockets, applied to both connected and accepted ones.
+ *
+ * <p>Buffer sizes apply to both transports, the rest is TCP-only and ignored for UDS. Zero sizes
+ * and {@code null} durations leave the OS default. For high bandwidth-delay links, buffers should
+ * be at least bandwidth times RTT, e.g. 12.5 MiB for 1 Gbit/s with 100 ms RTT. The OS may clamp
+ * them (see {@code net.core.wmem_max} and {@code net.core.rmem_max} on Linux).
+ *
+ * @param tcpNoDelay Whether to disable Nagle's algorithm. Default is {@code true}.
+ * @param sendBufferSize Size of the send buffer (SO_SNDBUF) in bytes, 0 for the OS default.
+ * @param receiveBufferSize Size of the receive buffer (SO_RCVBUF) in bytes, 0 for the OS default.
+ * @param keepAlive Whether to enable TCP keepalive (SO_KEEPALIVE). Default is {@code false}.
+ * @param keepAliveIdle Idle time before the first keepalive probe (TCP_KEEPIDLE).
+ * @param keepAliveInterval Interval between keepalive probes (TCP_KEEPINTERVAL).
+ * @param keepAliveCount Number of unanswered probes before the connection is dropped
+ *     (TCP_KEEPCOUNT), 0 for the OS default.
+ * @param connectTimeout Timeout of TCP connect, {@code null} to wait as long as the OS does.
+ *     Default is 10 seconds.
+ */
+public record SocketOptions(
+    boolean tcpNoDelay,
+    int sendBufferSize,
+    int receiveBufferSize,
+    boolean keepAlive,
+    @Nullable Duration keepAliveIdle,
+    @Nullable Duration keepAliveInterval,
+    int keepAliveCount,
+    @Nullable Duration connectTimeout) {
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+  public SocketOptions {
+    if (sendBufferSize < 0 || receiveBufferSize < 0) {
+      throw new IllegalArgumentException(
+          "Socket buffer sizes cannot be negative: " + sendBufferSize + ", " + receiveBufferSize);
+    }
+    if (keepAliveCount < 0) {
+      throw new IllegalArgumentException("Keepalive count cannot be negative: " + keepAliveCount);
+    }
+    requireSeconds("Keepalive idle time", keepAliveIdle);
+    requireSeconds("Keepalive interval", keepAliveInterval);
+    if (connectTimeout != null && (connectTimeout.isNegative() || connectTimeout.isZero())) {
+      throw new IllegalArgumentException("Connect timeout must be positive: " + connectTimeout);
+    }
+    if (!keepAlive && (keepAliveIdle != null || keepAliveInterval != null || keepAliveCount > 0)) {
+      throw new IllegalArgumentException("Keepalive options are set, but keepalive is disabled");
+    }
+  }
+
+  /** Default options: no delay, OS buffers, no keepalive, 10 seconds to connect. */
+  public SocketOptions() {
+    this(true, 0, 0, false, null, null, 0, DEFAULT_CONNECT_TIMEOUT);
+  }
+
+  /** Gets a copy with Nagle's algorithm disabled or enabled. */
+  public SocketOptions withTcpNoDelay(boolean tcpNoDelay) {
+    return new SocketOptions(
+        tcpNoDelay,
+        sendBufferSize,
+        receiveBufferSize,
+        keepAlive,
+        keepAliveIdle,
+        keepAliveInterval,
+        keepAliveCount,
+        connectTimeout);
+  }
+
+  /** Gets a copy with the given buffer sizes. */
+  public SocketOptions withBufferSizes(int sendBufferSize, int receiveBufferSize) {
+    return new SocketOptions(
+        tcpNoDelay,
+        sendBufferSize,
+        receiveBufferSize,
+        keepAlive,
+        keepAliveIdle,
+        keepAliveInterval,
+        keepAliveCount,
+        connectTimeout);
+  }
+
+  /** Gets a copy with keepalive enabled, {@code null} and 0 arguments leave OS defaults. */
+  public SocketOptions withKeepAlive(
+      @Nullable Duration idle, @Nullable Duration interval, int count) {
+    return new SocketOptions(
+        tcpNoDelay,
+        sendBufferSize,
+        receiveBufferSize,
+        true,
+        idle,
+        interval,
+        count,
+        connectTimeout);
+  }
+
+  /** Gets a copy with the given connect timeout, {@code null} to wait as long as the OS does. */
+  public SocketOptions withConnectTimeout(@Nullable Duration timeout) {
+    return new SocketOptions(
+        tcpNoDelay,
+        sendBufferSize,
+        receiveBufferSize,
+        keepAlive,
+        keepAliveIdle,
+        keepAliveInterval,
+        keepAliveCount,
+        timeout);
+  }
+
+  private static void requireSeconds(String name, @Nullable Duration duration) {
+    // The extended keepalive options are set in whole seconds.
+    if (duration != null && duration.getSeconds() < 1) {
+      throw new IllegalArgumentException(name + " must be at least 1 second: " + duration);
+    }
+  }
+}
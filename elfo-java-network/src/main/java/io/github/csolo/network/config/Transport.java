@@ -42,6 +42,38 @@ public sealed interface Transport {
     }
   }
 
+  /**
+   * Shared-memory transport, a pair of ring buffers in a memory-mapped file (usually in {@code
+   * /dev/shm}). Intended for a sidecar node running on the same host.
+   */
+  record Shm(@NotNull Path path) implements Transport {
+    public Shm {
+      Objects.requireNonNull(path, "path must not be null");
+    }
+
+    @Override
+    @NotNull
+    public String toString() {
+      return "shm://" + path;
+    }
+  }
+
+  /**
+   * In-process transport, connects nodes living in the same JVM through in-memory queues. Frames
+   * are handed over by reference without serialization.
+   */
+  record InProc(@NotNull String name) implements Transport {
+    public InProc {
+      Objects.requireNonNull(name, "name must not be null");
+    }
+
+    @Override
+    @NotNull
+    public String toString() {
+      return "inproc://" + name;
+    }
+  }
+
   /** Check if this transport is TCP. */
   default boolean isTcp() {
     return this instanceof Tcp;
@@ -52,11 +84,23 @@ public sealed interface Transport {
     return this instanceof Uds;
   }
 
+  /** Check if this transport is shared-memory. */
+  default boolean isShm() {
+    return this instanceof Shm;
+  }
+
+  /** Check if this transport is in-process. */
+  default boolean isInProc() {
+    return this instanceof InProc;
+  }
+
   /** Get the address/path as string. */
   default String getAddress() {
     return switch (this) {
       case Tcp tcp -> tcp.address();
       case Uds uds -> uds.path().toString();
+      case Shm shm -> shm.path().toString();
+      case InProc inProc -> inProc.name();
     };
   }
 
@@ -92,6 +136,18 @@ public sealed interface Transport {
         }
         yield new Uds(Path.of(address));
       }
+      case "shm" -> {
+        if (address.endsWith("/")) {
+          throw new IllegalArgumentException("Path to shared memory segment cannot be directory");
+        }
+        yield new Shm(Path.of(address));
+      }
+      case "inproc" -> {
+        if (address.isEmpty()) {
+          throw new IllegalArgumentException("Name of in-process transport cannot be empty");
+        }
+        yield new InProc(address);
+      }
       default -> throw new IllegalArgumentException("Unknown protocol: " + protocol);
     };
   }
@@ -0,0 +1,108 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.codec.CompressedBatch;
+import io.github.csolo.network.codec.FrameCodec;
+import io.github.csolo.network.compression.CompressionPolicy;
+import io.github.csolo.network.compression.Lz4;
+import io.github.csolo.network.jfr.CompressionEvent;
+import io.github.csolo.network.socket.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compresses frames in the write buffer in place, as decided by {@link CompressionPolicy}.
+ *
+ * <p>Frames are encoded into the write buffer as usual. A run starts at the first frame to be
+ * compressed and ends right before a frame to be sent as is, then the whole run is replaced with a
+ * single {@link CompressedBatch} if it pays off. So many small frames are compressed together, and
+ * the order of frames is kept. Probes are runs of a single frame. Not thread-safe, it's owned by
+ * the connection's write lock.
+ */
+final class BatchCompressor {
+  private final CompressionPolicy policy;
+  private final Socket socket;
+  private final ByteBuffer scratch;
+  private int runStart = -1;
+  private String probeType;
+
+  BatchCompressor(CompressionPolicy policy, Socket socket, int bufferSize) {
+    this.policy = policy;
+    this.socket = socket;
+    int capacity = FrameCodec.COMPRESSED_OVERHEAD + Lz4.maxCompressedLength(bufferSize);
+    this.scratch = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  CompressionPolicy policy() {
+    return policy;
+  }
+
+  /** Called right before encoding a frame at the buffer's position. */
+  void beforeFrame(ByteBuffer buffer, String type, int size) {
+    switch (policy.decide(type, size)) {
+      case RAW -> closeRun(buffer);
+      case BATCH -> {
+        if (runStart < 0) {
+          runStart = buffer.position();
+        }
+      }
+      case PROBE -> {
+        closeRun(buffer);
+        runStart = buffer.position();
+        probeType = type;
+      }
+    }
+  }
+
+  /** Called right after encoding a frame. */
+  void afterFrame(ByteBuffer buffer) {
+    if (probeType != null) {
+      closeRun(buffer);
+    }
+  }
+
+  /**
+   * Ends the current run, compressing it if it pays off.
+   *
+   * @return whether the run was compressed, so the buffer has more room now
+   */
+  boolean closeRun(ByteBuffer buffer) {
+    int start = runStart;
+    var probe = probeType;
+    runStart = -1;
+    probeType = null;
+    int length = buffer.position() - start;
+    if (start < 0 || length < policy.minSize()) {
+      return false;
+    }
+
+    var event = new CompressionEvent();
+    event.begin();
+    long startNanos = System.nanoTime();
+    scratch.clear().position(FrameCodec.COMPRESSED_OVERHEAD);
+    int compressed = Lz4.compress(buffer.slice(start, length), scratch);
+    socket.metrics().compressionTime(System.nanoTime() - startNanos);
+    event.end();
+
+    int frameSize = FrameCodec.COMPRESSED_OVERHEAD + compressed;
+    if (probe != null) {
+      policy.probed(probe, length, frameSize);
+    }
+    if (event.shouldCommit()) {
+      event.peerNodeNo = socket.peer().nodeNo();
+      event.uncompressedBytes = length;
+      event.compressedBytes = frameSize;
+      event.commit();
+    }
+    if (!policy.isWorth(length, frameSize)) {
+      return false;
+    }
+
+    scratch.position(0);
+    FrameCodec.putHeader(scratch, frameSize, FrameCodec.KIND_COMPRESSED, (byte) 0);
+    scratch.putInt(length);
+    buffer.put(start, scratch, 0, frameSize);
+    buffer.position(start + frameSize);
+    socket.metrics().compressed(length, frameSize);
+    return true;
+  }
+}
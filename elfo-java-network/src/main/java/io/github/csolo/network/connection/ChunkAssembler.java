@@ -0,0 +1,128 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.codec.Chunk;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.memory.MemoryBudget;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reassembles chunked messages on the receiving side. Not thread-safe, it is owned by the reader.
+ *
+ * <p>Buffers of messages being reassembled are reserved from the memory budget, and released once
+ * the message is handed over or aborted. Messages declared larger than the max message size are
+ * rejected before anything is reserved, unless a {@link StreamHandler} takes them.
+ */
+final class ChunkAssembler {
+  private final Map<Integer, StreamHandler.Sink> streams = new HashMap<>();
+  private final MemoryBudget.Account memory;
+  private final int maxMessageSize;
+  private volatile StreamHandler handler;
+
+  ChunkAssembler(MemoryBudget.Account memory, int maxMessageSize) {
+    this.memory = memory;
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  void handler(StreamHandler handler) {
+    this.handler = handler;
+  }
+
+  /** Handles the chunk, returns the envelope once a buffered message is complete. */
+  NetworkEnvelope accept(Chunk chunk) throws IOException {
+    StreamHandler.Sink sink;
+    if (chunk.isFirst()) {
+      var head = chunk.head();
+      if (streams.containsKey(chunk.streamId())) {
+        throw new ProtocolException("Duplicate chunk stream " + chunk.streamId());
+      }
+      var current = handler;
+      sink = current != null ? current.open(head) : null;
+      if (sink == null) {
+        sink = new Buffering(head, memory, maxMessageSize);
+      }
+      streams.put(chunk.streamId(), sink);
+    } else {
+      sink = streams.get(chunk.streamId());
+      if (sink == null) {
+        throw new ProtocolException("Chunk of unknown stream " + chunk.streamId());
+      }
+    }
+
+    sink.accept(chunk.data());
+    if (!chunk.last()) {
+      return null;
+    }
+    streams.remove(chunk.streamId());
+    sink.complete();
+    return sink instanceof Buffering buffering ? buffering.envelope() : null;
+  }
+
+  /** Checks if some message is partially received. */
+  boolean isInProgress() {
+    return !streams.isEmpty();
+  }
+
+  /** Aborts all incomplete messages. */
+  void abort() {
+    streams.values().forEach(StreamHandler.Sink::abort);
+    streams.clear();
+  }
+
+  private static final class Buffering implements StreamHandler.Sink {
+    private final Chunk.Head head;
+    private final MemoryBudget.Account memory;
+    private final ByteBuffer payload;
+
+    Buffering(Chunk.Head head, MemoryBudget.Account memory, int maxMessageSize)
+        throws IOException {
+      if (head.payloadSize() < 0) {
+        throw new ProtocolException("Invalid chunked payload size " + head.payloadSize());
+      }
+      if (head.payloadSize() > maxMessageSize) {
+        throw new ProtocolException(
+            String.format(
+                "Payload of %s of %d bytes exceeds max message size %d",
+                head.name(), head.payloadSize(), maxMessageSize));
+      }
+      memory.reserve(head.payloadSize());
+      this.head = head;
+      this.memory = memory;
+      this.payload = ByteBuffer.allocate(head.payloadSize());
+    }
+
+    @Override
+    public void accept(ByteBuffer data) throws ProtocolException {
+      if (data.remaining() > payload.remaining()) {
+        throw new ProtocolException(
+            String.format(
+                "Chunks of %s exceed declared payload size %d", head.name(), head.payloadSize()));
+      }
+      payload.put(data);
+    }
+
+    @Override
+    public void complete() throws ProtocolException {
+      // Owned by the receiver from now on, or dropped.
+      memory.release(payload.capacity());
+      if (payload.hasRemaining()) {
+        throw new ProtocolException(
+            String.format(
+                "Chunks of %s are shorter than declared payload size %d",
+                head.name(), head.payloadSize()));
+      }
+    }
+
+    @Override
+    public void abort() {
+      memory.release(payload.capacity());
+    }
+
+    NetworkEnvelope envelope() {
+      return head.toEnvelope(payload.flip());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.dump.Dumper;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.metrics.GroupPairMetrics;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.InProcChannel;
+import java.io.IOException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Framed connection to a remote node over an established {@link Socket}.
+ *
+ * <p>Frames are {@link io.github.csolo.network.codec.NetworkEnvelope} and {@link
+ * io.github.csolo.network.protocol.ProtocolMessages} records. Sending is thread-safe, receiving is
+ * expected to be done by a single reader.
+ */
+public sealed interface Connection extends AutoCloseable
+    permits StreamConnection, InProcConnection {
+
+  /**
+   * Creates a connection suitable for the socket's transport, frames are compressed with the
+   * default policy if both sides support LZ4.
+   */
+  static Connection of(Socket socket) {
+    return of(socket, new CompressionConfig(CompressionAlgorithm.LZ4));
+  }
+
+  /** Creates a connection suitable for the socket's transport. */
+  static Connection of(Socket socket, CompressionConfig compression) {
+    return of(socket, compression, MemoryBudget.global());
+  }
+
+  /**
+   * Creates a connection suitable for the socket's transport, its buffers are reserved from the
+   * budget under the peer's account.
+   */
+  static Connection of(Socket socket, CompressionConfig compression, MemoryBudget budget) {
+    return of(socket, compression, budget, StreamConnection.DEFAULT_MAX_MESSAGE_SIZE);
+  }
+
+  /**
+   * Creates a connection suitable for the socket's transport, received chunked messages larger than
+   * the max message size are rejected unless a {@link StreamHandler} takes them.
+   */
+  static Connection of(
+      Socket socket, CompressionConfig compression, MemoryBudget budget, int maxMessageSize) {
+    if (socket.raw().channel() instanceof InProcChannel channel) {
+      // Frames are passed by reference, nothing to compress or to buffer.
+      return new InProcConnection(socket, channel, budget);
+    }
+    return new StreamConnection(socket, compression, budget, maxMessageSize);
+  }
+
+  /** Gets the underlying socket. */
+  Socket socket();
+
+  /** Queues the frame for sending, may block if the connection is saturated. */
+  void send(Object frame) throws IOException;
+
+  /**
+   * Queues the frame only if it can be done without waiting for other senders or for the socket,
+   * e.g. when the write buffer has to be written out first, which {@link #flush()} does.
+   *
+   * @return whether the frame is queued
+   */
+  boolean trySend(Object frame) throws IOException;
+
+  /** Writes out all queued frames. */
+  void flush() throws IOException;
+
+  /**
+   * Sets the handler consuming large messages chunk by chunk, such messages are not returned by
+   * {@link #receive()} then. Without a handler, messages are always reassembled in memory.
+   */
+  void streamHandler(StreamHandler handler);
+
+  /**
+   * Records envelopes sent and received from now on, {@code null} stops recording. Messages
+   * consumed by a {@link StreamHandler} are not recorded.
+   */
+  void dumper(@Nullable Dumper dumper);
+
+  /**
+   * Counts envelopes sent and received from now on under the group pair too, for data connections
+   * once {@code SwitchToData} is exchanged. {@code null} stops counting.
+   */
+  void groupPair(@Nullable GroupPairMetrics metrics);
+
+  /** Gets the group pair envelopes are counted under, {@code null} for control connections. */
+  @Nullable GroupPairMetrics groupPair();
+
+  /**
+   * Applies the compression config to frames sent from now on, keeping collected stats only if it
+   * is unchanged. LZ4 is used only if both sides announced it in the handshake, so it cannot be
+   * enabled on connections established while it was off.
+   */
+  void compression(CompressionConfig compression);
+
+  /**
+   * Gets when anything was last received from the peer, as {@link System#nanoTime()}. Before that,
+   * it's the time the connection was created.
+   */
+  long lastReceivedNanos();
+
+  /** Waits for the next frame, returns {@code null} if the connection is closed by the peer. */
+  Object receive() throws IOException;
+
+  /**
+   * Waits for the next frame and takes frames that follow it as long as they are at hand, i.e.
+   * already read from the socket or queued by the other end, so that a burst costs a single wait.
+   *
+   * @param frames Array to put the frames into, from index 0
+   * @param max Max number of frames to take, at most {@code frames.length}
+   * @return the number of frames taken, -1 if the connection is closed by the peer
+   */
+  int receive(Object[] frames, int max) throws IOException;
+
+  /** Closes the connection, frames that are not flushed yet are lost. */
+  @Override
+  void close();
+}
@@ -0,0 +1,85 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sends one message to many remote groups, e.g. to every group interested in it (see {@link
+ * io.github.csolo.network.protocol.ProtocolMessages.GroupInfo#interests()}).
+ *
+ * <p>Only the frame header and the envelope's fields differ between targets, so the payload is
+ * compressed once into a pooled {@link SharedBlock} for all compressing stream connections. Each of
+ * them splices its own header into the block and shares the rest of it, large blocks are written
+ * out with a gathering write. Payloads that are too small or too large to be shared, or don't
+ * compress well, are sent to every target as usual, as are envelopes to in-process connections.
+ *
+ * <p>Like {@link Connection#send(Object)}, it only queues envelopes, targets are to be flushed.
+ */
+public final class FanOut {
+
+  /**
+   * Connection and recipient to send the envelope to.
+   *
+   * @param connection Connection to the recipient's node.
+   * @param recipient Recipient's address bits, replacing the envelope's.
+   */
+  public record Target(Connection connection, long recipient) {}
+
+  private FanOut() {}
+
+  /**
+   * Sends the envelope to every target, trying all of them even if some fail.
+   *
+   * @param compression Decides if the shared payload is compressed, connections not compressing
+   *     their frames get it as is.
+   * @throws IOException the first failure, with the others suppressed
+   */
+  public static void send(
+      NetworkEnvelope envelope, List<Target> targets, CompressionConfig compression)
+      throws IOException {
+    // Decided once, so that the block gets exactly as many references as there are users.
+    var sharing = new boolean[targets.size()];
+    int users = 0;
+    if (compression.algorithm() == CompressionAlgorithm.LZ4 && envelope.isEncoded()) {
+      for (int i = 0; i < sharing.length; i++) {
+        if (targets.get(i).connection() instanceof StreamConnection stream && stream.compresses()) {
+          sharing[i] = true;
+          users++;
+        }
+      }
+    }
+    var block =
+        users == 0 ? null : SharedBlock.compress(envelope.encodedPayload(), compression, users);
+
+    IOException failure = null;
+    for (int i = 0; i < sharing.length; i++) {
+      var target = targets.get(i);
+      var addressed =
+          new NetworkEnvelope(
+              envelope.sender(),
+              target.recipient(),
+              envelope.traceId(),
+              envelope.name(),
+              envelope.payload());
+      try {
+        if (block != null && sharing[i]) {
+          ((StreamConnection) target.connection()).send(addressed, block);
+        } else {
+          target.connection().send(addressed);
+        }
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
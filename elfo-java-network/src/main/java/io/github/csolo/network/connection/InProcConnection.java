@@ -0,0 +1,188 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.codec.Chunk;
+import io.github.csolo.network.codec.FrameCodec;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.dump.DumpRecord;
+import io.github.csolo.network.dump.Dumper;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.metrics.GroupPairMetrics;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.InProcChannel;
+import java.io.IOException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Connection between two nodes in the same JVM, frames are passed by reference.
+ *
+ * <p>Control frames overtake envelopes the other end hasn't received yet. Messages are never
+ * chunked here, a {@link StreamHandler} gets the whole payload at once.
+ *
+ * <p>Encoded payloads are reserved from a {@link MemoryBudget} under the peer's account while they
+ * wait for the other end, so sending fails with {@link
+ * io.github.csolo.network.memory.BudgetExceededException} if the budget is full.
+ */
+public final class InProcConnection implements Connection {
+  private final Socket socket;
+  private final InProcChannel channel;
+  private final MemoryBudget.Account memory;
+  private volatile StreamHandler streamHandler;
+  private volatile @Nullable Dumper dumper;
+  private volatile @Nullable GroupPairMetrics groupPair;
+  private volatile long lastReceived = System.nanoTime();
+
+  InProcConnection(Socket socket, InProcChannel channel, MemoryBudget budget) {
+    this.socket = socket;
+    this.channel = channel;
+    this.memory = budget.account(socket.peer().nodeNo(), MemoryBudget.NO_GROUP);
+  }
+
+  @Override
+  public Socket socket() {
+    return socket;
+  }
+
+  @Override
+  public void send(Object frame) throws IOException {
+    channel.sendFrame(frame, ProtocolMessages.isControl(frame), memory, payloadBytes(frame));
+    socket.metrics().framesWritten(1);
+    dump(DumpRecord.Direction.OUT, frame);
+    countPair(DumpRecord.Direction.OUT, frame);
+  }
+
+  @Override
+  public boolean trySend(Object frame) throws IOException {
+    boolean urgent = ProtocolMessages.isControl(frame);
+    if (!channel.trySendFrame(frame, urgent, memory, payloadBytes(frame))) {
+      return false;
+    }
+    socket.metrics().framesWritten(1);
+    dump(DumpRecord.Direction.OUT, frame);
+    countPair(DumpRecord.Direction.OUT, frame);
+    return true;
+  }
+
+  @Override
+  public void flush() {
+    // Frames are visible to the other end immediately.
+  }
+
+  @Override
+  public void streamHandler(StreamHandler handler) {
+    this.streamHandler = handler;
+  }
+
+  @Override
+  public void dumper(@Nullable Dumper dumper) {
+    this.dumper = dumper;
+  }
+
+  @Override
+  public void groupPair(@Nullable GroupPairMetrics metrics) {
+    this.groupPair = metrics;
+  }
+
+  @Override
+  public @Nullable GroupPairMetrics groupPair() {
+    return groupPair;
+  }
+
+  @Override
+  public void compression(CompressionConfig compression) {
+    // Frames are passed by reference, nothing to compress.
+  }
+
+  @Override
+  public long lastReceivedNanos() {
+    return lastReceived;
+  }
+
+  @Override
+  public Object receive() throws IOException {
+    while (true) {
+      var frame = channel.receiveFrame();
+      if (frame == null) {
+        return null;
+      }
+      lastReceived = System.nanoTime();
+      socket.metrics().framesRead(1);
+      countPair(DumpRecord.Direction.IN, frame);
+      if (!(frame instanceof NetworkEnvelope envelope && streamed(envelope))) {
+        dump(DumpRecord.Direction.IN, frame);
+        return frame;
+      }
+    }
+  }
+
+  @Override
+  public int receive(Object[] frames, int max) throws IOException {
+    while (true) {
+      int taken = channel.receiveFrames(frames, max);
+      if (taken < 0) {
+        return -1;
+      }
+      lastReceived = System.nanoTime();
+      socket.metrics().framesRead(taken);
+      int count = 0;
+      for (int i = 0; i < taken; i++) {
+        var frame = frames[i];
+        frames[i] = null;
+        countPair(DumpRecord.Direction.IN, frame);
+        if (!(frame instanceof NetworkEnvelope envelope && streamed(envelope))) {
+          dump(DumpRecord.Direction.IN, frame);
+          frames[count++] = frame;
+        }
+      }
+      if (count > 0) {
+        return count;
+      }
+    }
+  }
+
+  private static long payloadBytes(Object frame) {
+    return frame instanceof NetworkEnvelope envelope && envelope.isEncoded()
+        ? envelope.encodedPayload().remaining()
+        : 0;
+  }
+
+  private void dump(DumpRecord.Direction direction, Object frame) {
+    var current = dumper;
+    if (current != null && frame instanceof NetworkEnvelope envelope) {
+      current.dump(direction, envelope);
+    }
+  }
+
+  private void countPair(DumpRecord.Direction direction, Object frame) {
+    var pair = groupPair;
+    if (pair != null && frame instanceof NetworkEnvelope envelope) {
+      // Frames are not encoded here, only payloads may be.
+      long bytes = envelope.isEncoded() ? FrameCodec.encodedSize(envelope) : 0;
+      if (direction == DumpRecord.Direction.IN) {
+        pair.frameRead(bytes);
+      } else {
+        pair.frameWritten(bytes);
+      }
+    }
+  }
+
+  private boolean streamed(NetworkEnvelope envelope) throws IOException {
+    var handler = streamHandler;
+    if (handler == null || !envelope.isEncoded()) {
+      return false;
+    }
+    var sink = handler.open(Chunk.Head.of(envelope));
+    if (sink == null) {
+      return false;
+    }
+    sink.accept(envelope.encodedPayload());
+    sink.complete();
+    return true;
+  }
+
+  @Override
+  public void close() {
+    channel.close();
+  }
+}
@@ -0,0 +1,102 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.compression.Lz4;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.memory.MemoryBudget;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Payload compressed once by {@link FanOut}, shared by the connections sending it.
+ *
+ * <p>The block lives in a pooled direct buffer, so that gathering writes don't copy it into a
+ * temporary one. Each connection releases its reference once the block is written or copied, and
+ * the last release returns the buffer to the pool.
+ *
+ * <p>Buffers are reserved from the global {@link MemoryBudget} while they exist, pooled or not. If
+ * the budget is full, payloads are not shared, and connections compress them on their own.
+ */
+final class SharedBlock {
+  // Only payloads that are not chunked are shared, see StreamConnection.CHUNK_SIZE.
+  static final int CAPACITY = Lz4.maxCompressedLength(StreamConnection.CHUNK_SIZE);
+  static final int POOL_SIZE = 64;
+
+  private static final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+  private static final MemoryBudget.Account memory =
+      MemoryBudget.global().account(MemoryBudget.NO_NODE, MemoryBudget.NO_GROUP);
+
+  private final ByteBuffer buffer;
+  private final int payloadSize;
+  private final Lz4.Head head;
+  private final AtomicInteger refs;
+
+  private SharedBlock(ByteBuffer buffer, int payloadSize, int refs) {
+    this.buffer = buffer;
+    this.payloadSize = payloadSize;
+    this.head = Lz4.head(buffer);
+    this.refs = new AtomicInteger(refs);
+  }
+
+  /**
+   * Compresses the payload for {@code refs} connections.
+   *
+   * @return the block, or {@code null} if the payload is too small or too large to be shared, or
+   *     doesn't shrink enough
+   */
+  static SharedBlock compress(ByteBuffer payload, CompressionConfig config, int refs) {
+    int size = payload.remaining();
+    if (size < config.minSize() || size > StreamConnection.CHUNK_SIZE) {
+      return null;
+    }
+    var buffer = pool.poll();
+    if (buffer == null) {
+      if (!memory.tryReserve(CAPACITY)) {
+        return null;
+      }
+      buffer = ByteBuffer.allocateDirect(CAPACITY);
+    }
+    buffer.clear();
+    int compressed = Lz4.compress(payload.duplicate(), buffer);
+    if (size < config.minRatio() * compressed) {
+      recycle(buffer);
+      return null;
+    }
+    return new SharedBlock(buffer.flip(), size, refs);
+  }
+
+  private static void recycle(ByteBuffer buffer) {
+    if (!pool.offer(buffer)) {
+      // Left to the GC.
+      memory.release(CAPACITY);
+    }
+  }
+
+  /** Gets the number of buffers ready for reuse. */
+  static int pooled() {
+    return pool.size();
+  }
+
+  int payloadSize() {
+    return payloadSize;
+  }
+
+  Lz4.Head head() {
+    return head;
+  }
+
+  /** Gets the part of the block after its head, see {@link Lz4.Head}. */
+  ByteBuffer tail() {
+    return buffer.slice(head.tail(), buffer.limit() - head.tail());
+  }
+
+  /** Drops a reference, the block must not be used by the caller afterwards. */
+  void release() {
+    int left = refs.decrementAndGet();
+    if (left == 0) {
+      recycle(buffer);
+    } else if (left < 0) {
+      throw new IllegalStateException("Shared block released too many times");
+    }
+  }
+}
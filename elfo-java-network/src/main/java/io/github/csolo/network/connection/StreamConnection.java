@@ -0,0 +1,690 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.codec.Chunk;
+import io.github.csolo.network.codec.CompressedBatch;
+import io.github.csolo.network.codec.FrameCodec;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.compression.CompressionPolicy;
+import io.github.csolo.network.compression.Lz4;
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.dump.DumpRecord;
+import io.github.csolo.network.dump.Dumper;
+import io.github.csolo.network.jfr.CompressionEvent;
+import io.github.csolo.network.jfr.FlushEvent;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.metrics.GroupPairMetrics;
+import io.github.csolo.network.protocol.Capabilities;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Connection over a byte stream (TCP, UDS), frames are encoded with {@link FrameCodec}.
+ *
+ * <p>Sent frames are coalesced in a write buffer and written out by {@link #flush()} or once the
+ * buffer is full, so many small frames cost a single syscall.
+ *
+ * <p>Envelopes with payloads larger than {@link #CHUNK_SIZE} are split into {@link Chunk}s, which
+ * {@link #flush()} writes round-robin, releasing the connection between chunks. So a multi-megabyte
+ * message is never copied as a whole and doesn't hold up other messages on the same link. Messages
+ * with the same sender and recipient are still delivered in order.
+ *
+ * <p>Control frames (see {@link ProtocolMessages#isControl(Object)}) take a separate lane: they are
+ * queued without taking the write lock and written ahead of the coalesced data on every write, so
+ * they wait for one in-flight write at most rather than for everything queued before them.
+ *
+ * <p>If both sides support LZ4, data frames are compressed in batches by {@link BatchCompressor}.
+ * Payloads broadcast by {@link FanOut} come compressed already, and large ones are written out
+ * straight from the shared block with a gathering write.
+ *
+ * <p>Buffers are reserved from a {@link MemoryBudget} under the peer's account until the connection
+ * is closed. The fixed ones are forced in, while growing the read buffer for a large frame,
+ * reassembling a chunked message or queueing one for sending fails with {@link
+ * io.github.csolo.network.memory.BudgetExceededException} if the budget is full. A chunked message
+ * declared larger than the max message size fails with a {@link java.net.ProtocolException} before
+ * anything is reserved for it.
+ */
+public final class StreamConnection implements Connection {
+  static final int BUFFER_SIZE = 64 * 1024;
+  static final int CHUNK_SIZE = 16 * 1024;
+  /** Largest chunked message reassembled by default, unless a stream handler takes it. */
+  public static final int DEFAULT_MAX_MESSAGE_SIZE = 256 * 1024 * 1024;
+  static final int CONTROL_BUFFER_SIZE = 4 * 1024;
+  // Shared blocks at least this large are written out from where they are, not copied.
+  static final int GATHER_THRESHOLD = 4 * 1024;
+  // Returned instead of a frame when the next one would have to be read from the socket first.
+  private static final Object NOT_AT_HAND = new Object();
+
+  private final Socket socket;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private int pendingFrames;
+  private final ArrayDeque<OutboundStream> streams = new ArrayDeque<>();
+  private int nextStreamId;
+  private final Queue<Object> controlQueue = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer controlBuffer = ByteBuffer.allocateDirect(CONTROL_BUFFER_SIZE);
+
+  private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+  private volatile long lastReceived = System.nanoTime();
+  private final ChunkAssembler assembler;
+  private final MemoryBudget.Account memory;
+  // Bytes reserved from the budget, negative once closed and released.
+  private final AtomicLong held = new AtomicLong();
+
+  // Replaced under the write lock, see compression(CompressionConfig).
+  private volatile BatchCompressor compressor;
+  private CompressionConfig compression;
+  private ByteBuffer inflated = ByteBuffer.allocate(0);
+  private volatile @Nullable Dumper dumper;
+  private volatile @Nullable GroupPairMetrics groupPair;
+
+  StreamConnection(Socket socket, CompressionConfig compression) {
+    this(socket, compression, MemoryBudget.global());
+  }
+
+  StreamConnection(Socket socket, CompressionConfig compression, MemoryBudget budget) {
+    this(socket, compression, budget, DEFAULT_MAX_MESSAGE_SIZE);
+  }
+
+  StreamConnection(
+      Socket socket, CompressionConfig compression, MemoryBudget budget, int maxMessageSize) {
+    this.socket = socket;
+    this.memory = budget.account(socket.peer().nodeNo(), MemoryBudget.NO_GROUP);
+    this.assembler = new ChunkAssembler(memory, maxMessageSize);
+    forceHold(writeBuffer.capacity() + controlBuffer.capacity() + readBuffer.capacity());
+    this.compression = compression;
+    this.compressor = compressorFor(compression);
+  }
+
+  private BatchCompressor compressorFor(CompressionConfig compression) {
+    if (compression.algorithm() != CompressionAlgorithm.LZ4 || !socket.supports(Capabilities.LZ4)) {
+      return null;
+    }
+    forceHold(BUFFER_SIZE);
+    return new BatchCompressor(new CompressionPolicy(compression), socket, BUFFER_SIZE);
+  }
+
+  /** Reserves memory held until released or closed, failing if it doesn't fit. */
+  private void hold(long bytes) throws IOException {
+    memory.reserve(bytes);
+    if (held.getAndAdd(bytes) < 0) {
+      // Closed meanwhile.
+      memory.release(bytes);
+    }
+  }
+
+  /** Reserves memory held until released or closed, even over the limit. */
+  private void forceHold(long bytes) {
+    memory.force(bytes);
+    if (held.getAndAdd(bytes) < 0) {
+      memory.release(bytes);
+    }
+  }
+
+  private void unhold(long bytes) {
+    if (held.getAndAdd(-bytes) >= 0) {
+      memory.release(bytes);
+    }
+  }
+
+  /** Gets compression stats per message type, empty if compression is off. */
+  public Map<String, CompressionPolicy.TypeStats> compressionStats() {
+    var compressor = this.compressor;
+    return compressor == null ? Map.of() : compressor.policy().snapshot();
+  }
+
+  @Override
+  public void compression(CompressionConfig compression) {
+    writeLock.lock();
+    try {
+      if (compression.equals(this.compression)) {
+        return;
+      }
+      this.compression = compression;
+      var current = compressor;
+      if (current != null) {
+        // Frames already in the buffer are compressed with the old policy.
+        current.closeRun(writeBuffer);
+        unhold(BUFFER_SIZE);
+      }
+      compressor = compressorFor(compression);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Socket socket() {
+    return socket;
+  }
+
+  @Override
+  public void send(Object frame) throws IOException {
+    if (ProtocolMessages.isControl(frame)) {
+      controlQueue.add(frame);
+      return;
+    }
+    writeLock.lock();
+    try {
+      sendLocked(frame, false);
+    } finally {
+      writeLock.unlock();
+    }
+    dump(DumpRecord.Direction.OUT, frame);
+    countPair(DumpRecord.Direction.OUT, frame);
+  }
+
+  @Override
+  public boolean trySend(Object frame) throws IOException {
+    if (ProtocolMessages.isControl(frame)) {
+      controlQueue.add(frame);
+      return true;
+    }
+    if (!writeLock.tryLock()) {
+      return false;
+    }
+    try {
+      if (!isQueuedAside(frame) && FrameCodec.encodedSize(frame) > writeBuffer.remaining()) {
+        return false;
+      }
+      sendLocked(frame, false);
+    } finally {
+      writeLock.unlock();
+    }
+    dump(DumpRecord.Direction.OUT, frame);
+    countPair(DumpRecord.Direction.OUT, frame);
+    return true;
+  }
+
+  private void dump(DumpRecord.Direction direction, Object frame) {
+    var current = dumper;
+    if (current != null && frame instanceof NetworkEnvelope envelope) {
+      current.dump(direction, envelope);
+    }
+  }
+
+  /** Counts envelopes of a data connection under its group pair, by their frame size. */
+  private void countPair(DumpRecord.Direction direction, Object frame) {
+    var pair = groupPair;
+    if (pair != null && frame instanceof NetworkEnvelope envelope) {
+      long bytes = FrameCodec.encodedSize(envelope);
+      if (direction == DumpRecord.Direction.IN) {
+        pair.frameRead(bytes);
+      } else {
+        pair.frameWritten(bytes);
+      }
+    }
+  }
+
+  /** Checks if the frame goes to a stream rather than to the write buffer. */
+  private boolean isQueuedAside(Object frame) {
+    return frame instanceof NetworkEnvelope envelope
+        && (envelope.encodedPayload().remaining() > CHUNK_SIZE || isBehindStream(envelope));
+  }
+
+  /**
+   * Encodes the frame or queues it behind a stream.
+   *
+   * @param queued Whether the frame was queued before, so that its memory must be held whatever
+   *     the budget
+   */
+  private void sendLocked(Object frame, boolean queued) throws IOException {
+    if (frame instanceof NetworkEnvelope envelope) {
+      for (var stream : streams) {
+        if (stream.isOrderedBefore(envelope)) {
+          stream.followers.add(envelope);
+          return;
+        }
+      }
+      int size = envelope.encodedPayload().remaining();
+      if (size > CHUNK_SIZE) {
+        if (queued) {
+          forceHold(size);
+        } else {
+          hold(size);
+        }
+        streams.add(new OutboundStream(new Chunk.Splitter(nextStreamId++, envelope)));
+        return;
+      }
+      encodeLocked(envelope, envelope.name());
+      return;
+    }
+    encodeLocked(frame, null);
+  }
+
+  /**
+   * Encodes the frame into the write buffer.
+   *
+   * @param type Message name for envelopes and chunks, {@code null} for protocol frames
+   */
+  private void encodeLocked(Object frame, String type) throws IOException {
+    int size = FrameCodec.encodedSize(frame);
+    var compressor = this.compressor;
+    if (writeBuffer.remaining() < size && compressor != null) {
+      compressor.closeRun(writeBuffer);
+    }
+    if (writeBuffer.remaining() < size) {
+      flushLocked();
+    }
+    if (size > writeBuffer.capacity()) {
+      // Too large to be coalesced, write it out directly.
+      var buffer = ByteBuffer.allocate(size);
+      FrameCodec.encode(frame, buffer);
+      writeFully(buffer.flip());
+      socket.metrics().framesWritten(1);
+      socket.metrics().flushed(size);
+      return;
+    }
+    if (compressor != null) {
+      compressor.beforeFrame(writeBuffer, type, size);
+    }
+    FrameCodec.encode(frame, writeBuffer);
+    pendingFrames++;
+    if (compressor != null) {
+      compressor.afterFrame(writeBuffer);
+    }
+  }
+
+  /** Checks if data frames are compressed, i.e. if {@link SharedBlock}s are of use. */
+  boolean compresses() {
+    return compressor != null;
+  }
+
+  /**
+   * Queues the envelope with its payload compressed ahead of time, see {@link FanOut}. The frame
+   * header and the envelope's fields are spliced into the block per connection, the rest of the
+   * block is shared. The block is released once it's copied or written out.
+   */
+  void send(NetworkEnvelope envelope, SharedBlock block) throws IOException {
+    writeLock.lock();
+    try {
+      var compressor = this.compressor;
+      if (compressor == null || isBehindStream(envelope)) {
+        // Compression was turned off meanwhile, or the envelope has to wait for a stream.
+        sendLocked(envelope, false);
+      } else {
+        sendSharedLocked(envelope, block, compressor);
+      }
+    } finally {
+      writeLock.unlock();
+      block.release();
+    }
+    countPair(DumpRecord.Direction.OUT, envelope);
+  }
+
+  private boolean isBehindStream(NetworkEnvelope envelope) {
+    for (var stream : streams) {
+      if (stream.isOrderedBefore(envelope)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void sendSharedLocked(
+      NetworkEnvelope envelope, SharedBlock block, BatchCompressor compressor) throws IOException {
+    int headSize = FrameCodec.headSize(envelope);
+    int uncompressed = headSize + block.payloadSize();
+    var blockHead = block.head();
+    var tail = block.tail();
+    int prefix = FrameCodec.COMPRESSED_OVERHEAD + blockHead.length(headSize) + headSize;
+    int frameSize = prefix + tail.remaining();
+
+    compressor.closeRun(writeBuffer);
+    if (writeBuffer.remaining() < prefix) {
+      flushLocked();
+    }
+    var order = writeBuffer.order();
+    writeBuffer.order(ByteOrder.LITTLE_ENDIAN);
+    FrameCodec.putHeader(writeBuffer, frameSize, FrameCodec.KIND_COMPRESSED, (byte) 0);
+    writeBuffer.putInt(uncompressed);
+    writeBuffer.order(order);
+    blockHead.put(writeBuffer, headSize);
+    FrameCodec.encodeHead(envelope, block.payloadSize(), writeBuffer);
+    pendingFrames++;
+    socket.metrics().compressed(uncompressed, frameSize);
+
+    if (tail.remaining() < GATHER_THRESHOLD && tail.remaining() <= writeBuffer.remaining()) {
+      // Cheaper to copy than to write out early.
+      writeBuffer.put(tail);
+    } else {
+      flushLocked(tail);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    while (true) {
+      writeLock.lock();
+      try {
+        var stream = streams.poll();
+        if (stream == null) {
+          flushLocked();
+          return;
+        }
+
+        // One chunk per turn, the lock is released in between to let other senders in.
+        var chunk = stream.splitter.next(CHUNK_SIZE);
+        encodeLocked(chunk, stream.splitter.envelope().name());
+        if (chunk.last()) {
+          unhold(stream.splitter.envelope().encodedPayload().remaining());
+          for (var follower : stream.followers) {
+            sendLocked(follower, true);
+          }
+        } else {
+          streams.add(stream);
+        }
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  private void flushLocked() throws IOException {
+    flushLocked(null);
+  }
+
+  /**
+   * Writes out the control lane, then the write buffer.
+   *
+   * @param tail Bytes to append to the write buffer's content in the same gathering write, may be
+   *     {@code null}
+   */
+  private void flushLocked(ByteBuffer tail) throws IOException {
+    flushControlLocked();
+    var compressor = this.compressor;
+    if (compressor != null) {
+      compressor.closeRun(writeBuffer);
+    }
+    int tailBytes = tail == null ? 0 : tail.remaining();
+    if (writeBuffer.position() == 0 && tailBytes == 0) {
+      return;
+    }
+
+    var event = new FlushEvent();
+    event.begin();
+    int bytes = writeBuffer.position() + tailBytes;
+    int frames = pendingFrames;
+    writeBuffer.flip();
+    try {
+      if (tail == null) {
+        writeFully(writeBuffer);
+      } else {
+        writeFully(new ByteBuffer[] {writeBuffer, tail});
+      }
+    } finally {
+      writeBuffer.clear();
+      pendingFrames = 0;
+    }
+    event.end();
+
+    socket.metrics().framesWritten(frames);
+    socket.metrics().flushed(bytes);
+    if (event.shouldCommit()) {
+      event.peerNodeNo = socket.peer().nodeNo();
+      event.frames = frames;
+      event.bytes = bytes;
+      event.commit();
+    }
+  }
+
+  private void flushControlLocked() throws IOException {
+    Object frame;
+    int frames = 0;
+    while ((frame = controlQueue.poll()) != null) {
+      if (controlBuffer.remaining() < FrameCodec.encodedSize(frame)) {
+        writeControlLocked(frames);
+        frames = 0;
+      }
+      FrameCodec.encode(frame, controlBuffer);
+      frames++;
+    }
+    writeControlLocked(frames);
+  }
+
+  private void writeControlLocked(int frames) throws IOException {
+    if (frames == 0) {
+      return;
+    }
+    int bytes = controlBuffer.position();
+    controlBuffer.flip();
+    try {
+      writeFully(controlBuffer);
+    } finally {
+      controlBuffer.clear();
+    }
+    socket.metrics().framesWritten(frames);
+    socket.metrics().flushed(bytes);
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      socket.write(buffer).getOrElseThrow(StreamConnection::asIOException);
+    }
+  }
+
+  private void writeFully(ByteBuffer[] buffers) throws IOException {
+    var last = buffers[buffers.length - 1];
+    while (last.hasRemaining()) {
+      socket.write(buffers).getOrElseThrow(StreamConnection::asIOException);
+    }
+  }
+
+  @Override
+  public void streamHandler(StreamHandler handler) {
+    assembler.handler(handler);
+  }
+
+  @Override
+  public void dumper(@Nullable Dumper dumper) {
+    this.dumper = dumper;
+  }
+
+  @Override
+  public void groupPair(@Nullable GroupPairMetrics metrics) {
+    this.groupPair = metrics;
+  }
+
+  @Override
+  public @Nullable GroupPairMetrics groupPair() {
+    return groupPair;
+  }
+
+  @Override
+  public long lastReceivedNanos() {
+    return lastReceived;
+  }
+
+  @Override
+  public Object receive() throws IOException {
+    return receive(true);
+  }
+
+  @Override
+  public int receive(Object[] frames, int max) throws IOException {
+    var first = receive(true);
+    if (first == null) {
+      return -1;
+    }
+    frames[0] = first;
+    int count = 1;
+    while (count < max) {
+      var next = receive(false);
+      if (next == NOT_AT_HAND) {
+        break;
+      }
+      frames[count++] = next;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the next frame, reassembling chunked messages.
+   *
+   * @param wait Whether to read from the socket if needed, {@link #NOT_AT_HAND} is returned if not
+   */
+  private Object receive(boolean wait) throws IOException {
+    try {
+      while (true) {
+        var frame = readFrame(wait);
+        if (frame == NOT_AT_HAND) {
+          return frame;
+        }
+        if (frame == null) {
+          if (assembler.isInProgress()) {
+            throw new EOFException("Connection closed in the middle of a chunked message");
+          }
+          return null;
+        }
+        if (!(frame instanceof Chunk chunk)) {
+          dump(DumpRecord.Direction.IN, frame);
+          countPair(DumpRecord.Direction.IN, frame);
+          return frame;
+        }
+        var envelope = assembler.accept(chunk);
+        if (envelope != null) {
+          dump(DumpRecord.Direction.IN, envelope);
+          countPair(DumpRecord.Direction.IN, envelope);
+          return envelope;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      assembler.abort();
+      throw e;
+    }
+  }
+
+  private Object readFrame(boolean wait) throws IOException {
+    if (inflated.hasRemaining()) {
+      var frame = FrameCodec.decode(inflated);
+      if (frame == null || frame instanceof CompressedBatch) {
+        throw new ProtocolException("Malformed compressed batch");
+      }
+      socket.metrics().framesRead(1);
+      return frame;
+    }
+
+    while (true) {
+      var frame = FrameCodec.decode(readBuffer);
+      if (frame instanceof CompressedBatch batch) {
+        inflate(batch);
+        return readFrame(wait);
+      }
+      if (frame != null) {
+        socket.metrics().framesRead(1);
+        return frame;
+      }
+
+      if (!wait) {
+        return NOT_AT_HAND;
+      }
+      int size = FrameCodec.peekSize(readBuffer);
+      if (size > readBuffer.capacity()) {
+        hold(size - readBuffer.capacity());
+        var larger = ByteBuffer.allocateDirect(size);
+        larger.put(readBuffer).flip();
+        readBuffer = larger;
+      }
+
+      readBuffer.compact();
+      int read;
+      try {
+        read = socket.read(readBuffer).getOrElseThrow(StreamConnection::asIOException);
+      } finally {
+        readBuffer.flip();
+      }
+      if (read < 0) {
+        if (readBuffer.hasRemaining()) {
+          throw new EOFException("Connection closed in the middle of a frame");
+        }
+        return null;
+      }
+      if (read > 0) {
+        // Per read rather than per frame, so that a large frame shows progress too.
+        lastReceived = System.nanoTime();
+      }
+    }
+  }
+
+  private void inflate(CompressedBatch batch) throws IOException {
+    // The peer may compress whenever it was negotiated, even if this side doesn't anymore.
+    if (!socket.supports(Capabilities.LZ4)) {
+      throw new ProtocolException("Compressed frame while compression is not negotiated");
+    }
+    int size = batch.uncompressedSize();
+    if (size <= 0 || size > FrameCodec.MAX_FRAME_SIZE) {
+      throw new ProtocolException("Invalid size of compressed batch " + size);
+    }
+    if (inflated.capacity() < size) {
+      int capacity = Math.max(size, BUFFER_SIZE);
+      hold(capacity - inflated.capacity());
+      inflated = ByteBuffer.allocateDirect(capacity);
+    }
+
+    var event = new CompressionEvent();
+    event.begin();
+    long start = System.nanoTime();
+    inflated.clear();
+    try {
+      Lz4.decompress(batch.block(), inflated, size);
+    } catch (IllegalArgumentException e) {
+      inflated.clear().flip();
+      throw new ProtocolException("Malformed compressed batch: " + e.getMessage());
+    }
+    inflated.flip();
+    socket.metrics().decompressionTime(System.nanoTime() - start);
+    event.end();
+
+    if (event.shouldCommit()) {
+      event.peerNodeNo = socket.peer().nodeNo();
+      event.decompression = true;
+      event.uncompressedBytes = size;
+      event.compressedBytes = FrameCodec.COMPRESSED_OVERHEAD + batch.block().capacity();
+      event.commit();
+    }
+  }
+
+  @Override
+  public void close() {
+    socket.close();
+    long bytes = held.getAndSet(Long.MIN_VALUE);
+    if (bytes > 0) {
+      memory.release(bytes);
+    }
+  }
+
+  private static IOException asIOException(Throwable e) {
+    // Socket wraps I/O errors into RuntimeException.
+    var cause = e.getCause() != null ? e.getCause() : e;
+    return cause instanceof IOException io ? io : new IOException(cause);
+  }
+
+  /** Chunked message being sent, with envelopes that must not overtake it. */
+  private static final class OutboundStream {
+    final Chunk.Splitter splitter;
+    final List<NetworkEnvelope> followers = new ArrayList<>();
+
+    OutboundStream(Chunk.Splitter splitter) {
+      this.splitter = splitter;
+    }
+
+    boolean isOrderedBefore(NetworkEnvelope envelope) {
+      var first = splitter.envelope();
+      return first.sender() == envelope.sender() && first.recipient() == envelope.recipient();
+    }
+  }
+}
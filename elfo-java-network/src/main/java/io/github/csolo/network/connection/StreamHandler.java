@@ -0,0 +1,38 @@
+package io.github.csolo.network.connection;
+
+import io.github.csolo.network.codec.Chunk;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Consumes large messages chunk by chunk as they arrive, instead of buffering the whole payload.
+ *
+ * <pre>{@code
+ * connection.streamHandler(head -> head.name().equals("Snapshot") ? new FileSink(head) : null);
+ * }</pre>
+ */
+@FunctionalInterface
+public interface StreamHandler {
+
+  /**
+   * Called on the first chunk of a message, by the thread calling {@link Connection#receive()}.
+   *
+   * @return sink for the message's chunks, or {@code null} to reassemble the message and return it
+   *     from {@link Connection#receive()} as usual
+   */
+  @Nullable Sink open(Chunk.Head head) throws IOException;
+
+  /** Receiver of one message's payload. */
+  interface Sink {
+
+    /** Consumes the next part of the payload, the buffer is valid only during the call. */
+    void accept(ByteBuffer data) throws IOException;
+
+    /** Called after the last part of the payload. */
+    void complete() throws IOException;
+
+    /** Called if the connection is closed before the message is complete. */
+    default void abort() {}
+  }
+}
@@ -1,5 +1,537 @@
 package io.github.csolo.network.discovery;
 
-public class Discovery {
-  // TODO: Implement Discovery class
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.config.ConfigDiff;
+import io.github.csolo.network.config.NetworkConfig;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.health.Heartbeat;
+import io.github.csolo.network.metrics.TransportMetrics;
+import io.github.csolo.network.protocol.Capabilities;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.ChannelOptions;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.channels.NetworkChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps connections to the predefined transports of {@link NetworkConfig#discovery()}.
+ *
+ * <p>Every transport is dialed in its own virtual thread, which then runs the handler until the
+ * connection is over and redials after {@code attemptInterval}. Failed attempts are retried at the
+ * same interval.
+ *
+ * <p>The config can be reloaded at runtime by {@link #reload(NetworkConfig)} without dropping
+ * connections that are still configured: only added transports are dialed and only removed ones
+ * are disconnected. Socket options and compression are applied in place to established
+ * connections, data connections included, and everything else is read from {@link #config()}
+ * whenever it's needed. They are applied outside of the monitor, so that a connection busy writing
+ * out doesn't hold up other calls.
+ *
+ * <p>Groups announced by peers are kept in {@link #interests()}. The handler passes the peer's
+ * {@code SwitchToControl} to {@link #announced}, and the groups are removed once the last
+ * connection to the peer is over.
+ *
+ * <p>The groups and the data connections opened by {@link #openData} are cached per peer launch.
+ * After a blip, the connection to the same launch gets the cached groups back before the handler
+ * runs, so messages are routed again right away, and the control exchange only updates them if
+ * they really changed. Data connections used before are opened again in parallel meanwhile, so
+ * that {@link #openData} finds them ready.
+ *
+ * <p>Data connections count their envelopes under their group pair in {@link TransportMetrics},
+ * and a connection established again to the same peer launch after a loss counts as a reconnect.
+ *
+ * <p>Every control connection is watched by a {@link Heartbeat}, which pings the peer every {@code
+ * pingInterval} unless data keeps arriving anyway, over it or over any data connection to the same
+ * peer launch. How much the peer is suspected to be down is reported by {@link #suspicion(short)}.
+ *
+ * <pre>{@code
+ * var discovery =
+ *     Discovery.start(config, nodeNo, launchId, connection -> serve(connection));
+ * // Later, e.g. when the config file changes.
+ * discovery.reload(updatedConfig);
+ * }</pre>
+ */
+public final class Discovery implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(Discovery.class);
+
+  private final short nodeNo;
+  private final long launchId;
+  private final Consumer<Connection> handler;
+  private final Map<Transport, Dialer> dialers = new LinkedHashMap<>();
+  private final InterestIndex interests = new InterestIndex();
+  private final TopologyCache topology = new TopologyCache(TopologyCache.DEFAULT_CAPACITY);
+  private final Map<DataKey, CompletableFuture<DataLink>> prepared = new HashMap<>();
+  // Data links opened so far, closed ones are dropped whenever the set is walked.
+  private final Set<DataLink> links = ConcurrentHashMap.newKeySet();
+  // Orders applying reloaded configs to connections, which is done outside of the monitor.
+  private final ReentrantLock reloadLock = new ReentrantLock();
+  private volatile NetworkConfig config;
+  private boolean open = true;
+
+  private Discovery(
+      NetworkConfig config, short nodeNo, long launchId, Consumer<Connection> handler) {
+    this.config = config;
+    this.nodeNo = nodeNo;
+    this.launchId = launchId;
+    this.handler = handler;
+  }
+
+  /**
+   * Starts dialing the predefined transports.
+   *
+   * @param config Network config
+   * @param nodeNo This node's number
+   * @param launchId This node's launch ID
+   * @param handler Serves a connection until it's closed, called in the dialer's virtual thread
+   */
+  public static Discovery start(
+      NetworkConfig config, short nodeNo, long launchId, Consumer<Connection> handler) {
+    var discovery = new Discovery(config, nodeNo, launchId, handler);
+    synchronized (discovery) {
+      for (var transport : config.discovery().predefined()) {
+        discovery.dial(transport);
+      }
+    }
+    return discovery;
+  }
+
+  /** Gets the current config. */
+  public NetworkConfig config() {
+    return config;
+  }
+
+  /** Gets groups of connected peers by their interests, for routing. */
+  public InterestIndex interests() {
+    return interests;
+  }
+
+  /**
+   * Applies groups the peer announced in its {@code SwitchToControl} to {@link #interests()}.
+   *
+   * @return whether they changed, e.g. since the last connection to the same peer launch
+   */
+  public boolean announced(Connection connection, ProtocolMessages.SwitchToControl message) {
+    var peer = connection.socket().peer();
+    topology.announced(peer, message);
+    return interests.join(peer.nodeNo(), message);
+  }
+
+  /**
+   * Opens a data connection between a local and a remote group, taking the one opened ahead if
+   * there is such.
+   *
+   * @param peerNodeNo Remote group's node, must be connected
+   * @param myGroupNo Local group's number
+   * @param yourGroupNo Remote group's number
+   * @param initialWindow Initial window of every flow
+   * @throws IOException if the node is not connected or the exchange fails
+   */
+  public DataLink openData(short peerNodeNo, short myGroupNo, short yourGroupNo, int initialWindow)
+      throws IOException {
+    var pair = new TopologyCache.DataPair(myGroupNo, yourGroupNo, initialWindow);
+    Transport transport = null;
+    Socket.Peer peer = null;
+    CompletableFuture<DataLink> ready;
+    synchronized (this) {
+      for (var dialer : dialers.values()) {
+        var connection = dialer.connection;
+        if (connection != null && connection.socket().peer().nodeNo() == peerNodeNo) {
+          transport = dialer.transport;
+          peer = connection.socket().peer();
+          break;
+        }
+      }
+      if (peer == null) {
+        throw new IOException("Not connected to node " + peerNodeNo);
+      }
+      ready = prepared.remove(new DataKey(peer, pair));
+    }
+
+    if (ready != null) {
+      try {
+        return ready.join();
+      } catch (CompletionException e) {
+        log.debug("Data connection opened ahead failed: {}", e.getCause().toString());
+      }
+    }
+    var link = dialData(transport, peer, pair);
+    topology.opened(peer, pair);
+    return link;
+  }
+
+  /** Checks if a data connection is being opened or is ready for {@link #openData}. */
+  synchronized boolean isPrepared(short peerNodeNo, short myGroupNo, short yourGroupNo) {
+    for (var key : prepared.keySet()) {
+      if (key.peer.nodeNo() == peerNodeNo
+          && key.pair.myGroupNo() == myGroupNo
+          && key.pair.yourGroupNo() == yourGroupNo) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private DataLink dialData(Transport transport, Socket.Peer peer, TopologyCache.DataPair pair)
+      throws IOException {
+    var current = config;
+    var compression = compression(current);
+    var socket =
+        Socket.connect(transport, nodeNo, launchId, Capabilities.of(compression), current.socket());
+    var connection = Connection.of(socket, compression);
+    try {
+      if (!socket.peer().equals(peer)) {
+        throw new IOException("Node " + peer.nodeNo() + " has restarted meanwhile");
+      }
+      connection.send(
+          new ProtocolMessages.SwitchToData(
+              pair.myGroupNo(), pair.yourGroupNo(), pair.initialWindow()));
+      connection.flush();
+      var reply = connection.receive();
+      if (!(reply instanceof ProtocolMessages.SwitchToData switchToData)) {
+        throw new ProtocolException("Expected SwitchToData, got " + reply);
+      }
+      connection.groupPair(
+          TransportMetrics.global().groupPair(pair.myGroupNo(), peer.nodeNo(), pair.yourGroupNo()));
+      var link = new DataLink(connection, switchToData);
+      links.add(link);
+      // Checked after publishing, so that a config reloaded meanwhile is applied either way.
+      var latest = config;
+      if (latest != current) {
+        applyInPlace(connection, latest);
+      }
+      return link;
+    } catch (IOException | RuntimeException e) {
+      connection.close();
+      throw e;
+    }
+  }
+
+  /** Restores what is known about the peer launch, called before the handler. */
+  private void restore(Socket.Peer peer, Transport transport) {
+    var groups = topology.groups(peer);
+    if (groups != null) {
+      interests.join(peer.nodeNo(), groups);
+    }
+    synchronized (this) {
+      if (!open) {
+        return;
+      }
+      for (var pair : topology.data(peer)) {
+        var key = new DataKey(peer, pair);
+        if (prepared.containsKey(key)) {
+          continue;
+        }
+        var future = new CompletableFuture<DataLink>();
+        prepared.put(key, future);
+        Thread.ofVirtual()
+            .name("elfo-data-dialer")
+            .start(
+                () -> {
+                  try {
+                    future.complete(dialData(transport, peer, pair));
+                  } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                  }
+                });
+      }
+    }
+  }
+
+  private static void discard(CompletableFuture<DataLink> link) {
+    link.thenAccept(DataLink::close);
+  }
+
+  /** Gets the transports being dialed or connected to. */
+  public synchronized List<Transport> transports() {
+    return List.copyOf(dialers.keySet());
+  }
+
+  /**
+   * Gets the phi of the connected peer node, see {@link
+   * io.github.csolo.network.health.FailureDetector}.
+   *
+   * @return the lowest phi among connections to the node, infinity if there are none
+   */
+  public synchronized double suspicion(short nodeNo) {
+    double phi = Double.POSITIVE_INFINITY;
+    for (var dialer : dialers.values()) {
+      var connection = dialer.connection;
+      var heartbeat = dialer.heartbeat;
+      if (connection != null
+          && heartbeat != null
+          && connection.socket().peer().nodeNo() == nodeNo) {
+        phi = Math.min(phi, heartbeat.phi());
+      }
+    }
+    return phi;
+  }
+
+  /** Gets established connections, not including data ones. */
+  public synchronized List<Connection> connections() {
+    var connections = new ArrayList<Connection>();
+    for (var dialer : dialers.values()) {
+      var connection = dialer.connection;
+      if (connection != null) {
+        connections.add(connection);
+      }
+    }
+    return connections;
+  }
+
+  /**
+   * Applies the updated config, touching only what changed.
+   *
+   * @return what changed
+   */
+  public ConfigDiff reload(NetworkConfig updated) {
+    reloadLock.lock();
+    try {
+      ConfigDiff diff;
+      var affected = new ArrayList<Connection>();
+      synchronized (this) {
+        if (!open) {
+          throw new IllegalStateException("Discovery is closed");
+        }
+        diff = ConfigDiff.between(config, updated);
+        config = updated;
+        for (var transport : diff.removed()) {
+          dialers.remove(transport).stop();
+        }
+        for (var transport : diff.added()) {
+          dial(transport);
+        }
+        if (diff.socketChanged() || diff.compressionChanged()) {
+          affected.addAll(connections());
+          affected.addAll(dataConnections());
+        }
+      }
+      // Compression waits for the connection's writer, which may be stuck on a slow peer.
+      for (var connection : affected) {
+        applyInPlace(connection, updated);
+      }
+      if (!diff.isEmpty()) {
+        log.info("Reloaded network config: {}", diff);
+      }
+      return diff;
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /** Gets open data connections, dropping closed ones. */
+  private List<Connection> dataConnections() {
+    var connections = new ArrayList<Connection>();
+    for (var link : links) {
+      var connection = link.connection();
+      if (connection.socket().raw().channel().isOpen()) {
+        connections.add(connection);
+      } else {
+        links.remove(link);
+      }
+    }
+    return connections;
+  }
+
+  private void dial(Transport transport) {
+    var dialer = new Dialer(transport);
+    dialers.put(transport, dialer);
+    dialer.thread.start();
+  }
+
+  private static void applyInPlace(Connection connection, NetworkConfig config) {
+    // Shared memory and in-process channels have no socket options.
+    if (connection.socket().raw().channel() instanceof NetworkChannel channel) {
+      try {
+        ChannelOptions.apply(channel, config.socket());
+      } catch (IOException e) {
+        log.warn("Failed to apply socket options to {}", connection.socket().raw().info(), e);
+      }
+    }
+    connection.compression(compression(config));
+  }
+
+  private static CompressionConfig compression(NetworkConfig config) {
+    return Objects.requireNonNullElseGet(config.compression(), CompressionConfig::new);
+  }
+
+  private synchronized void forget(short peerNodeNo) {
+    for (var dialer : dialers.values()) {
+      var connection = dialer.connection;
+      if (connection != null && connection.socket().peer().nodeNo() == peerNodeNo) {
+        // Still connected over another transport.
+        return;
+      }
+    }
+    interests.leave(peerNodeNo);
+    var unclaimed = prepared.entrySet().iterator();
+    while (unclaimed.hasNext()) {
+      var entry = unclaimed.next();
+      if (entry.getKey().peer.nodeNo() == peerNodeNo) {
+        discard(entry.getValue());
+        unclaimed.remove();
+      }
+    }
+  }
+
+  /** Stops dialing and closes all connections. */
+  @Override
+  public synchronized void close() {
+    open = false;
+    dialers.values().forEach(Dialer::stop);
+    dialers.clear();
+    prepared.values().forEach(Discovery::discard);
+    prepared.clear();
+    // Owned by their callers, only no longer tracked.
+    links.clear();
+  }
+
+  /**
+   * Data connection between a local and a remote group, established by {@code SwitchToData}.
+   *
+   * @param connection Connection, owned by the caller.
+   * @param reply Peer's {@code SwitchToData}, with its initial window.
+   */
+  public record DataLink(Connection connection, ProtocolMessages.SwitchToData reply)
+      implements AutoCloseable {
+
+    @Override
+    public void close() {
+      connection.close();
+    }
+  }
+
+  /** Gets when anything last arrived from the peer of the connection, data links included. */
+  private long lastReceivedNanos(Connection control) {
+    var peer = control.socket().peer();
+    long received = control.lastReceivedNanos();
+    for (var link : links) {
+      var connection = link.connection();
+      if (connection.socket().peer().equals(peer)
+          && connection.lastReceivedNanos() - received > 0) {
+        received = connection.lastReceivedNanos();
+      }
+    }
+    return received;
+  }
+
+  private record DataKey(Socket.Peer peer, TopologyCache.DataPair pair) {}
+
+  /** Keeps a connection to one transport. */
+  private final class Dialer {
+    private final Transport transport;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile @Nullable Connection connection;
+    private volatile @Nullable Heartbeat heartbeat;
+    // Peer launch of the last connection, only touched by the dialer's thread.
+    private Socket.@Nullable Peer lastPeer;
+
+    Dialer(Transport transport) {
+      this.transport = transport;
+      this.thread = Thread.ofVirtual().name("elfo-dialer").unstarted(this::run);
+    }
+
+    private void run() {
+      while (running) {
+        var current = config;
+        try {
+          var compression = compression(current);
+          var socket =
+              Socket.connect(
+                  transport, nodeNo, launchId, Capabilities.of(compression), current.socket());
+          serve(Connection.of(socket, compression), current);
+        } catch (IOException | RuntimeException e) {
+          if (running) {
+            log.debug("Failed to connect to {}: {}", transport, e.toString());
+          }
+        }
+
+        if (running) {
+          try {
+            Thread.sleep(config.discovery().attemptInterval());
+          } catch (InterruptedException e) {
+            // Stopped.
+            return;
+          }
+        }
+      }
+    }
+
+    private void serve(Connection connection, NetworkConfig connectedWith) {
+      @Nullable Thread pinger = null;
+      try (connection) {
+        this.connection = connection;
+        // Checked after publishing, so that either this or stop() closes the connection.
+        if (!running) {
+          return;
+        }
+        var current = config;
+        if (current != connectedWith) {
+          // Reloaded while connecting.
+          applyInPlace(connection, current);
+        }
+        var peer = connection.socket().peer();
+        if (peer.equals(lastPeer)) {
+          connection.socket().metrics().reconnected();
+        }
+        lastPeer = peer;
+        restore(peer, transport);
+        pinger = startPinger(connection);
+        handler.accept(connection);
+      } finally {
+        this.connection = null;
+        this.heartbeat = null;
+        if (pinger != null) {
+          pinger.interrupt();
+        }
+        forget(connection.socket().peer().nodeNo());
+      }
+    }
+
+    private Thread startPinger(Connection connection) {
+      var heartbeat =
+          new Heartbeat(connection, () -> lastReceivedNanos(connection), config.pingInterval());
+      this.heartbeat = heartbeat;
+      return Thread.ofVirtual()
+          .name("elfo-heartbeat")
+          .start(
+              () -> {
+                try {
+                  while (true) {
+                    // Reloadable, the detector adapts to the new pace on its own.
+                    Thread.sleep(config.pingInterval());
+                    heartbeat.tick();
+                  }
+                } catch (InterruptedException | IOException e) {
+                  // Stopped or closed.
+                }
+              });
+    }
+
+    void stop() {
+      running = false;
+      thread.interrupt();
+      var current = connection;
+      if (current != null) {
+        current.close();
+      }
+    }
+  }
 }
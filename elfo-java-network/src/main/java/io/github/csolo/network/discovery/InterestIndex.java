@@ -0,0 +1,237 @@
+package io.github.csolo.network.discovery;
+
+import io.github.csolo.core.Addr;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Which remote groups are interested in which group names, see {@link
+ * ProtocolMessages.GroupInfo#interests()}.
+ *
+ * <p>Group names are interned into dense ids, and every remote (node, group) pair gets a dense
+ * slot. For every name id there is a bitset of slots interested in it, so routing a message of a
+ * group is an array lookup and a scan of set bits, no strings are compared. Ids are stable, so
+ * senders resolve them once per local group with {@link #intern(String)}.
+ *
+ * <p>Peers are added from their {@code SwitchToControl} by {@link #join} and removed by {@link
+ * #leave}. Both touch only the bitsets of names the peer's groups are or were interested in, and
+ * publish a new immutable {@link View}. So reads are lock-free and never see a half-applied update.
+ */
+public final class InterestIndex {
+  private static final long[] NO_SLOTS = new long[0];
+
+  // Writer's state, guarded by this.
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final Map<Short, int[]> slotsByNode = new HashMap<>();
+  private final Map<Short, List<ProtocolMessages.GroupInfo>> groupsByNode = new HashMap<>();
+  private final List<int[]> interestsBySlot = new ArrayList<>();
+  // Freed slots are reused lowest first, so that bitsets stay short.
+  private final BitSet freeSlots = new BitSet();
+
+  private volatile View view = new View(Map.of(), new long[0][], new int[0]);
+
+  /** Gets the current state of the index. */
+  public View view() {
+    return view;
+  }
+
+  /** Gets the id of the group name, assigning a new one if it's unknown. */
+  public int intern(String name) {
+    var current = view;
+    var id = current.ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      int interned = internLocked(name);
+      if (interned >= view.bits.length) {
+        var bits = Arrays.copyOf(view.bits, ids.size());
+        Arrays.fill(bits, view.bits.length, bits.length, NO_SLOTS);
+        view = new View(Map.copyOf(ids), bits, view.keys);
+      }
+      return interned;
+    }
+  }
+
+  private int internLocked(String name) {
+    return ids.computeIfAbsent(name, ignored -> ids.size());
+  }
+
+  /**
+   * Replaces groups of the node with the ones announced in its {@code SwitchToControl}.
+   *
+   * @param nodeNo Peer's node number
+   * @return whether the groups changed, nothing is rebuilt if they didn't
+   */
+  public synchronized boolean join(short nodeNo, ProtocolMessages.SwitchToControl message) {
+    if (message.groups().equals(groupsByNode.get(nodeNo))) {
+      return false;
+    }
+    var current = view;
+    var keys = current.keys.clone();
+    var touched = new HashMap<Integer, long[]>();
+    releaseLocked(nodeNo, keys, touched, current);
+
+    var groups = message.groups();
+    var slots = new int[groups.size()];
+    for (int i = 0; i < groups.size(); i++) {
+      var group = groups.get(i);
+      int slot = freeSlots.nextSetBit(0);
+      if (slot >= 0) {
+        freeSlots.clear(slot);
+      } else {
+        slot = interestsBySlot.size();
+        interestsBySlot.add(null);
+        keys = Arrays.copyOf(keys, slot + 1);
+      }
+      slots[i] = slot;
+      keys[slot] = key(nodeNo, group.group_no());
+
+      var interests = new int[group.interests().size()];
+      for (int j = 0; j < interests.length; j++) {
+        int id = internLocked(group.interests().get(j));
+        interests[j] = id;
+        var bits = bitsLocked(id, touched, current);
+        if (bits.length <= slot >>> 6) {
+          bits = Arrays.copyOf(bits, (slot >>> 6) + 1);
+          touched.put(id, bits);
+        }
+        bits[slot >>> 6] |= 1L << slot;
+      }
+      interestsBySlot.set(slot, interests);
+    }
+    slotsByNode.put(nodeNo, slots);
+    groupsByNode.put(nodeNo, List.copyOf(groups));
+    publishLocked(keys, touched, current);
+    return true;
+  }
+
+  /** Removes groups of the node, e.g. once it's disconnected. */
+  public synchronized void leave(short nodeNo) {
+    var current = view;
+    var keys = current.keys.clone();
+    var touched = new HashMap<Integer, long[]>();
+    if (releaseLocked(nodeNo, keys, touched, current)) {
+      publishLocked(keys, touched, current);
+    }
+  }
+
+  /** Clears the node's bits and frees its slots, returns whether there were any. */
+  private boolean releaseLocked(
+      short nodeNo, int[] keys, Map<Integer, long[]> touched, View current) {
+    groupsByNode.remove(nodeNo);
+    var slots = slotsByNode.remove(nodeNo);
+    if (slots == null) {
+      return false;
+    }
+    for (int slot : slots) {
+      for (int id : interestsBySlot.get(slot)) {
+        bitsLocked(id, touched, current)[slot >>> 6] &= ~(1L << slot);
+      }
+      interestsBySlot.set(slot, null);
+      keys[slot] = View.FREE;
+      freeSlots.set(slot);
+    }
+    return true;
+  }
+
+  /** Gets a private copy of the id's bitset, copied once per update. */
+  private long[] bitsLocked(int id, Map<Integer, long[]> touched, View current) {
+    var bits = touched.get(id);
+    if (bits == null) {
+      bits = id < current.bits.length ? current.bits[id].clone() : NO_SLOTS;
+      touched.put(id, bits);
+    }
+    return bits;
+  }
+
+  private void publishLocked(int[] keys, Map<Integer, long[]> touched, View current) {
+    // Untouched bitsets are shared with the previous view.
+    var bits = Arrays.copyOf(current.bits, ids.size());
+    Arrays.fill(bits, current.bits.length, bits.length, NO_SLOTS);
+    touched.forEach((id, updated) -> bits[id] = updated);
+    var names = ids.size() == current.ids.size() ? current.ids : Map.copyOf(ids);
+    view = new View(names, bits, keys);
+  }
+
+  private static int key(short nodeNo, short groupNo) {
+    return (nodeNo & 0xFFFF) << 8 | groupNo & 0xFF;
+  }
+
+  /** Immutable state of the index. */
+  public static final class View {
+    static final int FREE = -1;
+
+    private final Map<String, Integer> ids;
+    // Bitsets of slots by name id.
+    private final long[][] bits;
+    // Node and group numbers by slot, as in Addr.nodeNoGroupNo(), or FREE.
+    private final int[] keys;
+
+    private View(Map<String, Integer> ids, long[][] bits, int[] keys) {
+      this.ids = ids;
+      this.bits = bits;
+      this.keys = keys;
+    }
+
+    /** Gets the id of the group name, -1 if it's unknown. */
+    public int id(String name) {
+      return ids.getOrDefault(name, -1);
+    }
+
+    /** Gets the number of remote groups interested in the group with the id. */
+    public int count(int id) {
+      if (id < 0 || id >= bits.length) {
+        return 0;
+      }
+      int count = 0;
+      for (long word : bits[id]) {
+        count += Long.bitCount(word);
+      }
+      return count;
+    }
+
+    /**
+     * Calls the consumer with the address of every remote group interested in the group with the
+     * id, i.e. the recipient of a message routed to that group.
+     */
+    public void forEach(int id, LongConsumer groupAddr) {
+      if (id < 0 || id >= bits.length) {
+        return;
+      }
+      var words = bits[id];
+      for (int i = 0; i < words.length; i++) {
+        long word = words[i];
+        while (word != 0) {
+          int slot = i << 6 | Long.numberOfTrailingZeros(word);
+          groupAddr.accept(Addr.fromNodeNoGroupNo(keys[slot]).intoBits());
+          word &= word - 1;
+        }
+      }
+    }
+
+    /**
+     * Checks if the node's group is interested in the group with the id. Scans all slots, so it's
+     * not meant for routing.
+     */
+    public boolean isInterested(int id, short nodeNo, short groupNo) {
+      if (id < 0 || id >= bits.length) {
+        return false;
+      }
+      int key = key(nodeNo, groupNo);
+      var words = bits[id];
+      for (int slot = 0; slot < keys.length && slot >>> 6 < words.length; slot++) {
+        if (keys[slot] == key && (words[slot >>> 6] & 1L << slot) != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
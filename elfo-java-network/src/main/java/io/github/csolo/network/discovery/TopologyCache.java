@@ -0,0 +1,71 @@
+package io.github.csolo.network.discovery;
+
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Control-plane state last negotiated with every peer launch: the groups it announced and the data
+ * connections opened to it. A launch is identified by {@link Socket.Peer}, so a restarted node is
+ * never mistaken for the one before, whose entry is dropped once the new launch announces itself.
+ *
+ * <p>Holds at most {@code capacity} launches, the least recently used ones are evicted.
+ */
+final class TopologyCache {
+  static final int DEFAULT_CAPACITY = 256;
+
+  /**
+   * Data connection between a local and a remote group, as requested by {@code SwitchToData}.
+   *
+   * @param myGroupNo Local group's number.
+   * @param yourGroupNo Remote group's number.
+   * @param initialWindow Initial window of every flow.
+   */
+  record DataPair(short myGroupNo, short yourGroupNo, int initialWindow) {}
+
+  private static final class Entry {
+    ProtocolMessages.SwitchToControl groups;
+    final Set<DataPair> data = new LinkedHashSet<>();
+  }
+
+  private final Map<Socket.Peer, Entry> entries;
+
+  TopologyCache(int capacity) {
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Socket.Peer, Entry> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  /** Remembers the groups announced by the peer launch, forgetting its node's older launches. */
+  synchronized void announced(Socket.Peer peer, ProtocolMessages.SwitchToControl groups) {
+    entries
+        .keySet()
+        .removeIf(known -> known.nodeNo() == peer.nodeNo() && known.launchId() != peer.launchId());
+    entries.computeIfAbsent(peer, ignored -> new Entry()).groups = groups;
+  }
+
+  /** Gets the groups last announced by the peer launch, {@code null} if it's unknown. */
+  synchronized ProtocolMessages.@Nullable SwitchToControl groups(Socket.Peer peer) {
+    var entry = entries.get(peer);
+    return entry == null ? null : entry.groups;
+  }
+
+  /** Remembers a data connection opened to the peer launch. */
+  synchronized void opened(Socket.Peer peer, DataPair pair) {
+    entries.computeIfAbsent(peer, ignored -> new Entry()).data.add(pair);
+  }
+
+  /** Gets data connections opened to the peer launch so far. */
+  synchronized Set<DataPair> data(Socket.Peer peer) {
+    var entry = entries.get(peer);
+    return entry == null ? Set.of() : Set.copyOf(entry.data);
+  }
+}
@@ -0,0 +1,32 @@
+package io.github.csolo.network.dump;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Envelope as read back from a dump.
+ *
+ * @param timestamp When it was dumped, in milliseconds since the epoch.
+ * @param direction Whether it was sent or received.
+ * @param sender Sender's address bits.
+ * @param recipient Recipient's address bits.
+ * @param traceId Trace id bits.
+ * @param name Message name.
+ * @param payload Msgpack-encoded body as a read-only view of the segment, {@code null} for
+ *     in-process messages holding a Java object.
+ */
+public record DumpRecord(
+    long timestamp,
+    Direction direction,
+    long sender,
+    long recipient,
+    long traceId,
+    String name,
+    @Nullable ByteBuffer payload) {
+
+  /** Whether an envelope was sent or received. */
+  public enum Direction {
+    OUT,
+    IN
+  }
+}
@@ -0,0 +1,382 @@
+package io.github.csolo.network.dump;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.compression.Lz4;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// spotless:off
+/**
+ * Memory-mapped file of dumped envelopes.
+ *
+ * Layout (all numbers are little-endian, offsets are in bytes):
+ *
+ *   0 +--------------------------------------------+
+ *     | Magic (8) | Version (4) | State (4)          |
+ *     | Length (8) | Reserved ...                  |
+ *  64 +--------------------------------------------+
+ *     | Records (Length)                           |
+ *     +--------------------------------------------+
+ *
+ * Record:
+ *
+ *   Size (4) | Direction (1) | Timestamp (8) | Sender (8) | Recipient (8) | TraceId (8) |
+ *   Name length (2) | Name (UTF-8) | Payload length (4) | Payload
+ *
+ * Field descriptions:
+ * - Magic: Identifies the file (0xE1F0E1F044554D50)
+ * - State: OPEN while appended to -> SEALED once all records are written
+ * - Length: Size of all records, valid once SEALED; records of an open segment end at size 0
+ * - Size: Size of the record, including this field
+ * - Payload length: -1 for in-process payloads, which are Java objects and not dumped
+ *
+ * A compressed segment is a file of its own: Magic (8, 0xE1F0E1F044554D5A) | Version (4) |
+ * Raw length (4) | the raw segment up to the end of records as a single LZ4 block.
+ *
+ * Space is reserved by a counter, so appenders never lock each other out. The appender whose
+ * reservation crosses the end seals the segment at its offset: every earlier reservation fits,
+ * every later one doesn't.
+ *
+ * Segments are unmapped explicitly once nothing writes into them anymore: pages of a deleted file
+ * stay allocated while it's mapped, and the small buffer object may never be collected.
+ */
+// spotless:on
+final class DumpSegment {
+  private static final Logger log = LoggerFactory.getLogger(DumpSegment.class);
+  static final long MAGIC = 0xE1F0E1F044554D50L;
+  static final long COMPRESSED_MAGIC = 0xE1F0E1F044554D5AL;
+  static final int VERSION = 0;
+  static final int HEADER_LENGTH = 64;
+  static final int COMPRESSED_HEADER_LENGTH = 16;
+  static final int RECORD_OVERHEAD = 4 + 1 + 4 * 8 + 2 + 4;
+  static final String SUFFIX = ".dump";
+  static final String COMPRESSED_SUFFIX = ".dump.lz4";
+
+  static final int STATE_OPEN = 0;
+  static final int STATE_SEALED = 1;
+
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int STATE_OFFSET = 12;
+  private static final int LENGTH_OFFSET = 16;
+
+  private static final @Nullable MethodHandle UNMAP = unmapHandle();
+
+  final long sequence;
+  final Path path;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final AtomicLong reserved = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private volatile long length = -1;
+
+  private DumpSegment(long sequence, Path path, MappedByteBuffer buffer) {
+    this.sequence = sequence;
+    this.path = path;
+    this.buffer = buffer;
+    this.capacity = buffer.capacity() - HEADER_LENGTH;
+  }
+
+  /** Creates (or truncates) the segment file in the directory and maps it. */
+  static DumpSegment create(Path directory, long sequence, int size) throws IOException {
+    var path = directory.resolve(name(sequence));
+    try (var file =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      var buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong(MAGIC_OFFSET, MAGIC);
+      buffer.putInt(VERSION_OFFSET, VERSION);
+      buffer.putInt(STATE_OFFSET, STATE_OPEN);
+      return new DumpSegment(sequence, path, buffer);
+    }
+  }
+
+  static String name(long sequence) {
+    return String.format("%016d", sequence) + SUFFIX;
+  }
+
+  /** Gets the sequence number of a raw or compressed segment file, -1 if it isn't one. */
+  static long sequenceOf(Path file) {
+    var name = file.getFileName().toString();
+    int end = name.indexOf(SUFFIX);
+    if (end <= 0 || !(name.endsWith(SUFFIX) || name.endsWith(COMPRESSED_SUFFIX))) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(0, end));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Gets the number of bytes records can take. */
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Reserves room for records.
+   *
+   * @return offset of the room among records, which is beyond the capacity if it doesn't fit
+   */
+  long reserve(int length) {
+    return reserved.getAndAdd(length);
+  }
+
+  /** Copies records into the reserved room, without consuming them. */
+  void write(long offset, ByteBuffer records) {
+    int length = records.remaining();
+    buffer.put(HEADER_LENGTH + (int) offset, records, records.position(), length);
+    written.addAndGet(length);
+  }
+
+  /** Seals the segment by the reservation that crossed the end. */
+  void seal(long length) {
+    this.length = length;
+  }
+
+  boolean isSealed() {
+    return length >= 0;
+  }
+
+  /** Checks if the segment is sealed and all reserved room is written. */
+  boolean isComplete() {
+    long current = length;
+    return current >= 0 && written.get() == current;
+  }
+
+  long length() {
+    return length;
+  }
+
+  /** Marks the complete segment sealed in the file. */
+  void finish() {
+    buffer.putLong(LENGTH_OFFSET, length);
+    buffer.putInt(STATE_OFFSET, STATE_SEALED);
+  }
+
+  /** Gets the size of the scratch buffer needed to compress the complete segment. */
+  int compressedBound() {
+    return COMPRESSED_HEADER_LENGTH + Lz4.maxCompressedLength(HEADER_LENGTH + (int) length);
+  }
+
+  /**
+   * Compresses the finished segment into a file next to it and deletes this one.
+   *
+   * @param scratch Buffer of at least {@link #compressedBound()} bytes
+   * @return the compressed file
+   */
+  Path compress(ByteBuffer scratch) throws IOException {
+    int rawLength = HEADER_LENGTH + (int) length;
+    scratch.clear().order(ByteOrder.LITTLE_ENDIAN);
+    scratch.putLong(COMPRESSED_MAGIC).putInt(VERSION).putInt(rawLength);
+    Lz4.compress(buffer.slice(0, rawLength), scratch);
+    scratch.flip();
+
+    var target = path.resolveSibling(String.format("%016d", sequence) + COMPRESSED_SUFFIX);
+    var temporary = path.resolveSibling(target.getFileName() + ".tmp");
+    try (var file =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      while (scratch.hasRemaining()) {
+        file.write(scratch);
+      }
+    }
+    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    unmap();
+    Files.delete(path);
+    return target;
+  }
+
+  /**
+   * Releases the mapping right away rather than once the buffer is collected. The segment must
+   * not be accessed afterwards, so it's only called for complete segments and never published ones.
+   */
+  void unmap() {
+    if (UNMAP == null) {
+      return;
+    }
+    try {
+      UNMAP.invokeExact((ByteBuffer) buffer);
+    } catch (Throwable e) {
+      log.debug("Failed to unmap dump segment {}: {}", path, e.toString());
+    }
+  }
+
+  private static @Nullable MethodHandle unmapHandle() {
+    try {
+      var type = Class.forName("sun.misc.Unsafe");
+      var field = type.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return MethodHandles.lookup()
+          .findVirtual(type, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+          .bindTo(field.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Dump segments are unmapped by GC: {}", e.toString());
+      return null;
+    }
+  }
+
+  /** Gets the size of the envelope's record, -1 if it's too large to dump. */
+  static int recordLength(NetworkEnvelope envelope) {
+    int name = utf8Length(envelope.name());
+    long payload = envelope.payload() instanceof ByteBuffer bytes ? bytes.remaining() : 0;
+    long length = RECORD_OVERHEAD + name + payload;
+    return name > 0xFFFF || length > Integer.MAX_VALUE ? -1 : (int) length;
+  }
+
+  /**
+   * Puts the envelope's record into the little-endian buffer.
+   *
+   * @param length Size of the record, see {@link #recordLength}
+   */
+  static void encode(
+      ByteBuffer dst,
+      int length,
+      DumpRecord.Direction direction,
+      long timestamp,
+      NetworkEnvelope envelope) {
+    dst.putInt(length)
+        .put((byte) direction.ordinal())
+        .putLong(timestamp)
+        .putLong(envelope.sender())
+        .putLong(envelope.recipient())
+        .putLong(envelope.traceId());
+
+    var name = envelope.name();
+    int nameLength = utf8Length(name);
+    dst.putShort((short) nameLength);
+    if (nameLength == name.length()) {
+      // ASCII as almost always, no need to encode.
+      for (int i = 0; i < nameLength; i++) {
+        dst.put((byte) name.charAt(i));
+      }
+    } else {
+      dst.put(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    if (envelope.payload() instanceof ByteBuffer payload) {
+      int size = payload.remaining();
+      dst.putInt(size);
+      dst.put(dst.position(), payload, payload.position(), size);
+      dst.position(dst.position() + size);
+    } else {
+      dst.putInt(-1);
+    }
+  }
+
+  private static int utf8Length(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) >= 0x80) {
+        return name.getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+    return name.length();
+  }
+
+  /** Reads records of a raw or compressed segment file, an open segment up to the last record. */
+  static List<DumpRecord> read(Path path) throws IOException {
+    var records = records(path);
+    var result = new ArrayList<DumpRecord>();
+    int size;
+    while ((size = recordSize(records)) > 0) {
+      result.add(next(records, size));
+    }
+    return result;
+  }
+
+  /**
+   * Gets records of a raw or compressed segment file, an open segment up to its end. A raw file is
+   * mapped read-only, a compressed one is decompressed into the heap.
+   */
+  static ByteBuffer records(Path path) throws IOException {
+    ByteBuffer bytes;
+    try (var file = FileChannel.open(path, StandardOpenOption.READ)) {
+      bytes = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+    }
+    bytes.order(ByteOrder.LITTLE_ENDIAN);
+    if (bytes.remaining() >= COMPRESSED_HEADER_LENGTH
+        && bytes.getLong(MAGIC_OFFSET) == COMPRESSED_MAGIC) {
+      int rawLength = bytes.getInt(12);
+      var raw = ByteBuffer.allocate(rawLength).order(ByteOrder.LITTLE_ENDIAN);
+      try {
+        Lz4.decompress(bytes.position(COMPRESSED_HEADER_LENGTH), raw, rawLength);
+      } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+        throw new IOException("Malformed compressed dump segment " + path, e);
+      }
+      bytes = raw.flip();
+    }
+    if (bytes.remaining() < HEADER_LENGTH || bytes.getLong(MAGIC_OFFSET) != MAGIC) {
+      throw new IOException("Not a dump segment: " + path);
+    }
+
+    long end = bytes.limit();
+    if (bytes.getInt(STATE_OFFSET) == STATE_SEALED) {
+      end = Math.min(end, HEADER_LENGTH + bytes.getLong(LENGTH_OFFSET));
+    }
+    return bytes.slice(HEADER_LENGTH, (int) end - HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Gets the size of the record at the position of records, 0 if there are no more. */
+  static int recordSize(ByteBuffer records) {
+    if (records.remaining() < RECORD_OVERHEAD) {
+      return 0;
+    }
+    int size = records.getInt(records.position());
+    return size < RECORD_OVERHEAD || size > records.remaining() ? 0 : size;
+  }
+
+  /** Decodes the record at the position of records and moves past it. */
+  static DumpRecord next(ByteBuffer records, int size) {
+    int position = records.position();
+    records.position(position + size);
+    return decode(records.slice(position, size).order(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  private static DumpRecord decode(ByteBuffer record) {
+    record.getInt();
+    var direction = DumpRecord.Direction.values()[record.get()];
+    long timestamp = record.getLong();
+    long sender = record.getLong();
+    long recipient = record.getLong();
+    long traceId = record.getLong();
+    var name = new byte[record.getShort() & 0xFFFF];
+    record.get(name);
+    int size = record.getInt();
+    // A view of the segment, so nothing is copied until the payload is used.
+    var payload = size < 0 ? null : record.slice(record.position(), size).asReadOnlyBuffer();
+    return new DumpRecord(
+        timestamp,
+        direction,
+        sender,
+        recipient,
+        traceId,
+        new String(name, StandardCharsets.UTF_8),
+        payload);
+  }
+}
@@ -0,0 +1,353 @@
+package io.github.csolo.network.dump;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.DumpConfig;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records envelopes into rolling memory-mapped segment files, for debugging in production.
+ *
+ * <p>Records are appended to buffers of their own by every thread and copied into the current
+ * segment a buffer at a time, see {@link DumpSegment} for the format. With virtual threads there
+ * are too many short-lived threads for a buffer per thread, so buffers are striped by thread id,
+ * several per core, and a thread finding its stripe busy takes the next free one. Space in a
+ * segment is reserved by an atomic counter, and the appender crossing its end swaps in a spare
+ * segment mapped ahead by a background thread. So dumping never waits for a lock, a file or the
+ * disk: whatever cannot be recorded right away, because all stripes are busy or no spare segment
+ * is ready yet, is dropped and counted by {@link #dropped()}.
+ *
+ * <p>The background thread also writes out buffers of quiet threads every flush interval,
+ * compresses sealed segments with LZ4 and keeps the configured number of them, deleting older
+ * ones, unmapping segments as soon as they are done with. {@link #read(Path)} reads any segment
+ * back.
+ *
+ * <pre>{@code
+ * var dumper = Dumper.start(new DumpConfig(Path.of("/var/dump/node-1")));
+ * connection.dumper(dumper);
+ * }</pre>
+ */
+public final class Dumper implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(Dumper.class);
+
+  // Attempts to pass a segment being swapped before dropping.
+  private static final int ROTATION_SPINS = 64;
+
+  private final DumpConfig config;
+  private final Stripe[] stripes;
+  private final int mask;
+  private final AtomicReference<DumpSegment> current;
+  private final AtomicReference<DumpSegment> spare = new AtomicReference<>();
+  private final ConcurrentLinkedQueue<DumpSegment> sealed = new ConcurrentLinkedQueue<>();
+  private final LongAdder dumped = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final Thread background;
+  private volatile boolean closed;
+
+  // Owned by the background thread.
+  private final ArrayDeque<Path> finished = new ArrayDeque<>();
+  private long nextSequence;
+  private ByteBuffer scratch = ByteBuffer.allocate(0);
+
+  private Dumper(DumpConfig config) throws IOException {
+    this.config = config;
+    var directory = Files.createDirectories(config.directory());
+    try (var files = Files.list(directory)) {
+      files
+          .filter(file -> DumpSegment.sequenceOf(file) >= 0)
+          .sorted(Comparator.comparingLong(DumpSegment::sequenceOf))
+          .forEach(finished::add);
+    }
+    if (!finished.isEmpty()) {
+      nextSequence = DumpSegment.sequenceOf(finished.getLast()) + 1;
+    }
+    this.current = new AtomicReference<>(nextSegment());
+    spare.set(nextSegment());
+
+    int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new Stripe(config.bufferSize());
+    }
+    this.mask = count - 1;
+    this.background = Thread.ofPlatform().name("elfo-dumper").daemon().unstarted(this::run);
+  }
+
+  /** Maps the first segments and starts the background thread. */
+  public static Dumper start(DumpConfig config) throws IOException {
+    var dumper = new Dumper(config);
+    dumper.background.start();
+    return dumper;
+  }
+
+  /** Reads records of a segment file, compressed or not, an open one as far as it's written. */
+  public static List<DumpRecord> read(Path segment) throws IOException {
+    return DumpSegment.read(segment);
+  }
+
+  /**
+   * Records the envelope without waiting.
+   *
+   * @return whether it's buffered, {@code false} if it's dropped right away; buffered records that
+   *     find no room in segments are dropped later, all of them are counted by {@link #dropped()}
+   */
+  public boolean dump(DumpRecord.Direction direction, NetworkEnvelope envelope) {
+    if (closed) {
+      dropped.increment();
+      return false;
+    }
+    int first = (int) Thread.currentThread().threadId();
+    for (int i = 0; i <= mask; i++) {
+      var stripe = stripes[(first + i) & mask];
+      if (stripe.lock.tryLock()) {
+        try {
+          return stripe.append(direction, envelope);
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+    }
+    dropped.increment();
+    return false;
+  }
+
+  /** Gets the number of envelopes written into segments so far. */
+  public long dumped() {
+    return dumped.sum();
+  }
+
+  /** Gets the number of envelopes dropped so far. */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  /** Writes out all buffers, seals the current segment and compresses what's left. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(background);
+    boolean interrupted = false;
+    while (background.isAlive()) {
+      try {
+        background.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    for (var stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.commit();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    var last = current.get();
+    seal(last, last.reserve(last.capacity() + 1));
+    try {
+      finishSealed();
+      var unused = spare.getAndSet(null);
+      if (unused != null) {
+        discard(unused);
+      }
+    } catch (IOException e) {
+      log.warn("Failed to finish dump segments in {}", config.directory(), e);
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Copies records into the current segment, swapping in the spare one if it's full.
+   *
+   * @return whether they are written, {@code false} if they are dropped
+   */
+  private boolean write(ByteBuffer records) {
+    int length = records.remaining();
+    int spins = 0;
+    while (true) {
+      var segment = current.get();
+      if (length > segment.capacity()) {
+        return false;
+      }
+      long offset = segment.reserve(length);
+      if (offset + length <= segment.capacity()) {
+        segment.write(offset, records);
+        return true;
+      }
+      if (offset <= segment.capacity()) {
+        // Crossed the end, so it's up to us to swap.
+        seal(segment, offset);
+        var next = spare.getAndSet(null);
+        LockSupport.unpark(background);
+        if (next == null) {
+          // The background thread is behind, it will swap in a new segment itself.
+          return false;
+        }
+        if (!current.compareAndSet(segment, next) && !spare.compareAndSet(null, next)) {
+          discard(next);
+        }
+        continue;
+      }
+      if (current.get() == segment && ++spins > ROTATION_SPINS) {
+        return false;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private void seal(DumpSegment segment, long length) {
+    if (length <= segment.capacity()) {
+      segment.seal(length);
+      sealed.add(segment);
+    }
+  }
+
+  private void run() {
+    long interval = config.flushInterval().toNanos();
+    while (!closed) {
+      try {
+        maintain();
+      } catch (IOException | RuntimeException e) {
+        log.warn("Failed to maintain dump segments in {}", config.directory(), e);
+      }
+      LockSupport.parkNanos(this, interval);
+    }
+  }
+
+  private void maintain() throws IOException {
+    var segment = current.get();
+    if (segment.isSealed()) {
+      var next = spare.getAndSet(null);
+      if (next == null) {
+        next = nextSegment();
+      }
+      if (!current.compareAndSet(segment, next) && !spare.compareAndSet(null, next)) {
+        discard(next);
+      }
+    }
+    if (spare.get() == null) {
+      var next = nextSegment();
+      if (!spare.compareAndSet(null, next)) {
+        discard(next);
+      }
+    }
+    for (var stripe : stripes) {
+      // Busy stripes are being appended to, they will be written out when full.
+      if (stripe.lock.tryLock()) {
+        try {
+          stripe.commit();
+        } finally {
+          stripe.lock.unlock();
+        }
+      }
+    }
+    finishSealed();
+  }
+
+  /** Compresses complete sealed segments and deletes ones beyond the limit. */
+  private void finishSealed() throws IOException {
+    for (var iterator = sealed.iterator(); iterator.hasNext(); ) {
+      var segment = iterator.next();
+      if (!segment.isComplete()) {
+        // Appenders are still copying into it.
+        continue;
+      }
+      iterator.remove();
+      if (segment.length() == 0) {
+        segment.unmap();
+        Files.delete(segment.path);
+        continue;
+      }
+      segment.finish();
+      var path = segment.path;
+      if (config.compress()) {
+        if (scratch.capacity() < segment.compressedBound()) {
+          scratch = ByteBuffer.allocateDirect(segment.compressedBound());
+        }
+        path = segment.compress(scratch);
+      } else {
+        segment.unmap();
+      }
+      finished.add(path);
+      while (finished.size() > config.maxSegments()) {
+        Files.deleteIfExists(finished.poll());
+      }
+    }
+  }
+
+  private DumpSegment nextSegment() throws IOException {
+    return DumpSegment.create(config.directory(), nextSequence++, config.segmentSize());
+  }
+
+  private void discard(DumpSegment segment) {
+    segment.unmap();
+    try {
+      Files.deleteIfExists(segment.path);
+    } catch (IOException e) {
+      log.debug("Failed to delete unused dump segment {}: {}", segment.path, e.toString());
+    }
+  }
+
+  /** Append buffer shared by threads with the same stripe, one at a time. */
+  private final class Stripe {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer;
+    private int records;
+
+    private Stripe(int size) {
+      this.buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private boolean append(DumpRecord.Direction direction, NetworkEnvelope envelope) {
+      int length = DumpSegment.recordLength(envelope);
+      if (length < 0 || closed) {
+        dropped.increment();
+        return false;
+      }
+      long timestamp = System.currentTimeMillis();
+      if (length > buffer.remaining()) {
+        commit();
+      }
+      if (length > buffer.capacity()) {
+        // Too large to buffer, written on its own.
+        var single = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        DumpSegment.encode(single, length, direction, timestamp, envelope);
+        boolean written = write(single.flip());
+        (written ? dumped : dropped).increment();
+        return written;
+      }
+      DumpSegment.encode(buffer, length, direction, timestamp, envelope);
+      records++;
+      return true;
+    }
+
+    /** Writes out buffered records, dropping them if there is no room. */
+    private void commit() {
+      if (records == 0) {
+        return;
+      }
+      buffer.flip();
+      (write(buffer) ? dumped : dropped).add(records);
+      buffer.clear();
+      records = 0;
+    }
+  }
+}
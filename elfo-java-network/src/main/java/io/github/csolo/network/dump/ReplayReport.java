@@ -0,0 +1,63 @@
+package io.github.csolo.network.dump;
+
+import io.github.csolo.network.metrics.Histogram;
+import java.time.Duration;
+
+/**
+ * Result of a {@link Replayer} run, or its progress so far.
+ *
+ * @param replayed Number of envelopes replayed.
+ * @param skipped Number of in-process envelopes skipped, their payloads are not dumped.
+ * @param bytes Total size of replayed payloads.
+ * @param elapsed Time spent replaying.
+ * @param recorded Time the replayed envelopes span in the dump.
+ * @param lag How late envelopes were replayed against the dump's timing, in nanoseconds. Empty at
+ *     max speed.
+ * @param sendLatency Time the sink took to accept an envelope, in nanoseconds.
+ */
+public record ReplayReport(
+    long replayed,
+    long skipped,
+    long bytes,
+    Duration elapsed,
+    Duration recorded,
+    Histogram.Snapshot lag,
+    Histogram.Snapshot sendLatency) {
+
+  /** Gets the rate of replayed envelopes per second. */
+  public double rate() {
+    return perSecond(replayed);
+  }
+
+  /** Gets the rate of replayed payload bytes per second. */
+  public double byteRate() {
+    return perSecond(bytes);
+  }
+
+  /** Gets how many times faster than recorded the dump was actually replayed. */
+  public double speed() {
+    return elapsed.isZero() ? 0.0 : (double) recorded.toNanos() / elapsed.toNanos();
+  }
+
+  private double perSecond(long count) {
+    return elapsed.isZero() ? 0.0 : count * 1e9 / elapsed.toNanos();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "replayed %d (%.0f msg/s, %.1f MiB/s), skipped %d, %d ms of %d ms recorded (%.2fx),"
+            + " lag us: p99 %.1f, max %.1f, send us: p50 %.1f, p99 %.1f",
+        replayed,
+        rate(),
+        byteRate() / (1024 * 1024),
+        skipped,
+        elapsed.toMillis(),
+        recorded.toMillis(),
+        speed(),
+        lag.quantile(0.99) / 1e3,
+        lag.max() / 1e3,
+        sendLatency.quantile(0.5) / 1e3,
+        sendLatency.quantile(0.99) / 1e3);
+  }
+}
@@ -0,0 +1,243 @@
+package io.github.csolo.network.dump;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.flow.FlowSender;
+import io.github.csolo.network.metrics.Histogram;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Replays dumped envelopes, for load tests with production traffic.
+ *
+ * <p>Segments are mapped and decoded a record at a time, and payloads are handed over as views of
+ * the segment, so a dump far larger than the heap replays without copying. Envelopes go to a
+ * {@link Sink}: a {@link FlowSender} over a data connection to the node under test, so they take
+ * the regular send path and keep within the flow windows it grants, or any local delivery.
+ *
+ * <p>The dump's relative timing is kept, scaled by the speed: at 2x an envelope dumped a second
+ * after the first one is replayed half a second after the start. Timestamps have millisecond
+ * precision, and records of different threads can be dumped slightly out of order; an envelope
+ * dumped earlier than the one before it is replayed right after that one. At {@link #MAX_SPEED}
+ * envelopes go as fast as the sink takes them. Replay rate, lag behind the dump's timing and time
+ * spent in the sink are reported in a {@link ReplayReport}.
+ *
+ * <pre>{@code
+ * var sender = new FlowSender(link.connection(), link.reply().initialWindow());
+ * var report = Replayer.builder(sender).from(Path.of("/var/dump/node-1")).speed(2).run();
+ * System.out.println(report);
+ * }</pre>
+ */
+public final class Replayer {
+  /** Replays envelopes as fast as the sink takes them. */
+  public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+  // Flush at least this often when behind schedule.
+  private static final int FLUSH_EVERY = 64;
+
+  private final Builder config;
+  private final Histogram lag = new Histogram();
+  private final Histogram sendLatency = new Histogram();
+  private long replayed;
+  private long skipped;
+  private long bytes;
+  private long firstTimestamp = -1;
+  private long lastTimestamp = -1;
+
+  private Replayer(Builder config) {
+    this.config = config;
+  }
+
+  /**
+   * Starts building a replay into a data connection. Envelopes wait for window, so the replay lags
+   * behind if the node under test can't keep up, and the connection's reader has to pass {@code
+   * UpdateFlow} to the sender meanwhile.
+   */
+  public static Builder builder(FlowSender sender) {
+    return builder(
+        new Sink() {
+          @Override
+          public void send(NetworkEnvelope envelope) throws IOException {
+            if (sender.trySend(envelope) != FlowSender.Result.SENT) {
+              // The peer grants more window only after it gets what's buffered.
+              sender.connection().flush();
+              sender.send(envelope);
+            }
+          }
+
+          @Override
+          public void flush() throws IOException {
+            sender.connection().flush();
+          }
+        });
+  }
+
+  public static Builder builder(Sink sink) {
+    return new Builder(sink);
+  }
+
+  private ReplayReport run() throws IOException {
+    long start = System.nanoTime();
+    var progress = config.progress;
+    long nextProgress = start;
+    boolean paced = config.speed != MAX_SPEED;
+    double nanosPerMilli = 1e6 / config.speed;
+    int unflushed = 0;
+    for (var segment : config.segments) {
+      var records = DumpSegment.records(segment);
+      int size;
+      while ((size = DumpSegment.recordSize(records)) > 0) {
+        var record = DumpSegment.next(records, size);
+        if (config.direction != null && record.direction() != config.direction) {
+          continue;
+        }
+        if (record.payload() == null) {
+          skipped++;
+          continue;
+        }
+        if (firstTimestamp < 0) {
+          firstTimestamp = record.timestamp();
+        }
+        lastTimestamp = Math.max(lastTimestamp, record.timestamp());
+
+        long due = start + (paced ? (long) ((lastTimestamp - firstTimestamp) * nanosPerMilli) : 0);
+        long now = System.nanoTime();
+        if (due > now) {
+          config.sink.flush();
+          unflushed = 0;
+          now = sleepUntil(due);
+        }
+        ByteBuffer payload = record.payload();
+        bytes += payload.remaining();
+        config.sink.send(
+            new NetworkEnvelope(
+                record.sender(), record.recipient(), record.traceId(), record.name(), payload));
+        long sent = System.nanoTime();
+        sendLatency.record(sent - now);
+        if (paced) {
+          lag.record(sent - due);
+        }
+        replayed++;
+        if (++unflushed >= FLUSH_EVERY) {
+          config.sink.flush();
+          unflushed = 0;
+        }
+        if (progress != null && sent >= nextProgress) {
+          progress.accept(report(start, sent));
+          nextProgress = sent + config.progressInterval.toNanos();
+        }
+      }
+    }
+    config.sink.flush();
+    return report(start, System.nanoTime());
+  }
+
+  private static long sleepUntil(long deadline) throws IOException {
+    long now;
+    while ((now = System.nanoTime()) < deadline) {
+      LockSupport.parkNanos(deadline - now);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new IOException("Interrupted during replay");
+      }
+    }
+    return now;
+  }
+
+  private ReplayReport report(long start, long now) {
+    return new ReplayReport(
+        replayed,
+        skipped,
+        bytes,
+        Duration.ofNanos(now - start),
+        Duration.ofMillis(firstTimestamp < 0 ? 0 : lastTimestamp - firstTimestamp),
+        lag.snapshot(),
+        sendLatency.snapshot());
+  }
+
+  /** Takes replayed envelopes, from a single thread. */
+  public interface Sink {
+    void send(NetworkEnvelope envelope) throws IOException;
+
+    /** Called whenever the replay is ahead of the dump's timing and at the end. */
+    default void flush() throws IOException {}
+  }
+
+  public static class Builder {
+    private final Sink sink;
+    private final List<Path> segments = new ArrayList<>();
+    private double speed = 1;
+    private DumpRecord.@Nullable Direction direction = DumpRecord.Direction.IN;
+    private @Nullable Consumer<ReplayReport> progress;
+    private Duration progressInterval = Duration.ZERO;
+
+    private Builder(Sink sink) {
+      this.sink = sink;
+    }
+
+    /**
+     * Adds segments to replay, in order: a segment file, or all segments of a dump directory,
+     * oldest first.
+     */
+    public Builder from(Path path) throws IOException {
+      if (!Files.isDirectory(path)) {
+        segments.add(path);
+        return this;
+      }
+      var bySequence = new TreeMap<Long, Path>();
+      try (var files = Files.list(path)) {
+        for (var file : files.toList()) {
+          long sequence = DumpSegment.sequenceOf(file);
+          // Both files exist for a moment while a segment is compressed.
+          if (sequence >= 0
+              && (!bySequence.containsKey(sequence)
+                  || file.toString().endsWith(DumpSegment.COMPRESSED_SUFFIX))) {
+            bySequence.put(sequence, file);
+          }
+        }
+      }
+      segments.addAll(bySequence.values());
+      return this;
+    }
+
+    /** Sets how many times faster than recorded to replay, 1 by default. */
+    public Builder speed(double speed) {
+      if (!(speed > 0)) {
+        throw new IllegalArgumentException("Speed must be positive: " + speed);
+      }
+      this.speed = speed;
+      return this;
+    }
+
+    /**
+     * Sets which envelopes to replay, {@code null} for all of them. By default the received ones,
+     * i.e. the load of the dumped node.
+     */
+    public Builder direction(DumpRecord.@Nullable Direction direction) {
+      this.direction = direction;
+      return this;
+    }
+
+    /** Sets a listener of the progress so far, called on the replaying thread every interval. */
+    public Builder progress(Duration interval, Consumer<ReplayReport> listener) {
+      if (interval.isNegative() || interval.isZero()) {
+        throw new IllegalArgumentException("Progress interval must be positive: " + interval);
+      }
+      this.progressInterval = interval;
+      this.progress = listener;
+      return this;
+    }
+
+    /** Replays all segments on the calling thread. */
+    public ReplayReport run() throws IOException {
+      return new Replayer(this).run();
+    }
+  }
+}
@@ -0,0 +1,306 @@
+package io.github.csolo.network.flow;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Publishes envelopes of an inbound flow, i.e. those sent to one local {@code Addr} over a data
+ * connection, with the subscriber's demand as the flow's window.
+ *
+ * <p>{@link Flow.Subscription#request(long)} grants the peer that much more window by {@code
+ * UpdateFlow}, and {@link Flow.Subscription#cancel()} sends {@code CloseFlow}. So the peer never
+ * sends more than was requested, except for the initial window it got in {@code SwitchToData},
+ * and at most that many envelopes are held until requested. A peer exceeding its window fails the
+ * subscriber with a {@link ProtocolException}.
+ *
+ * <p>While the {@link MemoryBudget} is under pressure, the window is granted in smaller steps, and
+ * the rest of the demand as envelopes arrive. Under high pressure half of the uncovered demand is
+ * granted, and once the budget is full, a single envelope at a time, so that the flow slows down
+ * but never stalls.
+ *
+ * <p>Envelopes are passed in by the connection's reader, which calls {@link #complete()} or {@link
+ * #fail(Throwable)} once the connection is over. Only one subscriber is allowed.
+ *
+ * <pre>{@code
+ * var publisher = new FlowPublisher(connection, addr, initialWindow);
+ * publisher.subscribe(subscriber);
+ * // In the reader.
+ * if (frame instanceof NetworkEnvelope envelope && envelope.recipient() == addr) {
+ *   publisher.deliver(envelope);
+ * }
+ * }</pre>
+ */
+public final class FlowPublisher implements Flow.Publisher<NetworkEnvelope> {
+  private final Connection connection;
+  private final long addr;
+  private final MemoryBudget budget;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicInteger wip = new AtomicInteger();
+
+  // Guarded by the lock.
+  private final ArrayDeque<NetworkEnvelope> received = new ArrayDeque<>();
+  private @Nullable Flow.Subscriber<? super NetworkEnvelope> subscriber;
+  private boolean subscribed;
+  private long demand;
+  private long window;
+  private boolean completed;
+  private @Nullable Throwable error;
+  private boolean done;
+
+  /**
+   * Creates a publisher of the inbound flow.
+   *
+   * @param addr Local address the flow's envelopes are sent to
+   * @param initialWindow Window the peer got for every flow in {@code SwitchToData}
+   */
+  public FlowPublisher(Connection connection, long addr, int initialWindow) {
+    this(connection, addr, initialWindow, MemoryBudget.global());
+  }
+
+  /**
+   * Creates a publisher of the inbound flow.
+   *
+   * @param addr Local address the flow's envelopes are sent to
+   * @param initialWindow Window the peer got for every flow in {@code SwitchToData}
+   * @param budget Budget whose pressure shrinks window grants
+   */
+  public FlowPublisher(Connection connection, long addr, int initialWindow, MemoryBudget budget) {
+    this.connection = connection;
+    this.addr = addr;
+    this.window = initialWindow;
+    this.budget = budget;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super NetworkEnvelope> subscriber) {
+    boolean first;
+    lock.lock();
+    try {
+      first = this.subscriber == null;
+      if (first) {
+        this.subscriber = subscriber;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (first) {
+      subscriber.onSubscribe(new Subscription());
+      lock.lock();
+      try {
+        // No signals before onSubscribe returns.
+        subscribed = true;
+      } finally {
+        lock.unlock();
+      }
+      drain();
+      return;
+    }
+    subscriber.onSubscribe(new CancelledSubscription());
+    subscriber.onError(new IllegalStateException("Flow is already subscribed to"));
+  }
+
+  /** Passes an envelope of the flow received from the peer. */
+  public void deliver(NetworkEnvelope envelope) {
+    lock.lock();
+    try {
+      if (done) {
+        return;
+      }
+      if (window <= 0) {
+        error = new ProtocolException("Peer exceeded the window of flow " + addr);
+      } else {
+        window--;
+        received.add(envelope);
+      }
+    } finally {
+      lock.unlock();
+    }
+    // The rest of the demand, if grants were cut short by memory pressure.
+    grant(0);
+  }
+
+  /** Completes the subscriber once envelopes received so far are consumed. */
+  public void complete() {
+    lock.lock();
+    try {
+      completed = true;
+    } finally {
+      lock.unlock();
+    }
+    drain();
+  }
+
+  /** Fails the subscriber right away, e.g. if the connection is broken. */
+  public void fail(Throwable cause) {
+    lock.lock();
+    try {
+      if (error == null) {
+        error = cause;
+      }
+    } finally {
+      lock.unlock();
+    }
+    drain();
+  }
+
+  /** Gets the window the peer still has. */
+  public long window() {
+    lock.lock();
+    try {
+      return window;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Delivers signals to the subscriber from one thread at a time, never recursively. */
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+    do {
+      while (true) {
+        Flow.Subscriber<? super NetworkEnvelope> target;
+        NetworkEnvelope next = null;
+        Throwable failure = null;
+        boolean complete = false;
+        lock.lock();
+        try {
+          target = subscriber;
+          if (!subscribed || done) {
+            break;
+          }
+          if (error != null) {
+            failure = error;
+          } else if (demand > 0 && !received.isEmpty()) {
+            next = received.poll();
+            demand--;
+          } else if (completed && received.isEmpty()) {
+            complete = true;
+          } else {
+            break;
+          }
+          if (next == null) {
+            done = true;
+            received.clear();
+          }
+        } finally {
+          lock.unlock();
+        }
+
+        if (next != null) {
+          target.onNext(next);
+        } else if (failure != null) {
+          if (failure instanceof ProtocolException) {
+            closeFlow();
+          }
+          target.onError(failure);
+        } else if (complete) {
+          target.onComplete();
+        }
+      }
+    } while (wip.decrementAndGet() != 0);
+  }
+
+  private void grant(long count) {
+    long delta;
+    lock.lock();
+    try {
+      if (done) {
+        return;
+      }
+      demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+      // Envelopes received or still allowed to come cover this much of the demand.
+      long covered = received.size() + window;
+      delta = shrink(Math.min(demand - covered, Integer.MAX_VALUE));
+      if (delta > 0) {
+        window += delta;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (delta > 0) {
+      sendControl(new ProtocolMessages.UpdateFlow(addr, (int) delta));
+    }
+    drain();
+  }
+
+  /** Cuts the grant according to memory pressure, see the class doc. */
+  private long shrink(long delta) {
+    if (delta <= 0) {
+      return delta;
+    }
+    return switch (budget.pressure()) {
+      case NORMAL -> delta;
+      case HIGH -> Math.max(delta / 2, window == 0 ? 1 : 0);
+      case FULL -> window == 0 ? 1 : 0;
+    };
+  }
+
+  private void cancel() {
+    lock.lock();
+    try {
+      if (done) {
+        return;
+      }
+      done = true;
+      received.clear();
+    } finally {
+      lock.unlock();
+    }
+    closeFlow();
+  }
+
+  private void closeFlow() {
+    try {
+      connection.send(new ProtocolMessages.CloseFlow(addr));
+      connection.flush();
+    } catch (IOException e) {
+      // The connection is over, so is the flow.
+    }
+  }
+
+  private void sendControl(Object frame) {
+    try {
+      // Control frames go ahead of queued data.
+      connection.send(frame);
+      connection.flush();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private final class Subscription implements Flow.Subscription {
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        fail(new IllegalArgumentException("Requested non-positive number " + n));
+        closeFlow();
+        return;
+      }
+      grant(n);
+    }
+
+    @Override
+    public void cancel() {
+      FlowPublisher.this.cancel();
+    }
+  }
+
+  private static final class CancelledSubscription implements Flow.Subscription {
+    @Override
+    public void request(long n) {}
+
+    @Override
+    public void cancel() {}
+  }
+}
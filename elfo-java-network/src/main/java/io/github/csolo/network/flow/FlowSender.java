@@ -0,0 +1,397 @@
+package io.github.csolo.network.flow;
+
+import io.github.csolo.core.Addr;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.jfr.FlowStallEvent;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sends envelopes over a data connection within the windows granted by the peer.
+ *
+ * <p>Every flow, i.e. every recipient {@code Addr}, starts with the initial window the peer
+ * replied with in {@code SwitchToData}. Each envelope takes one unit, and the peer grants more by
+ * {@code UpdateFlow}, which the connection's reader passes to {@link #handle(Object)}.
+ *
+ * <p>There are three ways to send, all of them allocate nothing on success:
+ *
+ * <ul>
+ *   <li>{@link #trySend} never waits, for event loops that would rather retry later.
+ *   <li>{@link #sendAsync} never waits either, an envelope that cannot go right away is queued
+ *       behind its flow and sent by a virtual thread once there is window for it.
+ *   <li>{@link #send} waits for window and for the connection, parking the virtual thread.
+ * </ul>
+ *
+ * <p>Envelopes to the same recipient sent by one thread are delivered in order whatever the ways
+ * they are sent by: a flow with queued envelopes takes no more until they are sent. As with {@link
+ * Connection#send}, envelopes are written out by {@link Connection#flush()}, except for queued
+ * ones, which the virtual thread flushes itself.
+ *
+ * <p>Payloads of queued envelopes are reserved from a {@link MemoryBudget} under the account of the
+ * peer node and the recipient's group. If the budget is full, they fail with {@link
+ * io.github.csolo.network.memory.BudgetExceededException} instead of being queued.
+ *
+ * <pre>{@code
+ * var link = discovery.openData(peerNodeNo, myGroupNo, yourGroupNo, initialWindow);
+ * var sender = new FlowSender(link.connection(), link.reply().initialWindow());
+ * switch (sender.trySend(envelope)) {
+ *   case SENT -> {}
+ *   case WOULD_BLOCK -> retryAfterFlush(envelope);
+ *   case NO_CREDIT -> sender.sendAsync(envelope).whenComplete(this::onSent);
+ * }
+ * }</pre>
+ */
+public final class FlowSender implements AutoCloseable {
+  private static final CompletionStage<Void> SENT = CompletableFuture.completedStage(null);
+
+  /** Outcome of {@link #trySend}. */
+  public enum Result {
+    /** The envelope is queued by the connection. */
+    SENT,
+    /** The connection is busy with other senders or has to write out its buffer first. */
+    WOULD_BLOCK,
+    /** The flow's window is exhausted, or envelopes queued earlier still wait for it. */
+    NO_CREDIT
+  }
+
+  private record Pending(
+      NetworkEnvelope envelope,
+      CompletableFuture<Void> future,
+      @Nullable FlowStallEvent stall,
+      MemoryBudget.Account memory,
+      long bytes) {}
+
+  private final Connection connection;
+  private final MemoryBudget budget;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition windowed = lock.newCondition();
+  private final FlowTable flows;
+  private final Map<Long, ArrayDeque<Pending>> pending = new HashMap<>();
+  private boolean closed;
+
+  /**
+   * Creates a sender over the data connection.
+   *
+   * @param initialWindow Window of every flow, as replied by the peer in {@code SwitchToData}
+   */
+  public FlowSender(Connection connection, int initialWindow) {
+    this(connection, initialWindow, MemoryBudget.global());
+  }
+
+  /**
+   * Creates a sender over the data connection.
+   *
+   * @param initialWindow Window of every flow, as replied by the peer in {@code SwitchToData}
+   * @param budget Budget to reserve queued envelopes from
+   */
+  public FlowSender(Connection connection, int initialWindow, MemoryBudget budget) {
+    this.connection = connection;
+    this.budget = budget;
+    this.flows = new FlowTable(initialWindow, 64);
+  }
+
+  /**
+   * Queues the envelope unless it would have to wait.
+   *
+   * @throws IOException if the connection is broken or the sender is closed
+   */
+  public Result trySend(NetworkEnvelope envelope) throws IOException {
+    long addr = envelope.recipient();
+    if (!acquire(addr)) {
+      return Result.NO_CREDIT;
+    }
+    boolean sent = false;
+    try {
+      sent = connection.trySend(envelope);
+    } finally {
+      if (!sent) {
+        refund(addr);
+      }
+    }
+    return sent ? Result.SENT : Result.WOULD_BLOCK;
+  }
+
+  /**
+   * Queues the envelope without waiting.
+   *
+   * @return stage completed once the connection has queued the envelope, or failed with an {@link
+   *     IOException}
+   */
+  public CompletionStage<Void> sendAsync(NetworkEnvelope envelope) {
+    try {
+      if (trySend(envelope) == Result.SENT) {
+        return SENT;
+      }
+      return enqueue(envelope);
+    } catch (IOException e) {
+      return CompletableFuture.failedStage(e);
+    }
+  }
+
+  /**
+   * Queues the envelope, waiting for window and for the connection. If interrupted while waiting
+   * for window, the envelope is still sent once there is window for it.
+   */
+  public void send(NetworkEnvelope envelope) throws IOException {
+    long addr = envelope.recipient();
+    if (acquire(addr)) {
+      boolean sent = false;
+      try {
+        connection.send(envelope);
+        sent = true;
+      } finally {
+        if (!sent) {
+          refund(addr);
+        }
+      }
+      return;
+    }
+
+    try {
+      enqueue(envelope).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for flow window");
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Applies {@code UpdateFlow} and {@code CloseFlow} from the peer, other frames are left to the
+   * caller.
+   *
+   * @return whether the frame is consumed
+   */
+  public boolean handle(Object frame) {
+    if (frame instanceof ProtocolMessages.UpdateFlow update) {
+      lock.lock();
+      try {
+        flows.addWindow(flows.slot(update.addr()), update.windowDelta());
+        windowed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      return true;
+    }
+    if (frame instanceof ProtocolMessages.CloseFlow close) {
+      lock.lock();
+      try {
+        // Sends still queued will start the flow over.
+        if (flows.queued(flows.slot(close.addr())) == 0) {
+          flows.remove(close.addr());
+        }
+      } finally {
+        lock.unlock();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /** Gets the connection envelopes are sent over. */
+  public Connection connection() {
+    return connection;
+  }
+
+  /** Gets the window left to the flow. */
+  public int window(long addr) {
+    lock.lock();
+    try {
+      return flows.window(flows.slot(addr));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Fails queued envelopes and further sends, the connection is left open. */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      windowed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Takes a unit of the flow's window if nothing is queued behind it. */
+  private boolean acquire(long addr) throws IOException {
+    lock.lock();
+    try {
+      ensureOpen();
+      int slot = flows.slot(addr);
+      if (flows.queued(slot) > 0 || flows.window(slot) <= 0) {
+        return false;
+      }
+      flows.addWindow(slot, -1);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void refund(long addr) {
+    lock.lock();
+    try {
+      flows.addWindow(flows.slot(addr), 1);
+      windowed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private CompletableFuture<Void> enqueue(NetworkEnvelope envelope) throws IOException {
+    long addr = envelope.recipient();
+    short groupNo = (short) (new Addr(addr).nodeNoGroupNo() & 0xFF);
+    var memory = budget.account(connection.socket().peer().nodeNo(), groupNo);
+    long bytes = envelope.isEncoded() ? envelope.encodedPayload().remaining() : 0;
+    memory.reserve(bytes);
+    var future = new CompletableFuture<Void>();
+    lock.lock();
+    try {
+      if (closed) {
+        memory.release(bytes);
+        throw new IOException("Flow sender is closed");
+      }
+      int slot = flows.slot(addr);
+      @Nullable FlowStallEvent stall = null;
+      if (flows.window(slot) <= 0) {
+        connection.socket().metrics().flowStalled();
+        var groupPair = connection.groupPair();
+        if (groupPair != null) {
+          groupPair.flowStalled();
+        }
+        stall = new FlowStallEvent();
+        stall.begin();
+      }
+      flows.addQueued(slot, 1);
+      var queue = pending.get(addr);
+      if (queue == null) {
+        queue = new ArrayDeque<>();
+        pending.put(addr, queue);
+        Thread.ofVirtual().name("elfo-flow").start(() -> drain(addr));
+      }
+      queue.add(new Pending(envelope, future, stall, memory, bytes));
+    } finally {
+      lock.unlock();
+    }
+    return future;
+  }
+
+  /**
+   * Sends envelopes queued behind the flow as window allows, until none are left. They are flushed
+   * before waiting for window and at the end, as nobody else may flush the connection meanwhile.
+   */
+  private void drain(long addr) {
+    boolean unflushed = false;
+    while (true) {
+      Pending next = null;
+      lock.lock();
+      try {
+        var queue = pending.get(addr);
+        if (closed || !unflushed || flows.window(flows.slot(addr)) > 0) {
+          while (!closed && flows.window(flows.slot(addr)) <= 0) {
+            windowed.awaitUninterruptibly();
+          }
+          if (closed) {
+            pending.remove(addr);
+            flows.addQueued(flows.slot(addr), -queue.size());
+            for (var left : queue) {
+              left.memory.release(left.bytes);
+              left.future.completeExceptionally(new IOException("Flow sender is closed"));
+            }
+            return;
+          }
+          next = queue.poll();
+          flows.addWindow(flows.slot(addr), -1);
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (next == null) {
+        // Out of window, so the peer must see what's sent so far.
+        flushQuietly();
+        unflushed = false;
+        continue;
+      }
+
+      commitStall(next.stall, addr);
+      Throwable failure = null;
+      try {
+        connection.send(next.envelope);
+        unflushed = true;
+      } catch (IOException | RuntimeException e) {
+        failure = e;
+      } finally {
+        // Held by the connection from now on, if anywhere.
+        next.memory.release(next.bytes);
+      }
+
+      boolean last;
+      lock.lock();
+      try {
+        int slot = flows.slot(addr);
+        flows.addQueued(slot, -1);
+        last = flows.queued(slot) == 0;
+        if (last) {
+          // Senders go straight to the connection again.
+          pending.remove(addr);
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (last) {
+        flushQuietly();
+      }
+      // Completed last, so that whoever waits for it may send right away.
+      if (failure == null) {
+        next.future.complete(null);
+      } else {
+        next.future.completeExceptionally(failure);
+      }
+      if (last) {
+        return;
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      connection.flush();
+    } catch (IOException e) {
+      // The connection is broken, which fails the next send.
+    }
+  }
+
+  private void commitStall(@Nullable FlowStallEvent stall, long addr) {
+    if (stall == null) {
+      return;
+    }
+    stall.end();
+    if (stall.shouldCommit()) {
+      stall.peerNodeNo = connection.socket().peer().nodeNo();
+      stall.addr = addr;
+      stall.commit();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Flow sender is closed");
+    }
+  }
+}
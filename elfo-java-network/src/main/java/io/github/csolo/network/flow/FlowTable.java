@@ -0,0 +1,116 @@
+package io.github.csolo.network.flow;
+
+/**
+ * Open-addressing map from a flow's address to its window and the number of sends queued behind
+ * it, so that looking a flow up neither boxes nor allocates. Flows are added on first use with the
+ * initial window. Not thread-safe, slots are valid until the next {@link #slot} or {@link #remove}.
+ * Used under the lock of a {@link FlowSender}, or by the single thread owning a connection.
+ */
+public final class FlowTable {
+  private final int initialWindow;
+  private long[] addrs;
+  private int[] windows;
+  private int[] queued;
+  private boolean[] used;
+  private int size;
+
+  public FlowTable(int initialWindow, int capacity) {
+    this.initialWindow = initialWindow;
+    allocate(Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1);
+  }
+
+  private void allocate(int capacity) {
+    addrs = new long[capacity];
+    windows = new int[capacity];
+    queued = new int[capacity];
+    used = new boolean[capacity];
+  }
+
+  /** Gets the slot of the flow, adding it if it's new. */
+  public int slot(long addr) {
+    int mask = addrs.length - 1;
+    int i = hash(addr) & mask;
+    while (used[i]) {
+      if (addrs[i] == addr) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    if ((size + 1) * 4 > addrs.length * 3) {
+      grow();
+      return slot(addr);
+    }
+    used[i] = true;
+    addrs[i] = addr;
+    windows[i] = initialWindow;
+    queued[i] = 0;
+    size++;
+    return i;
+  }
+
+  public int window(int slot) {
+    return windows[slot];
+  }
+
+  public void addWindow(int slot, int delta) {
+    windows[slot] += delta;
+  }
+
+  public int queued(int slot) {
+    return queued[slot];
+  }
+
+  public void addQueued(int slot, int delta) {
+    queued[slot] += delta;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Removes the flow, so that it starts over with the initial window. */
+  public void remove(long addr) {
+    int mask = addrs.length - 1;
+    int i = hash(addr) & mask;
+    while (used[i] && addrs[i] != addr) {
+      i = (i + 1) & mask;
+    }
+    if (!used[i]) {
+      return;
+    }
+    // Backward shift, so that no tombstones are needed.
+    int gap = i;
+    for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+      int home = hash(addrs[j]) & mask;
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        addrs[gap] = addrs[j];
+        windows[gap] = windows[j];
+        queued[gap] = queued[j];
+        gap = j;
+      }
+    }
+    used[gap] = false;
+    size--;
+  }
+
+  private void grow() {
+    var oldAddrs = addrs;
+    var oldWindows = windows;
+    var oldQueued = queued;
+    var oldUsed = used;
+    allocate(oldAddrs.length * 2);
+    size = 0;
+    for (int i = 0; i < oldAddrs.length; i++) {
+      if (oldUsed[i]) {
+        int slot = slot(oldAddrs[i]);
+        windows[slot] = oldWindows[i];
+        queued[slot] = oldQueued[i];
+      }
+    }
+  }
+
+  private static int hash(long addr) {
+    long h = addr * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
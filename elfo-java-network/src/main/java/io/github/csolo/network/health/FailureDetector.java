@@ -0,0 +1,107 @@
+package io.github.csolo.network.health;
+
+import java.time.Duration;
+
+/**
+ * Phi accrual failure detector, see Hayashibara et al., "The φ Accrual Failure Detector".
+ *
+ * <p>Rather than a fixed timeout, it learns how heartbeats are spaced and reports suspicion as
+ * {@code phi = -log10(P(a heartbeat comes later than now))}. So phi 1 means a 10% chance that a
+ * peer considered dead is in fact alive, phi 8 a chance of 10^-8. A jittery link gets more slack
+ * than a steady one, and a GC pause on either side raises phi a bit instead of tripping a timeout.
+ *
+ * <p>Intervals are kept in a window of the last {@link #WINDOW} samples and approximated by a
+ * normal distribution, as in Akka. The std deviation is bounded from below, so that a perfectly
+ * steady link doesn't make every small delay suspicious, and one expected interval of pause is
+ * accepted on top of the mean. Thread-safe.
+ */
+public final class FailureDetector {
+  /** Phi above which a peer is considered unavailable, unless configured otherwise. */
+  public static final double DEFAULT_THRESHOLD = 8.0;
+
+  static final int WINDOW = 200;
+
+  private final long minStdDeviation;
+  private final long acceptablePause;
+  private final long[] intervals = new long[WINDOW];
+  private int count;
+  private int next;
+  private double sum;
+  private double sumOfSquares;
+  private long last;
+
+  /**
+   * Creates a detector expecting heartbeats at the given interval, until it learns better.
+   *
+   * @param startNanos Time of the first heartbeat, e.g. when the peer got connected
+   */
+  public FailureDetector(Duration expectedInterval, long startNanos) {
+    long expected = expectedInterval.toNanos();
+    if (expected <= 0) {
+      throw new IllegalArgumentException("Expected interval must be positive: " + expectedInterval);
+    }
+    this.minStdDeviation = expected / 10;
+    this.acceptablePause = expected;
+    this.last = startNanos;
+    // Two samples around the expected interval, so that early heartbeats are not overweighted.
+    record(expected - expected / 4);
+    record(expected + expected / 4);
+  }
+
+  /** Records a heartbeat at the given time, earlier ones are ignored. */
+  public synchronized void heartbeat(long nanos) {
+    long interval = nanos - last;
+    if (interval <= 0) {
+      return;
+    }
+    last = nanos;
+    record(interval);
+  }
+
+  private void record(long interval) {
+    if (count == WINDOW) {
+      long evicted = intervals[next];
+      sum -= evicted;
+      sumOfSquares -= (double) evicted * evicted;
+    } else {
+      count++;
+    }
+    intervals[next] = interval;
+    next = (next + 1) % WINDOW;
+    sum += interval;
+    sumOfSquares += (double) interval * interval;
+  }
+
+  /** Gets the suspicion level at the given time, 0 right after a heartbeat. */
+  public synchronized double phi(long nanos) {
+    double mean = sum / count;
+    double variance = Math.max(sumOfSquares / count - mean * mean, 0);
+    double stdDeviation = Math.max(Math.sqrt(variance), minStdDeviation);
+    return phi(nanos - last, mean + acceptablePause, stdDeviation);
+  }
+
+  /** Gets the current suspicion level. */
+  public double phi() {
+    return phi(System.nanoTime());
+  }
+
+  /** Checks if the peer is not suspected at the given threshold. */
+  public boolean isAvailable(double threshold) {
+    return phi() < threshold;
+  }
+
+  /** Gets the time of the last heartbeat, as {@link System#nanoTime()}. */
+  public synchronized long lastHeartbeatNanos() {
+    return last;
+  }
+
+  /** Logistic approximation of the normal CDF, accurate enough for phi and free of erf(). */
+  static double phi(long elapsed, double mean, double stdDeviation) {
+    double y = (elapsed - mean) / stdDeviation;
+    double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+    if (elapsed > mean) {
+      return -Math.log10(e / (1.0 + e));
+    }
+    return -Math.log10(1.0 - 1.0 / (1.0 + e));
+  }
+}
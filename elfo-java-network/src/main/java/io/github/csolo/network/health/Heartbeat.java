@@ -0,0 +1,80 @@
+package io.github.csolo.network.health;
+
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Feeds a {@link FailureDetector} from a connection, pinging the peer only while it's quiet.
+ *
+ * <p>Any inbound traffic proves the peer alive, not only {@code Pong}s. {@link #tick()} is called
+ * every ping interval. If anything was received since the last tick, the time of the latest
+ * arrival is taken as a heartbeat. A {@code Ping} is sent only if nothing arrived for half an
+ * interval, and its {@code Pong} is seen by the next tick. So busy links carry no pings, and the
+ * detector gets one sample per interval whatever the traffic.
+ *
+ * <p>The arrivals can be taken from elsewhere, e.g. from every connection to the peer, so that
+ * traffic on any of them spares the pings on this one.
+ */
+public final class Heartbeat {
+  private final Connection connection;
+  private final LongSupplier lastReceived;
+  private final FailureDetector detector;
+  private final long quietNanos;
+  private long lastSeen;
+  private volatile long pings;
+
+  public Heartbeat(Connection connection, Duration interval) {
+    this(connection, connection::lastReceivedNanos, interval);
+  }
+
+  /**
+   * @param connection to ping the peer over
+   * @param lastReceived gets the {@link System#nanoTime()} of the latest arrival from the peer
+   */
+  public Heartbeat(Connection connection, LongSupplier lastReceived, Duration interval) {
+    this.connection = connection;
+    this.lastReceived = lastReceived;
+    this.lastSeen = lastReceived.getAsLong();
+    this.detector = new FailureDetector(interval, lastSeen);
+    this.quietNanos = interval.toNanos() / 2;
+  }
+
+  /**
+   * Takes a heartbeat or pings the peer, called by one thread every ping interval.
+   *
+   * @return whether a ping was sent
+   */
+  public boolean tick() throws IOException {
+    long received = lastReceived.getAsLong();
+    if (received != lastSeen) {
+      lastSeen = received;
+      detector.heartbeat(received);
+    }
+    long now = System.nanoTime();
+    if (now - received < quietNanos) {
+      // Data is flowing.
+      return false;
+    }
+    connection.send(new ProtocolMessages.Ping(now));
+    connection.flush();
+    pings++;
+    return true;
+  }
+
+  /** Gets the current suspicion level of the peer, see {@link FailureDetector}. */
+  public double phi() {
+    return detector.phi();
+  }
+
+  public FailureDetector detector() {
+    return detector;
+  }
+
+  /** Gets the number of pings sent, i.e. ticks after a quiet half of the interval. */
+  public long pings() {
+    return pings;
+  }
+}
@@ -0,0 +1,34 @@
+package io.github.csolo.network.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** Compressing or decompressing a block. Recorded only if it takes noticeable time. */
+@Name("io.github.csolo.network.Compression")
+@Label("Compression")
+@Category({"elfo", "Network"})
+@Description("Compressing or decompressing a block of frames")
+@Threshold("1 ms")
+@StackTrace(false)
+public class CompressionEvent extends Event {
+
+  @Label("Peer Node No")
+  public short peerNodeNo;
+
+  @Label("Decompression")
+  public boolean decompression;
+
+  @Label("Uncompressed Size")
+  @DataAmount
+  public long uncompressedBytes;
+
+  @Label("Compressed Size")
+  @DataAmount
+  public long compressedBytes;
+}
@@ -0,0 +1,23 @@
+package io.github.csolo.network.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Establishing a raw connection to a remote node, without the handshake. */
+@Name("io.github.csolo.network.Connect")
+@Label("Connect")
+@Category({"elfo", "Network"})
+@Description("Establishing a raw transport connection")
+@StackTrace(false)
+public class ConnectEvent extends Event {
+
+  @Label("Transport")
+  public String transport;
+
+  @Label("Succeeded")
+  public boolean succeeded;
+}
@@ -0,0 +1,23 @@
+package io.github.csolo.network.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** Waiting for flow window to send a message. Recorded only for long stalls. */
+@Name("io.github.csolo.network.FlowStall")
+@Label("Flow Stall")
+@Category({"elfo", "Network"})
+@Description("Waiting for a remote flow to grant more window")
+@Threshold("10 ms")
+public class FlowStallEvent extends Event {
+
+  @Label("Peer Node No")
+  public short peerNodeNo;
+
+  @Label("Flow Address")
+  public long addr;
+}
@@ -0,0 +1,30 @@
+package io.github.csolo.network.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** Writing a batch of coalesced frames to the socket. Recorded only if the write is slow. */
+@Name("io.github.csolo.network.Flush")
+@Label("Flush")
+@Category({"elfo", "Network"})
+@Description("Writing a batch of coalesced frames")
+@Threshold("1 ms")
+@StackTrace(false)
+public class FlushEvent extends Event {
+
+  @Label("Peer Node No")
+  public short peerNodeNo;
+
+  @Label("Frames")
+  public int frames;
+
+  @Label("Bytes")
+  @DataAmount
+  public long bytes;
+}
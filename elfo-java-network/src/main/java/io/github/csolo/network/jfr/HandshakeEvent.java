@@ -0,0 +1,29 @@
+package io.github.csolo.network.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Exchanging handshakes over an established raw connection. */
+@Name("io.github.csolo.network.Handshake")
+@Label("Handshake")
+@Category({"elfo", "Network"})
+@Description("Exchanging handshakes with a remote node")
+@StackTrace(false)
+public class HandshakeEvent extends Event {
+
+  @Label("Transport")
+  public String transport;
+
+  @Label("Peer Node No")
+  public short peerNodeNo;
+
+  @Label("Peer Launch Id")
+  public long peerLaunchId;
+
+  @Label("Peer Capabilities")
+  public int peerCapabilities;
+}
@@ -0,0 +1,28 @@
+package io.github.csolo.network.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/** Handling received messages, a single one or a batch. Recorded only for slow handlers. */
+@Name("io.github.csolo.network.SlowHandler")
+@Label("Slow Handler")
+@Category({"elfo", "Actors"})
+@Description("Actor handler that took longer than the threshold")
+@Threshold("20 ms")
+public class SlowHandlerEvent extends Event {
+
+  @Label("Actor Address")
+  @Description("Recipient of the first message")
+  public long addr;
+
+  @Label("Message")
+  @Description("Name of the first message")
+  public String message;
+
+  @Label("Messages")
+  public int messages;
+}
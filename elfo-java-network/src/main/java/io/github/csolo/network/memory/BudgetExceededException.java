@@ -0,0 +1,12 @@
+package io.github.csolo.network.memory;
+
+import java.io.IOException;
+
+/** Thrown when a reservation doesn't fit into the {@link MemoryBudget}. */
+public class BudgetExceededException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  public BudgetExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,197 @@
+package io.github.csolo.network.memory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide budget of memory held by the transport: connection buffers, buffer pools, reassembly
+ * buffers and queued outbound messages.
+ *
+ * <p>Memory is reserved through {@link Account}s, one per peer node and group, so that usage can be
+ * told apart. Buffers a connection cannot work without are {@linkplain Account#force forced} in
+ * even over the limit, anything that can wait or fail is {@linkplain Account#tryReserve reserved}
+ * only if it fits. Above the high watermark, the {@link #pressure()} is {@link Pressure#HIGH} and
+ * inbound flow windows are granted in smaller steps, so that peers slow down before anything has
+ * to be rejected.
+ *
+ * <p>Callers are expected to resolve an {@link Account} once, e.g. per connection, and keep the
+ * reference, so the map lookup stays out of the hot path. The process-wide budget is unlimited
+ * until {@link #limit(long)} is set.
+ */
+public final class MemoryBudget {
+  /** Part of the limit above which the pressure is high, unless configured otherwise. */
+  public static final double DEFAULT_HIGH_WATERMARK = 0.75;
+  /** Node number of accounts not tied to a peer, e.g. shared buffer pools. */
+  public static final short NO_NODE = -1;
+  /** Group number of accounts not tied to a group, e.g. connection buffers. */
+  public static final short NO_GROUP = -1;
+
+  private static final MemoryBudget GLOBAL = new MemoryBudget(Long.MAX_VALUE);
+
+  /** How close the budget is to its limit. */
+  public enum Pressure {
+    /** Below the high watermark. */
+    NORMAL,
+    /** Above the high watermark, inbound windows shrink. */
+    HIGH,
+    /** At the limit, reservations are rejected. */
+    FULL
+  }
+
+  /**
+   * Memory reserved by an account.
+   *
+   * @param nodeNo Peer node, {@link #NO_NODE} for memory not tied to a peer.
+   * @param groupNo Group, {@link #NO_GROUP} for memory not tied to a group.
+   * @param reservedBytes Bytes reserved.
+   */
+  public record Usage(short nodeNo, short groupNo, long reservedBytes) {}
+
+  private record Key(short nodeNo, short groupNo) {}
+
+  private final AtomicLong reserved = new AtomicLong();
+  private final LongAdder rejections = new LongAdder();
+  private final ConcurrentMap<Key, Account> accounts = new ConcurrentHashMap<>();
+  private volatile long limit;
+  private volatile long highWatermark;
+
+  /**
+   * Creates a budget.
+   *
+   * @param limit Max number of bytes, {@link Long#MAX_VALUE} for no limit
+   */
+  public MemoryBudget(long limit) {
+    limit(limit);
+  }
+
+  /** Gets the process-wide budget. */
+  public static MemoryBudget global() {
+    return GLOBAL;
+  }
+
+  /** Sets the limit, memory reserved above it stays until released. */
+  public void limit(long limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Memory limit must be positive: " + limit);
+    }
+    this.limit = limit;
+    this.highWatermark = (long) (limit * DEFAULT_HIGH_WATERMARK);
+  }
+
+  public long limit() {
+    return limit;
+  }
+
+  /** Gets the number of bytes reserved by all accounts. */
+  public long reserved() {
+    return reserved.get();
+  }
+
+  /** Gets the number of rejected reservations so far. */
+  public long rejections() {
+    return rejections.sum();
+  }
+
+  public Pressure pressure() {
+    long current = reserved.get();
+    if (current >= limit) {
+      return Pressure.FULL;
+    }
+    return current > highWatermark ? Pressure.HIGH : Pressure.NORMAL;
+  }
+
+  /** Gets or creates the account of the peer node and group. */
+  public Account account(short nodeNo, short groupNo) {
+    return accounts.computeIfAbsent(new Key(nodeNo, groupNo), Account::new);
+  }
+
+  /** Gets memory reserved per peer and group, accounts holding nothing are skipped. */
+  public List<Usage> usage() {
+    var usage = new ArrayList<Usage>();
+    for (var account : accounts.values()) {
+      long bytes = account.reserved();
+      if (bytes != 0) {
+        usage.add(new Usage(account.key.nodeNo(), account.key.groupNo(), bytes));
+      }
+    }
+    usage.sort(Comparator.comparing(Usage::nodeNo).thenComparing(Usage::groupNo));
+    return usage;
+  }
+
+  /** Gets memory reserved for the peer node over all its groups. */
+  public long reserved(short nodeNo) {
+    long bytes = 0;
+    for (var account : accounts.values()) {
+      if (account.key.nodeNo() == nodeNo) {
+        bytes += account.reserved();
+      }
+    }
+    return bytes;
+  }
+
+  /** Reservations of a peer node and group. Thread-safe. */
+  public final class Account {
+    private final Key key;
+    private final AtomicLong reserved = new AtomicLong();
+
+    private Account(Key key) {
+      this.key = key;
+    }
+
+    /** Reserves the bytes if they fit into the budget. */
+    public boolean tryReserve(long bytes) {
+      var total = MemoryBudget.this.reserved;
+      while (true) {
+        long current = total.get();
+        if (current + bytes > limit) {
+          rejections.increment();
+          return false;
+        }
+        if (total.compareAndSet(current, current + bytes)) {
+          reserved.addAndGet(bytes);
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Reserves the bytes.
+     *
+     * @throws BudgetExceededException if they don't fit into the budget
+     */
+    public void reserve(long bytes) throws BudgetExceededException {
+      if (!tryReserve(bytes)) {
+        throw new BudgetExceededException(
+            String.format(
+                "Cannot reserve %d bytes for node %d group %d, %d of %d bytes are in use",
+                bytes, key.nodeNo(), key.groupNo(), MemoryBudget.this.reserved.get(), limit));
+      }
+    }
+
+    /** Reserves the bytes even over the limit, for memory that cannot be done without. */
+    public void force(long bytes) {
+      MemoryBudget.this.reserved.addAndGet(bytes);
+      reserved.addAndGet(bytes);
+    }
+
+    /** Releases bytes reserved before. */
+    public void release(long bytes) {
+      MemoryBudget.this.reserved.addAndGet(-bytes);
+      reserved.addAndGet(-bytes);
+    }
+
+    public long reserved() {
+      return reserved.get();
+    }
+
+    /** Gets the pressure of the whole budget. */
+    public Pressure pressure() {
+      return MemoryBudget.this.pressure();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package io.github.csolo.network.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Transport metrics of traffic between a local group and a remote group. */
+public class GroupPairMetrics {
+  private final GroupPair pair;
+
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder framesRead = new LongAdder();
+  private final LongAdder framesWritten = new LongAdder();
+  private final LongAdder flowStalls = new LongAdder();
+
+  GroupPairMetrics(GroupPair pair) {
+    this.pair = pair;
+  }
+
+  public GroupPair pair() {
+    return pair;
+  }
+
+  /** Records a single inbound frame of the given size. */
+  public void frameRead(long bytes) {
+    framesRead.increment();
+    bytesRead.add(bytes);
+  }
+
+  /** Records a single outbound frame of the given size. */
+  public void frameWritten(long bytes) {
+    framesWritten.increment();
+    bytesWritten.add(bytes);
+  }
+
+  /** Records that a sender had to wait for flow window. */
+  public void flowStalled() {
+    flowStalls.increment();
+  }
+
+  /** Takes a point-in-time snapshot. */
+  public MetricsSnapshot.GroupPair snapshot() {
+    return new MetricsSnapshot.GroupPair(
+        pair.localGroupNo(),
+        pair.remoteNodeNo(),
+        pair.remoteGroupNo(),
+        bytesRead.sum(),
+        bytesWritten.sum(),
+        framesRead.sum(),
+        framesWritten.sum(),
+        flowStalls.sum());
+  }
+
+  /**
+   * Key of a group pair, groups are identified the same way as in {@code SwitchToData}.
+   *
+   * @param localGroupNo Local group's number.
+   * @param remoteNodeNo Remote node's number.
+   * @param remoteGroupNo Remote group's number.
+   */
+  public record GroupPair(short localGroupNo, short remoteNodeNo, short remoteGroupNo) {}
+}
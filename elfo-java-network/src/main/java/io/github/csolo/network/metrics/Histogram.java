@@ -0,0 +1,106 @@
+package io.github.csolo.network.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// spotless:off
+/**
+ * Lock-free log-linear histogram of non-negative long values.
+ *
+ * Bucket layout:
+ * - values below 16 have their own exact bucket
+ * - every power of two above is split into 16 linear sub-buckets (~6% relative error)
+ *
+ * Recording is a single atomic increment plus two striped updates, so it is cheap enough
+ * to stay enabled on hot paths. Negative values are clamped to zero.
+ */
+// spotless:on
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /** Records a single value. */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.getAndIncrement(bucketIndex(value));
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /** Takes a point-in-time snapshot. Concurrent records may be partially visible. */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      count += counts[i];
+    }
+    return new Snapshot(counts, count, sum.sum(), max.get());
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the highest value that falls into the bucket. */
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    long lower = (SUB_BUCKETS + subBucket) * width;
+    return lower + width - 1;
+  }
+
+  /**
+   * Histogram snapshot.
+   *
+   * @param count Number of recorded values.
+   * @param sum Sum of recorded values.
+   * @param max Maximum recorded value.
+   */
+  public record Snapshot(long[] counts, long count, long sum, long max) {
+
+    /** Empty snapshot, used when nothing was recorded yet. */
+    public static final Snapshot EMPTY = new Snapshot(new long[BUCKETS], 0, 0, 0);
+
+    /**
+     * Returns the value at the given quantile (0.0 - 1.0). The result is the upper bound of the
+     * matching bucket, capped by the observed maximum.
+     */
+    public long quantile(double quantile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(bucketUpperBound(i), max);
+        }
+      }
+      return max;
+    }
+
+    /** Returns the arithmetic mean of recorded values. */
+    public double mean() {
+      return count == 0 ? 0.0 : (double) sum / count;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.github.csolo.network.metrics;
+
+import java.util.List;
+
+/**
+ * Point-in-time view of all transport metrics, returned by {@link TransportMetrics#snapshot()}.
+ *
+ * @param peers Metrics per peer node.
+ * @param groupPairs Metrics per (local group, remote group) pair.
+ */
+public record MetricsSnapshot(List<Peer> peers, List<GroupPair> groupPairs) {
+
+  /** Metrics of a single peer node. */
+  public record Peer(
+      short nodeNo,
+      long launchId,
+      long bytesRead,
+      long bytesWritten,
+      long framesRead,
+      long framesWritten,
+      long uncompressedBytes,
+      long compressedBytes,
+      long compressionNanos,
+      long decompressionNanos,
+      long flowStalls,
+      long reconnects,
+      Histogram.Snapshot flushSizes,
+      Histogram.Snapshot handshakeNanos) {
+
+    /** Returns uncompressed to compressed size ratio, 1.0 if nothing was compressed. */
+    public double compressionRatio() {
+      return compressedBytes == 0 ? 1.0 : (double) uncompressedBytes / compressedBytes;
+    }
+  }
+
+  /** Metrics of a single group pair. */
+  public record GroupPair(
+      short localGroupNo,
+      short remoteNodeNo,
+      short remoteGroupNo,
+      long bytesRead,
+      long bytesWritten,
+      long framesRead,
+      long framesWritten,
+      long flowStalls) {}
+}
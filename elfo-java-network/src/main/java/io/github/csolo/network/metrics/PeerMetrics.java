@@ -0,0 +1,109 @@
+package io.github.csolo.network.metrics;
+
+import io.github.csolo.network.socket.Socket;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport metrics of a single peer node, shared by all connections to it.
+ *
+ * <p>All recording methods are wait-free on the fast path and safe to call from any thread.
+ */
+public class PeerMetrics {
+  private final Socket.Peer peer;
+
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder framesRead = new LongAdder();
+  private final LongAdder framesWritten = new LongAdder();
+  private final LongAdder uncompressedBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+  private final LongAdder compressionNanos = new LongAdder();
+  private final LongAdder decompressionNanos = new LongAdder();
+  private final LongAdder flowStalls = new LongAdder();
+  private final LongAdder reconnects = new LongAdder();
+  private final Histogram flushSizes = new Histogram();
+  private final Histogram handshakeNanos = new Histogram();
+
+  PeerMetrics(Socket.Peer peer) {
+    this.peer = peer;
+  }
+
+  public Socket.Peer peer() {
+    return peer;
+  }
+
+  /** Records bytes read from the wire. */
+  public void bytesRead(long bytes) {
+    bytesRead.add(bytes);
+  }
+
+  /** Records bytes written to the wire. */
+  public void bytesWritten(long bytes) {
+    bytesWritten.add(bytes);
+  }
+
+  /** Records decoded inbound frames. */
+  public void framesRead(long frames) {
+    framesRead.add(frames);
+  }
+
+  /** Records encoded outbound frames. */
+  public void framesWritten(long frames) {
+    framesWritten.add(frames);
+  }
+
+  /** Records a single compression pass, sizes are in bytes. */
+  public void compressed(long uncompressed, long compressed) {
+    uncompressedBytes.add(uncompressed);
+    compressedBytes.add(compressed);
+  }
+
+  /** Records CPU time spent compressing, including attempts that didn't pay off. */
+  public void compressionTime(long nanos) {
+    compressionNanos.add(nanos);
+  }
+
+  /** Records CPU time spent decompressing. */
+  public void decompressionTime(long nanos) {
+    decompressionNanos.add(nanos);
+  }
+
+  /** Records the size of a single flush of coalesced frames. */
+  public void flushed(long bytes) {
+    flushSizes.record(bytes);
+  }
+
+  /** Records that a sender had to wait for flow window. */
+  public void flowStalled() {
+    flowStalls.increment();
+  }
+
+  /** Records a completed handshake. */
+  public void handshakeCompleted(long nanos) {
+    handshakeNanos.record(nanos);
+  }
+
+  /** Records that the control connection to the peer launch was established again after a loss. */
+  public void reconnected() {
+    reconnects.increment();
+  }
+
+  /** Takes a point-in-time snapshot. */
+  public MetricsSnapshot.Peer snapshot() {
+    return new MetricsSnapshot.Peer(
+        peer.nodeNo(),
+        peer.launchId(),
+        bytesRead.sum(),
+        bytesWritten.sum(),
+        framesRead.sum(),
+        framesWritten.sum(),
+        uncompressedBytes.sum(),
+        compressedBytes.sum(),
+        compressionNanos.sum(),
+        decompressionNanos.sum(),
+        flowStalls.sum(),
+        reconnects.sum(),
+        flushSizes.snapshot(),
+        handshakeNanos.snapshot());
+  }
+}
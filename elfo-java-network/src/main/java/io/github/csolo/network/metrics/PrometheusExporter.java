@@ -0,0 +1,205 @@
+package io.github.csolo.network.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes {@link TransportMetrics} in the Prometheus text format.
+ *
+ * <p>The endpoint is bound to the loopback interface only, it's intended to be scraped by a local
+ * agent. Formatting happens on scrape, so recording is not affected.
+ */
+public class PrometheusExporter implements AutoCloseable {
+  private static final String PREFIX = "elfo_network_";
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final HttpServer server;
+
+  private PrometheusExporter(HttpServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Starts an HTTP endpoint serving {@code /metrics} on the loopback interface.
+   *
+   * @param port Port to listen on, 0 to pick an ephemeral one.
+   * @param metrics Registry to expose.
+   */
+  public static PrometheusExporter start(int port, TransportMetrics metrics) throws IOException {
+    var address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    var server = HttpServer.create(address, 0);
+    server.createContext(
+        "/metrics",
+        exchange -> {
+          try (exchange) {
+            byte[] body = format(metrics.snapshot()).getBytes(StandardCharsets.UTF_8);
+            exchange
+                .getResponseHeaders()
+                .set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+          }
+        });
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.start();
+    return new PrometheusExporter(server);
+  }
+
+  /** Gets the actual port the endpoint is bound to. */
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  /** Renders the snapshot in the Prometheus text exposition format. */
+  public static String format(MetricsSnapshot snapshot) {
+    var out = new StringBuilder();
+
+    var peers = snapshot.peers();
+    Function<MetricsSnapshot.Peer, String> peerLabels =
+        p -> "node_no=\"" + p.nodeNo() + "\",launch_id=\"" + p.launchId() + "\"";
+
+    counter(out, "bytes_read_total", peers, peerLabels, MetricsSnapshot.Peer::bytesRead);
+    counter(out, "bytes_written_total", peers, peerLabels, MetricsSnapshot.Peer::bytesWritten);
+    counter(out, "frames_read_total", peers, peerLabels, MetricsSnapshot.Peer::framesRead);
+    counter(out, "frames_written_total", peers, peerLabels, MetricsSnapshot.Peer::framesWritten);
+    counter(
+        out,
+        "uncompressed_bytes_total",
+        peers,
+        peerLabels,
+        MetricsSnapshot.Peer::uncompressedBytes);
+    counter(
+        out, "compressed_bytes_total", peers, peerLabels, MetricsSnapshot.Peer::compressedBytes);
+    counter(out, "flow_stalls_total", peers, peerLabels, MetricsSnapshot.Peer::flowStalls);
+    counter(out, "reconnects_total", peers, peerLabels, MetricsSnapshot.Peer::reconnects);
+
+    type(out, "compression_seconds_total", "counter");
+    for (var peer : peers) {
+      sample(
+          out,
+          "compression_seconds_total",
+          peerLabels.apply(peer),
+          peer.compressionNanos() / NANOS_PER_SECOND);
+    }
+
+    type(out, "decompression_seconds_total", "counter");
+    for (var peer : peers) {
+      sample(
+          out,
+          "decompression_seconds_total",
+          peerLabels.apply(peer),
+          peer.decompressionNanos() / NANOS_PER_SECOND);
+    }
+
+    type(out, "compression_ratio", "gauge");
+    for (var peer : peers) {
+      sample(out, "compression_ratio", peerLabels.apply(peer), peer.compressionRatio());
+    }
+
+    type(out, "flush_size_bytes", "summary");
+    for (var peer : peers) {
+      summary(out, "flush_size_bytes", peerLabels.apply(peer), peer.flushSizes(), 1.0);
+    }
+
+    type(out, "handshake_duration_seconds", "summary");
+    for (var peer : peers) {
+      summary(
+          out,
+          "handshake_duration_seconds",
+          peerLabels.apply(peer),
+          peer.handshakeNanos(),
+          NANOS_PER_SECOND);
+    }
+
+    var pairs = snapshot.groupPairs();
+    Function<MetricsSnapshot.GroupPair, String> pairLabels =
+        p ->
+            "local_group_no=\""
+                + p.localGroupNo()
+                + "\",remote_node_no=\""
+                + p.remoteNodeNo()
+                + "\",remote_group_no=\""
+                + p.remoteGroupNo()
+                + "\"";
+
+    counter(
+        out, "group_bytes_read_total", pairs, pairLabels, MetricsSnapshot.GroupPair::bytesRead);
+    counter(
+        out,
+        "group_bytes_written_total",
+        pairs,
+        pairLabels,
+        MetricsSnapshot.GroupPair::bytesWritten);
+    counter(
+        out, "group_frames_read_total", pairs, pairLabels, MetricsSnapshot.GroupPair::framesRead);
+    counter(
+        out,
+        "group_frames_written_total",
+        pairs,
+        pairLabels,
+        MetricsSnapshot.GroupPair::framesWritten);
+    counter(
+        out, "group_flow_stalls_total", pairs, pairLabels, MetricsSnapshot.GroupPair::flowStalls);
+
+    return out.toString();
+  }
+
+  private static <T> void counter(
+      StringBuilder out,
+      String name,
+      Iterable<T> items,
+      Function<T, String> labels,
+      ToLongFunction<T> value) {
+    type(out, name, "counter");
+    for (T item : items) {
+      out.append(PREFIX)
+          .append(name)
+          .append('{')
+          .append(labels.apply(item))
+          .append("} ")
+          .append(value.applyAsLong(item))
+          .append('\n');
+    }
+  }
+
+  private static void summary(
+      StringBuilder out, String name, String labels, Histogram.Snapshot hist, double scale) {
+    for (double q : QUANTILES) {
+      sample(out, name, labels + ",quantile=\"" + q + "\"", hist.quantile(q) / scale);
+    }
+    sample(out, name + "_sum", labels, hist.sum() / scale);
+    out.append(PREFIX)
+        .append(name)
+        .append("_count{")
+        .append(labels)
+        .append("} ")
+        .append(hist.count())
+        .append('\n');
+  }
+
+  private static void type(StringBuilder out, String name, String type) {
+    out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, double value) {
+    out.append(PREFIX)
+        .append(name)
+        .append('{')
+        .append(labels)
+        .append("} ")
+        .append(value)
+        .append('\n');
+  }
+}
@@ -0,0 +1,63 @@
+package io.github.csolo.network.metrics;
+
+import io.github.csolo.network.socket.Socket;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of transport metrics per peer and per group pair.
+ *
+ * <p>Callers are expected to resolve {@link PeerMetrics} or {@link GroupPairMetrics} once per
+ * connection and keep the reference, so the map lookup stays out of the hot path.
+ */
+public class TransportMetrics {
+
+  private static final TransportMetrics GLOBAL = new TransportMetrics();
+
+  private final ConcurrentMap<Socket.Peer, PeerMetrics> peers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<GroupPairMetrics.GroupPair, GroupPairMetrics> groupPairs =
+      new ConcurrentHashMap<>();
+
+  /** Gets the process-wide registry. */
+  public static TransportMetrics global() {
+    return GLOBAL;
+  }
+
+  /** Gets or creates metrics of the peer. */
+  public PeerMetrics peer(Socket.Peer peer) {
+    return peers.computeIfAbsent(peer, PeerMetrics::new);
+  }
+
+  /** Gets or creates metrics of the group pair. */
+  public GroupPairMetrics groupPair(short localGroupNo, short remoteNodeNo, short remoteGroupNo) {
+    return groupPairs.computeIfAbsent(
+        new GroupPairMetrics.GroupPair(localGroupNo, remoteNodeNo, remoteGroupNo),
+        GroupPairMetrics::new);
+  }
+
+  /** Drops metrics of the peer, e.g. when its launch is known to be gone. */
+  public void remove(Socket.Peer peer) {
+    peers.remove(peer);
+  }
+
+  /** Takes a point-in-time snapshot of all metrics. */
+  public MetricsSnapshot snapshot() {
+    var peerSnapshots =
+        peers.values().stream()
+            .map(PeerMetrics::snapshot)
+            .sorted(
+                Comparator.comparingInt(MetricsSnapshot.Peer::nodeNo)
+                    .thenComparingLong(MetricsSnapshot.Peer::launchId))
+            .toList();
+    var pairSnapshots =
+        groupPairs.values().stream()
+            .map(GroupPairMetrics::snapshot)
+            .sorted(
+                Comparator.comparingInt(MetricsSnapshot.GroupPair::localGroupNo)
+                    .thenComparingInt(MetricsSnapshot.GroupPair::remoteNodeNo)
+                    .thenComparingInt(MetricsSnapshot.GroupPair::remoteGroupNo))
+            .toList();
+    return new MetricsSnapshot(peerSnapshots, pairSnapshots);
+  }
+}
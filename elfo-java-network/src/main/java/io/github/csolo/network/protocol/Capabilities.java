@@ -0,0 +1,25 @@
+package io.github.csolo.network.protocol;
+
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+
+/**
+ * Bits of the capabilities mask announced in {@link Handshake}. A connection uses only the
+ * capabilities announced by both sides.
+ */
+public final class Capabilities {
+  /** Frames can be compressed with LZ4. */
+  public static final int LZ4 = 0x01;
+
+  private Capabilities() {}
+
+  /** Gets the capabilities this node announces for the compression config. */
+  public static int of(CompressionConfig compression) {
+    return compression.algorithm() == CompressionAlgorithm.LZ4 ? LZ4 : 0;
+  }
+
+  /** Checks if the mask contains the capability. */
+  public static boolean contains(int capabilities, int capability) {
+    return (capabilities & capability) == capability;
+  }
+}
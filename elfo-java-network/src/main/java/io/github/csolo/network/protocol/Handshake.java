@@ -102,6 +102,14 @@ public class Handshake {
     return new Handshake(version, nodeNo, launchId, capabilities);
   }
 
+  /**
+   * Makes the handshake of the peer compatible with this node: keeps only capabilities supported by
+   * both sides.
+   */
+  public Handshake makeCompatible(int capabilities) {
+    return new Handshake(version, nodeNo, launchId, this.capabilities & capabilities);
+  }
+
   public byte getVersion() {
     return version;
   }
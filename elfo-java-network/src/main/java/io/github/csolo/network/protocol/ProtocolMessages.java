@@ -66,4 +66,15 @@ public class ProtocolMessages {
 
   /** Pong message - response to ping. */
   public record Pong(long payload) {}
+
+  /**
+   * Checks if the frame is a control message. Connections send them ahead of queued data, so that
+   * pings don't time out falsely and window updates don't stall flows behind megabytes of data.
+   */
+  public static boolean isControl(Object frame) {
+    return frame instanceof Ping
+        || frame instanceof Pong
+        || frame instanceof UpdateFlow
+        || frame instanceof CloseFlow;
+  }
 }
@@ -0,0 +1,576 @@
+package io.github.csolo.network.shard;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.flow.FlowTable;
+import io.github.csolo.network.jfr.SlowHandlerEvent;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-per-core ownership of data connections, an alternative to serving them from virtual
+ * threads.
+ *
+ * <p>By default any thread may send over a connection, so its buffers and flow state move between
+ * carriers and senders contend on its locks. Here every attached connection is pinned to one of N
+ * shard threads, which alone sends and flushes it, keeps its {@link FlowTable} and the envelopes
+ * waiting for window, and runs the handler for envelopes received over it. Envelopes sent by a
+ * shard to a connection of another one are handed over through {@link SpscQueue}s, one per pair of
+ * shards, so shards never wait for each other. Other threads hand envelopes over through one more
+ * queue per shard, whose producers take turns.
+ *
+ * <p>Channels are blocking, so each connection still has a reader of its own, which only decodes
+ * frames and hands them over to the shard by a queue too. A shard with nothing to do spins for a
+ * while, then parks until a producer wakes it up.
+ *
+ * <p>Envelopes are routed by the node number of the recipient's address, to the connection
+ * attached last for that node. Envelopes to a node without one are dropped by shards, and fail
+ * {@link #send} called elsewhere.
+ *
+ * <pre>{@code
+ * try (var shards = new ShardGroup(Runtime.getRuntime().availableProcessors(), this::handle)) {
+ *   var link = discovery.openData(peerNodeNo, myGroupNo, yourGroupNo, initialWindow);
+ *   shards.attach(link.connection(), link.reply().initialWindow());
+ *   shards.send(envelope);
+ * }
+ * }</pre>
+ */
+public final class ShardGroup implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(ShardGroup.class);
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  // Items taken from a queue at once, so that a busy queue doesn't starve the others.
+  static final int BATCH = 64;
+  // Rounds without work before parking, no point in spinning on a single core.
+  private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1024 : 0;
+  // Handed over by a reader once its connection is over.
+  private static final Object CLOSED = new Object();
+
+  /** Handles envelopes received over attached connections. */
+  @FunctionalInterface
+  public interface Handler {
+    /** Handles an envelope, called on the shard owning the link. */
+    void handle(Link link, NetworkEnvelope envelope) throws IOException;
+  }
+
+  /** Connection pinned to a shard, along with the state only that shard touches. */
+  public static final class Link {
+    private final Connection connection;
+    private final short peerNodeNo;
+    private final Shard owner;
+    private final SpscQueue<Object> frames;
+
+    // Owned by the shard.
+    private final FlowTable flows;
+    private final Map<Long, ArrayDeque<NetworkEnvelope>> blocked = new HashMap<>();
+    private boolean dirty;
+    private boolean closed;
+
+    private Link(Connection connection, Shard owner, int initialWindow, int queueCapacity) {
+      this.connection = connection;
+      this.peerNodeNo = connection.socket().peer().nodeNo();
+      this.owner = owner;
+      this.frames = new SpscQueue<>(queueCapacity);
+      this.flows = new FlowTable(initialWindow, 64);
+    }
+
+    public Connection connection() {
+      return connection;
+    }
+
+    public short peerNodeNo() {
+      return peerNodeNo;
+    }
+
+    /** Gets the index of the owning shard. */
+    public int shard() {
+      return owner.index;
+    }
+  }
+
+  private final Handler handler;
+  private final int queueCapacity;
+  private final Shard[] shards;
+  // By node number, for routing.
+  private final AtomicReferenceArray<Link> links = new AtomicReferenceArray<>(1 << 16);
+  private final Set<Link> attached = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+
+  public ShardGroup(int shardCount, Handler handler) {
+    this(shardCount, DEFAULT_QUEUE_CAPACITY, handler);
+  }
+
+  /**
+   * Starts shard threads.
+   *
+   * @param queueCapacity Capacity of every queue between shards and of every connection's queue
+   */
+  public ShardGroup(int shardCount, int queueCapacity, Handler handler) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+    }
+    this.handler = handler;
+    this.queueCapacity = queueCapacity;
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i);
+    }
+    for (var shard : shards) {
+      shard.start();
+    }
+  }
+
+  /**
+   * Pins the connection to the shard owning the fewest, the group owns the connection from now on.
+   *
+   * @param initialWindow Window of every flow, as replied by the peer in {@code SwitchToData}
+   */
+  public Link attach(Connection connection, int initialWindow) throws IOException {
+    ensureOpen();
+    var owner = shards[0];
+    for (var shard : shards) {
+      if (shard.load.get() < owner.load.get()) {
+        owner = shard;
+      }
+    }
+    owner.load.incrementAndGet();
+    var link = new Link(connection, owner, initialWindow, queueCapacity);
+    attached.add(link);
+    owner.submit(link);
+    links.set(link.peerNodeNo & 0xFFFF, link);
+    Thread.ofVirtual().name("elfo-shard-reader").start(() -> read(link));
+    return link;
+  }
+
+  /**
+   * Hands the envelope over to the shard owning the connection to the recipient's node, which sends
+   * it once its flow has window. Never waits when called by a shard, otherwise waits only for room
+   * in the shard's queue.
+   *
+   * @throws IOException if no connection to the node is attached or the group is closed
+   */
+  public void send(NetworkEnvelope envelope) throws IOException {
+    ensureOpen();
+    int nodeNo = nodeNo(envelope);
+    var link = links.get(nodeNo);
+    if (link == null) {
+      throw new IOException("No connection to node " + nodeNo);
+    }
+    if (Thread.currentThread() instanceof Shard shard && shard.group() == this) {
+      shard.handOver(link.owner, envelope);
+    } else {
+      link.owner.submit(envelope);
+    }
+  }
+
+  public int shards() {
+    return shards.length;
+  }
+
+  /** Stops shards and closes attached connections, envelopes not sent yet are dropped. */
+  @Override
+  public void close() {
+    closed = true;
+    for (var shard : shards) {
+      LockSupport.unpark(shard);
+    }
+    for (var shard : shards) {
+      if (shard != Thread.currentThread()) {
+        shard.joinUninterruptibly();
+      }
+    }
+    for (var link : attached) {
+      link.connection.close();
+    }
+    attached.clear();
+  }
+
+  /** Hands frames of the connection over to its shard until the connection is over. */
+  private void read(Link link) {
+    var frames = new Object[BATCH];
+    try {
+      int count;
+      while ((count = link.connection.receive(frames, BATCH)) >= 0) {
+        for (int i = 0; i < count; i++) {
+          handOver(link, frames[i]);
+          frames[i] = null;
+        }
+        link.owner.wake();
+      }
+    } catch (IOException e) {
+      // The connection is closed by any side.
+    }
+    handOver(link, CLOSED);
+    link.owner.wake();
+  }
+
+  private void handOver(Link link, Object frame) {
+    while (!link.frames.offer(frame)) {
+      if (closed) {
+        return;
+      }
+      // The shard is behind, so is the socket then.
+      link.owner.wake();
+      Thread.yield();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Shard group is closed");
+    }
+  }
+
+  private static int nodeNo(NetworkEnvelope envelope) {
+    return (int) (envelope.recipient() >>> 48);
+  }
+
+  private final class Shard extends Thread {
+    private final int index;
+    private final AtomicInteger load = new AtomicInteger();
+    // Envelopes from other shards, by the sending shard.
+    private final SpscQueue<NetworkEnvelope>[] inbound;
+    // Envelopes and links from other threads, producers take turns under the lock.
+    private final SpscQueue<Object> external;
+    private final ReentrantLock externalLock = new ReentrantLock();
+    private volatile boolean sleeping;
+
+    // Owned by the shard itself.
+    private final ArrayList<Link> owned = new ArrayList<>();
+    private final ArrayList<Link> dirty = new ArrayList<>();
+    // Envelopes to other shards that didn't fit into their queues, by the receiving shard.
+    private final ArrayDeque<NetworkEnvelope>[] overflow;
+    private final boolean[] handedOver;
+
+    @SuppressWarnings("unchecked")
+    private Shard(int index) {
+      super("elfo-shard-" + index);
+      setDaemon(true);
+      this.index = index;
+      int count = shards.length;
+      this.inbound = new SpscQueue[count];
+      this.overflow = new ArrayDeque[count];
+      this.handedOver = new boolean[count];
+      for (int i = 0; i < count; i++) {
+        if (i != index) {
+          inbound[i] = new SpscQueue<>(queueCapacity);
+          overflow[i] = new ArrayDeque<>();
+        }
+      }
+      this.external = new SpscQueue<>(queueCapacity);
+    }
+
+    private ShardGroup group() {
+      return ShardGroup.this;
+    }
+
+    @Override
+    public void run() {
+      int idle = 0;
+      while (!closed) {
+        int work = pollExternal() + pollShards() + pollLinks() + retryOverflow();
+        wakeHandedOver();
+        flushDirty();
+        if (work > 0) {
+          idle = 0;
+        } else if (++idle > SPINS) {
+          park();
+          idle = 0;
+        } else {
+          Thread.onSpinWait();
+        }
+      }
+    }
+
+    /** Enqueues an envelope or a link from a thread other than shards. */
+    private void submit(Object item) throws IOException {
+      externalLock.lock();
+      try {
+        while (!external.offer(item)) {
+          ensureOpen();
+          wake();
+          Thread.yield();
+        }
+      } finally {
+        externalLock.unlock();
+      }
+      wake();
+    }
+
+    /** Passes the envelope to the target shard, called by this shard only. */
+    private void handOver(Shard target, NetworkEnvelope envelope) {
+      if (target == this) {
+        deliver(envelope);
+        return;
+      }
+      var backlog = overflow[target.index];
+      if (!backlog.isEmpty() || !target.inbound[index].offer(envelope)) {
+        // Kept in order behind earlier ones, never waiting for the target, which may wait for us.
+        backlog.add(envelope);
+        return;
+      }
+      handedOver[target.index] = true;
+    }
+
+    private int pollExternal() {
+      int count = 0;
+      Object item;
+      while (count < BATCH && (item = external.poll()) != null) {
+        count++;
+        if (item instanceof Link link) {
+          owned.add(link);
+        } else {
+          deliver((NetworkEnvelope) item);
+        }
+      }
+      return count;
+    }
+
+    private int pollShards() {
+      int count = 0;
+      for (var queue : inbound) {
+        if (queue == null) {
+          continue;
+        }
+        NetworkEnvelope envelope;
+        for (int i = 0; i < BATCH && (envelope = queue.poll()) != null; i++) {
+          deliver(envelope);
+          count++;
+        }
+      }
+      return count;
+    }
+
+    private int pollLinks() {
+      int count = 0;
+      // Backwards, as links may be detached meanwhile.
+      for (int i = owned.size() - 1; i >= 0; i--) {
+        if (i >= owned.size()) {
+          continue;
+        }
+        var link = owned.get(i);
+        Object frame;
+        for (int j = 0; j < BATCH && !link.closed && (frame = link.frames.poll()) != null; j++) {
+          receive(link, frame);
+          count++;
+        }
+      }
+      return count;
+    }
+
+    private int retryOverflow() {
+      int count = 0;
+      for (int i = 0; i < overflow.length; i++) {
+        var backlog = overflow[i];
+        if (backlog == null) {
+          continue;
+        }
+        var queue = shards[i].inbound[index];
+        while (!backlog.isEmpty() && queue.offer(backlog.peek())) {
+          backlog.poll();
+          handedOver[i] = true;
+          count++;
+        }
+      }
+      return count;
+    }
+
+    private void wakeHandedOver() {
+      for (int i = 0; i < handedOver.length; i++) {
+        if (handedOver[i]) {
+          handedOver[i] = false;
+          shards[i].wake();
+        }
+      }
+    }
+
+    /** Sends the envelope over the link owned by this shard, or queues it behind its flow. */
+    private void deliver(NetworkEnvelope envelope) {
+      var link = links.get(nodeNo(envelope));
+      if (link == null) {
+        log.debug("Dropped {} to node {}, not connected", envelope.name(), nodeNo(envelope));
+        return;
+      }
+      if (link.owner != this) {
+        // Attached again to another shard meanwhile.
+        handOver(link.owner, envelope);
+        return;
+      }
+      var flows = link.flows;
+      long addr = envelope.recipient();
+      int slot = flows.slot(addr);
+      if (flows.queued(slot) > 0 || flows.window(slot) <= 0) {
+        flows.addQueued(slot, 1);
+        link.blocked.computeIfAbsent(addr, ignored -> new ArrayDeque<>()).add(envelope);
+        return;
+      }
+      flows.addWindow(slot, -1);
+      write(link, envelope);
+    }
+
+    private void receive(Link link, Object frame) {
+      switch (frame) {
+        case NetworkEnvelope envelope -> {
+          var event = new SlowHandlerEvent();
+          event.begin();
+          try {
+            handler.handle(link, envelope);
+          } catch (IOException | RuntimeException e) {
+            log.warn("Failed to handle {} from node {}", envelope.name(), link.peerNodeNo, e);
+          }
+          event.end();
+          if (event.shouldCommit()) {
+            event.addr = envelope.recipient();
+            event.message = envelope.name();
+            event.messages = 1;
+            event.commit();
+          }
+        }
+        case ProtocolMessages.UpdateFlow update -> unblock(link, update);
+        case ProtocolMessages.CloseFlow close -> {
+          // Envelopes still queued will start the flow over.
+          if (link.flows.queued(link.flows.slot(close.addr())) == 0) {
+            link.flows.remove(close.addr());
+          }
+        }
+        case ProtocolMessages.Ping ping -> write(link, new ProtocolMessages.Pong(ping.payload()));
+        default -> {
+          if (frame == CLOSED) {
+            detach(link, null);
+          }
+        }
+      }
+    }
+
+    private void unblock(Link link, ProtocolMessages.UpdateFlow update) {
+      var flows = link.flows;
+      int slot = flows.slot(update.addr());
+      flows.addWindow(slot, update.windowDelta());
+      var queue = link.blocked.get(update.addr());
+      if (queue == null) {
+        return;
+      }
+      while (!link.closed && !queue.isEmpty() && flows.window(slot) > 0) {
+        flows.addWindow(slot, -1);
+        flows.addQueued(slot, -1);
+        write(link, queue.poll());
+      }
+      if (queue.isEmpty()) {
+        link.blocked.remove(update.addr());
+      }
+    }
+
+    private void write(Link link, Object frame) {
+      if (link.closed) {
+        return;
+      }
+      try {
+        link.connection.send(frame);
+      } catch (IOException e) {
+        detach(link, e);
+        return;
+      }
+      if (!link.dirty) {
+        link.dirty = true;
+        dirty.add(link);
+      }
+    }
+
+    private void flushDirty() {
+      for (int i = 0; i < dirty.size(); i++) {
+        var link = dirty.get(i);
+        link.dirty = false;
+        if (link.closed) {
+          continue;
+        }
+        try {
+          link.connection.flush();
+        } catch (IOException e) {
+          detach(link, e);
+        }
+      }
+      dirty.clear();
+    }
+
+    /** Drops the link, along with envelopes waiting for its window. */
+    private void detach(Link link, @Nullable IOException cause) {
+      if (link.closed) {
+        return;
+      }
+      link.closed = true;
+      owned.remove(link);
+      load.decrementAndGet();
+      links.compareAndSet(link.peerNodeNo & 0xFFFF, link, null);
+      attached.remove(link);
+      link.connection.close();
+      link.blocked.clear();
+      if (cause != null) {
+        log.debug("Connection to node {} failed: {}", link.peerNodeNo, cause.toString());
+      }
+    }
+
+    private void park() {
+      sleeping = true;
+      // Producers publish before checking the flag, so either they see it or we see their items.
+      VarHandle.fullFence();
+      if (isIdle()) {
+        LockSupport.park(this);
+      }
+      sleeping = false;
+    }
+
+    private boolean isIdle() {
+      if (closed || !external.isEmpty()) {
+        return false;
+      }
+      for (int i = 0; i < inbound.length; i++) {
+        // Backlogs are retried as the target makes room, without waking us up.
+        if (i != index && (!inbound[i].isEmpty() || !overflow[i].isEmpty())) {
+          return false;
+        }
+      }
+      for (var link : owned) {
+        if (!link.frames.isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void wake() {
+      VarHandle.fullFence();
+      if (sleeping) {
+        LockSupport.unpark(this);
+      }
+    }
+
+    private void joinUninterruptibly() {
+      boolean interrupted = false;
+      while (isAlive()) {
+        try {
+          join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package io.github.csolo.network.shard;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded single-producer/single-consumer queue of references, the heap counterpart of {@code
+ * ShmRing}.
+ *
+ * <p>The producer owns the tail, the consumer owns the head. Each side publishes its counter with
+ * release semantics after touching the slot, and reads the other side's counter with acquire
+ * semantics only when its cached copy says the queue is full or empty, so neither locks nor CAS
+ * are needed and the counters' cache lines bounce only that often.
+ */
+final class SpscQueue<E> {
+  // Head and tail live on different cache lines to avoid false sharing.
+  private static final int HEAD = 7;
+  private static final int TAIL = 15;
+
+  private final AtomicLongArray counters = new AtomicLongArray(TAIL + 8);
+  private final Object[] slots;
+  private final int mask;
+  // Owned by the producer.
+  private long cachedHead;
+  // Owned by the consumer.
+  private long cachedTail;
+
+  /**
+   * Creates a queue.
+   *
+   * @param capacity Max number of elements, rounded up to a power of two, at least 2
+   */
+  SpscQueue(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Capacity is out of range: " + capacity);
+    }
+    this.slots = new Object[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+    this.mask = slots.length - 1;
+  }
+
+  /** Adds the element, called by the producer only; returns {@code false} if the queue is full. */
+  boolean offer(E element) {
+    long tail = counters.getOpaque(TAIL);
+    if (tail - cachedHead == slots.length) {
+      cachedHead = counters.getAcquire(HEAD);
+      if (tail - cachedHead == slots.length) {
+        return false;
+      }
+    }
+    slots[(int) tail & mask] = element;
+    counters.setRelease(TAIL, tail + 1);
+    return true;
+  }
+
+  /** Takes the oldest element, called by the consumer only; returns {@code null} if empty. */
+  @SuppressWarnings("unchecked")
+  E poll() {
+    long head = counters.getOpaque(HEAD);
+    if (head == cachedTail) {
+      cachedTail = counters.getAcquire(TAIL);
+      if (head == cachedTail) {
+        return null;
+      }
+    }
+    int index = (int) head & mask;
+    var element = (E) slots[index];
+    slots[index] = null;
+    counters.setRelease(HEAD, head + 1);
+    return element;
+  }
+
+  /** Checks if the queue is empty, exact for the consumer and a hint for anyone else. */
+  boolean isEmpty() {
+    return counters.getAcquire(HEAD) == counters.getAcquire(TAIL);
+  }
+
+  int capacity() {
+    return slots.length;
+  }
+}
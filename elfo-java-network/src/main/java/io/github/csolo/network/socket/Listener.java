@@ -0,0 +1,228 @@
+package io.github.csolo.network.socket;
+
+import io.github.csolo.network.config.ListenerConfig;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.socket.raw.RawListener;
+import io.github.csolo.network.socket.raw.RawSocket;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accepts connections from other nodes and performs the server side of the handshake, so that
+ * remote nodes can dial in.
+ *
+ * <p>A virtual thread accepts connections, and each handshake runs in its own virtual thread. The
+ * acceptor waits for a free handshake slot and a rate permit (see {@link ListenerConfig}) before
+ * accepting the next connection, so during an accept storm connections queue in the OS backlog
+ * and established connections keep their share of the CPU. Peers that don't complete the
+ * handshake in time are disconnected.
+ *
+ * <pre>{@code
+ * var listener =
+ *     Listener.start(new Transport.Tcp("0.0.0.0:4000"), nodeNo, launchId, capabilities,
+ *         socket -> connections.add(Connection.of(socket)));
+ * }</pre>
+ */
+public final class Listener implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(Listener.class);
+  // Pause after an unexpected accept failure (e.g. out of file descriptors), not to spin on it.
+  private static final Duration ACCEPT_BACKOFF = Duration.ofMillis(100);
+
+  private final RawListener raw;
+  private final ListenerConfig config;
+  private final short nodeNo;
+  private final long launchId;
+  private final int capabilities;
+  private final Consumer<Socket> handler;
+  private final Semaphore handshakeSlots;
+  private final @Nullable RateLimiter rateLimiter;
+  private final ScheduledExecutorService timeouts;
+  private final Set<RawSocket> handshaking = ConcurrentHashMap.newKeySet();
+  private final Thread acceptor;
+  private volatile boolean open = true;
+
+  private Listener(
+      RawListener raw,
+      ListenerConfig config,
+      short nodeNo,
+      long launchId,
+      int capabilities,
+      Consumer<Socket> handler) {
+    this.raw = raw;
+    this.config = config;
+    this.nodeNo = nodeNo;
+    this.launchId = launchId;
+    this.capabilities = capabilities;
+    this.handler = handler;
+    this.handshakeSlots = new Semaphore(config.maxConcurrentHandshakes());
+    this.rateLimiter =
+        config.handshakesPerSecond() > 0 ? new RateLimiter(config.handshakesPerSecond()) : null;
+    this.timeouts =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("elfo-handshake-timeouts").factory());
+    this.acceptor = Thread.ofVirtual().name("elfo-acceptor").start(this::acceptLoop);
+  }
+
+  /** Starts listening with default options and limits. */
+  public static Listener start(
+      Transport transport, short nodeNo, long launchId, int capabilities, Consumer<Socket> handler)
+      throws IOException {
+    return start(
+        transport,
+        new SocketOptions(),
+        new ListenerConfig(),
+        nodeNo,
+        launchId,
+        capabilities,
+        handler);
+  }
+
+  /**
+   * Starts listening on the transport.
+   *
+   * @param transport Address to listen on, for TCP port 0 picks an ephemeral port
+   * @param options Options of accepted TCP and UDS sockets
+   * @param config Limits of handshake work
+   * @param nodeNo This node's number
+   * @param launchId This node's launch ID
+   * @param capabilities This node's capabilities
+   * @param handler Called with every connected socket, in the handshake's virtual thread
+   */
+  public static Listener start(
+      Transport transport,
+      SocketOptions options,
+      ListenerConfig config,
+      short nodeNo,
+      long launchId,
+      int capabilities,
+      Consumer<Socket> handler)
+      throws IOException {
+    return new Listener(
+        RawListener.bind(transport, options), config, nodeNo, launchId, capabilities, handler);
+  }
+
+  /** Gets the transport clients should connect to. */
+  public Transport transport() {
+    return raw.transport();
+  }
+
+  /** Gets the number of handshakes in progress. */
+  public int handshakesInProgress() {
+    return config.maxConcurrentHandshakes() - handshakeSlots.availablePermits();
+  }
+
+  private void acceptLoop() {
+    while (open) {
+      try {
+        handshakeSlots.acquire();
+        if (rateLimiter != null) {
+          rateLimiter.acquire();
+        }
+      } catch (InterruptedException e) {
+        // Closed.
+        return;
+      }
+
+      RawSocket socket;
+      try {
+        socket = raw.accept();
+      } catch (IOException e) {
+        handshakeSlots.release();
+        if (!open) {
+          return;
+        }
+        log.warn("Failed to accept a connection on {}", raw.transport(), e);
+        try {
+          Thread.sleep(ACCEPT_BACKOFF);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+        continue;
+      }
+      Thread.ofVirtual().name("elfo-handshake").start(() -> handshake(socket));
+    }
+  }
+
+  private void handshake(RawSocket raw) {
+    handshaking.add(raw);
+    var done = new AtomicBoolean();
+    ScheduledFuture<?> timeout = null;
+    Socket socket;
+    try {
+      if (!open) {
+        // Accepted right before close, which may have missed it in handshaking.
+        closeQuietly(raw);
+        return;
+      }
+      timeout =
+          timeouts.schedule(
+              () -> {
+                if (done.compareAndSet(false, true)) {
+                  closeQuietly(raw);
+                }
+              },
+              config.handshakeTimeout().toNanos(),
+              TimeUnit.NANOSECONDS);
+      socket = Socket.accept(raw, nodeNo, launchId, capabilities);
+      if (!done.compareAndSet(false, true)) {
+        // Completed right when the timeout closed it.
+        return;
+      }
+    } catch (IOException | RuntimeException e) {
+      log.debug("Handshake over {} failed: {}", raw.info(), e.toString());
+      closeQuietly(raw);
+      return;
+    } finally {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      handshaking.remove(raw);
+      handshakeSlots.release();
+    }
+
+    if (!open) {
+      socket.close();
+      return;
+    }
+    try {
+      handler.accept(socket);
+    } catch (RuntimeException e) {
+      log.warn("Failed to handle a connection from node {}", socket.peer().nodeNo(), e);
+      socket.close();
+    }
+  }
+
+  /** Stops accepting and drops connections in the middle of the handshake. */
+  @Override
+  public void close() throws IOException {
+    open = false;
+    try {
+      raw.close();
+    } finally {
+      acceptor.interrupt();
+      handshaking.forEach(Listener::closeQuietly);
+      timeouts.shutdownNow();
+    }
+  }
+
+  private static void closeQuietly(RawSocket raw) {
+    try {
+      raw.close();
+    } catch (IOException e) {
+      // Nothing to do, it's being dropped anyway.
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package io.github.csolo.network.socket;
+
+import java.time.Duration;
+
+/**
+ * Token bucket allowing {@code perSecond} permits per second, with up to a tenth of a second's
+ * worth at once. Not thread-safe, it has a single user.
+ */
+final class RateLimiter {
+  private final long intervalNanos;
+  private final long burstNanos;
+  private long next;
+
+  RateLimiter(int perSecond) {
+    if (perSecond < 1) {
+      throw new IllegalArgumentException("Rate must be positive: " + perSecond);
+    }
+    this.intervalNanos = 1_000_000_000L / perSecond;
+    int burst = Math.max(1, perSecond / 10);
+    this.burstNanos = (burst - 1) * intervalNanos;
+    this.next = System.nanoTime() - burstNanos;
+  }
+
+  /** Waits for the next permit. */
+  void acquire() throws InterruptedException {
+    long now = System.nanoTime();
+    // Unused permits accumulate up to the burst.
+    next = Math.max(next, now - burstNanos);
+    long wait = next - now;
+    next += intervalNanos;
+    if (wait > 0) {
+      Thread.sleep(Duration.ofNanos(wait));
+    }
+  }
+}
@@ -1,12 +1,19 @@
 package io.github.csolo.network.socket;
 
+import io.github.csolo.network.config.SocketOptions;
 import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.jfr.ConnectEvent;
+import io.github.csolo.network.jfr.HandshakeEvent;
+import io.github.csolo.network.metrics.PeerMetrics;
+import io.github.csolo.network.metrics.TransportMetrics;
+import io.github.csolo.network.protocol.Capabilities;
 import io.github.csolo.network.protocol.Handshake;
 import io.github.csolo.network.socket.raw.RawSocket;
 import io.vavr.control.Try;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -14,9 +21,10 @@ import org.jetbrains.annotations.NotNull;
  *
  * @param raw The underlying raw socket connection
  * @param peer Information about the connected peer node
- * @param handshake Handshake information exchanged during connection
+ * @param handshake Peer's handshake, with capabilities supported by both sides
+ * @param metrics Transport metrics of the connected peer
  */
-public record Socket(RawSocket raw, Peer peer, Handshake handshake) {
+public record Socket(RawSocket raw, Peer peer, Handshake handshake, PeerMetrics metrics) {
 
   /** Information about a peer node. */
   public record Peer(short nodeNo, long launchId) {
@@ -32,13 +40,31 @@ public record Socket(RawSocket raw, Peer peer, Handshake handshake) {
    * @param handshake Handshake information
    */
   public static Socket of(@NotNull RawSocket rawSocket, @NotNull Handshake handshake) {
-    var peer = Socket.Peer.of(handshake);
+    return of(rawSocket, handshake, TransportMetrics.global());
+  }
 
-    // TODO: Handle capabilities (LZ4 compression)
-    // In Rust: if handshake.capabilities.contains(Capabilities::LZ4)
-    // For now, we'll use basic read/write without compression
+  /**
+   * Create a new Socket from raw socket and handshake, counting its traffic in the registry.
+   *
+   * @param rawSocket Raw socket connection
+   * @param handshake Handshake information
+   * @param metrics Registry of the peer's metrics, e.g. a private one for internal traffic
+   */
+  public static Socket of(
+      @NotNull RawSocket rawSocket,
+      @NotNull Handshake handshake,
+      @NotNull TransportMetrics metrics) {
+    return of(rawSocket, handshake, metrics.peer(Socket.Peer.of(handshake)));
+  }
 
-    return new Socket(rawSocket, peer, handshake);
+  private static Socket of(
+      @NotNull RawSocket rawSocket, @NotNull Handshake handshake, @NotNull PeerMetrics metrics) {
+    return new Socket(rawSocket, metrics.peer(), handshake, metrics);
+  }
+
+  /** Checks if both sides support the capability, see {@link Capabilities}. */
+  public boolean supports(int capability) {
+    return Capabilities.contains(handshake.getCapabilities(), capability);
   }
 
   /** Read data from the socket. */
@@ -46,7 +72,11 @@ public record Socket(RawSocket raw, Peer peer, Handshake handshake) {
     return Try.of(
         () -> {
           try {
-            return raw.channel().read(buffer);
+            int read = raw.channel().read(buffer);
+            if (read > 0) {
+              metrics.bytesRead(read);
+            }
+            return read;
           } catch (Exception e) {
             throw new RuntimeException("Failed to read from socket", e);
           }
@@ -58,7 +88,37 @@ public record Socket(RawSocket raw, Peer peer, Handshake handshake) {
     return Try.of(
         () -> {
           try {
-            return raw.channel().write(buffer);
+            int written = raw.channel().write(buffer);
+            metrics.bytesWritten(written);
+            return written;
+          } catch (Exception e) {
+            throw new RuntimeException("Failed to write to socket", e);
+          }
+        });
+  }
+
+  /**
+   * Writes data from the buffers in order, with a single gathering write if the channel supports
+   * it. Otherwise writes from the first buffer with data left only.
+   */
+  public Try<Long> write(ByteBuffer[] buffers) {
+    return Try.of(
+        () -> {
+          try {
+            long written;
+            if (raw.channel() instanceof GatheringByteChannel channel) {
+              written = channel.write(buffers);
+            } else {
+              written = 0;
+              for (var buffer : buffers) {
+                if (buffer.hasRemaining()) {
+                  written = raw.channel().write(buffer);
+                  break;
+                }
+              }
+            }
+            metrics.bytesWritten(written);
+            return written;
           } catch (Exception e) {
             throw new RuntimeException("Failed to write to socket", e);
           }
@@ -93,16 +153,84 @@ public record Socket(RawSocket raw, Peer peer, Handshake handshake) {
    */
   public static Socket connect(Transport transport, short nodeNo, long launchId, int capabilities)
       throws IOException {
+    return connect(transport, nodeNo, launchId, capabilities, new SocketOptions());
+  }
 
-    var rawSocket = RawSocket.connect(transport);
-    var handshake = performHandshake(rawSocket.channel(), nodeNo, launchId, capabilities);
+  /**
+   * Connect to a remote elfo node.
+   *
+   * @param transport Transport address to connect to
+   * @param nodeNo This node's number
+   * @param launchId This node's launch ID
+   * @param capabilities This node's capabilities
+   * @param options Options of TCP and UDS sockets
+   */
+  public static Socket connect(
+      Transport transport, short nodeNo, long launchId, int capabilities, SocketOptions options)
+      throws IOException {
+
+    var connectEvent = new ConnectEvent();
+    connectEvent.begin();
+    RawSocket rawSocket;
+    try {
+      rawSocket = RawSocket.connect(transport, options);
+      connectEvent.succeeded = true;
+    } finally {
+      connectEvent.end();
+      if (connectEvent.shouldCommit()) {
+        connectEvent.transport = transport.toString();
+        connectEvent.commit();
+      }
+    }
+
+    return handshake(rawSocket, transport.toString(), nodeNo, launchId, capabilities);
+  }
+
+  /**
+   * Accept an incoming connection from a remote elfo node by performing the handshake over it.
+   *
+   * @param rawSocket Accepted raw socket
+   * @param nodeNo This node's number
+   * @param launchId This node's launch ID
+   * @param capabilities This node's capabilities
+   */
+  public static Socket accept(RawSocket rawSocket, short nodeNo, long launchId, int capabilities)
+      throws IOException {
+    return handshake(rawSocket, rawSocket.info().toString(), nodeNo, launchId, capabilities);
+  }
+
+  private static Socket handshake(
+      RawSocket rawSocket, String transport, short nodeNo, long launchId, int capabilities)
+      throws IOException {
+
+    var handshakeEvent = new HandshakeEvent();
+    handshakeEvent.begin();
+    long handshakeStart = System.nanoTime();
+    Handshake handshake;
+    try {
+      handshake = performHandshake(rawSocket.channel(), nodeNo, launchId, capabilities);
+    } catch (IOException | RuntimeException e) {
+      rawSocket.close();
+      throw e;
+    }
+    handshakeEvent.end();
+
+    var metrics = TransportMetrics.global().peer(Socket.Peer.of(handshake));
+    metrics.handshakeCompleted(System.nanoTime() - handshakeStart);
+    if (handshakeEvent.shouldCommit()) {
+      handshakeEvent.transport = transport;
+      handshakeEvent.peerNodeNo = handshake.getNodeNo();
+      handshakeEvent.peerLaunchId = handshake.getLaunchId();
+      handshakeEvent.peerCapabilities = handshake.getCapabilities();
+      handshakeEvent.commit();
+    }
 
-    return Socket.of(rawSocket, handshake);
+    return Socket.of(rawSocket, handshake.makeCompatible(capabilities), metrics);
   }
 
   /** Perform handshake over the given channel. */
   private static Handshake performHandshake(
-      SocketChannel channel, short nodeNo, long launchId, int capabilities) throws IOException {
+      ByteChannel channel, short nodeNo, long launchId, int capabilities) throws IOException {
 
     // Send our handshake
     Handshake ourHandshake = new Handshake(nodeNo, launchId, capabilities);
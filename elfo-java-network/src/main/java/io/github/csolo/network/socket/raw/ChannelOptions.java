@@ -0,0 +1,73 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.SocketOptions;
+import java.io.IOException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.time.Duration;
+import jdk.net.ExtendedSocketOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies {@link SocketOptions} to TCP and UDS channels.
+ *
+ * <p>Options the channel doesn't support by its nature (e.g. TCP_NODELAY for UDS) are skipped. If
+ * the platform lacks the extended keepalive options, they are skipped with a warning, as keepalive
+ * still works with the OS defaults. Failures to set a supported option are thrown.
+ */
+public final class ChannelOptions {
+  private static final Logger log = LoggerFactory.getLogger(ChannelOptions.class);
+
+  private ChannelOptions() {}
+
+  /**
+   * Applies options to a channel. Buffer sizes must be set before connecting (or on the listening
+   * socket), otherwise TCP window scaling may not account for them.
+   */
+  public static void apply(NetworkChannel channel, SocketOptions options) throws IOException {
+    if (options.sendBufferSize() > 0) {
+      set(channel, StandardSocketOptions.SO_SNDBUF, options.sendBufferSize());
+    }
+    if (options.receiveBufferSize() > 0) {
+      set(channel, StandardSocketOptions.SO_RCVBUF, options.receiveBufferSize());
+    }
+
+    // The rest is for TCP connections only.
+    if (!channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+      return;
+    }
+    set(channel, StandardSocketOptions.TCP_NODELAY, options.tcpNoDelay());
+    set(channel, StandardSocketOptions.SO_KEEPALIVE, options.keepAlive());
+    if (options.keepAlive()) {
+      setExtended(channel, ExtendedSocketOptions.TCP_KEEPIDLE, seconds(options.keepAliveIdle()));
+      setExtended(
+          channel, ExtendedSocketOptions.TCP_KEEPINTERVAL, seconds(options.keepAliveInterval()));
+      setExtended(channel, ExtendedSocketOptions.TCP_KEEPCOUNT, options.keepAliveCount());
+    }
+  }
+
+  private static <T> void set(NetworkChannel channel, SocketOption<T> option, T value)
+      throws IOException {
+    if (channel.supportedOptions().contains(option)) {
+      channel.setOption(option, value);
+    }
+  }
+
+  private static void setExtended(NetworkChannel channel, SocketOption<Integer> option, int value)
+      throws IOException {
+    if (value <= 0) {
+      return;
+    }
+    if (!channel.supportedOptions().contains(option)) {
+      log.warn("{} is not supported on this platform, using the OS default", option.name());
+      return;
+    }
+    channel.setOption(option, value);
+  }
+
+  private static int seconds(Duration duration) {
+    return duration == null ? 0 : (int) Math.min(duration.getSeconds(), Integer.MAX_VALUE);
+  }
+}
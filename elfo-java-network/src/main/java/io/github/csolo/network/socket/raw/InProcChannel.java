@@ -0,0 +1,398 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.memory.MemoryBudget;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One end of an in-process connection.
+ *
+ * <p>Behaves like a blocking byte channel, so the regular handshake runs over it unchanged. After
+ * the handshake, frames are passed as objects through {@link #sendFrame(Object)} and {@link
+ * #receiveFrame()}, bypassing serialization entirely. Urgent frames overtake regular ones that are
+ * not received yet.
+ *
+ * <p>Frames can hold bytes reserved from a {@link MemoryBudget}, which are released once the other
+ * end takes them, or drops them on close.
+ *
+ * <p>Closing an end works as with a socket: whatever it has sent is still received by the other
+ * end, which sees the end of stream afterwards, while what was sent to it and not received yet is
+ * dropped, and the other end can't send anymore.
+ */
+public class InProcChannel implements ByteChannel {
+  /** Max number of regular frames in flight per direction, senders block once it's reached. */
+  public static final int FRAME_CAPACITY = 4096;
+
+  private static final ByteBuffer EOF_BYTES = ByteBuffer.allocate(0);
+
+  private final Pipe inbound;
+  private final Pipe outbound;
+  private ByteBuffer current;
+  private volatile boolean open = true;
+
+  private InProcChannel(Pipe inbound, Pipe outbound) {
+    this.inbound = inbound;
+    this.outbound = outbound;
+  }
+
+  /** Creates two connected ends: {@code [client, server]}. */
+  static InProcChannel[] pair() {
+    var toServer = new Pipe();
+    var toClient = new Pipe();
+    return new InProcChannel[] {
+      new InProcChannel(toClient, toServer), new InProcChannel(toServer, toClient)
+    };
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    ensureOpen();
+    if (current == EOF_BYTES) {
+      return -1;
+    }
+    if (current == null || !current.hasRemaining()) {
+      current = take(inbound.bytes);
+    }
+    if (current == EOF_BYTES) {
+      return -1;
+    }
+
+    int length = Math.min(dst.remaining(), current.remaining());
+    var slice = current.slice(current.position(), length);
+    dst.put(slice);
+    current.position(current.position() + length);
+    return length;
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    ensureWritable();
+    int length = src.remaining();
+    var copy = ByteBuffer.allocate(length);
+    copy.put(src).flip();
+    put(outbound.bytes, copy);
+    return length;
+  }
+
+  /** Hands the frame over to the other end by reference. Blocks if the other end lags behind. */
+  public void sendFrame(Object frame) throws IOException {
+    sendFrame(frame, false);
+  }
+
+  /**
+   * Hands the frame over to the other end by reference.
+   *
+   * @param urgent Whether the frame goes ahead of regular ones, urgent frames never block.
+   */
+  public void sendFrame(Object frame, boolean urgent) throws IOException {
+    ensureWritable();
+    putFrame(frame, urgent);
+  }
+
+  /**
+   * Hands the frame over to the other end by reference, its bytes are reserved until it's taken.
+   *
+   * @param urgent Whether the frame goes ahead of regular ones, urgent frames never block.
+   * @param memory Account to reserve the bytes from
+   * @param bytes Bytes held by the frame, e.g. its payload
+   * @throws io.github.csolo.network.memory.BudgetExceededException if the bytes don't fit into the
+   *     budget
+   */
+  public void sendFrame(Object frame, boolean urgent, MemoryBudget.Account memory, long bytes)
+      throws IOException {
+    if (bytes == 0) {
+      sendFrame(frame, urgent);
+      return;
+    }
+    ensureWritable();
+    memory.reserve(bytes);
+    boolean queued = false;
+    try {
+      putFrame(new Reserved(frame, memory, bytes), urgent);
+      queued = true;
+    } finally {
+      if (!queued) {
+        memory.release(bytes);
+      }
+    }
+  }
+
+  /**
+   * Hands the frame over to the other end unless it would block.
+   *
+   * @return whether the frame is handed over, {@code false} if too many frames are in flight
+   */
+  public boolean trySendFrame(Object frame, boolean urgent) throws IOException {
+    ensureWritable();
+    return outbound.frames.offer(frame, urgent);
+  }
+
+  /**
+   * Hands the frame over to the other end unless it would block, its bytes are reserved until it's
+   * taken.
+   *
+   * @return whether the frame is handed over, {@code false} if too many frames are in flight
+   * @throws io.github.csolo.network.memory.BudgetExceededException if the bytes don't fit into the
+   *     budget
+   */
+  public boolean trySendFrame(Object frame, boolean urgent, MemoryBudget.Account memory, long bytes)
+      throws IOException {
+    if (bytes == 0) {
+      return trySendFrame(frame, urgent);
+    }
+    ensureWritable();
+    memory.reserve(bytes);
+    boolean queued = false;
+    try {
+      queued = outbound.frames.offer(new Reserved(frame, memory, bytes), urgent);
+    } finally {
+      if (!queued) {
+        memory.release(bytes);
+      }
+    }
+    return queued;
+  }
+
+  /**
+   * Takes the next frame sent by the other end, {@code null} once the other end is closed and all
+   * it sent is taken.
+   */
+  public Object receiveFrame() throws IOException {
+    ensureOpen();
+    try {
+      return inbound.frames.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading from in-process channel");
+    }
+  }
+
+  /**
+   * Takes the next frame sent by the other end and those queued after it, without waiting more.
+   *
+   * @return the number of frames taken, -1 once the other end is closed and all it sent is taken
+   */
+  public int receiveFrames(Object[] frames, int max) throws IOException {
+    ensureOpen();
+    try {
+      return inbound.frames.drain(frames, max);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading from in-process channel");
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    if (!open) {
+      return;
+    }
+    open = false;
+    // The other end receives what's sent so far and then the end of stream.
+    outbound.bytes.offer(EOF_BYTES);
+    outbound.frames.closeWrite();
+    // Nothing is received here anymore, our own blocked readers wake up.
+    inbound.readerClosed = true;
+    inbound.bytes.clear();
+    inbound.bytes.offer(EOF_BYTES);
+    inbound.frames.closeRead();
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private void ensureWritable() throws IOException {
+    ensureOpen();
+    if (outbound.readerClosed) {
+      throw new IOException("Connection closed by peer");
+    }
+  }
+
+  private void putFrame(Object item, boolean urgent) throws IOException {
+    try {
+      outbound.frames.put(item, urgent);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing to in-process channel");
+    }
+  }
+
+  private static <T> T take(BlockingQueue<T> queue) throws IOException {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading from in-process channel");
+    }
+  }
+
+  private static <T> void put(BlockingQueue<T> queue, T item) throws IOException {
+    try {
+      queue.put(item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing to in-process channel");
+    }
+  }
+
+  /** Frame holding bytes reserved from a budget, queued in place of the frame itself. */
+  private record Reserved(Object frame, MemoryBudget.Account memory, long bytes) {}
+
+  /** Unwraps the queued item, releasing the bytes it holds. */
+  private static Object taken(Object item) {
+    if (item instanceof Reserved reserved) {
+      reserved.memory().release(reserved.bytes());
+      return reserved.frame();
+    }
+    return item;
+  }
+
+  /** Single direction of a connection. */
+  private static class Pipe {
+    final BlockingQueue<ByteBuffer> bytes = new LinkedBlockingQueue<>();
+    final FrameQueue frames = new FrameQueue();
+    volatile boolean readerClosed;
+  }
+
+  /** Two-level frame queue: urgent frames first, then regular ones, FIFO within each level. */
+  private static class FrameQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Object> urgent = new ArrayDeque<>();
+    private final ArrayDeque<Object> regular = new ArrayDeque<>();
+    // Set once the writing end is closed, frames in the queue can still be taken.
+    private boolean writeClosed;
+    // Set once the reading end is closed, the queue is dropped.
+    private boolean readClosed;
+
+    void put(Object frame, boolean isUrgent) throws IOException, InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (!isUrgent && !readClosed && regular.size() >= FRAME_CAPACITY) {
+          notFull.await();
+        }
+        if (readClosed) {
+          throw new IOException("Connection closed by peer");
+        }
+        (isUrgent ? urgent : regular).add(frame);
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Adds the frame unless the queue is full. */
+    boolean offer(Object frame, boolean isUrgent) throws IOException {
+      lock.lock();
+      try {
+        if (readClosed) {
+          throw new IOException("Connection closed by peer");
+        }
+        if (!isUrgent && regular.size() >= FRAME_CAPACITY) {
+          return false;
+        }
+        (isUrgent ? urgent : regular).add(frame);
+        notEmpty.signal();
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Takes the next frame, {@code null} once closed and drained. */
+    Object take() throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (!isDone() && urgent.isEmpty() && regular.isEmpty()) {
+          notEmpty.await();
+        }
+        if (readClosed || urgent.isEmpty() && regular.isEmpty()) {
+          return null;
+        }
+        if (!urgent.isEmpty()) {
+          return taken(urgent.poll());
+        }
+        notFull.signal();
+        return taken(regular.poll());
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Takes up to {@code max} frames under a single lock, waiting only for the first. */
+    int drain(Object[] frames, int max) throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (!isDone() && urgent.isEmpty() && regular.isEmpty()) {
+          notEmpty.await();
+        }
+        if (readClosed || urgent.isEmpty() && regular.isEmpty()) {
+          return -1;
+        }
+        int count = 0;
+        while (count < max && !urgent.isEmpty()) {
+          frames[count++] = taken(urgent.poll());
+        }
+        int regulars = 0;
+        while (count < max && !regular.isEmpty()) {
+          frames[count++] = taken(regular.poll());
+          regulars++;
+        }
+        if (regulars > 0) {
+          notFull.signalAll();
+        }
+        return count;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private boolean isDone() {
+      return writeClosed || readClosed;
+    }
+
+    /** Lets the reader take what's queued, and then the end of stream. */
+    void closeWrite() {
+      lock.lock();
+      try {
+        writeClosed = true;
+        notEmpty.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Drops queued frames and refuses new ones. */
+    void closeRead() {
+      lock.lock();
+      try {
+        readClosed = true;
+        urgent.forEach(InProcChannel::taken);
+        regular.forEach(InProcChannel::taken);
+        urgent.clear();
+        regular.clear();
+        notEmpty.signalAll();
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
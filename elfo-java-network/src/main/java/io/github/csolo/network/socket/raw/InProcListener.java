@@ -0,0 +1,110 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.Transport;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Accepts in-process connections under a JVM-wide unique name. */
+public final class InProcListener implements RawListener {
+  private static final ConcurrentMap<String, InProcListener> LISTENERS = new ConcurrentHashMap<>();
+  private static final InProcChannel CLOSED = InProcChannel.pair()[0];
+
+  private final String name;
+  private final BlockingQueue<InProcChannel> pending = new LinkedBlockingQueue<>();
+  // Guards enqueueing against closing, so that no channel is left behind the CLOSED marker.
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile boolean open = true;
+
+  private InProcListener(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Starts listening on the given in-process address.
+   *
+   * @throws BindException if the name is already taken in this JVM
+   */
+  public static InProcListener bind(Transport.InProc transport) throws IOException {
+    var listener = new InProcListener(transport.name());
+    if (LISTENERS.putIfAbsent(transport.name(), listener) != null) {
+      throw new BindException("Address already in use: " + transport);
+    }
+    return listener;
+  }
+
+  /** Connects to a listener bound to the transport's name. Returns the client end. */
+  static InProcChannel connect(Transport.InProc transport) throws IOException {
+    var listener = LISTENERS.get(transport.name());
+    var ends = InProcChannel.pair();
+    if (listener == null || !listener.enqueue(ends[1])) {
+      throw new ConnectException("Connection refused: " + transport);
+    }
+    return ends[0];
+  }
+
+  private boolean enqueue(InProcChannel channel) {
+    lock.lock();
+    try {
+      if (!open) {
+        return false;
+      }
+      pending.add(channel);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Waits for the next incoming connection. */
+  @Override
+  public RawSocket accept() throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    InProcChannel channel;
+    try {
+      channel = pending.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while accepting in-process connection");
+    }
+    if (channel == CLOSED) {
+      pending.add(CLOSED);
+      throw new ClosedChannelException();
+    }
+    return new RawSocket(channel, new RawSocket.Info.InProc(name));
+  }
+
+  @Override
+  public Transport.InProc transport() {
+    return new Transport.InProc(name);
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      if (!open) {
+        return;
+      }
+      open = false;
+      LISTENERS.remove(name, this);
+      // Not accepted, so their clients see the end of stream in the handshake.
+      InProcChannel channel;
+      while ((channel = pending.poll()) != null) {
+        channel.close();
+      }
+      pending.add(CLOSED);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
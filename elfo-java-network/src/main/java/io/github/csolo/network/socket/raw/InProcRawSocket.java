@@ -0,0 +1,14 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.Transport;
+import java.io.IOException;
+
+/** In-process raw socket implementation. */
+public class InProcRawSocket {
+
+  /** Connect to an {@link InProcListener} bound in this JVM. */
+  public static RawSocket connect(Transport.InProc inProc) throws IOException {
+    var channel = InProcListener.connect(inProc);
+    return new RawSocket(channel, new RawSocket.Info.InProc(inProc.name()));
+  }
+}
@@ -0,0 +1,34 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import java.io.IOException;
+
+/** Accepts raw socket connections, without handshake. */
+public sealed interface RawListener extends AutoCloseable
+    permits StreamListener, ShmListener, InProcListener {
+
+  /** Starts listening with default socket options. */
+  static RawListener bind(Transport transport) throws IOException {
+    return bind(transport, new SocketOptions());
+  }
+
+  /** Starts listening on the transport, options apply to TCP and UDS only. */
+  static RawListener bind(Transport transport, SocketOptions options) throws IOException {
+    return switch (transport) {
+      case Transport.Tcp tcp -> StreamListener.bind(tcp, options);
+      case Transport.Uds uds -> StreamListener.bind(uds, options);
+      case Transport.Shm shm -> ShmListener.bind(shm);
+      case Transport.InProc inProc -> InProcListener.bind(inProc);
+    };
+  }
+
+  /** Waits for the next incoming connection, throws once the listener is closed. */
+  RawSocket accept() throws IOException;
+
+  /** Gets the transport clients should connect to, e.g. with the actual port for TCP port 0. */
+  Transport transport();
+
+  @Override
+  void close() throws IOException;
+}
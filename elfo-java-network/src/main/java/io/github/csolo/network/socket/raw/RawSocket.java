@@ -1,13 +1,14 @@
 package io.github.csolo.network.socket.raw;
 
+import io.github.csolo.network.config.SocketOptions;
 import io.github.csolo.network.config.Transport;
 import java.io.IOException;
 import java.net.SocketAddress;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.ByteChannel;
 import org.jetbrains.annotations.NotNull;
 
 /** Raw socket connection without handshake. */
-public record RawSocket(SocketChannel channel, Info info) {
+public record RawSocket(ByteChannel channel, Info info) {
 
   /** Information about the raw socket connection. */
   public sealed interface Info {
@@ -17,13 +18,29 @@ public record RawSocket(SocketChannel channel, Info info) {
 
     /** Unix Domain Socket information. */
     record Uds(@NotNull String path, Long peerPid) implements Info {}
+
+    /** Shared-memory segment information. */
+    record Shm(@NotNull String path) implements Info {}
+
+    /** In-process connection information. */
+    record InProc(@NotNull String name) implements Info {}
+
+    /** Pair of OS pipes within the process, e.g. for the warm-up. */
+    record Pipe() implements Info {}
   }
 
-  /** Connect to a raw socket. */
+  /** Connect to a raw socket with default options. */
   public static RawSocket connect(Transport transport) throws IOException {
+    return connect(transport, new SocketOptions());
+  }
+
+  /** Connect to a raw socket, options apply to TCP and UDS only. */
+  public static RawSocket connect(Transport transport, SocketOptions options) throws IOException {
     return switch (transport) {
-      case Transport.Tcp tcp -> TcpRawSocket.connect(tcp);
-      case Transport.Uds uds -> UdsRawSocket.connect(uds);
+      case Transport.Tcp tcp -> TcpRawSocket.connect(tcp, options);
+      case Transport.Uds uds -> UdsRawSocket.connect(uds, options);
+      case Transport.Shm shm -> ShmRawSocket.connect(shm);
+      case Transport.InProc inProc -> InProcRawSocket.connect(inProc);
     };
   }
 
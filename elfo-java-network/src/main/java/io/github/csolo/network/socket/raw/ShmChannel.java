@@ -0,0 +1,142 @@
+package io.github.csolo.network.socket.raw;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One end of a shared-memory connection, a blocking byte channel over two {@link ShmRing}s.
+ *
+ * <p>Blocking operations poll the ring with {@link ShmSegment#idle(int)}, so an active link is
+ * served without syscalls, and an idle one costs a timed park per millisecond at most.
+ *
+ * <p>Once closed, and once no read or write in progress touches the rings anymore, the channel
+ * detaches its side from the segment, so that the listener may reset the rings for the next client.
+ */
+public class ShmChannel implements ByteChannel {
+  private final ShmSegment segment;
+  private final ShmRing inbound;
+  private final ShmRing outbound;
+  private final int side;
+  private final int generation;
+  // Reads and writes in progress, the rings are released once none is left after closing.
+  private final AtomicInteger users = new AtomicInteger();
+  private final AtomicBoolean detached = new AtomicBoolean();
+  private volatile boolean open = true;
+
+  ShmChannel(ShmSegment segment, boolean server) {
+    this.segment = segment;
+    this.inbound = server ? segment.toServer : segment.toClient;
+    this.outbound = server ? segment.toClient : segment.toServer;
+    this.side = server ? ShmSegment.SIDE_SERVER : ShmSegment.SIDE_CLIENT;
+    this.generation = segment.generation();
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    enter();
+    try {
+      for (int attempt = 0; ; attempt++) {
+        ensureOpen();
+        if (isStale()) {
+          return -1;
+        }
+        if (!dst.hasRemaining()) {
+          return 0;
+        }
+        int read = inbound.read(dst);
+        if (read > 0) {
+          return read;
+        }
+        if (segment.state() == ShmSegment.STATE_CLOSED) {
+          // The peer may have written right before closing.
+          read = inbound.read(dst);
+          return read > 0 ? read : -1;
+        }
+        ShmSegment.idle(attempt);
+      }
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    enter();
+    try {
+      int total = 0;
+      int attempt = 0;
+      while (src.hasRemaining()) {
+        ensureOpen();
+        if (isStale() || segment.state() == ShmSegment.STATE_CLOSED) {
+          throw new IOException("Connection closed by peer");
+        }
+        int written = outbound.write(src);
+        if (written > 0) {
+          total += written;
+          attempt = 0;
+        } else {
+          ShmSegment.idle(attempt++);
+        }
+      }
+      return total;
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    if (open) {
+      open = false;
+      if (!isStale()) {
+        segment.setState(ShmSegment.STATE_CLOSED);
+      }
+      if (users.get() == 0) {
+        detach();
+      }
+    }
+  }
+
+  boolean isClosedByAnySide() {
+    return !open || segment.state() == ShmSegment.STATE_CLOSED;
+  }
+
+  private void enter() throws ClosedChannelException {
+    users.incrementAndGet();
+    if (!open) {
+      exit();
+      throw new ClosedChannelException();
+    }
+  }
+
+  private void exit() {
+    if (users.decrementAndGet() == 0 && !open) {
+      detach();
+    }
+  }
+
+  private void detach() {
+    if (detached.compareAndSet(false, true) && !isStale()) {
+      segment.detach(side);
+    }
+  }
+
+  private boolean isStale() {
+    return segment.generation() != generation;
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.Transport;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server side of a shared-memory transport.
+ *
+ * <p>A segment carries one connection at a time. The segment accepts a client right after
+ * {@link #bind(Transport.Shm)}, like a socket with a backlog of one. {@link #accept()} hands the
+ * attached client over; the next call waits until that connection is closed and both sides have
+ * detached from the rings, resets them and waits for the next client to attach. A client that
+ * doesn't detach within {@link #DETACH_TIMEOUT}, e.g. because its process died, is given up on.
+ */
+public final class ShmListener implements RawListener {
+  private static final Logger log = LoggerFactory.getLogger(ShmListener.class);
+
+  /** Default capacity of each ring, 1 MiB. */
+  public static final int DEFAULT_CAPACITY = 1024 * 1024;
+  /** Time the client has to detach after the connection is closed. */
+  public static final Duration DETACH_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Transport.Shm transport;
+  private final ShmSegment segment;
+  private final ReentrantLock acceptLock = new ReentrantLock();
+  private ShmChannel current;
+  private volatile boolean open = true;
+
+  private ShmListener(Transport.Shm transport, ShmSegment segment) {
+    this.transport = transport;
+    this.segment = segment;
+  }
+
+  /** Creates the segment file with the default ring capacity. */
+  public static ShmListener bind(Transport.Shm transport) throws IOException {
+    return bind(transport, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates the segment file.
+   *
+   * @param capacity Capacity of each ring, a power of two of at least 4096 bytes.
+   */
+  public static ShmListener bind(Transport.Shm transport, int capacity) throws IOException {
+    var segment = ShmSegment.create(transport.path(), capacity);
+    segment.setState(ShmSegment.STATE_LISTENING);
+    return new ShmListener(transport, segment);
+  }
+
+  /** Waits for a client to attach to the segment. */
+  @Override
+  public RawSocket accept() throws IOException {
+    acceptLock.lock();
+    try {
+      return acceptLocked();
+    } finally {
+      acceptLock.unlock();
+    }
+  }
+
+  private RawSocket acceptLocked() throws IOException {
+    for (int attempt = 0; current != null && !current.isClosedByAnySide(); attempt++) {
+      ensureOpen();
+      ShmSegment.idle(attempt);
+    }
+    if (current != null) {
+      current.close();
+      awaitDetached();
+      segment.toServer.reset();
+      segment.toClient.reset();
+      segment.attachBoth();
+      segment.setState(ShmSegment.STATE_LISTENING);
+    }
+
+    for (int attempt = 0; segment.state() != ShmSegment.STATE_CONNECTED; attempt++) {
+      ensureOpen();
+      ShmSegment.idle(attempt);
+    }
+    current = new ShmChannel(segment, true);
+    return new RawSocket(current, new RawSocket.Info.Shm(transport.path().toString()));
+  }
+
+  private void awaitDetached() throws IOException {
+    long deadline = System.nanoTime() + DETACH_TIMEOUT.toNanos();
+    for (int attempt = 0; segment.attached() != 0; attempt++) {
+      ensureOpen();
+      if (System.nanoTime() - deadline > 0) {
+        log.warn("Client of {} did not detach in {}, giving up on it", transport, DETACH_TIMEOUT);
+        segment.nextGeneration();
+        return;
+      }
+      ShmSegment.idle(attempt);
+    }
+  }
+
+  @Override
+  public Transport.Shm transport() {
+    return transport;
+  }
+
+  @Override
+  public void close() throws IOException {
+    open = false;
+    segment.setState(ShmSegment.STATE_CLOSED);
+    Files.deleteIfExists(transport.path());
+  }
+
+  private void ensureOpen() throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.Transport;
+import java.io.IOException;
+import java.net.ConnectException;
+
+/** Shared-memory raw socket implementation. */
+public class ShmRawSocket {
+
+  /** Attach to a segment created by {@link ShmListener}. */
+  public static RawSocket connect(Transport.Shm shm) throws IOException {
+    var segment = ShmSegment.open(shm.path());
+    if (!segment.compareAndSetState(ShmSegment.STATE_LISTENING, ShmSegment.STATE_CONNECTED)) {
+      throw new ConnectException("Connection refused: " + shm + " is not accepting connections");
+    }
+    var channel = new ShmChannel(segment, false);
+    return new RawSocket(channel, new RawSocket.Info.Shm(shm.path().toString()));
+  }
+}
@@ -0,0 +1,85 @@
+package io.github.csolo.network.socket.raw;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Single-producer/single-consumer byte ring inside a {@link ShmSegment}.
+ *
+ * <p>The producer owns the tail, the consumer owns the head. Each side publishes its counter with
+ * release semantics after copying data, and reads the other side's counter with acquire
+ * semantics, so no locks or CAS are needed on the data path.
+ */
+final class ShmRing {
+  private static final int HEAD_OFFSET = 0;
+  // Head and tail live on different cache lines to avoid false sharing.
+  private static final int TAIL_OFFSET = 64;
+  private static final int DATA_OFFSET = 128;
+
+  private final ByteBuffer buffer;
+  private final int head;
+  private final int tail;
+  private final int data;
+  private final int capacity;
+
+  ShmRing(ByteBuffer buffer, int base, int capacity) {
+    this.buffer = buffer;
+    this.head = base + HEAD_OFFSET;
+    this.tail = base + TAIL_OFFSET;
+    this.data = base + DATA_OFFSET;
+    this.capacity = capacity;
+  }
+
+  /** Returns the number of bytes a ring with the given capacity occupies in the segment. */
+  static int sizeFor(int capacity) {
+    return DATA_OFFSET + capacity;
+  }
+
+  /** Resets the ring to the empty state, both sides must be detached. */
+  void reset() {
+    ShmSegment.LONGS.setVolatile(buffer, head, 0L);
+    ShmSegment.LONGS.setVolatile(buffer, tail, 0L);
+  }
+
+  /** Copies as many bytes as fit from {@code src}, returns 0 if the ring is full. */
+  int write(ByteBuffer src) {
+    long tailPos = (long) ShmSegment.LONGS.getOpaque(buffer, tail);
+    long headPos = (long) ShmSegment.LONGS.getAcquire(buffer, head);
+    int free = capacity - (int) (tailPos - headPos);
+    int length = Math.min(free, src.remaining());
+    if (length == 0) {
+      return 0;
+    }
+
+    int offset = (int) (tailPos & (capacity - 1));
+    int first = Math.min(length, capacity - offset);
+    buffer.put(data + offset, src, src.position(), first);
+    if (length > first) {
+      buffer.put(data, src, src.position() + first, length - first);
+    }
+    src.position(src.position() + length);
+
+    ShmSegment.LONGS.setRelease(buffer, tail, tailPos + length);
+    return length;
+  }
+
+  /** Copies as many bytes as available into {@code dst}, returns 0 if the ring is empty. */
+  int read(ByteBuffer dst) {
+    long headPos = (long) ShmSegment.LONGS.getOpaque(buffer, head);
+    long tailPos = (long) ShmSegment.LONGS.getAcquire(buffer, tail);
+    int length = Math.min((int) (tailPos - headPos), dst.remaining());
+    if (length == 0) {
+      return 0;
+    }
+
+    int offset = (int) (headPos & (capacity - 1));
+    int first = Math.min(length, capacity - offset);
+    dst.put(dst.position(), buffer, data + offset, first);
+    if (length > first) {
+      dst.put(dst.position() + first, buffer, data, length - first);
+    }
+    dst.position(dst.position() + length);
+
+    ShmSegment.LONGS.setRelease(buffer, head, headPos + length);
+    return length;
+  }
+}
@@ -0,0 +1,187 @@
+package io.github.csolo.network.socket.raw;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.ConnectException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+// spotless:off
+/**
+ * Memory-mapped segment carrying a single shared-memory connection.
+ *
+ * Layout (all numbers are little-endian, offsets are in bytes):
+ *
+ *   0 +--------------------------------------------+
+ *     | Magic (8) | Version (4) | Capacity (4)       |
+ *     | State (4) | Attached (4) | Generation (4)  |
+ *     | Reserved ...                               |
+ * 128 +--------------------------------------------+
+ *     | Ring client -> server                      |
+ *     |   head (8) @ +0, tail (8) @ +64            |
+ *     |   data (Capacity) @ +128                   |
+ *     +--------------------------------------------+
+ *     | Ring server -> client (same layout)        |
+ *     +--------------------------------------------+
+ *
+ * Field descriptions:
+ * - Magic: Identifies the segment (0xE1F0E1F05348D000)
+ * - Capacity: Size of each ring's data area, a power of two
+ * - State: FREE -> LISTENING (server) -> CONNECTED (client) -> CLOSED (any side)
+ * - Attached: Bit 0 for the server, bit 1 for the client, cleared by each side once it's closed
+ *   and no longer touches the rings. Rings are reset for the next client only when both are clear.
+ * - Generation: Incremented when a client that never detached is given up on, e.g. because its
+ *   process died, so that it can't touch the rings of later connections if it's alive after all.
+ *
+ * Head and tail are monotonically increasing byte counters, so they never wrap in practice.
+ */
+// spotless:on
+final class ShmSegment {
+  static final long MAGIC = 0xE1F0E1F05348D000L;
+  static final int VERSION = 0;
+  static final int HEADER_LENGTH = 128;
+
+  static final int STATE_FREE = 0;
+  static final int STATE_LISTENING = 1;
+  static final int STATE_CONNECTED = 2;
+  static final int STATE_CLOSED = 3;
+
+  static final int SIDE_SERVER = 1;
+  static final int SIDE_CLIENT = 2;
+  static final int SIDE_BOTH = SIDE_SERVER | SIDE_CLIENT;
+
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int CAPACITY_OFFSET = 12;
+  private static final int STATE_OFFSET = 16;
+  private static final int ATTACHED_OFFSET = 20;
+  private static final int GENERATION_OFFSET = 24;
+
+  static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  static final VarHandle INTS =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  // Spinning only makes sense if the peer can run on another core meanwhile.
+  private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1024 : 0;
+  private static final int YIELDS = 10;
+  private static final long MAX_PARK_NANOS = 1_000_000;
+
+  private final MappedByteBuffer buffer;
+  final ShmRing toServer;
+  final ShmRing toClient;
+
+  private ShmSegment(MappedByteBuffer buffer, int capacity) {
+    this.buffer = buffer;
+    this.toServer = new ShmRing(buffer, HEADER_LENGTH, capacity);
+    this.toClient = new ShmRing(buffer, HEADER_LENGTH + ShmRing.sizeFor(capacity), capacity);
+  }
+
+  /** Creates (or truncates) the segment file and maps it. */
+  static ShmSegment create(Path path, int capacity) throws IOException {
+    if (capacity < 4096 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "Ring capacity must be a power of two of at least 4096, got: " + capacity);
+    }
+    long size = HEADER_LENGTH + 2L * ShmRing.sizeFor(capacity);
+    try (var file =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      var buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong(MAGIC_OFFSET, MAGIC);
+      buffer.putInt(VERSION_OFFSET, VERSION);
+      buffer.putInt(CAPACITY_OFFSET, capacity);
+      INTS.setVolatile(buffer, ATTACHED_OFFSET, SIDE_BOTH);
+      INTS.setVolatile(buffer, STATE_OFFSET, STATE_FREE);
+      return new ShmSegment(buffer, capacity);
+    }
+  }
+
+  /** Maps an existing segment file created by {@link #create(Path, int)}. */
+  static ShmSegment open(Path path) throws IOException {
+    try (var file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (file.size() < HEADER_LENGTH) {
+        throw new ConnectException("Connection refused: " + path + " is not a segment");
+      }
+      var buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, file.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getLong(MAGIC_OFFSET) != MAGIC) {
+        throw new ConnectException("Connection refused: segment magic did not match");
+      }
+      int capacity = buffer.getInt(CAPACITY_OFFSET);
+      if (file.size() != HEADER_LENGTH + 2L * ShmRing.sizeFor(capacity)) {
+        throw new ConnectException("Connection refused: segment size did not match");
+      }
+      return new ShmSegment(buffer, capacity);
+    } catch (NoSuchFileException e) {
+      throw new ConnectException("Connection refused: " + path + " does not exist");
+    }
+  }
+
+  int state() {
+    return (int) INTS.getVolatile(buffer, STATE_OFFSET);
+  }
+
+  void setState(int state) {
+    INTS.setVolatile(buffer, STATE_OFFSET, state);
+  }
+
+  boolean compareAndSetState(int expected, int state) {
+    return INTS.compareAndSet(buffer, STATE_OFFSET, expected, state);
+  }
+
+  /** Gets the sides that still use the rings, see {@link #SIDE_BOTH}. */
+  int attached() {
+    return (int) INTS.getVolatile(buffer, ATTACHED_OFFSET);
+  }
+
+  /** Marks both sides as using the rings, before they are handed to the next client. */
+  void attachBoth() {
+    INTS.setVolatile(buffer, ATTACHED_OFFSET, SIDE_BOTH);
+  }
+
+  /** Marks the side as no longer using the rings. */
+  void detach(int side) {
+    INTS.getAndBitwiseAnd(buffer, ATTACHED_OFFSET, ~side);
+  }
+
+  int generation() {
+    return (int) INTS.getVolatile(buffer, GENERATION_OFFSET);
+  }
+
+  /** Gives up on the current connection, its channels then act as if closed by the peer. */
+  void nextGeneration() {
+    INTS.getAndAdd(buffer, GENERATION_OFFSET, 1);
+  }
+
+  /**
+   * Waits a bit before the next poll: spins first (on multicore machines only), then yields, then
+   * parks with exponential backoff. There is no cross-process wakeup, so parking is always timed.
+   */
+  static void idle(int attempt) throws InterruptedIOException {
+    if (attempt < SPINS) {
+      Thread.onSpinWait();
+    } else if (attempt < SPINS + YIELDS) {
+      Thread.yield();
+    } else {
+      int shift = Math.min(attempt - SPINS - YIELDS, 10);
+      LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1_000L << shift));
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while polling shared memory");
+      }
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package io.github.csolo.network.socket.raw;
+
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+
+/** Accepts TCP and UDS connections. */
+public final class StreamListener implements RawListener {
+  /** Max number of connections waiting in the OS queue to be accepted. */
+  static final int BACKLOG = 1024;
+
+  private final ServerSocketChannel server;
+  private final Transport transport;
+  private final SocketOptions options;
+
+  private StreamListener(ServerSocketChannel server, Transport transport, SocketOptions options) {
+    this.server = server;
+    this.transport = transport;
+    this.options = options;
+  }
+
+  /** Starts listening on a TCP address, port 0 picks an ephemeral port. */
+  public static StreamListener bind(Transport.Tcp tcp, SocketOptions options) throws IOException {
+    var server = ServerSocketChannel.open();
+    try {
+      // Before binding, so that accepted sockets get the receive buffer and the window scale.
+      ChannelOptions.apply(server, options);
+      server.bind(tcp.toSocketAddress(), BACKLOG);
+      var bound = (InetSocketAddress) server.getLocalAddress();
+      var actual = new Transport.Tcp(bound.getHostString() + ":" + bound.getPort());
+      return new StreamListener(server, actual, options);
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    }
+  }
+
+  /** Starts listening on a UDS path, a stale socket file is replaced. */
+  public static StreamListener bind(Transport.Uds uds, SocketOptions options) throws IOException {
+    Files.deleteIfExists(uds.path());
+    var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      ChannelOptions.apply(server, options);
+      server.bind(UnixDomainSocketAddress.of(uds.path()), BACKLOG);
+      return new StreamListener(server, uds, options);
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public RawSocket accept() throws IOException {
+    var channel = server.accept();
+    try {
+      ChannelOptions.apply(channel, options);
+      var info =
+          switch (transport) {
+            case Transport.Tcp ignored ->
+                new RawSocket.Info.Tcp(channel.getLocalAddress(), channel.getRemoteAddress());
+            // Peer credentials are not exposed by the JDK.
+            case Transport.Uds uds -> new RawSocket.Info.Uds(uds.path().toString(), null);
+            default -> throw new IllegalStateException("Unexpected transport: " + transport);
+          };
+      return new RawSocket(channel, info);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public Transport transport() {
+    return transport;
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    if (transport instanceof Transport.Uds uds) {
+      Files.deleteIfExists(uds.path());
+    }
+  }
+}
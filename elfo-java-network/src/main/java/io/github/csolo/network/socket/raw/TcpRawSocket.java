@@ -1,5 +1,6 @@
 package io.github.csolo.network.socket.raw;
 
+import io.github.csolo.network.config.SocketOptions;
 import io.github.csolo.network.config.Transport;
 import java.io.IOException;
 import java.nio.channels.SocketChannel;
@@ -8,26 +9,29 @@ import java.nio.channels.SocketChannel;
 public class TcpRawSocket {
 
   /** Connect to a TCP address. */
-  public static RawSocket connect(Transport.Tcp tcp) throws IOException {
+  public static RawSocket connect(Transport.Tcp tcp, SocketOptions options) throws IOException {
 
     var addr = tcp.toSocketAddress();
     var channel = SocketChannel.open();
-    // blocking mode is ok because we use virtual threads
-    channel.configureBlocking(true);
-    channel.connect(addr);
-    configureSocket(channel);
+    try {
+      // blocking mode is ok because we use virtual threads
+      channel.configureBlocking(true);
+      // Before connecting, so that the window scale accounts for the receive buffer.
+      ChannelOptions.apply(channel, options);
+      var timeout = options.connectTimeout();
+      if (timeout == null) {
+        channel.connect(addr);
+      } else {
+        int millis = Math.clamp(timeout.toMillis(), 1, Integer.MAX_VALUE);
+        channel.socket().connect(addr, millis);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
 
     var socketInfo = new RawSocket.Info.Tcp(channel.getLocalAddress(), addr);
 
     return new RawSocket(channel, socketInfo);
   }
-
-  /** Configure socket settings. */
-  private static void configureSocket(SocketChannel channel) {
-    try {
-      channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
-    } catch (Exception e) {
-      System.err.printf("Warning: cannot configure socket settings: %s%n", e.getMessage());
-    }
-  }
 }
@@ -1,14 +1,32 @@
 package io.github.csolo.network.socket.raw;
 
+import io.github.csolo.network.config.SocketOptions;
 import io.github.csolo.network.config.Transport;
 import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
 
 /** Unix Domain Socket raw socket implementation */
 public class UdsRawSocket {
 
   /** Connect to a Unix Domain Socket. */
-  public static RawSocket connect(Transport.Uds uds) throws IOException {
-    // TODO: Implement Unix Domain Socket later
-    throw new UnsupportedOperationException("Unix Domain Sockets not yet implemented");
+  public static RawSocket connect(Transport.Uds uds, SocketOptions options) throws IOException {
+    var addr = UnixDomainSocketAddress.of(uds.path());
+    var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      // blocking mode is ok because we use virtual threads
+      channel.configureBlocking(true);
+      ChannelOptions.apply(channel, options);
+      channel.connect(addr);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    // Peer credentials are not exposed by the JDK.
+    var socketInfo = new RawSocket.Info.Uds(uds.path().toString(), null);
+
+    return new RawSocket(channel, socketInfo);
   }
 }
@@ -0,0 +1,241 @@
+package io.github.csolo.network.codec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.protocol.ProtocolMessages;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FrameCodec Tests")
+class FrameCodecTest {
+
+  static Object roundTrip(Object frame) {
+    var buffer = ByteBuffer.allocate(FrameCodec.encodedSize(frame));
+    FrameCodec.encode(frame, buffer);
+    assertFalse(buffer.hasRemaining(), "encodedSize must match the written size");
+    buffer.flip();
+    var decoded = FrameCodec.decode(buffer);
+    assertFalse(buffer.hasRemaining());
+    return decoded;
+  }
+
+  @Nested
+  @DisplayName("Round-trip Tests")
+  class RoundTripTests {
+
+    @Test
+    @DisplayName("Should round-trip envelope")
+    void shouldRoundTripEnvelope() {
+      // Given
+      var payload = ByteBuffer.wrap("payload".getBytes(StandardCharsets.UTF_8));
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, "Ölmessage 🙂", payload);
+
+      // When
+      var decoded = (NetworkEnvelope) roundTrip(envelope);
+
+      // Then
+      assertEquals(1L, decoded.sender());
+      assertEquals(2L, decoded.recipient());
+      assertEquals(3L, decoded.traceId());
+      assertEquals("Ölmessage 🙂", decoded.name());
+      assertEquals(payload, decoded.payload());
+      assertEquals(0, payload.position(), "Encoding must not consume the payload");
+    }
+
+    @Test
+    @DisplayName("Should encode envelope head and payload separately")
+    void shouldEncodeHeadSeparately() {
+      // Given
+      var payload = ByteBuffer.wrap("payload".getBytes(StandardCharsets.UTF_8));
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, "Ölmessage", payload);
+      var whole = ByteBuffer.allocate(FrameCodec.encodedSize(envelope));
+      FrameCodec.encode(envelope, whole);
+
+      // When
+      var buffer = ByteBuffer.allocate(whole.capacity());
+      FrameCodec.encodeHead(envelope, payload.remaining(), buffer);
+      assertEquals(FrameCodec.headSize(envelope), buffer.position());
+      buffer.put(payload.duplicate());
+
+      // Then
+      assertEquals(whole.flip(), buffer.flip());
+    }
+
+    @Test
+    @DisplayName("Should round-trip protocol messages")
+    void shouldRoundTripProtocolMessages() {
+      var messages =
+          List.of(
+              new ProtocolMessages.SwitchToControl(
+                  List.of(
+                      new ProtocolMessages.GroupInfo((short) 1, "gate", List.of("core", "db")),
+                      new ProtocolMessages.GroupInfo((short) 2, "core", List.of()))),
+              new ProtocolMessages.SwitchToData((short) 1, (short) 2, 100_000),
+              new ProtocolMessages.UpdateFlow(42L, -7),
+              new ProtocolMessages.CloseFlow(43L),
+              new ProtocolMessages.Ping(44L),
+              new ProtocolMessages.Pong(45L));
+
+      for (var message : messages) {
+        assertEquals(message, roundTrip(message));
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Chunk Tests")
+  class ChunkTests {
+
+    @Test
+    @DisplayName("Should split envelope and round-trip chunks")
+    void shouldSplitAndRoundTripChunks() {
+      // Given
+      var payload = ByteBuffer.allocate(100);
+      for (int i = 0; i < payload.capacity(); i++) {
+        payload.put(i, (byte) i);
+      }
+      payload.position(10);
+      var splitter = new Chunk.Splitter(7, new NetworkEnvelope(1L, 2L, 3L, "Big", payload));
+
+      // When
+      var first = (Chunk) roundTrip(splitter.next(50));
+      var second = (Chunk) roundTrip(splitter.next(50));
+
+      // Then
+      assertEquals(7, first.streamId());
+      assertEquals(new Chunk.Head(1L, 2L, 3L, "Big", 90), first.head());
+      assertFalse(first.last());
+      assertEquals(payload.slice(10, 50), first.data());
+
+      assertEquals(7, second.streamId());
+      assertNull(second.head());
+      assertTrue(second.last());
+      assertEquals(payload.slice(60, 40), second.data());
+      assertEquals(10, payload.position(), "Splitting must not consume the payload");
+    }
+  }
+
+  @Nested
+  @DisplayName("Compressed Batch Tests")
+  class CompressedBatchTests {
+
+    @Test
+    @DisplayName("Should round-trip compressed batch")
+    void shouldRoundTripCompressedBatch() {
+      // Given
+      var block = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5});
+      var batch = new CompressedBatch(1000, block);
+
+      // When
+      var decoded = (CompressedBatch) roundTrip(batch);
+
+      // Then
+      assertEquals(1000, decoded.uncompressedSize());
+      assertEquals(block, decoded.block());
+      assertEquals(FrameCodec.COMPRESSED_OVERHEAD + 5, FrameCodec.encodedSize(batch));
+    }
+  }
+
+  @Nested
+  @DisplayName("Streaming Tests")
+  class StreamingTests {
+
+    @Test
+    @DisplayName("Should return null until the whole frame is available")
+    void shouldReturnNullOnPartialFrame() {
+      // Given
+      var ping = new ProtocolMessages.Ping(1L);
+      var full = ByteBuffer.allocate(FrameCodec.encodedSize(ping));
+      FrameCodec.encode(ping, full);
+      full.flip();
+
+      // When & Then
+      for (int length = 0; length < full.limit(); length++) {
+        var partial = full.slice(0, length);
+        assertNull(FrameCodec.decode(partial));
+        assertEquals(0, partial.position());
+      }
+      assertEquals(ping, FrameCodec.decode(full));
+    }
+
+    @Test
+    @DisplayName("Should decode consecutive frames")
+    void shouldDecodeConsecutiveFrames() {
+      // Given
+      var buffer = ByteBuffer.allocate(1024);
+      FrameCodec.encode(new ProtocolMessages.Ping(1L), buffer);
+      FrameCodec.encode(new ProtocolMessages.Pong(1L), buffer);
+      buffer.flip();
+
+      // When & Then
+      assertEquals(new ProtocolMessages.Ping(1L), FrameCodec.decode(buffer));
+      assertEquals(new ProtocolMessages.Pong(1L), FrameCodec.decode(buffer));
+      assertNull(FrameCodec.decode(buffer));
+    }
+  }
+
+  @Nested
+  @DisplayName("Error Tests")
+  class ErrorTests {
+
+    @Test
+    @DisplayName("Should leave buffer untouched on overflow")
+    void shouldLeaveBufferUntouchedOnOverflow() {
+      // Given
+      var buffer = ByteBuffer.allocate(4);
+
+      // When & Then
+      assertThrows(
+          BufferOverflowException.class,
+          () -> FrameCodec.encode(new ProtocolMessages.Ping(1L), buffer));
+      assertEquals(0, buffer.position());
+    }
+
+    @Test
+    @DisplayName("Should leave buffer untouched on a name too long to encode")
+    void shouldLeaveBufferUntouchedOnLongName() {
+      // Given
+      var name = "é".repeat(0x8000);
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, name, ByteBuffer.allocate(0));
+      var buffer = ByteBuffer.allocate(1 << 17);
+      buffer.position(5);
+
+      // When & Then
+      assertThrows(IllegalArgumentException.class, () -> FrameCodec.encode(envelope, buffer));
+      assertThrows(
+          IllegalArgumentException.class, () -> FrameCodec.encodeHead(envelope, 0, buffer));
+      assertEquals(5, buffer.position());
+      assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+      assertEquals(0, buffer.get(0));
+      assertEquals(0, buffer.get(5));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid frame size")
+    void shouldRejectInvalidFrameSize() {
+      // Given
+      var buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(FrameCodec.MAX_FRAME_SIZE + 1).putInt(0).flip();
+
+      // When & Then
+      var exception = assertThrows(IllegalArgumentException.class, () -> FrameCodec.decode(buffer));
+      assertTrue(exception.getMessage().contains("Invalid frame size"));
+    }
+
+    @Test
+    @DisplayName("Should refuse to encode Java object payload")
+    void shouldRefuseJavaObjectPayload() {
+      // Given
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, "Message", new Object());
+
+      // When & Then
+      assertThrows(IllegalStateException.class, () -> FrameCodec.encodedSize(envelope));
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package io.github.csolo.network.compression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.compression.CompressionPolicy.Decision;
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("CompressionPolicy Tests")
+class CompressionPolicyTest {
+
+  private final CompressionPolicy policy =
+      new CompressionPolicy(new CompressionConfig(CompressionAlgorithm.LZ4, 512, 1.1));
+
+  @Test
+  @DisplayName("Should batch small frames and protocol frames")
+  void shouldBatchSmallFrames() {
+    // When & Then
+    assertEquals(Decision.BATCH, policy.decide("Small", 100));
+    assertEquals(Decision.BATCH, policy.decide(null, 10_000));
+  }
+
+  @Test
+  @DisplayName("Should probe unknown type and resample compressible one")
+  void shouldProbeAndResampleCompressibleType() {
+    // Given
+    assertEquals(Decision.PROBE, policy.decide("Text", 1000));
+    policy.probed("Text", 1000, 300);
+
+    // When
+    int probes = 0;
+    for (int i = 0; i < CompressionPolicy.RESAMPLE_INTERVAL * 3; i++) {
+      var decision = policy.decide("Text", 1000);
+      assertNotEquals(Decision.RAW, decision);
+      if (decision == Decision.PROBE) {
+        probes++;
+      }
+    }
+
+    // Then
+    assertEquals(3, probes);
+    var stats = policy.snapshot().get("Text");
+    assertTrue(stats.compressible());
+    assertEquals(1000.0 / 300, stats.ratio(), 1e-9);
+  }
+
+  @Test
+  @DisplayName("Should skip incompressible type and re-probe it from time to time")
+  void shouldSkipIncompressibleType() {
+    // Given
+    assertEquals(Decision.PROBE, policy.decide("Noise", 1000));
+    policy.probed("Noise", 1000, 1010);
+
+    // When
+    int raw = 0;
+    for (int i = 1; i < CompressionPolicy.REPROBE_INTERVAL; i++) {
+      if (policy.decide("Noise", 1000) == Decision.RAW) {
+        raw++;
+      }
+    }
+
+    // Then
+    assertEquals(CompressionPolicy.REPROBE_INTERVAL - 1, raw);
+    assertEquals(Decision.RAW, policy.decide("Noise", 100), "Small ones are skipped too");
+    assertEquals(Decision.PROBE, policy.decide("Noise", 1000));
+
+    // The data became compressible.
+    for (int i = 0; i < 10; i++) {
+      policy.probed("Noise", 1000, 100);
+    }
+    assertEquals(Decision.BATCH, policy.decide("Noise", 1000));
+    assertEquals(CompressionPolicy.REPROBE_INTERVAL, policy.snapshot().get("Noise").skipped());
+  }
+
+  @Test
+  @DisplayName("Should tell whether compression pays off")
+  void shouldTellWhetherCompressionPaysOff() {
+    // When & Then
+    assertTrue(policy.isWorth(1100, 1000));
+    assertFalse(policy.isWorth(1099, 1000));
+  }
+}
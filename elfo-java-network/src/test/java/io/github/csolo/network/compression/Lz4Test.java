@@ -0,0 +1,247 @@
+package io.github.csolo.network.compression;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Lz4 Tests")
+class Lz4Test {
+
+  static List<byte[]> inputs() {
+    var random = new Random(7);
+    var noise = new byte[10_000];
+    random.nextBytes(noise);
+    var text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      text.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i % 17).append("\"}");
+    }
+    var mixed = new byte[60_000];
+    for (int i = 0; i < mixed.length; i++) {
+      mixed[i] = (byte) (i % 1000 < 500 ? random.nextInt(4) : i / 7);
+    }
+    return List.of(
+        new byte[0],
+        "hello".getBytes(StandardCharsets.UTF_8),
+        "abcdabcdabcd".getBytes(StandardCharsets.UTF_8),
+        new byte[100_000],
+        noise,
+        text.toString().getBytes(StandardCharsets.UTF_8),
+        mixed);
+  }
+
+  static ByteBuffer compress(byte[] input, boolean direct) {
+    var src = direct ? ByteBuffer.allocateDirect(input.length) : ByteBuffer.allocate(input.length);
+    src.put(input).flip();
+    var dst = ByteBuffer.allocate(Lz4.maxCompressedLength(input.length));
+    int length = Lz4.compress(src, dst);
+    assertFalse(src.hasRemaining());
+    assertEquals(length, dst.position());
+    return dst.flip();
+  }
+
+  static byte[] decompress(ByteBuffer block, int length) {
+    var dst = ByteBuffer.allocateDirect(length);
+    Lz4.decompress(block, dst, length);
+    assertFalse(dst.hasRemaining());
+    var bytes = new byte[length];
+    dst.flip().get(bytes);
+    return bytes;
+  }
+
+  @Nested
+  @DisplayName("Round Trip Tests")
+  class RoundTripTests {
+
+    @Test
+    @DisplayName("Should round-trip heap and direct buffers")
+    void shouldRoundTrip() {
+      for (var input : inputs()) {
+        for (boolean direct : new boolean[] {false, true}) {
+          // When
+          var block = compress(input, direct);
+
+          // Then
+          assertArrayEquals(input, decompress(block, input.length), "direct=" + direct);
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("Should shrink repetitive data and bound incompressible one")
+    void shouldShrinkRepetitiveData() {
+      // Given
+      var inputs = inputs();
+      var zeros = inputs.get(3);
+      var noise = inputs.get(4);
+
+      // When & Then
+      assertTrue(compress(zeros, true).remaining() < zeros.length / 100);
+      assertTrue(compress(noise, true).remaining() <= Lz4.maxCompressedLength(noise.length));
+    }
+
+    @Test
+    @DisplayName("Should respect buffer positions")
+    void shouldRespectBufferPositions() {
+      // Given
+      var input = inputs().get(5);
+      var src = ByteBuffer.allocate(input.length + 10).position(10);
+      src.put(input).position(10);
+      var dst = ByteBuffer.allocate(Lz4.maxCompressedLength(input.length) + 20).position(20);
+
+      // When
+      int length = Lz4.compress(src, dst);
+      var restored = ByteBuffer.allocate(input.length + 5).position(5);
+      Lz4.decompress(dst.flip().position(20), restored, input.length);
+
+      // Then
+      assertEquals(20 + length, dst.limit());
+      assertEquals(ByteBuffer.wrap(input), restored.flip().position(5));
+    }
+
+    @Test
+    @DisplayName("Should refuse to compress into too small buffer")
+    void shouldRefuseTooSmallBuffer() {
+      // When & Then
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> Lz4.compress(ByteBuffer.allocate(100), ByteBuffer.allocate(100)));
+    }
+  }
+
+  @Nested
+  @DisplayName("Decompression Tests")
+  class DecompressionTests {
+
+    @Test
+    @DisplayName("Should decode block with overlapping match")
+    void shouldDecodeOverlappingMatch() {
+      // Given: 4 literals, a match of 8 bytes at offset 4, then 5 last literals.
+      var block =
+          ByteBuffer.wrap(
+              new byte[] {0x44, 'a', 'b', 'c', 'd', 0x04, 0x00, 0x50, 'x', 'y', 'z', '1', '2'});
+
+      // When
+      var output = decompress(block, 17);
+
+      // Then
+      assertEquals("abcdabcdabcdxyz12", new String(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed blocks")
+    void shouldRejectMalformedBlocks() {
+      var blocks =
+          List.of(
+              // Zero offset.
+              new byte[] {0x40, 'a', 'b', 'c', 'd', 0x00, 0x00, 0x00},
+              // Offset before the start of the output.
+              new byte[] {0x40, 'a', 'b', 'c', 'd', 0x05, 0x00, 0x00},
+              // Literals past the end of the block.
+              new byte[] {(byte) 0x90, 'a', 'b'},
+              // Truncated extended length.
+              new byte[] {(byte) 0xF0, (byte) 255},
+              // Truncated offset.
+              new byte[] {0x40, 'a', 'b', 'c', 'd', 0x04},
+              // Empty block.
+              new byte[0]);
+
+      for (var block : blocks) {
+        // When & Then
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> Lz4.decompress(ByteBuffer.wrap(block), ByteBuffer.allocate(64), 16));
+      }
+    }
+
+    @Test
+    @DisplayName("Should reject block of unexpected size")
+    void shouldRejectUnexpectedSize() {
+      // Given
+      var block = compress(new byte[1000], false);
+
+      // When & Then
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> Lz4.decompress(block.duplicate(), ByteBuffer.allocate(2000), 999));
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> Lz4.decompress(block.duplicate(), ByteBuffer.allocate(2000), 1001));
+    }
+  }
+
+  @Nested
+  @DisplayName("Head Tests")
+  class HeadTests {
+
+    @Test
+    @DisplayName("Should prepend bytes to a compressed block")
+    void shouldPrependBytes() {
+      for (var input : inputs()) {
+        for (int prefixLength : new int[] {0, 1, 14, 15, 40, 300}) {
+          // Given
+          var prefix = new byte[prefixLength];
+          Arrays.fill(prefix, (byte) 'p');
+          var block = compress(input, false);
+          var head = Lz4.head(block);
+
+          // When
+          var tail = block.slice(block.position() + head.tail(), block.remaining() - head.tail());
+          int length = head.length(prefixLength) + prefixLength + tail.limit();
+          var spliced = ByteBuffer.allocate(length);
+          head.put(spliced, prefixLength);
+          assertEquals(head.length(prefixLength), spliced.position());
+          spliced.put(prefix).put(tail).flip();
+
+          // Then
+          var expected = Arrays.copyOf(prefix, prefixLength + input.length);
+          System.arraycopy(input, 0, expected, prefixLength, input.length);
+          assertArrayEquals(expected, decompress(spliced, expected.length), "+" + prefixLength);
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("Should reject a truncated head")
+    void shouldRejectTruncatedHead() {
+      assertThrows(IllegalArgumentException.class, () -> Lz4.head(ByteBuffer.allocate(0)));
+      assertThrows(
+          IllegalArgumentException.class, () -> Lz4.head(ByteBuffer.wrap(new byte[] {-16, -1})));
+      assertThrows(
+          IllegalArgumentException.class, () -> Lz4.head(ByteBuffer.wrap(new byte[] {0x30, 1})));
+    }
+  }
+
+  @Nested
+  @DisplayName("Match Length Tests")
+  class MatchLengthTests {
+
+    @Test
+    @DisplayName("Should find the first mismatch")
+    void shouldFindFirstMismatch() {
+      // Given
+      var array = new byte[512];
+      var buffer = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+
+      for (int mismatch = 0; mismatch < 200; mismatch++) {
+        Arrays.fill(array, (byte) 1);
+        array[256 + mismatch] = 2;
+
+        // When
+        int length = Lz4.matchLength(buffer, 256, 0, 500);
+
+        // Then
+        assertEquals(mismatch, length);
+      }
+      Arrays.fill(array, (byte) 1);
+      assertEquals(244, Lz4.matchLength(buffer, 256, 0, 500));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package io.github.csolo.network.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ConfigDiff Tests")
+class ConfigDiffTest {
+
+  static final Transport A = new Transport.Tcp("10.0.0.1:4000");
+  static final Transport B = new Transport.Tcp("10.0.0.2:4000");
+  static final Transport C = new Transport.Tcp("10.0.0.3:4000");
+
+  static NetworkConfig config(List<Transport> predefined) {
+    return new NetworkConfig(new DiscoveryConfig(predefined), new CompressionConfig());
+  }
+
+  @Test
+  @DisplayName("Should find added and removed transports regardless of order")
+  void shouldFindAddedAndRemovedTransports() {
+    // When
+    var diff = ConfigDiff.between(config(List.of(A, B)), config(List.of(C, B, C)));
+
+    // Then
+    assertEquals(List.of(C), diff.added());
+    assertEquals(List.of(A), diff.removed());
+    assertFalse(diff.pingChanged() || diff.compressionChanged() || diff.socketChanged());
+    assertFalse(diff.isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should detect changes applied in place")
+  void shouldDetectInPlaceChanges() {
+    // Given
+    var discovery = new DiscoveryConfig(List.of(A), Duration.ofSeconds(1));
+    var previous = config(List.of(A));
+    var updated =
+        new NetworkConfig(
+            Duration.ofSeconds(1),
+            discovery,
+            new CompressionConfig(CompressionAlgorithm.LZ4),
+            new SocketOptions().withBufferSizes(1 << 20, 1 << 20),
+            new ListenerConfig(8, 100, Duration.ofSeconds(1)));
+
+    // When
+    var diff = ConfigDiff.between(previous, updated);
+
+    // Then
+    assertEquals(List.of(), diff.added());
+    assertEquals(List.of(), diff.removed());
+    assertTrue(diff.pingChanged());
+    assertTrue(diff.compressionChanged());
+    assertTrue(diff.socketChanged());
+    assertTrue(diff.listenerChanged());
+    assertTrue(ConfigDiff.between(updated, updated).isEmpty());
+  }
+}
@@ -0,0 +1,35 @@
+package io.github.csolo.network.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ListenerConfig Tests")
+class ListenerConfigTest {
+
+  @Test
+  @DisplayName("Should have sensible defaults")
+  void shouldHaveSensibleDefaults() {
+    // When
+    var config = new ListenerConfig();
+
+    // Then
+    assertEquals(64, config.maxConcurrentHandshakes());
+    assertEquals(1000, config.handshakesPerSecond());
+    assertEquals(Duration.ofSeconds(5), config.handshakeTimeout());
+    assertEquals(config, new NetworkConfig(new DiscoveryConfig(List.of()), null).listener());
+  }
+
+  @Test
+  @DisplayName("Should reject invalid limits")
+  void shouldRejectInvalidLimits() {
+    var timeout = ListenerConfig.DEFAULT_HANDSHAKE_TIMEOUT;
+    assertThrows(IllegalArgumentException.class, () -> new ListenerConfig(0, 1000, timeout));
+    assertThrows(IllegalArgumentException.class, () -> new ListenerConfig(64, -1, timeout));
+    assertThrows(
+        IllegalArgumentException.class, () -> new ListenerConfig(64, 1000, Duration.ZERO));
+  }
+}
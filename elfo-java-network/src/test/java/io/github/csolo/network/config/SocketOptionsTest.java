@@ -0,0 +1,66 @@
+package io.github.csolo.network.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("SocketOptions Tests")
+class SocketOptionsTest {
+
+  @Test
+  @DisplayName("Should have sensible defaults")
+  void shouldHaveSensibleDefaults() {
+    // When
+    var options = new SocketOptions();
+
+    // Then
+    assertTrue(options.tcpNoDelay());
+    assertEquals(0, options.sendBufferSize());
+    assertEquals(0, options.receiveBufferSize());
+    assertFalse(options.keepAlive());
+    assertEquals(SocketOptions.DEFAULT_CONNECT_TIMEOUT, options.connectTimeout());
+    assertEquals(options, new NetworkConfig(new DiscoveryConfig(List.of()), null).socket());
+  }
+
+  @Test
+  @DisplayName("Should copy with keepalive and buffer sizes")
+  void shouldCopyWithKeepAliveAndBufferSizes() {
+    // When
+    var options =
+        new SocketOptions()
+            .withBufferSizes(1 << 20, 2 << 20)
+            .withKeepAlive(Duration.ofSeconds(30), Duration.ofSeconds(5), 3)
+            .withConnectTimeout(null)
+            .withTcpNoDelay(false);
+
+    // Then
+    assertFalse(options.tcpNoDelay());
+    assertEquals(1 << 20, options.sendBufferSize());
+    assertEquals(2 << 20, options.receiveBufferSize());
+    assertTrue(options.keepAlive());
+    assertEquals(Duration.ofSeconds(30), options.keepAliveIdle());
+    assertEquals(Duration.ofSeconds(5), options.keepAliveInterval());
+    assertEquals(3, options.keepAliveCount());
+    assertNull(options.connectTimeout());
+  }
+
+  @Test
+  @DisplayName("Should reject invalid options")
+  void shouldRejectInvalidOptions() {
+    var options = new SocketOptions();
+
+    // When & Then
+    assertThrows(IllegalArgumentException.class, () -> options.withBufferSizes(-1, 0));
+    assertThrows(IllegalArgumentException.class, () -> options.withKeepAlive(null, null, -1));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> options.withKeepAlive(Duration.ofMillis(500), null, 0));
+    assertThrows(IllegalArgumentException.class, () -> options.withConnectTimeout(Duration.ZERO));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SocketOptions(true, 0, 0, false, Duration.ofSeconds(1), null, 0, null));
+  }
+}
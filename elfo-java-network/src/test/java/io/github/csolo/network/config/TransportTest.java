@@ -100,5 +100,51 @@ class TransportTest {
       assertFalse(transport.isTcp());
       assertTrue(transport.isUds());
     }
+
+    @Test
+    @DisplayName("Should parse in-process transport")
+    void shouldParseInProcTransport() {
+      // When
+      Transport transport = Transport.fromString("inproc://node-1").get();
+
+      // Then
+      assertInstanceOf(Transport.InProc.class, transport);
+      assertTrue(transport.isInProc());
+      assertFalse(transport.isTcp());
+      assertEquals("node-1", transport.getAddress());
+      assertEquals("inproc://node-1", transport.toString());
+    }
+
+    @Test
+    @DisplayName("Should reject in-process transport without name")
+    void shouldRejectInProcTransportWithoutName() {
+      // When & Then
+      var ex = Transport.fromString("inproc://").getCause();
+      assertInstanceOf(IllegalArgumentException.class, ex);
+      assertEquals("Name of in-process transport cannot be empty", ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should parse shared memory transport")
+    void shouldParseShmTransport() {
+      // When
+      Transport transport = Transport.fromString("shm:///dev/shm/elfo-1").get();
+
+      // Then
+      assertInstanceOf(Transport.Shm.class, transport);
+      assertTrue(transport.isShm());
+      assertFalse(transport.isUds());
+      assertEquals("/dev/shm/elfo-1", transport.getAddress());
+      assertEquals("shm:///dev/shm/elfo-1", transport.toString());
+    }
+
+    @Test
+    @DisplayName("Should reject shared memory transport with directory path")
+    void shouldRejectShmTransportWithDirectory() {
+      // When & Then
+      var ex = Transport.fromString("shm:///dev/shm/").getCause();
+      assertInstanceOf(IllegalArgumentException.class, ex);
+      assertEquals("Path to shared memory segment cannot be directory", ex.getMessage());
+    }
   }
 }
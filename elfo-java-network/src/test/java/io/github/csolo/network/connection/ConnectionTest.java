@@ -0,0 +1,848 @@
+package io.github.csolo.network.connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.Chunk;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.compression.CompressionPolicy;
+import io.github.csolo.network.memory.BudgetExceededException;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.protocol.Capabilities;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.InProcChannel;
+import io.github.csolo.network.socket.raw.RawSocket;
+import io.github.csolo.network.testing.InProcCluster;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Connection Tests")
+class ConnectionTest {
+
+  /** Opens a pair of connected TCP stream connections: client and server sides. */
+  static Connection[] streamPair() throws Exception {
+    return streamPair(0, 0);
+  }
+
+  /** Opens a pair of connected TCP stream connections announcing the given capabilities. */
+  static Connection[] streamPair(int clientCapabilities, int serverCapabilities)
+      throws Exception {
+    return streamPair(clientCapabilities, serverCapabilities, MemoryBudget.global());
+  }
+
+  /** Opens a pair of connected TCP stream connections reserving from the budget. */
+  static Connection[] streamPair(
+      int clientCapabilities, int serverCapabilities, MemoryBudget budget) throws Exception {
+    var compression = new CompressionConfig(CompressionAlgorithm.LZ4);
+    try (var server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+      var accepted = new Socket[1];
+      var acceptor =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      accepted[0] =
+                          Socket.accept(
+                              new RawSocket(server.accept(), new RawSocket.Info.Tcp(null, null)),
+                              (short) 2,
+                              20L,
+                              serverCapabilities);
+                    } catch (Exception e) {
+                      throw new RuntimeException(e);
+                    }
+                  });
+      var client =
+          Connection.of(
+              Socket.connect(
+                  new Transport.Tcp("127.0.0.1:" + port), (short) 1, 10L, clientCapabilities),
+              compression,
+              budget);
+      acceptor.join();
+      return new Connection[] {client, Connection.of(accepted[0], compression, budget)};
+    }
+  }
+
+  /** Runs the action in background, its failure is rethrown by {@code join} on the test thread. */
+  static <T> CompletableFuture<T> async(Callable<T> action) {
+    var result = new CompletableFuture<T>();
+    Thread.ofVirtual()
+        .start(
+            () -> {
+              try {
+                result.complete(action.call());
+              } catch (Throwable e) {
+                result.completeExceptionally(e);
+              }
+            });
+    return result;
+  }
+
+  /** Flushes in background, so that the peer can read meanwhile. */
+  static CompletableFuture<Void> flushAsync(Connection connection) {
+    return async(
+        () -> {
+          connection.flush();
+          return null;
+        });
+  }
+
+  static ByteBuffer payload(int size) {
+    var payload = ByteBuffer.allocate(size);
+    for (int i = 0; i < size; i++) {
+      payload.put(i, (byte) (i * 7));
+    }
+    return payload;
+  }
+
+  /** Collects the streamed payload. */
+  static class CollectingSink implements StreamHandler.Sink {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int chunks;
+    int maxChunk;
+    boolean completed;
+    boolean aborted;
+
+    @Override
+    public void accept(ByteBuffer data) {
+      chunks++;
+      maxChunk = Math.max(maxChunk, data.remaining());
+      while (data.hasRemaining()) {
+        bytes.write(data.get());
+      }
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+
+    @Override
+    public void abort() {
+      aborted = true;
+    }
+  }
+
+  @Nested
+  @DisplayName("In-process Tests")
+  class InProcTests {
+
+    @Test
+    @DisplayName("Should handshake and hand frames over by reference")
+    void shouldHandFramesOverByReference() throws Exception {
+      try (var cluster = InProcCluster.builder().nodes(3).build()) {
+        // Given
+        var client = cluster.connection(1, 3);
+        var server = cluster.connection(3, 1);
+        var message = new Object();
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "Message", message));
+        client.flush();
+        var received = (NetworkEnvelope) server.receive();
+
+        // Then
+        assertInstanceOf(InProcConnection.class, client);
+        assertSame(message, received.payload());
+        assertEquals(3, client.socket().peer().nodeNo());
+        assertEquals(cluster.launchId(3), client.socket().peer().launchId());
+        assertEquals(1, server.socket().peer().nodeNo());
+        assertEquals(cluster.launchId(1), server.socket().peer().launchId());
+      }
+    }
+
+    @Test
+    @DisplayName("Should link only requested pairs")
+    void shouldLinkOnlyRequestedPairs() throws Exception {
+      // Given - star topology around node 1
+      try (var cluster = InProcCluster.builder().nodes(5).links((from, to) -> from == 1).build()) {
+        // When & Then
+        assertNotNull(cluster.connection(1, 5));
+        assertNotNull(cluster.connection(5, 1));
+        assertThrows(IllegalArgumentException.class, () -> cluster.connection(2, 3));
+      }
+    }
+
+    @Test
+    @DisplayName("Should return null after the peer closes")
+    void shouldReturnNullAfterPeerCloses() throws Exception {
+      try (var cluster = InProcCluster.builder().nodes(2).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+        client.send(new ProtocolMessages.Ping(1L));
+
+        // When
+        server.close();
+
+        // Then
+        assertThrows(Exception.class, () -> client.send(new ProtocolMessages.Ping(2L)));
+        assertNull(client.receive());
+      }
+    }
+
+    @Test
+    @DisplayName("Should deliver frames sent before the peer closes")
+    void shouldDeliverFramesSentBeforeClose() throws Exception {
+      try (var cluster = InProcCluster.builder().nodes(2).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "First", new Object()));
+        client.send(new NetworkEnvelope(1L, 2L, 4L, "Last", new Object()));
+        client.flush();
+        client.close();
+
+        // Then
+        assertEquals("First", ((NetworkEnvelope) server.receive()).name());
+        assertEquals("Last", ((NetworkEnvelope) server.receive()).name());
+        assertNull(server.receive());
+        assertThrows(Exception.class, () -> server.send(new ProtocolMessages.Ping(5L)));
+      }
+    }
+
+    @Test
+    @DisplayName("Should pass whole payload to stream handler")
+    void shouldPassWholePayloadToStreamHandler() throws Exception {
+      try (var cluster = InProcCluster.builder().nodes(2).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+        var sink = new CollectingSink();
+        server.streamHandler(head -> head.name().equals("Snapshot") ? sink : null);
+        var snapshot = payload(1000);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "Snapshot", snapshot));
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "Other", payload(10)));
+
+        // Then
+        assertEquals("Other", ((NetworkEnvelope) server.receive()).name());
+        assertTrue(sink.completed);
+        assertEquals(1, sink.chunks);
+        assertEquals(snapshot, ByteBuffer.wrap(sink.bytes.toByteArray()));
+      }
+    }
+
+    @Test
+    @DisplayName("Should reserve queued payloads until the peer takes them")
+    void shouldReserveQueuedPayloads() throws Exception {
+      var budget = new MemoryBudget(Long.MAX_VALUE);
+      try (var cluster = InProcCluster.builder().nodes(2).budget(budget).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "First", payload(100)));
+        client.send(new NetworkEnvelope(1L, 2L, 4L, "Second", payload(50)));
+        client.send(new NetworkEnvelope(1L, 2L, 5L, "Object", new Object()));
+
+        // Then
+        assertEquals(150, budget.account((short) 2, MemoryBudget.NO_GROUP).reserved());
+        server.receive();
+        assertEquals(50, budget.reserved());
+        server.receive();
+        assertEquals(0, budget.reserved());
+      }
+    }
+
+    @Test
+    @DisplayName("Should release queued payloads dropped on close")
+    void shouldReleaseDroppedPayloads() throws Exception {
+      var budget = new MemoryBudget(Long.MAX_VALUE);
+      try (var cluster = InProcCluster.builder().nodes(2).budget(budget).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "Data", payload(100)));
+
+        // When
+        server.close();
+
+        // Then
+        assertEquals(0, budget.reserved());
+      }
+    }
+
+    @Test
+    @DisplayName("Should fail to send over a full budget")
+    void shouldFailOverFullBudget() throws Exception {
+      var budget = new MemoryBudget(150);
+      try (var cluster = InProcCluster.builder().nodes(2).budget(budget).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "First", payload(100)));
+
+        // When & Then
+        assertThrows(
+            BudgetExceededException.class,
+            () -> client.send(new NetworkEnvelope(1L, 2L, 4L, "Second", payload(100))));
+        assertEquals(100, budget.reserved());
+        assertDoesNotThrow(() -> client.send(new ProtocolMessages.Ping(1L)));
+      }
+    }
+
+    @Test
+    @DisplayName("Should refuse connection to unknown name")
+    void shouldRefuseConnectionToUnknownName() {
+      // When & Then
+      var exception =
+          assertThrows(
+              java.net.ConnectException.class,
+              () -> RawSocket.connect(new Transport.InProc("no-such-node")));
+      assertTrue(exception.getMessage().contains("Connection refused"));
+    }
+  }
+
+  @Nested
+  @DisplayName("Stream Tests")
+  class StreamTests {
+
+    @Test
+    @DisplayName("Should exchange coalesced and oversized frames over TCP")
+    void shouldExchangeFramesOverTcp() throws Exception {
+      try (var server = ServerSocketChannel.open()) {
+        // Given
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+        var accepted = new Socket[1];
+        var acceptor =
+            Thread.ofVirtual()
+                .start(
+                    () -> {
+                      try {
+                        var channel = server.accept();
+                        accepted[0] =
+                            Socket.accept(
+                                new RawSocket(channel, new RawSocket.Info.Tcp(null, null)),
+                                (short) 2,
+                                20L,
+                                0);
+                      } catch (Exception e) {
+                        throw new RuntimeException(e);
+                      }
+                    });
+        var client =
+            Connection.of(
+                Socket.connect(new Transport.Tcp("127.0.0.1:" + port), (short) 1, 10L, 0));
+        acceptor.join();
+        var serverSide = Connection.of(accepted[0]);
+
+        var large = ByteBuffer.allocate(StreamConnection.BUFFER_SIZE * 3);
+        for (int i = 0; i < large.capacity(); i++) {
+          large.put(i, (byte) i);
+        }
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+          client.send(new ProtocolMessages.Ping(i));
+        }
+        client.send(new NetworkEnvelope(1L, 2L, 3L, "Large", large));
+        client.send(new ProtocolMessages.Pong(7L));
+        client.flush();
+
+        // Then
+        assertInstanceOf(StreamConnection.class, client);
+        for (int i = 0; i < 1000; i++) {
+          assertEquals(new ProtocolMessages.Ping(i), serverSide.receive());
+        }
+        // The large message is chunked, so the pong overtakes it.
+        assertEquals(new ProtocolMessages.Pong(7L), serverSide.receive());
+        var envelope = (NetworkEnvelope) serverSide.receive();
+        assertEquals(large, envelope.payload());
+
+        client.close();
+        assertNull(serverSide.receive());
+        serverSide.close();
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Batch Tests")
+  class BatchTests {
+
+    @Test
+    @DisplayName("Should take frames at hand in one call over TCP")
+    void shouldReceiveBatchOverTcp() throws Exception {
+      var pair = streamPair();
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var large = payload(StreamConnection.CHUNK_SIZE * 3);
+        for (int i = 0; i < 100; i++) {
+          client.send(new NetworkEnvelope(1L, 2L, i, "Small", payload(16)));
+        }
+        client.send(new NetworkEnvelope(1L, 3L, 100, "Large", large));
+        client.flush();
+        var frames = new Object[64];
+
+        // When
+        var traceIds = new ArrayList<Long>();
+        int batches = 0;
+        while (traceIds.size() < 101) {
+          int count = server.receive(frames, 32);
+          assertTrue(count > 0 && count <= 32, "Batch of " + count);
+          for (int i = 0; i < count; i++) {
+            traceIds.add(((NetworkEnvelope) frames[i]).traceId());
+          }
+          batches++;
+        }
+
+        // Then
+        assertTrue(batches < 101, "Frames at hand must be batched");
+        for (int i = 0; i < 101; i++) {
+          assertEquals(i, (long) traceIds.get(i));
+        }
+        client.close();
+        assertEquals(-1, server.receive(frames, 32));
+      }
+    }
+
+    @Test
+    @DisplayName("Should drain queued in-process frames under one wait")
+    void shouldReceiveBatchInProc() throws Exception {
+      try (var cluster = InProcCluster.builder().nodes(2).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+        for (int i = 0; i < 10; i++) {
+          client.send(new NetworkEnvelope(1L, 2L, i, "Small", new Object()));
+        }
+        client.send(new ProtocolMessages.Ping(7L));
+        var frames = new Object[16];
+
+        // When
+        int first = server.receive(frames, 4);
+
+        // Then: control frames first, then in order.
+        assertEquals(4, first);
+        assertEquals(new ProtocolMessages.Ping(7L), frames[0]);
+        assertEquals(2L, ((NetworkEnvelope) frames[3]).traceId());
+        assertEquals(7, server.receive(frames, 16));
+        assertEquals(9L, ((NetworkEnvelope) frames[6]).traceId());
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Chunking Tests")
+  class ChunkingTests {
+
+    @Test
+    @DisplayName("Should let small messages overtake a chunked one")
+    void shouldInterleaveSmallMessages() throws Exception {
+      var pair = streamPair();
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var large = payload(StreamConnection.CHUNK_SIZE * 64);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Large", large));
+        client.send(new NetworkEnvelope(1L, 3L, 0L, "Small", payload(16)));
+        var flusher = flushAsync(client);
+
+        // Then
+        assertEquals("Small", ((NetworkEnvelope) server.receive()).name());
+        var received = (NetworkEnvelope) server.receive();
+        assertEquals("Large", received.name());
+        assertEquals(large, received.payload());
+        flusher.join();
+      }
+    }
+
+    @Test
+    @DisplayName("Should keep order of messages between the same addresses")
+    void shouldKeepOrderBetweenSameAddresses() throws Exception {
+      var pair = streamPair();
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var first = payload(StreamConnection.CHUNK_SIZE * 4);
+        var third = payload(StreamConnection.CHUNK_SIZE * 2 + 1);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "First", first));
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Second", payload(16)));
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Third", third));
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Fourth", payload(16)));
+        var flusher = flushAsync(client);
+
+        // Then
+        assertEquals(first, ((NetworkEnvelope) server.receive()).payload());
+        assertEquals("Second", ((NetworkEnvelope) server.receive()).name());
+        assertEquals(third, ((NetworkEnvelope) server.receive()).payload());
+        assertEquals("Fourth", ((NetworkEnvelope) server.receive()).name());
+        flusher.join();
+      }
+    }
+
+    @Test
+    @DisplayName("Should stream chunks to the handler without reassembling")
+    void shouldStreamChunksToHandler() throws Exception {
+      var pair = streamPair();
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var sink = new CollectingSink();
+        server.streamHandler(head -> head.payloadSize() > 1_000_000 ? sink : null);
+        var snapshot = payload(4 * 1024 * 1024);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Snapshot", snapshot));
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "After", payload(16)));
+        var flusher = flushAsync(client);
+
+        // Then
+        assertEquals("After", ((NetworkEnvelope) server.receive()).name());
+        flusher.join();
+        assertTrue(sink.completed);
+        assertEquals(snapshot.capacity() / StreamConnection.CHUNK_SIZE, sink.chunks);
+        assertEquals(StreamConnection.CHUNK_SIZE, sink.maxChunk);
+        assertEquals(snapshot, ByteBuffer.wrap(sink.bytes.toByteArray()));
+      }
+    }
+
+    @Test
+    @DisplayName("Should abort stream if the connection is closed in the middle")
+    void shouldAbortStreamOnClose() throws Exception {
+      var pair = streamPair();
+      var client = pair[0];
+      try (var server = pair[1]) {
+        // Given
+        var sink = new CollectingSink();
+        server.streamHandler(head -> sink);
+        var splitter =
+            new Chunk.Splitter(1, new NetworkEnvelope(1L, 2L, 0L, "Cut", payload(1000)));
+
+        // When
+        client.send(splitter.next(100));
+        client.flush();
+        client.close();
+
+        // Then
+        assertThrows(EOFException.class, server::receive);
+        assertTrue(sink.aborted);
+        assertFalse(sink.completed);
+      }
+    }
+
+    @Test
+    @DisplayName("Should reject chunked message over the max size before reserving it")
+    void shouldRejectOversizedChunkedMessage() throws Exception {
+      // Given
+      var budget = new MemoryBudget(Long.MAX_VALUE);
+      var assembler = new ChunkAssembler(budget.account((short) 1, MemoryBudget.NO_GROUP), 1024);
+      var oversized = new Chunk.Splitter(1, new NetworkEnvelope(1L, 2L, 0L, "Huge", payload(2048)));
+      var streamed = new Chunk.Splitter(2, new NetworkEnvelope(1L, 2L, 0L, "Huge", payload(2048)));
+      var sink = new CollectingSink();
+
+      // When
+      var exception =
+          assertThrows(ProtocolException.class, () -> assembler.accept(oversized.next(100)));
+      assembler.handler(head -> sink);
+      assembler.accept(streamed.next(100));
+
+      // Then
+      assertTrue(exception.getMessage().contains("exceeds max message size 1024"));
+      assertEquals(0, budget.reserved());
+      assertEquals(1, sink.chunks);
+    }
+  }
+
+  @Nested
+  @DisplayName("Priority Tests")
+  class PriorityTests {
+
+    @Test
+    @DisplayName("Should deliver control frames ahead of queued in-process frames")
+    void shouldDeliverControlFramesAheadInProc() throws Exception {
+      try (var cluster = InProcCluster.builder().nodes(2).build()) {
+        // Given
+        var client = cluster.connection(1, 2);
+        var server = cluster.connection(2, 1);
+        for (int i = 0; i < InProcChannel.FRAME_CAPACITY; i++) {
+          client.send(new NetworkEnvelope(1L, 2L, i, "Data", payload(16)));
+        }
+
+        // When
+        client.send(new ProtocolMessages.UpdateFlow(2L, 100));
+        client.send(new ProtocolMessages.Ping(1L));
+
+        // Then
+        assertEquals(new ProtocolMessages.UpdateFlow(2L, 100), server.receive());
+        assertEquals(new ProtocolMessages.Ping(1L), server.receive());
+        assertEquals(0L, ((NetworkEnvelope) server.receive()).traceId());
+      }
+    }
+
+    @Test
+    @DisplayName("Should deliver window updates ahead of saturating data")
+    void shouldDeliverWindowUpdatesUnderSaturation() throws Exception {
+      var pair = streamPair();
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given - small kernel buffers, so that data piles up in the connection
+        ((SocketChannel) client.socket().raw().channel())
+            .setOption(StandardSocketOptions.SO_SNDBUF, 64 * 1024);
+        ((SocketChannel) server.socket().raw().channel())
+            .setOption(StandardSocketOptions.SO_RCVBUF, 64 * 1024);
+        int messages = 32;
+        int messageSize = 1024 * 1024;
+        var received = new AtomicLong();
+        server.streamHandler(
+            head ->
+                new StreamHandler.Sink() {
+                  @Override
+                  public void accept(ByteBuffer data) {
+                    received.addAndGet(data.remaining());
+                  }
+
+                  @Override
+                  public void complete() {}
+                });
+        for (int i = 0; i < messages; i++) {
+          client.send(new NetworkEnvelope(1L, 2L, i, "Data", payload(messageSize)));
+        }
+        var dataFlusher = flushAsync(client);
+        // The receiver doesn't read yet, let the writer get stuck on the full socket.
+        Thread.sleep(200);
+
+        // When
+        client.send(new ProtocolMessages.UpdateFlow(2L, 1000));
+        boolean dataPending = !dataFlusher.isDone();
+        var controlFlusher = flushAsync(client);
+
+        // Then
+        long receivedBefore = received.get();
+        var frame = server.receive();
+        long overtaken = received.get() - receivedBefore;
+
+        assertTrue(dataPending, "Window update must be sent while data is stuck");
+        assertEquals(new ProtocolMessages.UpdateFlow(2L, 1000), frame);
+        assertTrue(
+            overtaken <= 1024 * 1024,
+            String.format("Window update waited for %d KiB of data", overtaken / 1024));
+
+        // Drain the rest, the sink consumes all data.
+        var reader = async(server::receive);
+        dataFlusher.join();
+        controlFlusher.join();
+        client.close();
+        assertNull(reader.get(10, TimeUnit.SECONDS));
+        assertEquals((long) messages * messageSize, received.get());
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Compression Tests")
+  class CompressionTests {
+
+    static ByteBuffer text(int i) {
+      var text = "{\"id\":" + i + ",\"status\":\"ok\",\"items\":[\"alpha\",\"beta\",\"gamma\"]}";
+      return ByteBuffer.wrap(text.repeat(16).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ByteBuffer noise(Random random, int size) {
+      var bytes = new byte[size];
+      random.nextBytes(bytes);
+      return ByteBuffer.wrap(bytes);
+    }
+
+    @Test
+    @DisplayName("Should compress compressible types and skip incompressible ones")
+    void shouldCompressAdaptively() throws Exception {
+      var pair = streamPair(Capabilities.LZ4, Capabilities.LZ4);
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var random = new Random(42);
+        var before = client.socket().metrics().snapshot();
+        int messages = 2000;
+
+        // When
+        var sent = new java.util.ArrayList<NetworkEnvelope>();
+        for (int i = 0; i < messages; i++) {
+          var envelope =
+              i % 2 == 0
+                  ? new NetworkEnvelope(1L, 2L, i, "Text", text(i))
+                  : new NetworkEnvelope(1L, 2L, i, "Noise", noise(random, 600));
+          sent.add(envelope);
+          client.send(envelope);
+        }
+        var flusher = flushAsync(client);
+
+        // Then
+        for (var expected : sent) {
+          var received = (NetworkEnvelope) server.receive();
+          assertEquals(expected.traceId(), received.traceId());
+          assertEquals(expected.payload(), received.payload());
+        }
+        flusher.join();
+
+        var stats = ((StreamConnection) client).compressionStats();
+        assertTrue(stats.get("Text").compressible(), stats.toString());
+        assertFalse(stats.get("Noise").compressible(), stats.toString());
+        assertTrue(stats.get("Noise").skipped() > messages / 2 - 10, stats.toString());
+
+        var after = client.socket().metrics().snapshot();
+        long uncompressed = after.uncompressedBytes() - before.uncompressedBytes();
+        long compressed = after.compressedBytes() - before.compressedBytes();
+        assertTrue(uncompressed > 2 * compressed, uncompressed + " -> " + compressed);
+        assertTrue(after.compressionNanos() > before.compressionNanos(), "compression time");
+        assertTrue(server.socket().metrics().snapshot().decompressionNanos() > 0);
+      }
+    }
+
+    @Test
+    @DisplayName("Should not compress if the peer doesn't support LZ4")
+    void shouldNotCompressWithoutPeerSupport() throws Exception {
+      var pair = streamPair(Capabilities.LZ4, 0);
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var envelope = new NetworkEnvelope(1L, 2L, 0L, "Text", text(0));
+
+        // When
+        client.send(envelope);
+        client.flush();
+
+        // Then
+        assertFalse(client.socket().supports(Capabilities.LZ4));
+        assertEquals(envelope.payload(), ((NetworkEnvelope) server.receive()).payload());
+        assertEquals(java.util.Map.of(), ((StreamConnection) client).compressionStats());
+      }
+    }
+
+    @Test
+    @DisplayName("Should switch compression off and on in place")
+    void shouldSwitchCompressionInPlace() throws Exception {
+      var pair = streamPair(Capabilities.LZ4, Capabilities.LZ4);
+      try (var client = pair[0];
+          var server = pair[1]) {
+        // Given
+        var lz4 = new CompressionConfig(CompressionAlgorithm.LZ4);
+
+        // When: the server keeps compressing, the client stops.
+        client.compression(new CompressionConfig());
+        server.send(new NetworkEnvelope(2L, 1L, 0L, "Text", text(0)));
+        server.flush();
+        client.send(new NetworkEnvelope(1L, 2L, 1L, "Text", text(1)));
+        client.flush();
+
+        // Then
+        assertEquals(text(0), ((NetworkEnvelope) client.receive()).payload());
+        assertEquals(text(1), ((NetworkEnvelope) server.receive()).payload());
+        assertEquals(java.util.Map.of(), ((StreamConnection) client).compressionStats());
+
+        // When
+        client.compression(lz4);
+        client.send(new NetworkEnvelope(1L, 2L, 2L, "Text", text(2)));
+        client.flush();
+
+        // Then
+        assertEquals(text(2), ((NetworkEnvelope) server.receive()).payload());
+        assertTrue(((StreamConnection) client).compressionStats().containsKey("Text"));
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Memory Tests")
+  class MemoryTests {
+
+    @Test
+    @DisplayName("Should hold buffers under the peer's account until closed")
+    void shouldReleaseBuffersOnClose() throws Exception {
+      // Given
+      var budget = new MemoryBudget(Long.MAX_VALUE);
+      var pair = streamPair(0, 0, budget);
+
+      // When
+      long client = budget.reserved((short) 2);
+      long server = budget.reserved((short) 1);
+      pair[0].close();
+      pair[1].close();
+
+      // Then
+      assertTrue(client > 2 * 64 * 1024, "client buffers: " + client);
+      assertTrue(server > 2 * 64 * 1024, "server buffers: " + server);
+      assertEquals(0, budget.reserved());
+      assertEquals(List.of(), budget.usage());
+    }
+
+    @Test
+    @DisplayName("Should reject large messages but pass small ones if the budget is full")
+    void shouldRejectLargeMessagesWhenFull() throws Exception {
+      // Given: fixed buffers alone exceed the limit.
+      var budget = new MemoryBudget(1024);
+      var pair = streamPair(0, 0, budget);
+      try (var client = pair[0];
+          var server = pair[1]) {
+        var large =
+            new NetworkEnvelope(1L, 2L, 0L, "Large", payload(StreamConnection.CHUNK_SIZE * 4));
+
+        // When
+        assertThrows(BudgetExceededException.class, () -> client.send(large));
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Small", payload(16)));
+        client.flush();
+
+        // Then
+        assertEquals("Small", ((NetworkEnvelope) server.receive()).name());
+        assertEquals(MemoryBudget.Pressure.FULL, budget.pressure());
+        assertEquals(1, budget.rejections());
+      }
+    }
+
+    @Test
+    @DisplayName("Should release a large message once written")
+    void shouldReleaseLargeMessageOnceWritten() throws Exception {
+      // Given
+      var budget = new MemoryBudget(Long.MAX_VALUE);
+      var pair = streamPair(0, 0, budget);
+      try (var client = pair[0];
+          var server = pair[1]) {
+        long idle = budget.reserved((short) 2);
+        var large = payload(StreamConnection.CHUNK_SIZE * 4);
+
+        // When
+        client.send(new NetworkEnvelope(1L, 2L, 0L, "Large", large));
+        long sending = budget.reserved((short) 2);
+        var flusher = flushAsync(client);
+        assertEquals(large, ((NetworkEnvelope) server.receive()).payload());
+        flusher.join();
+
+        // Then
+        assertEquals(idle + large.capacity(), sending);
+        assertEquals(idle, budget.reserved((short) 2));
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package io.github.csolo.network.connection;
+
+import static io.github.csolo.network.connection.ConnectionTest.flushAsync;
+import static io.github.csolo.network.connection.ConnectionTest.payload;
+import static io.github.csolo.network.connection.ConnectionTest.streamPair;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.protocol.Capabilities;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FanOut Tests")
+class FanOutTest {
+  static final CompressionConfig LZ4 = new CompressionConfig(CompressionAlgorithm.LZ4);
+
+  static ByteBuffer text(int size) {
+    var text = new StringBuilder();
+    for (int i = 0; text.length() < size; i++) {
+      text.append("{\"id\":").append(i).append(",\"status\":\"ok\"}");
+    }
+    return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8), 0, size).slice();
+  }
+
+  /** Opens pairs of connections, the client sides are fanned out to. */
+  static List<Connection[]> pairs(int... serverCapabilities) throws Exception {
+    var pairs = new ArrayList<Connection[]>();
+    for (int capabilities : serverCapabilities) {
+      pairs.add(streamPair(Capabilities.LZ4, capabilities));
+    }
+    return pairs;
+  }
+
+  static void close(List<Connection[]> pairs) {
+    for (var pair : pairs) {
+      pair[0].close();
+      pair[1].close();
+    }
+  }
+
+  static List<FanOut.Target> targets(List<Connection[]> pairs) {
+    var targets = new ArrayList<FanOut.Target>();
+    for (int i = 0; i < pairs.size(); i++) {
+      targets.add(new FanOut.Target(pairs.get(i)[0], 100L + i));
+    }
+    return targets;
+  }
+
+  @Test
+  @DisplayName("Should compress the payload once for all targets")
+  void shouldCompressOnce() throws Exception {
+    for (int size : new int[] {1024, 12 * 1024}) {
+      var pairs = pairs(Capabilities.LZ4, Capabilities.LZ4, Capabilities.LZ4);
+      try {
+        // Given
+        var envelope = new NetworkEnvelope(1L, 0L, 7L, "Snapshot", text(size));
+        int pooled = SharedBlock.pooled();
+        var before = pairs.get(0)[0].socket().metrics().snapshot();
+
+        // When
+        FanOut.send(envelope, targets(pairs), LZ4);
+        for (var pair : pairs) {
+          pair[0].flush();
+        }
+
+        // Then
+        for (int i = 0; i < pairs.size(); i++) {
+          var received = (NetworkEnvelope) pairs.get(i)[1].receive();
+          assertEquals(100L + i, received.recipient());
+          assertEquals(1L, received.sender());
+          assertEquals(7L, received.traceId());
+          assertEquals("Snapshot", received.name());
+          assertEquals(envelope.payload(), received.payload());
+        }
+        assertEquals(Math.max(pooled, 1), SharedBlock.pooled(), "Block must be back in the pool");
+
+        var after = pairs.get(0)[0].socket().metrics().snapshot();
+        long uncompressed = after.uncompressedBytes() - before.uncompressedBytes();
+        long compressed = after.compressedBytes() - before.compressedBytes();
+        assertTrue(uncompressed > size, "uncompressed " + uncompressed);
+        assertTrue(uncompressed > 2 * compressed, uncompressed + " -> " + compressed);
+        assertEquals(
+            before.compressionNanos(), after.compressionNanos(), "Must not compress per target");
+      } finally {
+        close(pairs);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should write large blocks out straight from the shared block")
+  void shouldGatherLargeBlocks() throws Exception {
+    var pairs = pairs(Capabilities.LZ4, Capabilities.LZ4);
+    try {
+      // Given: half text, half noise, so that the block is too large to be copied.
+      var bytes = new byte[StreamConnection.CHUNK_SIZE];
+      new Random(42).nextBytes(bytes);
+      text(bytes.length / 2).get(bytes, 0, bytes.length / 2);
+      var envelope = new NetworkEnvelope(1L, 0L, 7L, "Snapshot", ByteBuffer.wrap(bytes));
+      pairs.get(0)[0].send(new NetworkEnvelope(1L, 100L, 6L, "Before", text(100)));
+      var before = pairs.get(0)[0].socket().metrics().snapshot();
+
+      // When
+      FanOut.send(envelope, targets(pairs), LZ4);
+
+      // Then: written out right away, after the envelope queued before.
+      var after = pairs.get(0)[0].socket().metrics().snapshot();
+      assertTrue(
+          after.compressedBytes() - before.compressedBytes() > StreamConnection.GATHER_THRESHOLD);
+      assertTrue(after.bytesWritten() - before.bytesWritten() > bytes.length / 2);
+      assertEquals(6L, ((NetworkEnvelope) pairs.get(0)[1].receive()).traceId());
+      for (int i = 0; i < pairs.size(); i++) {
+        var received = (NetworkEnvelope) pairs.get(i)[1].receive();
+        assertEquals(100L + i, received.recipient());
+        assertEquals(envelope.payload(), received.payload());
+      }
+    } finally {
+      close(pairs);
+    }
+  }
+
+  @Test
+  @DisplayName("Should send as usual to targets that don't compress")
+  void shouldSendAsUsualWithoutCompression() throws Exception {
+    var pairs = pairs(Capabilities.LZ4, 0);
+    try {
+      // Given
+      var envelope = new NetworkEnvelope(1L, 0L, 7L, "Snapshot", text(4096));
+
+      // When
+      FanOut.send(envelope, targets(pairs), LZ4);
+      for (var pair : pairs) {
+        pair[0].flush();
+      }
+
+      // Then
+      assertFalse(pairs.get(1)[0].socket().supports(Capabilities.LZ4));
+      for (int i = 0; i < pairs.size(); i++) {
+        var received = (NetworkEnvelope) pairs.get(i)[1].receive();
+        assertEquals(100L + i, received.recipient());
+        assertEquals(envelope.payload(), received.payload());
+      }
+    } finally {
+      close(pairs);
+    }
+  }
+
+  @Test
+  @DisplayName("Should send chunked and incompressible payloads as usual")
+  void shouldSendUnsharedPayloads() throws Exception {
+    var pairs = pairs(Capabilities.LZ4, Capabilities.LZ4);
+    try {
+      // Given
+      var large = new NetworkEnvelope(1L, 0L, 1L, "Large", text(3 * StreamConnection.CHUNK_SIZE));
+      var random = new byte[2048];
+      new Random(42).nextBytes(random);
+      var noise = new NetworkEnvelope(1L, 0L, 2L, "Noise", ByteBuffer.wrap(random));
+
+      // When
+      FanOut.send(large, targets(pairs), LZ4);
+      FanOut.send(noise, targets(pairs), LZ4);
+      var flushers = new ArrayList<CompletableFuture<Void>>();
+      for (var pair : pairs) {
+        flushers.add(flushAsync(pair[0]));
+      }
+
+      // Then
+      for (int i = 0; i < pairs.size(); i++) {
+        var first = (NetworkEnvelope) pairs.get(i)[1].receive();
+        var second = (NetworkEnvelope) pairs.get(i)[1].receive();
+        assertEquals(large.payload(), first.payload());
+        assertEquals(noise.payload(), second.payload());
+        assertEquals(100L + i, second.recipient());
+      }
+      for (var flusher : flushers) {
+        flusher.join();
+      }
+    } finally {
+      close(pairs);
+    }
+  }
+
+  @Test
+  @DisplayName("Should keep order behind a chunked message to the same recipient")
+  void shouldKeepOrderBehindStream() throws Exception {
+    var pair = streamPair(Capabilities.LZ4, Capabilities.LZ4);
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given
+      var large =
+          new NetworkEnvelope(1L, 100L, 1L, "Large", payload(StreamConnection.CHUNK_SIZE * 4));
+      client.send(large);
+
+      // When
+      var small = new NetworkEnvelope(1L, 0L, 2L, "Snapshot", text(2048));
+      FanOut.send(small, List.of(new FanOut.Target(client, 100L)), LZ4);
+      var flusher = flushAsync(client);
+
+      // Then
+      assertEquals(1L, ((NetworkEnvelope) server.receive()).traceId());
+      assertEquals(2L, ((NetworkEnvelope) server.receive()).traceId());
+      flusher.join();
+    }
+  }
+}
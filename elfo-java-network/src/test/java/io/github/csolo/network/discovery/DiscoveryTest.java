@@ -0,0 +1,317 @@
+package io.github.csolo.network.discovery;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.config.DiscoveryConfig;
+import io.github.csolo.network.config.NetworkConfig;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.metrics.TransportMetrics;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.testing.StandInNode;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Discovery Tests")
+class DiscoveryTest {
+
+  static NetworkConfig config(List<Transport> predefined, SocketOptions socket) {
+    return new NetworkConfig(
+        Duration.ofSeconds(5),
+        new DiscoveryConfig(predefined, Duration.ofMillis(50)),
+        new CompressionConfig(),
+        socket);
+  }
+
+  static Discovery start(NetworkConfig config, BlockingQueue<Connection> connected) {
+    return Discovery.start(
+        config,
+        (short) 1,
+        1L,
+        connection -> {
+          connected.add(connection);
+          try {
+            while (connection.receive() != null) {
+              // Drain until closed.
+            }
+          } catch (IOException e) {
+            // Closed.
+          }
+        });
+  }
+
+  @Test
+  @DisplayName("Should connect to added and disconnect from removed transports only")
+  void shouldReloadTransports() throws Exception {
+    try (var a = StandInNode.builder().start();
+        var b = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var options = new SocketOptions();
+      try (var discovery = start(config(List.of(a.transport()), options), connected)) {
+        var toA = connected.poll(5, TimeUnit.SECONDS);
+        assertNotNull(toA);
+
+        // When
+        var diff = discovery.reload(config(List.of(a.transport(), b.transport()), options));
+        var toB = connected.poll(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(List.of(b.transport()), diff.added());
+        assertNotNull(toB);
+        assertNotSame(toA, toB);
+        assertEquals(2, discovery.connections().size());
+        assertTrue(discovery.connections().contains(toA), "Kept connection must not be redialed");
+
+        // When
+        diff = discovery.reload(config(List.of(b.transport()), options));
+
+        // Then
+        assertEquals(List.of(a.transport()), diff.removed());
+        assertEquals(List.of(b.transport()), discovery.transports());
+        assertEquals(List.of(toB), discovery.connections());
+        assertNull(connected.poll(200, TimeUnit.MILLISECONDS), "Nothing must be redialed");
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should apply socket options to established connections")
+  void shouldApplySocketOptionsInPlace() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var transports = List.of(node.transport());
+      try (var discovery = start(config(transports, new SocketOptions()), connected)) {
+        var connection = connected.poll(5, TimeUnit.SECONDS);
+        var channel = (NetworkChannel) connection.socket().raw().channel();
+        assertTrue(channel.getOption(StandardSocketOptions.TCP_NODELAY));
+
+        // When
+        var diff = discovery.reload(config(transports, new SocketOptions().withTcpNoDelay(false)));
+
+        // Then
+        assertTrue(diff.socketChanged());
+        assertFalse(channel.getOption(StandardSocketOptions.TCP_NODELAY));
+        assertEquals(List.of(connection), discovery.connections());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should apply socket options to open data connections")
+  void shouldApplySocketOptionsToDataConnections() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var transports = List.of(node.transport());
+      try (var discovery = start(config(transports, new SocketOptions()), connected)) {
+        short peer = connected.poll(5, TimeUnit.SECONDS).socket().peer().nodeNo();
+        var closed = discovery.openData(peer, (short) 1, (short) 2, 1000);
+        closed.close();
+        try (var link = discovery.openData(peer, (short) 1, (short) 3, 1000)) {
+          var channel = (NetworkChannel) link.connection().socket().raw().channel();
+          assertTrue(channel.getOption(StandardSocketOptions.TCP_NODELAY));
+
+          // When
+          discovery.reload(config(transports, new SocketOptions().withTcpNoDelay(false)));
+
+          // Then
+          assertFalse(channel.getOption(StandardSocketOptions.TCP_NODELAY));
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should redial after the connection is lost")
+  void shouldRedial() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        var first = connected.poll(5, TimeUnit.SECONDS);
+
+        // When
+        first.socket().raw().close();
+
+        // Then
+        var second = connected.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertNotSame(first, second);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should forget groups of a peer once disconnected")
+  void shouldForgetInterestsOnDisconnect() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        var connection = connected.poll(5, TimeUnit.SECONDS);
+        short peer = connection.socket().peer().nodeNo();
+        var groups = List.of(new ProtocolMessages.GroupInfo((short) 1, "gate", List.of("core")));
+        discovery.interests().join(peer, new ProtocolMessages.SwitchToControl(groups));
+        int core = discovery.interests().intern("core");
+        assertEquals(1, discovery.interests().view().count(core));
+
+        // When
+        connection.socket().raw().close();
+
+        // Then
+        assertNotNull(connected.poll(5, TimeUnit.SECONDS), "Must redial");
+        assertEquals(0, discovery.interests().view().count(core));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should restore groups of the same peer launch on reconnect")
+  void shouldRestoreGroupsOnReconnect() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        var first = connected.poll(5, TimeUnit.SECONDS);
+        var groups =
+            new ProtocolMessages.SwitchToControl(
+                List.of(new ProtocolMessages.GroupInfo((short) 1, "gate", List.of("core"))));
+        assertTrue(discovery.announced(first, groups));
+        int core = discovery.interests().intern("core");
+
+        // When
+        first.socket().raw().close();
+        var second = connected.poll(5, TimeUnit.SECONDS);
+
+        // Then: restored before the handler got the connection.
+        assertNotSame(first, second);
+        assertEquals(1, discovery.interests().view().count(core));
+        assertFalse(discovery.announced(second, groups), "Unchanged groups must not be rebuilt");
+        assertTrue(discovery.announced(second, new ProtocolMessages.SwitchToControl(List.of())));
+        assertEquals(0, discovery.interests().view().count(core));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should open data connections used before ahead on reconnect")
+  void shouldPrepareDataConnections() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        var first = connected.poll(5, TimeUnit.SECONDS);
+        short peer = first.socket().peer().nodeNo();
+        var expected = new ProtocolMessages.SwitchToData((short) 2, (short) 1, 100_000);
+        try (var link = discovery.openData(peer, (short) 1, (short) 2, 1000)) {
+          assertEquals(expected, link.reply());
+        }
+        assertFalse(discovery.isPrepared(peer, (short) 1, (short) 2));
+
+        // When
+        first.socket().raw().close();
+        assertNotNull(connected.poll(5, TimeUnit.SECONDS));
+
+        // Then
+        assertTrue(discovery.isPrepared(peer, (short) 1, (short) 2));
+        try (var link = discovery.openData(peer, (short) 1, (short) 2, 1000)) {
+          assertEquals(expected, link.reply());
+        }
+        assertFalse(discovery.isPrepared(peer, (short) 1, (short) 2));
+        assertThrows(
+            IOException.class, () -> discovery.openData((short) 9, (short) 1, (short) 2, 1000));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should count only redials of the control connection as reconnects")
+  void shouldCountReconnects() throws Exception {
+    try (var node = StandInNode.builder().node((short) 26, 2601L).start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        var first = connected.poll(5, TimeUnit.SECONDS);
+        var metrics = first.socket().metrics();
+        discovery.openData((short) 26, (short) 1, (short) 2, 1000).close();
+        assertEquals(0, metrics.snapshot().reconnects());
+
+        // When
+        first.socket().raw().close();
+        assertNotNull(connected.poll(5, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(1, metrics.snapshot().reconnects());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should count envelopes of data connections under their group pair")
+  void shouldCountGroupPairTraffic() throws Exception {
+    try (var node = StandInNode.builder().node((short) 27, 2701L).start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        assertNotNull(connected.poll(5, TimeUnit.SECONDS));
+        var metrics = TransportMetrics.global().groupPair((short) 3, (short) 27, (short) 4);
+
+        // When
+        try (var link = discovery.openData((short) 27, (short) 3, (short) 4, 1000)) {
+          var envelope = new NetworkEnvelope(1L, 27L << 48, 0L, "Data", ByteBuffer.allocate(16));
+          link.connection().send(envelope);
+          link.connection().flush();
+          assertEquals("Data", ((NetworkEnvelope) link.connection().receive()).name());
+        }
+
+        // Then
+        var snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.framesWritten());
+        assertEquals(1, snapshot.framesRead());
+        assertEquals(snapshot.bytesWritten(), snapshot.bytesRead());
+        assertTrue(snapshot.bytesWritten() > 16);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should report suspicion of connected peers only")
+  void shouldReportSuspicion() throws Exception {
+    try (var node = StandInNode.builder().start()) {
+      // Given
+      var connected = new LinkedBlockingQueue<Connection>();
+      var config = config(List.of(node.transport()), new SocketOptions());
+      try (var discovery = start(config, connected)) {
+        var connection = connected.poll(5, TimeUnit.SECONDS);
+        short peer = connection.socket().peer().nodeNo();
+
+        // When
+        double phi = discovery.suspicion(peer);
+
+        // Then
+        assertTrue(phi < 1, "phi " + phi);
+        assertEquals(Double.POSITIVE_INFINITY, discovery.suspicion((short) 9));
+      }
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package io.github.csolo.network.discovery;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.core.Addr;
+import io.github.csolo.network.protocol.ProtocolMessages.GroupInfo;
+import io.github.csolo.network.protocol.ProtocolMessages.SwitchToControl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("InterestIndex Tests")
+class InterestIndexTest {
+
+  static SwitchToControl groups(GroupInfo... groups) {
+    return new SwitchToControl(List.of(groups));
+  }
+
+  static GroupInfo group(int groupNo, String... interests) {
+    return new GroupInfo((short) groupNo, "group" + groupNo, List.of(interests));
+  }
+
+  /** Collects "node/group" of every remote group interested in the name. */
+  static Set<String> interested(InterestIndex index, String name) {
+    var groups = new TreeSet<String>();
+    var view = index.view();
+    view.forEach(
+        view.id(name),
+        bits -> {
+          var addr = new Addr(bits);
+          groups.add(addr.nodeNo().get().intoBits() + "/" + addr.groupNo().get().intoBits());
+        });
+    assertEquals(groups.size(), view.count(view.id(name)));
+    return groups;
+  }
+
+  @Test
+  @DisplayName("Should find groups interested in a name")
+  void shouldFindInterestedGroups() {
+    // Given
+    var index = new InterestIndex();
+
+    // When
+    index.join((short) 2, groups(group(1, "core", "db"), group(2, "core")));
+    index.join((short) 3, groups(group(1, "db")));
+
+    // Then
+    assertEquals(Set.of("2/1", "2/2"), interested(index, "core"));
+    assertEquals(Set.of("2/1", "3/1"), interested(index, "db"));
+    assertEquals(Set.of(), interested(index, "gate"));
+    assertTrue(index.view().isInterested(index.intern("db"), (short) 3, (short) 1));
+    assertFalse(index.view().isInterested(index.intern("core"), (short) 3, (short) 1));
+  }
+
+  @Test
+  @DisplayName("Should replace groups of a rejoining node and drop them on leave")
+  void shouldUpdateIncrementally() {
+    // Given
+    var index = new InterestIndex();
+    index.join((short) 2, groups(group(1, "core")));
+    index.join((short) 3, groups(group(1, "core")));
+    var before = index.view();
+
+    // When
+    assertFalse(index.join((short) 3, groups(group(1, "core"))), "Unchanged groups");
+    assertTrue(index.join((short) 2, groups(group(4, "db"))));
+
+    // Then
+    assertEquals(Set.of("3/1"), interested(index, "core"));
+    assertEquals(Set.of("2/4"), interested(index, "db"));
+    assertEquals(2, before.count(before.id("core")), "Published views must not change");
+
+    // When
+    index.leave((short) 3);
+    index.leave((short) 7);
+
+    // Then
+    assertEquals(Set.of(), interested(index, "core"));
+    assertEquals(Set.of("2/4"), interested(index, "db"));
+  }
+
+  @Test
+  @DisplayName("Should keep ids stable and intern names nobody is interested in yet")
+  void shouldKeepIdsStable() {
+    // Given
+    var index = new InterestIndex();
+    int gate = index.intern("gate");
+    assertEquals(0, index.view().count(gate));
+
+    // When
+    index.join((short) 2, groups(group(1, "core", "gate")));
+    index.leave((short) 2);
+    index.join((short) 3, groups(group(1, "gate")));
+
+    // Then
+    assertEquals(gate, index.intern("gate"));
+    assertEquals(gate, index.view().id("gate"));
+    assertEquals(Set.of("3/1"), interested(index, "gate"));
+    assertEquals(-1, index.view().id("unknown"));
+  }
+
+  @Test
+  @DisplayName("Should span many words of slots and reuse freed ones")
+  void shouldHandleManyGroups() {
+    // Given
+    var index = new InterestIndex();
+    var expected = new TreeSet<String>();
+    for (int node = 1; node <= 10; node++) {
+      var infos = new ArrayList<GroupInfo>();
+      for (int group = 1; group <= 20; group++) {
+        infos.add(group(group, group % 2 == 0 ? "core" : "db"));
+        if (group % 2 == 0 && node != 5) {
+          expected.add(node + "/" + group);
+        }
+      }
+      index.join((short) node, new SwitchToControl(infos));
+    }
+
+    // When
+    index.leave((short) 5);
+    index.join((short) 11, groups(group(1, "gate")));
+
+    // Then
+    assertEquals(expected, interested(index, "core"));
+    assertEquals(90, index.view().count(index.view().id("db")));
+    assertEquals(Set.of("11/1"), interested(index, "gate"));
+  }
+}
@@ -0,0 +1,71 @@
+package io.github.csolo.network.discovery;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.protocol.ProtocolMessages.GroupInfo;
+import io.github.csolo.network.protocol.ProtocolMessages.SwitchToControl;
+import io.github.csolo.network.socket.Socket;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("TopologyCache Tests")
+class TopologyCacheTest {
+  static final SwitchToControl GROUPS =
+      new SwitchToControl(List.of(new GroupInfo((short) 1, "gate", List.of("core"))));
+
+  @Test
+  @DisplayName("Should keep groups and data pairs per peer launch")
+  void shouldKeepStatePerLaunch() {
+    // Given
+    var cache = new TopologyCache(TopologyCache.DEFAULT_CAPACITY);
+    var launch = new Socket.Peer((short) 2, 20L);
+    var pair = new TopologyCache.DataPair((short) 1, (short) 3, 1000);
+
+    // When
+    cache.announced(launch, GROUPS);
+    cache.opened(launch, pair);
+    cache.opened(launch, pair);
+
+    // Then
+    assertEquals(GROUPS, cache.groups(launch));
+    assertEquals(Set.of(pair), cache.data(launch));
+    assertNull(cache.groups(new Socket.Peer((short) 3, 20L)));
+    assertEquals(Set.of(), cache.data(new Socket.Peer((short) 3, 20L)));
+  }
+
+  @Test
+  @DisplayName("Should forget older launches of a restarted node")
+  void shouldForgetOlderLaunches() {
+    // Given
+    var cache = new TopologyCache(TopologyCache.DEFAULT_CAPACITY);
+    var old = new Socket.Peer((short) 2, 20L);
+    cache.announced(old, GROUPS);
+
+    // When
+    cache.announced(new Socket.Peer((short) 2, 21L), new SwitchToControl(List.of()));
+
+    // Then
+    assertNull(cache.groups(old));
+  }
+
+  @Test
+  @DisplayName("Should evict the least recently used launches")
+  void shouldEvictLeastRecentlyUsed() {
+    // Given
+    var cache = new TopologyCache(2);
+    var first = new Socket.Peer((short) 1, 1L);
+    var second = new Socket.Peer((short) 2, 1L);
+    cache.announced(first, GROUPS);
+    cache.announced(second, GROUPS);
+    cache.groups(first);
+
+    // When
+    cache.announced(new Socket.Peer((short) 3, 1L), GROUPS);
+
+    // Then
+    assertEquals(GROUPS, cache.groups(first));
+    assertNull(cache.groups(second));
+  }
+}
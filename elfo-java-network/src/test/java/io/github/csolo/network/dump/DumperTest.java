@@ -0,0 +1,172 @@
+package io.github.csolo.network.dump;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.DumpConfig;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Dumper Tests")
+class DumperTest {
+
+  static DumpConfig config(Path directory, int segmentSize, int maxSegments) {
+    return new DumpConfig(directory, segmentSize, 1024, maxSegments, Duration.ofMillis(10), true);
+  }
+
+  static List<Path> files(Path directory) throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    }
+  }
+
+  static NetworkEnvelope envelope(long traceId, int size) {
+    var payload = ByteBuffer.allocate(size);
+    for (int i = 0; i < size; i++) {
+      payload.put(i, (byte) (traceId + i));
+    }
+    return new NetworkEnvelope(1L << 48 | 7, 2L << 48 | 9, traceId, "Item", payload);
+  }
+
+  @Test
+  @DisplayName("Should read back envelopes from open and compressed segments")
+  void shouldReadBack() throws Exception {
+    // Given
+    var directory = Files.createTempDirectory("elfo-dump");
+    var dumper = Dumper.start(config(directory, 64 * 1024, 4));
+    var binary = envelope(1, 100);
+    var unicode = new NetworkEnvelope(3L, 4L, 2L, "Événement", ByteBuffer.allocate(0));
+    var local = new NetworkEnvelope(5L, 6L, 3L, "Local", new Object());
+
+    // When
+    assertTrue(dumper.dump(DumpRecord.Direction.OUT, binary));
+    assertTrue(dumper.dump(DumpRecord.Direction.IN, unicode));
+    assertTrue(dumper.dump(DumpRecord.Direction.OUT, local));
+
+    // Then: written out by the background thread.
+    var open = files(directory).getFirst();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (Dumper.read(open).size() < 3) {
+      assertTrue(System.nanoTime() < deadline, "Not written out");
+      Thread.sleep(10);
+    }
+
+    // When
+    long before = System.currentTimeMillis();
+    dumper.close();
+
+    // Then
+    var compressed = files(directory);
+    assertEquals(1, compressed.size(), compressed.toString());
+    assertTrue(compressed.getFirst().toString().endsWith(".dump.lz4"));
+    var records = Dumper.read(compressed.getFirst());
+    assertEquals(3, records.size());
+    var first = records.get(0);
+    assertEquals(DumpRecord.Direction.OUT, first.direction());
+    assertEquals(binary.sender(), first.sender());
+    assertEquals(binary.recipient(), first.recipient());
+    assertEquals(1L, first.traceId());
+    assertEquals("Item", first.name());
+    assertEquals(binary.payload(), first.payload());
+    assertTrue(first.timestamp() <= before);
+    assertEquals(DumpRecord.Direction.IN, records.get(1).direction());
+    assertEquals("Événement", records.get(1).name());
+    assertEquals(ByteBuffer.allocate(0), records.get(1).payload());
+    assertEquals("Local", records.get(2).name());
+    assertNull(records.get(2).payload());
+    assertEquals(3, dumper.dumped());
+    assertEquals(0, dumper.dropped());
+    assertFalse(dumper.dump(DumpRecord.Direction.OUT, binary));
+    assertEquals(1, dumper.dropped());
+  }
+
+  @Test
+  @DisplayName("Should roll segments over, keep the newest and account for every envelope")
+  void shouldRollOver() throws Exception {
+    // Given
+    var directory = Files.createTempDirectory("elfo-dump");
+    var dumper = Dumper.start(config(directory, 4 * 1024, 3));
+    int count = 2_000;
+    var writers = new ArrayList<Thread>();
+
+    // When
+    for (int t = 0; t < 4; t++) {
+      int offset = t * count;
+      writers.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    for (int i = 0; i < count; i++) {
+                      dumper.dump(DumpRecord.Direction.OUT, envelope(offset + i, 40));
+                      if (i % 100 == 0) {
+                        // Let the background thread map spare segments.
+                        Thread.yield();
+                      }
+                    }
+                  }));
+    }
+    for (var writer : writers) {
+      writer.join();
+    }
+    dumper.close();
+
+    // Then
+    assertEquals(4 * count, dumper.dumped() + dumper.dropped());
+    assertTrue(dumper.dumped() > 0);
+    var kept = files(directory);
+    assertEquals(3, kept.size(), kept.toString());
+    long previous = -1;
+    for (var file : kept) {
+      assertTrue(file.toString().endsWith(".dump.lz4"));
+      var records = Dumper.read(file);
+      assertFalse(records.isEmpty());
+      for (var record : records) {
+        assertEquals(envelope(record.traceId(), 40).payload(), record.payload());
+      }
+      long sequence = DumpSegment.sequenceOf(file);
+      assertTrue(sequence > previous);
+      previous = sequence;
+    }
+  }
+
+  @Test
+  @DisplayName("Should record envelopes sent and received over a connection")
+  void shouldDumpConnection() throws Exception {
+    // Given
+    var directory = Files.createTempDirectory("elfo-dump");
+    var dumper = Dumper.start(config(directory, 64 * 1024, 4));
+    try (var node = StandInNode.builder().start();
+        var connection = Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0))) {
+      connection.dumper(dumper);
+
+      // When
+      connection.send(envelope(1, 16));
+      connection.flush();
+      connection.receive();
+      connection.dumper(null);
+      connection.send(envelope(2, 16));
+      connection.flush();
+      connection.receive();
+    } finally {
+      dumper.close();
+    }
+
+    // Then
+    var records = Dumper.read(files(directory).getFirst());
+    assertEquals(2, records.size());
+    assertEquals(DumpRecord.Direction.OUT, records.get(0).direction());
+    assertEquals(DumpRecord.Direction.IN, records.get(1).direction());
+    assertEquals(1L, records.get(1).traceId());
+  }
+}
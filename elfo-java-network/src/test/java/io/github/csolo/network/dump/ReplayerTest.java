@@ -0,0 +1,172 @@
+package io.github.csolo.network.dump;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.flow.FlowSender;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Replayer Tests")
+class ReplayerTest {
+
+  /** Writes a sealed segment with an IN record of 16 bytes per timestamp, trace ids from 1. */
+  static DumpSegment segment(Path directory, long sequence, long... timestamps) throws Exception {
+    var segment = DumpSegment.create(directory, sequence, 64 * 1024);
+    var records = ByteBuffer.allocate(32 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < timestamps.length; i++) {
+      var envelope = DumperTest.envelope(sequence * 100 + i + 1, 16);
+      var direction = DumpRecord.Direction.IN;
+      DumpSegment.encode(
+          records, DumpSegment.recordLength(envelope), direction, timestamps[i], envelope);
+    }
+    records.flip();
+    int length = records.remaining();
+    segment.write(segment.reserve(length), records);
+    segment.seal(length);
+    segment.finish();
+    return segment;
+  }
+
+  static class Collector implements Replayer.Sink {
+    final List<NetworkEnvelope> envelopes = new ArrayList<>();
+    final List<Long> times = new ArrayList<>();
+    int flushes;
+
+    @Override
+    public void send(NetworkEnvelope envelope) {
+      envelopes.add(envelope);
+      times.add(System.nanoTime());
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+  }
+
+  @Test
+  @DisplayName("Should replay raw and compressed segments in order with scaled timing")
+  void shouldKeepTiming() throws Exception {
+    // Given
+    var directory = Files.createTempDirectory("elfo-dump");
+    segment(directory, 0, 1_000, 1_000, 1_100).compress(ByteBuffer.allocate(64 * 1024));
+    segment(directory, 1, 1_050, 1_300);
+    var sink = new Collector();
+
+    // When
+    long start = System.nanoTime();
+    var report = Replayer.builder(sink).from(directory).speed(2).run();
+
+    // Then
+    var traceIds = sink.envelopes.stream().map(NetworkEnvelope::traceId).toList();
+    assertEquals(List.of(1L, 2L, 3L, 101L, 102L), traceIds);
+    assertEquals(DumperTest.envelope(101, 16).payload(), sink.envelopes.get(3).payload());
+    var times = sink.times;
+    // 100 ms and 300 ms in at 2x, the out-of-order record right after the one before.
+    assertTrue(times.get(2) - start >= 50_000_000L, "Replayed too early");
+    assertTrue(times.get(3) - start < 150_000_000L, "Out-of-order record was delayed");
+    assertTrue(times.get(4) - start >= 150_000_000L, "Replayed too early");
+    assertEquals(5, report.replayed());
+    assertEquals(5 * 16, report.bytes());
+    assertEquals(Duration.ofMillis(300), report.recorded());
+    assertTrue(report.elapsed().toMillis() >= 150);
+    assertEquals(5, report.lag().count());
+    assertEquals(5, report.sendLatency().count());
+    assertTrue(sink.flushes >= 3);
+  }
+
+  @Test
+  @DisplayName("Should replay at max speed, skipping other directions and in-process envelopes")
+  void shouldReplayAtMaxSpeed() throws Exception {
+    // Given
+    var directory = Files.createTempDirectory("elfo-dump");
+    var file = segment(directory, 0, 0, 60_000).path;
+    try (var dumper = Dumper.start(DumperTest.config(directory, 64 * 1024, 4))) {
+      dumper.dump(DumpRecord.Direction.IN, new NetworkEnvelope(5L, 6L, 7L, "Local", new Object()));
+      dumper.dump(DumpRecord.Direction.OUT, DumperTest.envelope(8, 16));
+    }
+    var sink = new Collector();
+    var progress = new ArrayList<ReplayReport>();
+
+    // When
+    var report =
+        Replayer.builder(sink)
+            .from(file)
+            .from(directory.resolve(DumpSegment.name(1) + ".lz4"))
+            .speed(Replayer.MAX_SPEED)
+            .progress(Duration.ofHours(1), progress::add)
+            .run();
+
+    // Then
+    assertEquals(2, report.replayed());
+    assertEquals(1, report.skipped());
+    assertEquals(Duration.ofMinutes(1), report.recorded());
+    assertTrue(report.elapsed().toSeconds() < 10);
+    assertEquals(0, report.lag().count());
+    assertEquals(1, progress.size());
+    assertEquals(1, progress.getFirst().replayed());
+  }
+
+  @Test
+  @DisplayName("Should replay into a connection within the flow window")
+  void shouldReplayIntoConnection() throws Exception {
+    // Given
+    var directory = Files.createTempDirectory("elfo-dump");
+    segment(directory, 0, 0, 1, 2);
+    long recipient = DumperTest.envelope(1, 16).recipient();
+    try (var node = StandInNode.builder().start();
+        var connection = Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0));
+        var sender = new FlowSender(connection, 2)) {
+
+      // When
+      var replay = new CompletableFuture<ReplayReport>();
+      Thread.ofVirtual()
+          .start(
+              () -> {
+                try {
+                  replay.complete(
+                      Replayer.builder(sender).from(directory).speed(Replayer.MAX_SPEED).run());
+                } catch (Throwable e) {
+                  replay.completeExceptionally(e);
+                }
+              });
+
+      // Then: echoed back, the last one once the window is updated.
+      for (long traceId = 1; traceId <= 2; traceId++) {
+        var echoed = (NetworkEnvelope) connection.receive();
+        assertEquals(traceId, echoed.traceId());
+        assertEquals(DumperTest.envelope(traceId, 16).payload(), echoed.payload());
+      }
+      Thread.sleep(100);
+      assertFalse(replay.isDone());
+      sender.handle(new ProtocolMessages.UpdateFlow(recipient, 1));
+      assertEquals(3, replay.get(10, TimeUnit.SECONDS).replayed());
+      assertEquals(3L, ((NetworkEnvelope) connection.receive()).traceId());
+    }
+  }
+
+  @Test
+  @DisplayName("Should reject non-positive speed")
+  void shouldRejectSpeed() {
+    // Given
+    var builder = Replayer.builder(new Collector());
+
+    // When / Then
+    assertThrows(IllegalArgumentException.class, () -> builder.speed(0));
+    assertThrows(IllegalArgumentException.class, () -> builder.speed(Double.NaN));
+  }
+}
@@ -0,0 +1,289 @@
+package io.github.csolo.network.flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.RawSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FlowPublisher Tests")
+class FlowPublisherTest {
+
+  static final long ADDR = 3L << 40 | 5;
+
+  /** Opens a pair of connected TCP stream connections: client and server sides. */
+  static Connection[] pair() throws Exception {
+    try (var server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+      var accepted = new Socket[1];
+      var acceptor =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      accepted[0] =
+                          Socket.accept(
+                              new RawSocket(server.accept(), new RawSocket.Info.Tcp(null, null)),
+                              (short) 2,
+                              20L,
+                              0);
+                    } catch (Exception e) {
+                      throw new RuntimeException(e);
+                    }
+                  });
+      var client =
+          Connection.of(Socket.connect(new Transport.Tcp("127.0.0.1:" + port), (short) 1, 10L, 0));
+      acceptor.join();
+      return new Connection[] {client, Connection.of(accepted[0])};
+    }
+  }
+
+  static NetworkEnvelope envelope(long traceId) {
+    return new NetworkEnvelope(1L, ADDR, traceId, "Item", ByteBuffer.allocate(4));
+  }
+
+  /** Reads frames in background, passing them to the consumer until the connection is over. */
+  static Thread reader(Connection connection, FrameConsumer consumer) {
+    return Thread.ofVirtual()
+        .start(
+            () -> {
+              try {
+                Object frame;
+                while ((frame = connection.receive()) != null) {
+                  consumer.accept(frame);
+                }
+              } catch (IOException e) {
+                // Closed.
+              }
+            });
+  }
+
+  interface FrameConsumer {
+    void accept(Object frame) throws IOException;
+  }
+
+  /** Records signals, requesting nothing on its own. */
+  static final class Recorder implements Flow.Subscriber<NetworkEnvelope> {
+    final BlockingQueue<Long> items = new LinkedBlockingQueue<>();
+    final List<Object> terminal = new CopyOnWriteArrayList<>();
+    volatile Flow.Subscription subscription;
+
+    long next() throws InterruptedException {
+      var item = items.poll(5, TimeUnit.SECONDS);
+      assertNotNull(item, "No item");
+      return item;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(NetworkEnvelope item) {
+      items.add(item.traceId());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      terminal.add(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      terminal.add("complete");
+    }
+  }
+
+  @Test
+  @DisplayName("Should let the remote sender send only what was requested")
+  void shouldPropagateDemand() throws Exception {
+    var pair = pair();
+    try (var client = pair[0];
+        var server = pair[1];
+        var sender = new FlowSender(client, 0)) {
+      // Given
+      var publisher = new FlowPublisher(server, ADDR, 0);
+      var recorder = new Recorder();
+      publisher.subscribe(recorder);
+      reader(server, frame -> publisher.deliver((NetworkEnvelope) frame));
+      reader(client, sender::handle);
+      var sent = new ArrayList<CompletableFuture<Void>>();
+      for (long i = 1; i <= 5; i++) {
+        sent.add(sender.sendAsync(envelope(i)).toCompletableFuture());
+      }
+
+      // When
+      recorder.subscription.request(3);
+
+      // Then
+      for (long i = 1; i <= 3; i++) {
+        assertEquals(i, recorder.next());
+        sent.get((int) i - 1).get(5, TimeUnit.SECONDS);
+      }
+      assertNull(recorder.items.poll(100, TimeUnit.MILLISECONDS), "Must not exceed the demand");
+      assertFalse(sent.get(3).isDone());
+
+      // When
+      recorder.subscription.request(2);
+
+      // Then
+      assertEquals(4L, recorder.next());
+      assertEquals(5L, recorder.next());
+      assertEquals(0, publisher.window());
+      assertEquals(List.of(), recorder.terminal);
+    }
+  }
+
+  @Test
+  @DisplayName("Should hold envelopes sent within the initial window until requested")
+  void shouldHoldInitialWindow() throws Exception {
+    var pair = pair();
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given
+      var publisher = new FlowPublisher(server, ADDR, 2);
+      publisher.deliver(envelope(1));
+      publisher.deliver(envelope(2));
+      var recorder = new Recorder();
+      publisher.subscribe(recorder);
+
+      // When
+      recorder.subscription.request(1);
+
+      // Then: covered by what's received, no grant.
+      assertEquals(1L, recorder.next());
+      assertEquals(0, publisher.window());
+
+      // When
+      recorder.subscription.request(5);
+
+      // Then
+      assertEquals(2L, recorder.next());
+      assertEquals(new ProtocolMessages.UpdateFlow(ADDR, 4), client.receive());
+      assertEquals(4, publisher.window());
+
+      // When
+      publisher.complete();
+      recorder.subscription.cancel();
+
+      // Then
+      assertEquals(List.of("complete"), recorder.terminal);
+    }
+  }
+
+  @Test
+  @DisplayName("Should close the flow on cancel and on a window overrun")
+  void shouldCloseFlow() throws Exception {
+    var pair = pair();
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given
+      var cancelled = new FlowPublisher(server, ADDR, 0);
+      var cancelling = new Recorder();
+      cancelled.subscribe(cancelling);
+      var overrun = new FlowPublisher(server, ADDR + 1, 0);
+      var overrunning = new Recorder();
+      overrun.subscribe(overrunning);
+
+      // When
+      cancelling.subscription.cancel();
+      cancelled.deliver(envelope(1));
+      overrun.deliver(envelope(2));
+
+      // Then
+      assertEquals(new ProtocolMessages.CloseFlow(ADDR), client.receive());
+      assertEquals(new ProtocolMessages.CloseFlow(ADDR + 1), client.receive());
+      assertEquals(List.of(), cancelling.terminal);
+      assertTrue(cancelling.items.isEmpty());
+      assertInstanceOf(ProtocolException.class, overrunning.terminal.getFirst());
+    }
+  }
+
+  @Test
+  @DisplayName("Should reject a second subscriber and non-positive requests")
+  void shouldFollowSpec() throws Exception {
+    var pair = pair();
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given
+      var publisher = new FlowPublisher(server, ADDR, 0);
+      var first = new Recorder();
+      var second = new Recorder();
+      publisher.subscribe(first);
+
+      // When
+      publisher.subscribe(second);
+      first.subscription.request(0);
+
+      // Then
+      assertInstanceOf(IllegalStateException.class, second.terminal.getFirst());
+      assertInstanceOf(IllegalArgumentException.class, first.terminal.getFirst());
+      assertEquals(new ProtocolMessages.CloseFlow(ADDR), client.receive());
+    }
+  }
+
+  @Test
+  @DisplayName("Should grant smaller windows while the memory budget is under pressure")
+  void shouldShrinkWindowsUnderPressure() throws Exception {
+    var pair = pair();
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given: above the high watermark.
+      var budget = new MemoryBudget(1000);
+      var account = budget.account(MemoryBudget.NO_NODE, MemoryBudget.NO_GROUP);
+      account.force(800);
+      var publisher = new FlowPublisher(server, ADDR, 0, budget);
+      var recorder = new Recorder();
+      publisher.subscribe(recorder);
+
+      // When
+      recorder.subscription.request(8);
+
+      // Then: half of the demand.
+      assertEquals(new ProtocolMessages.UpdateFlow(ADDR, 4), client.receive());
+
+      // When: back to normal, the rest is granted as envelopes arrive.
+      account.release(800);
+      publisher.deliver(envelope(1));
+
+      // Then
+      assertEquals(1L, recorder.next());
+      assertEquals(new ProtocolMessages.UpdateFlow(ADDR, 4), client.receive());
+      assertEquals(7, publisher.window());
+
+      // When: full, a single envelope at a time once the window is used up.
+      account.force(1000);
+      recorder.subscription.request(2);
+      for (long i = 2; i <= 8; i++) {
+        publisher.deliver(envelope(i));
+        assertEquals(i, recorder.next());
+      }
+
+      // Then
+      assertEquals(new ProtocolMessages.UpdateFlow(ADDR, 1), client.receive());
+      assertEquals(1, publisher.window());
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package io.github.csolo.network.flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.memory.BudgetExceededException;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FlowSender Tests")
+class FlowSenderTest {
+
+  static final long ADDR = 7L << 40 | 1;
+
+  static NetworkEnvelope envelope(long recipient, long traceId, int size) {
+    return new NetworkEnvelope(1L, recipient, traceId, "Echo", ByteBuffer.allocate(size));
+  }
+
+  static Connection connect(StandInNode node) throws IOException {
+    return Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0));
+  }
+
+  @Nested
+  @DisplayName("TrySend Tests")
+  class TrySendTests {
+
+    @Test
+    @DisplayName("Should refuse once the window is exhausted, per flow")
+    void shouldRefuseWithoutCredit() throws Exception {
+      try (var node = StandInNode.builder().start();
+          var connection = connect(node);
+          var sender = new FlowSender(connection, 2)) {
+        // When
+        var first = sender.trySend(envelope(ADDR, 1, 8));
+        var second = sender.trySend(envelope(ADDR, 2, 8));
+        var third = sender.trySend(envelope(ADDR, 3, 8));
+
+        // Then
+        assertEquals(FlowSender.Result.SENT, first);
+        assertEquals(FlowSender.Result.SENT, second);
+        assertEquals(FlowSender.Result.NO_CREDIT, third);
+        assertEquals(FlowSender.Result.SENT, sender.trySend(envelope(ADDR + 1, 4, 8)));
+
+        // When
+        assertTrue(sender.handle(new ProtocolMessages.UpdateFlow(ADDR, 1)));
+
+        // Then
+        assertEquals(FlowSender.Result.SENT, sender.trySend(envelope(ADDR, 3, 8)));
+        assertEquals(0, sender.window(ADDR));
+      }
+    }
+
+    @Test
+    @DisplayName("Should refuse rather than write out a full buffer, keeping the window")
+    void shouldWouldBlock() throws Exception {
+      try (var node = StandInNode.builder().start();
+          var connection = connect(node);
+          var sender = new FlowSender(connection, 100)) {
+        // Given
+        int size = 16 * 1024;
+        for (int i = 0; i < 3; i++) {
+          assertEquals(FlowSender.Result.SENT, sender.trySend(envelope(ADDR, i, size)));
+        }
+
+        // When
+        var result = sender.trySend(envelope(ADDR, 3, size));
+
+        // Then
+        assertEquals(FlowSender.Result.WOULD_BLOCK, result);
+        assertEquals(97, sender.window(ADDR));
+        connection.flush();
+        assertEquals(FlowSender.Result.SENT, sender.trySend(envelope(ADDR, 3, size)));
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Waiting Tests")
+  class WaitingTests {
+
+    @Test
+    @DisplayName("Should send queued envelopes in order once the window is granted")
+    void shouldSendAsyncInOrder() throws Exception {
+      try (var node = StandInNode.builder().start();
+          var connection = connect(node);
+          var sender = new FlowSender(connection, 1)) {
+        // Given
+        long stalls = connection.socket().metrics().snapshot().flowStalls();
+        assertSame(
+            sender.sendAsync(envelope(ADDR, 1, 8)), sender.sendAsync(envelope(ADDR + 1, 9, 8)));
+
+        // When
+        var second = sender.sendAsync(envelope(ADDR, 2, 8)).toCompletableFuture();
+        var third = sender.sendAsync(envelope(ADDR, 3, 8)).toCompletableFuture();
+
+        // Then
+        assertEquals(FlowSender.Result.NO_CREDIT, sender.trySend(envelope(ADDR, 4, 8)));
+        assertFalse(second.isDone());
+        sender.handle(new ProtocolMessages.UpdateFlow(ADDR, 5));
+        third.get(5, TimeUnit.SECONDS);
+        assertTrue(second.isDone());
+        assertEquals(FlowSender.Result.SENT, sender.trySend(envelope(ADDR, 4, 8)));
+        connection.flush();
+        var traceIds = new long[5];
+        for (int i = 0; i < traceIds.length; i++) {
+          traceIds[i] = ((NetworkEnvelope) connection.receive()).traceId();
+        }
+        assertArrayEquals(new long[] {1, 9, 2, 3, 4}, traceIds);
+        assertEquals(stalls + 2, connection.socket().metrics().snapshot().flowStalls());
+      }
+    }
+
+    @Test
+    @DisplayName("Should park a blocking sender until the window is granted")
+    void shouldBlockUntilWindow() throws Exception {
+      try (var node = StandInNode.builder().start();
+          var connection = connect(node);
+          var sender = new FlowSender(connection, 0)) {
+        // Given
+        var sending =
+            Thread.ofVirtual()
+                .start(
+                    () -> {
+                      try {
+                        sender.send(envelope(ADDR, 1, 8));
+                      } catch (IOException e) {
+                        throw new RuntimeException(e);
+                      }
+                    });
+
+        // When
+        assertFalse(sending.join(Duration.ofMillis(100)), "Must wait for window");
+        sender.handle(new ProtocolMessages.UpdateFlow(ADDR, 1));
+
+        // Then
+        assertTrue(sending.join(Duration.ofSeconds(5)));
+        connection.flush();
+        assertEquals(1, ((NetworkEnvelope) connection.receive()).traceId());
+      }
+    }
+
+    @Test
+    @DisplayName("Should fail queued envelopes once closed")
+    void shouldFailOnClose() throws Exception {
+      try (var node = StandInNode.builder().start();
+          var connection = connect(node)) {
+        // Given
+        var sender = new FlowSender(connection, 0);
+        var queued = sender.sendAsync(envelope(ADDR, 1, 8)).toCompletableFuture();
+
+        // When
+        sender.close();
+
+        // Then
+        var error = assertThrows(CompletionException.class, queued::join);
+        assertInstanceOf(IOException.class, error.getCause());
+        assertThrows(IOException.class, () -> sender.trySend(envelope(ADDR, 2, 8)));
+      }
+    }
+
+    @Test
+    @DisplayName("Should reserve queued payloads and reject them once the budget is full")
+    void shouldReserveQueuedPayloads() throws Exception {
+      try (var node = StandInNode.builder().start();
+          var connection = connect(node)) {
+        // Given
+        var budget = new MemoryBudget(100);
+        var sender = new FlowSender(connection, 0, budget);
+
+        // When
+        var queued = sender.sendAsync(envelope(ADDR, 1, 60)).toCompletableFuture();
+        var rejected = sender.sendAsync(envelope(ADDR, 2, 60)).toCompletableFuture();
+
+        // Then
+        var error = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(BudgetExceededException.class, error.getCause());
+        assertEquals(
+            List.of(new MemoryBudget.Usage((short) 2, (short) 7, 60)), budget.usage());
+
+        // When
+        sender.handle(new ProtocolMessages.UpdateFlow(ADDR, 1));
+        queued.get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(0, budget.reserved());
+      }
+    }
+  }
+}
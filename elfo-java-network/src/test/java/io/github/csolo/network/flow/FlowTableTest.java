@@ -0,0 +1,57 @@
+package io.github.csolo.network.flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FlowTable Tests")
+class FlowTableTest {
+
+  @Test
+  @DisplayName("Should add flows with the initial window and keep their state")
+  void shouldTrackFlows() {
+    // Given
+    var table = new FlowTable(10, 8);
+
+    // When
+    int slot = table.slot(0L);
+    table.addWindow(slot, -3);
+    table.addQueued(slot, 2);
+
+    // Then
+    assertEquals(7, table.window(table.slot(0L)));
+    assertEquals(2, table.queued(table.slot(0L)));
+    assertEquals(10, table.window(table.slot(42L)));
+    assertEquals(2, table.size());
+  }
+
+  @Test
+  @DisplayName("Should survive growth and removals like a map")
+  void shouldMatchHashMap() {
+    // Given
+    var table = new FlowTable(100, 8);
+    var expected = new HashMap<Long, Integer>();
+    var random = new Random(7);
+
+    // When
+    for (int i = 0; i < 20_000; i++) {
+      // Few distinct keys with the same low bits, so that probe chains get long.
+      long addr = (long) random.nextInt(300) << 40;
+      if (random.nextInt(4) == 0) {
+        table.remove(addr);
+        expected.remove(addr);
+      } else {
+        table.addWindow(table.slot(addr), -1);
+        expected.merge(addr, 99, (window, ignored) -> window - 1);
+      }
+    }
+
+    // Then
+    assertEquals(expected.size(), table.size());
+    expected.forEach((addr, window) -> assertEquals((int) window, table.window(table.slot(addr))));
+    assertEquals(expected.size(), table.size(), "Lookups must not add flows");
+  }
+}
@@ -0,0 +1,94 @@
+package io.github.csolo.network.health;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FailureDetector Tests")
+class FailureDetectorTest {
+
+  static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+  @Test
+  @DisplayName("Should be calm right after a heartbeat and grow suspicious with silence")
+  void shouldGrowWithElapsedTime() {
+    // Given
+    var detector = new FailureDetector(Duration.ofSeconds(1), 0);
+    for (int i = 1; i <= 10; i++) {
+      detector.heartbeat(i * SECOND);
+    }
+    long last = 10 * SECOND;
+
+    // When
+    double fresh = detector.phi(last);
+    double late = detector.phi(last + 3 * SECOND);
+    double dead = detector.phi(last + 10 * SECOND);
+
+    // Then
+    assertTrue(fresh < 0.1, "phi " + fresh);
+    assertTrue(fresh < late && late < dead);
+    assertTrue(dead > FailureDetector.DEFAULT_THRESHOLD, "phi " + dead);
+    assertEquals(last, detector.lastHeartbeatNanos());
+  }
+
+  @Test
+  @DisplayName("Should tolerate a pause of about one interval")
+  void shouldTolerateShortPause() {
+    // Given
+    var detector = new FailureDetector(Duration.ofSeconds(1), 0);
+    for (int i = 1; i <= FailureDetector.WINDOW + 10; i++) {
+      detector.heartbeat(i * SECOND);
+    }
+    long last = (FailureDetector.WINDOW + 10) * SECOND;
+
+    // When
+    double phi = detector.phi(last + 2 * SECOND);
+
+    // Then: a perfectly steady link still gets the minimal deviation.
+    assertTrue(phi < 1, "phi " + phi);
+    assertTrue(detector.phi(last + 4 * SECOND) > FailureDetector.DEFAULT_THRESHOLD);
+  }
+
+  @Test
+  @DisplayName("Should give jittery links more slack than steady ones")
+  void shouldLearnJitter() {
+    // Given
+    var steady = new FailureDetector(Duration.ofSeconds(1), 0);
+    var jittery = new FailureDetector(Duration.ofSeconds(1), 0);
+    long at = 0;
+    for (int i = 1; i <= 100; i++) {
+      steady.heartbeat(i * SECOND);
+      at += i % 2 == 0 ? SECOND / 4 : SECOND * 7 / 4;
+      jittery.heartbeat(at);
+    }
+
+    // When
+    double steadyPhi = steady.phi(100 * SECOND + 3 * SECOND);
+    double jitteryPhi = jittery.phi(at + 3 * SECOND);
+
+    // Then
+    assertTrue(jitteryPhi < steadyPhi, jitteryPhi + " vs " + steadyPhi);
+  }
+
+  @Test
+  @DisplayName("Should ignore heartbeats out of order")
+  void shouldIgnoreStaleHeartbeats() {
+    // Given
+    var detector = new FailureDetector(Duration.ofSeconds(1), 0);
+    detector.heartbeat(2 * SECOND);
+
+    // When
+    detector.heartbeat(SECOND);
+
+    // Then
+    assertEquals(2 * SECOND, detector.lastHeartbeatNanos());
+  }
+
+  @Test
+  @DisplayName("Should reject a non-positive interval")
+  void shouldRejectNonPositiveInterval() {
+    assertThrows(IllegalArgumentException.class, () -> new FailureDetector(Duration.ZERO, 0));
+  }
+}
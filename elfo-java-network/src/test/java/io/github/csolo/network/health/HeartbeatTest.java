@@ -0,0 +1,94 @@
+package io.github.csolo.network.health;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Heartbeat Tests")
+class HeartbeatTest {
+
+  static final Duration INTERVAL = Duration.ofMillis(100);
+
+  @Test
+  @DisplayName("Should ping a quiet peer and take its pong as a heartbeat")
+  void shouldPingQuietPeer() throws Exception {
+    try (var node = StandInNode.builder().start();
+        var connection = Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0))) {
+      // Given
+      var heartbeat = new Heartbeat(connection, INTERVAL);
+      Thread.sleep(INTERVAL.toMillis());
+
+      // When
+      assertTrue(heartbeat.tick());
+      var pong = connection.receive();
+
+      // Then
+      assertInstanceOf(ProtocolMessages.Pong.class, pong);
+      assertFalse(heartbeat.tick(), "Pong has just arrived");
+      assertEquals(1, heartbeat.pings());
+      assertEquals(connection.lastReceivedNanos(), heartbeat.detector().lastHeartbeatNanos());
+      assertTrue(heartbeat.phi() < 1, "phi " + heartbeat.phi());
+    }
+  }
+
+  @Test
+  @DisplayName("Should not ping while data keeps arriving")
+  void shouldPiggybackOnData() throws Exception {
+    try (var node = StandInNode.builder().start();
+        var connection = Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0))) {
+      // Given
+      var heartbeat = new Heartbeat(connection, INTERVAL);
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, "Echo", ByteBuffer.wrap(new byte[] {1}));
+
+      for (int i = 0; i < 5; i++) {
+        // When
+        Thread.sleep(INTERVAL.toMillis() / 4);
+        connection.send(envelope);
+        connection.flush();
+        assertInstanceOf(NetworkEnvelope.class, connection.receive());
+
+        // Then
+        assertFalse(heartbeat.tick());
+        assertEquals(connection.lastReceivedNanos(), heartbeat.detector().lastHeartbeatNanos());
+      }
+      assertEquals(0, heartbeat.pings());
+    }
+  }
+
+  @Test
+  @DisplayName("Should not ping while data keeps arriving over another connection")
+  void shouldPiggybackOnOtherConnections() throws Exception {
+    try (var node = StandInNode.builder().start();
+        var control = Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0));
+        var data = Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0))) {
+      // Given
+      var heartbeat =
+          new Heartbeat(
+              control,
+              () -> Math.max(control.lastReceivedNanos(), data.lastReceivedNanos()),
+              INTERVAL);
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, "Echo", ByteBuffer.wrap(new byte[] {1}));
+
+      for (int i = 0; i < 5; i++) {
+        // When
+        Thread.sleep(INTERVAL.toMillis() / 4);
+        data.send(envelope);
+        data.flush();
+        assertInstanceOf(NetworkEnvelope.class, data.receive());
+
+        // Then
+        assertFalse(heartbeat.tick());
+        assertEquals(data.lastReceivedNanos(), heartbeat.detector().lastHeartbeatNanos());
+      }
+      assertEquals(0, heartbeat.pings());
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package io.github.csolo.network.jfr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.Handshake;
+import io.github.csolo.network.shard.ShardGroup;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.StandInNode;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JFR Events Tests")
+class JfrEventsTest {
+
+  @Test
+  @DisplayName("Should record connect and handshake events with peer identity")
+  void shouldRecordConnectAndHandshakeEvents() throws Exception {
+    // Given
+    try (var server = ServerSocketChannel.open();
+        var recording = new Recording()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+      var acceptor = Thread.ofVirtual().start(() -> respondWithHandshake(server, (short) 2, 77L));
+
+      recording.enable(ConnectEvent.class);
+      recording.enable(HandshakeEvent.class);
+      recording.start();
+
+      // When
+      var socket = Socket.connect(new Transport.Tcp("127.0.0.1:" + port), (short) 1, 5L, 0);
+      socket.close();
+      acceptor.join();
+      recording.stop();
+
+      // Then
+      var events = readBack(recording);
+      var connect = single(events, "io.github.csolo.network.Connect");
+      assertEquals("tcp://127.0.0.1:" + port, connect.getString("transport"));
+      assertTrue(connect.getBoolean("succeeded"));
+
+      var handshake = single(events, "io.github.csolo.network.Handshake");
+      assertEquals(2, handshake.getShort("peerNodeNo"));
+      assertEquals(77L, handshake.getLong("peerLaunchId"));
+    }
+  }
+
+  @Test
+  @DisplayName("Should skip hot path events below default threshold")
+  void shouldSkipEventsBelowThreshold() throws Exception {
+    // Given
+    try (var recording = new Recording()) {
+      recording.enable(FlushEvent.class);
+      recording.enable(CompressionEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+
+      // When
+      var flush = new FlushEvent();
+      flush.begin();
+      flush.frames = 1;
+      flush.end();
+      flush.commit();
+
+      var compression = new CompressionEvent();
+      compression.begin();
+      compression.uncompressedBytes = 100;
+      compression.compressedBytes = 40;
+      compression.end();
+      compression.commit();
+      recording.stop();
+
+      // Then
+      var events = readBack(recording);
+      assertTrue(events.stream().noneMatch(e -> isOf(e, "io.github.csolo.network.Flush")));
+      var recorded = single(events, "io.github.csolo.network.Compression");
+      assertEquals(100, recorded.getLong("uncompressedBytes"));
+    }
+  }
+
+  @Test
+  @DisplayName("Should record slow handlers of received envelopes")
+  void shouldRecordSlowHandlers() throws Exception {
+    // Given
+    var handled = new LinkedBlockingQueue<String>();
+    try (var recording = new Recording();
+        var node = StandInNode.builder().start();
+        var group =
+            new ShardGroup(
+                1,
+                (link, envelope) -> {
+                  if (envelope.name().equals("Slow")) {
+                    try {
+                      Thread.sleep(30);
+                    } catch (InterruptedException e) {
+                      throw new IOException(e);
+                    }
+                  }
+                  handled.add(envelope.name());
+                })) {
+      recording.enable(SlowHandlerEvent.class);
+      recording.start();
+      group.attach(Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0)), 16);
+      long recipient = 2L << 48 | 5;
+
+      // When
+      group.send(new NetworkEnvelope(1L, recipient, 1L, "Fast", ByteBuffer.allocate(8)));
+      group.send(new NetworkEnvelope(1L, recipient, 2L, "Slow", ByteBuffer.allocate(8)));
+      for (int i = 0; i < 2; i++) {
+        assertNotNull(handled.poll(5, TimeUnit.SECONDS), "Not handled");
+      }
+      recording.stop();
+
+      // Then
+      var event = single(readBack(recording), "io.github.csolo.network.SlowHandler");
+      assertEquals("Slow", event.getString("message"));
+      assertEquals(recipient, event.getLong("addr"));
+      assertEquals(1, event.getInt("messages"));
+      assertTrue(event.getDuration().toMillis() >= 20);
+    }
+  }
+
+  private static void respondWithHandshake(
+      ServerSocketChannel server, short nodeNo, long launchId) {
+    try (var channel = server.accept()) {
+      var incoming = ByteBuffer.allocate(Handshake.HANDSHAKE_LENGTH);
+      while (incoming.hasRemaining()) {
+        if (channel.read(incoming) < 0) {
+          return;
+        }
+      }
+      channel.write(ByteBuffer.wrap(new Handshake(nodeNo, launchId, 0).toBytes()));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static List<RecordedEvent> readBack(Recording recording) throws Exception {
+    Path file = Files.createTempFile("elfo-jfr-test", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static RecordedEvent single(List<RecordedEvent> events, String name) {
+    var matching = events.stream().filter(e -> isOf(e, name)).toList();
+    assertEquals(1, matching.size(), "Expected exactly one " + name);
+    return matching.get(0);
+  }
+
+  private static boolean isOf(RecordedEvent event, String name) {
+    return event.getEventType().getName().equals(name);
+  }
+}
@@ -0,0 +1,85 @@
+package io.github.csolo.network.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("MemoryBudget Tests")
+class MemoryBudgetTest {
+
+  @Test
+  @DisplayName("Should reserve up to the limit and reject beyond it")
+  void shouldRejectOverLimit() throws Exception {
+    // Given
+    var budget = new MemoryBudget(1000);
+    var account = budget.account((short) 1, (short) 2);
+
+    // When
+    account.reserve(600);
+    boolean fits = account.tryReserve(400);
+    boolean overflows = account.tryReserve(1);
+
+    // Then
+    assertTrue(fits);
+    assertFalse(overflows);
+    assertThrows(BudgetExceededException.class, () -> account.reserve(1));
+    assertEquals(1000, budget.reserved());
+    assertEquals(2, budget.rejections());
+
+    // When
+    account.release(1000);
+
+    // Then
+    assertTrue(account.tryReserve(1000));
+  }
+
+  @Test
+  @DisplayName("Should report pressure by the high watermark and the limit")
+  void shouldReportPressure() {
+    // Given
+    var budget = new MemoryBudget(1000);
+    var account = budget.account(MemoryBudget.NO_NODE, MemoryBudget.NO_GROUP);
+
+    // When, Then
+    account.force(750);
+    assertEquals(MemoryBudget.Pressure.NORMAL, budget.pressure());
+    account.force(1);
+    assertEquals(MemoryBudget.Pressure.HIGH, account.pressure());
+    account.force(1000);
+    assertEquals(MemoryBudget.Pressure.FULL, budget.pressure());
+    assertEquals(1751, budget.reserved(), "Forced over the limit");
+    assertFalse(account.tryReserve(0));
+
+    // When, Then
+    budget.limit(10_000);
+    assertEquals(MemoryBudget.Pressure.NORMAL, budget.pressure());
+  }
+
+  @Test
+  @DisplayName("Should report usage per peer and group")
+  void shouldReportUsage() throws Exception {
+    // Given
+    var budget = new MemoryBudget(Long.MAX_VALUE);
+
+    // When
+    budget.account((short) 2, (short) 1).reserve(10);
+    budget.account((short) 1, MemoryBudget.NO_GROUP).force(20);
+    budget.account((short) 2, (short) 3).reserve(30);
+    budget.account((short) 2, (short) 1).reserve(5);
+    budget.account((short) 3, (short) 1).reserve(0);
+
+    // Then
+    assertSame(budget.account((short) 2, (short) 1), budget.account((short) 2, (short) 1));
+    assertEquals(
+        List.of(
+            new MemoryBudget.Usage((short) 1, MemoryBudget.NO_GROUP, 20),
+            new MemoryBudget.Usage((short) 2, (short) 1, 15),
+            new MemoryBudget.Usage((short) 2, (short) 3, 30)),
+        budget.usage());
+    assertEquals(45, budget.reserved((short) 2));
+    assertEquals(0, budget.reserved((short) 4));
+    assertEquals(65, budget.reserved());
+  }
+}
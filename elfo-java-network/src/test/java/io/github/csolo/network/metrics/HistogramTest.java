@@ -0,0 +1,122 @@
+package io.github.csolo.network.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+@DisplayName("Histogram Tests")
+class HistogramTest {
+
+  @Nested
+  @DisplayName("Bucket Tests")
+  class BucketTests {
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 15, 16, 17, 100, 1_000, 65_535, 1_000_000_007L, Long.MAX_VALUE})
+    @DisplayName("Should put value into bucket that covers it")
+    void shouldPutValueIntoBucketThatCoversIt(long value) {
+      // When
+      int index = Histogram.bucketIndex(value);
+
+      // Then
+      assertTrue(Histogram.bucketUpperBound(index) >= value);
+      if (index > 0) {
+        assertTrue(Histogram.bucketUpperBound(index - 1) < value);
+      }
+    }
+
+    @Test
+    @DisplayName("Should keep relative error within sub-bucket precision")
+    void shouldKeepRelativeErrorWithinPrecision() {
+      for (long value = 1; value < 1_000_000_000L; value = value * 3 + 1) {
+        long upper = Histogram.bucketUpperBound(Histogram.bucketIndex(value));
+        assertTrue((double) (upper - value) / value <= 1.0 / 16, "value " + value);
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Snapshot Tests")
+  class SnapshotTests {
+
+    @Test
+    @DisplayName("Should return zeros for empty histogram")
+    void shouldReturnZerosForEmptyHistogram() {
+      // When
+      var snapshot = new Histogram().snapshot();
+
+      // Then
+      assertEquals(0, snapshot.count());
+      assertEquals(0, snapshot.quantile(0.99));
+      assertEquals(0.0, snapshot.mean());
+    }
+
+    @Test
+    @DisplayName("Should compute count, sum, max and quantiles")
+    void shouldComputeAggregates() {
+      // Given
+      var histogram = new Histogram();
+      for (int i = 1; i <= 1000; i++) {
+        histogram.record(i);
+      }
+
+      // When
+      var snapshot = histogram.snapshot();
+
+      // Then
+      assertEquals(1000, snapshot.count());
+      assertEquals(500_500, snapshot.sum());
+      assertEquals(1000, snapshot.max());
+      assertEquals(500, snapshot.quantile(0.5), 500 / 16.0);
+      assertEquals(990, snapshot.quantile(0.99), 990 / 16.0);
+      assertEquals(1000, snapshot.quantile(1.0));
+    }
+
+    @Test
+    @DisplayName("Should clamp negative values to zero")
+    void shouldClampNegativeValues() {
+      // Given
+      var histogram = new Histogram();
+
+      // When
+      histogram.record(-5);
+
+      // Then
+      var snapshot = histogram.snapshot();
+      assertEquals(1, snapshot.count());
+      assertEquals(0, snapshot.sum());
+    }
+
+    @Test
+    @DisplayName("Should not lose records from concurrent writers")
+    void shouldNotLoseConcurrentRecords() throws InterruptedException {
+      // Given
+      var histogram = new Histogram();
+      int threadCount = 8;
+      int iterationsPerThread = 10_000;
+      Thread[] threads = new Thread[threadCount];
+
+      // When
+      for (int t = 0; t < threadCount; t++) {
+        threads[t] =
+            Thread.ofVirtual()
+                .start(
+                    () -> {
+                      for (int i = 0; i < iterationsPerThread; i++) {
+                        histogram.record(i);
+                      }
+                    });
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      // Then
+      assertEquals((long) threadCount * iterationsPerThread, histogram.snapshot().count());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package io.github.csolo.network.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.socket.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("TransportMetrics Tests")
+class TransportMetricsTest {
+
+  @Nested
+  @DisplayName("Registry Tests")
+  class RegistryTests {
+
+    @Test
+    @DisplayName("Should return the same metrics for the same peer")
+    void shouldReturnSameMetricsForSamePeer() {
+      // Given
+      var metrics = new TransportMetrics();
+      var peer = new Socket.Peer((short) 1, 42L);
+
+      // When & Then
+      assertSame(metrics.peer(peer), metrics.peer(peer));
+      assertNotSame(metrics.peer(peer), metrics.peer(new Socket.Peer((short) 1, 43L)));
+    }
+
+    @Test
+    @DisplayName("Should aggregate recorded values into snapshot")
+    void shouldAggregateRecordedValues() {
+      // Given
+      var metrics = new TransportMetrics();
+      var peer = metrics.peer(new Socket.Peer((short) 2, 7L));
+
+      // When
+      peer.bytesRead(100);
+      peer.bytesWritten(200);
+      peer.framesRead(3);
+      peer.framesWritten(4);
+      peer.compressed(1000, 250);
+      peer.flushed(4096);
+      peer.flowStalled();
+      peer.handshakeCompleted(1_000_000);
+      metrics.groupPair((short) 1, (short) 2, (short) 3).frameWritten(64);
+
+      // Then
+      var snapshot = metrics.snapshot();
+      assertEquals(1, snapshot.peers().size());
+      var peerSnapshot = snapshot.peers().get(0);
+      assertEquals(100, peerSnapshot.bytesRead());
+      assertEquals(200, peerSnapshot.bytesWritten());
+      assertEquals(3, peerSnapshot.framesRead());
+      assertEquals(4, peerSnapshot.framesWritten());
+      assertEquals(4.0, peerSnapshot.compressionRatio());
+      assertEquals(1, peerSnapshot.flushSizes().count());
+      assertEquals(1, peerSnapshot.flowStalls());
+      assertEquals(1_000_000, peerSnapshot.handshakeNanos().max());
+
+      assertEquals(1, snapshot.groupPairs().size());
+      var pair = snapshot.groupPairs().get(0);
+      assertEquals(1, pair.framesWritten());
+      assertEquals(64, pair.bytesWritten());
+    }
+  }
+
+  @Nested
+  @DisplayName("Prometheus Tests")
+  class PrometheusTests {
+
+    @Test
+    @DisplayName("Should format counters and summaries with labels")
+    void shouldFormatCountersAndSummaries() {
+      // Given
+      var metrics = new TransportMetrics();
+      var peer = metrics.peer(new Socket.Peer((short) 5, 9L));
+      peer.bytesRead(10);
+      peer.handshakeCompleted(2_000_000_000L);
+
+      // When
+      String text = PrometheusExporter.format(metrics.snapshot());
+
+      // Then
+      assertTrue(text.contains("# TYPE elfo_network_bytes_read_total counter"));
+      assertTrue(text.contains("elfo_network_bytes_read_total{node_no=\"5\",launch_id=\"9\"} 10"));
+      assertTrue(
+          text.contains(
+              "elfo_network_handshake_duration_seconds_count{node_no=\"5\",launch_id=\"9\"} 1"));
+      assertTrue(
+          text.contains(
+              "elfo_network_handshake_duration_seconds_sum{node_no=\"5\",launch_id=\"9\"} 2.0"));
+    }
+
+    @Test
+    @DisplayName("Should serve metrics over HTTP on loopback")
+    void shouldServeMetricsOverHttp() throws Exception {
+      // Given
+      var metrics = new TransportMetrics();
+      metrics.peer(new Socket.Peer((short) 1, 1L)).bytesWritten(77);
+
+      try (var exporter = PrometheusExporter.start(0, metrics)) {
+        // When
+        var response =
+            HttpClient.newHttpClient()
+                .send(
+                    HttpRequest.newBuilder(
+                            URI.create("http://127.0.0.1:" + exporter.port() + "/metrics"))
+                        .build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+        // Then
+        assertEquals(200, response.statusCode());
+        assertTrue(
+            response
+                .body()
+                .contains("elfo_network_bytes_written_total{node_no=\"1\",launch_id=\"1\"} 77"));
+      }
+    }
+  }
+}
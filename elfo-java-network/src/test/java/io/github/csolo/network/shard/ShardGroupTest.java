@@ -0,0 +1,211 @@
+package io.github.csolo.network.shard;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.RawSocket;
+import io.github.csolo.network.testing.StandInNode;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ShardGroup Tests")
+class ShardGroupTest {
+
+  static final long TWO = 2L << 48 | 1;
+  static final long THREE = 3L << 48 | 1;
+
+  record Handled(String thread, ShardGroup.Link link, long traceId) {}
+
+  static NetworkEnvelope envelope(long recipient, long traceId) {
+    return new NetworkEnvelope(1L, recipient, traceId, "Echo", ByteBuffer.allocate(8));
+  }
+
+  static StandInNode echo(short nodeNo) throws IOException {
+    return StandInNode.builder().node(nodeNo, nodeNo * 10L).start();
+  }
+
+  static Connection connect(StandInNode node) throws IOException {
+    return Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0));
+  }
+
+  static <T> T next(BlockingQueue<T> queue) throws InterruptedException {
+    var item = queue.poll(5, TimeUnit.SECONDS);
+    assertNotNull(item, "Nothing handled");
+    return item;
+  }
+
+  /** Opens a pair of connected TCP stream connections: client and server sides. */
+  static Connection[] pair() throws Exception {
+    try (var server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+      var accepted = new Socket[1];
+      var acceptor =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      accepted[0] =
+                          Socket.accept(
+                              new RawSocket(server.accept(), new RawSocket.Info.Tcp(null, null)),
+                              (short) 2,
+                              20L,
+                              0);
+                    } catch (Exception e) {
+                      throw new RuntimeException(e);
+                    }
+                  });
+      var client =
+          Connection.of(Socket.connect(new Transport.Tcp("127.0.0.1:" + port), (short) 1, 10L, 0));
+      acceptor.join();
+      return new Connection[] {client, Connection.of(accepted[0])};
+    }
+  }
+
+  @Test
+  @DisplayName("Should pin connections to shards and handle envelopes on the owning shard")
+  void shouldHandleOnOwningShard() throws Exception {
+    var handled = new LinkedBlockingQueue<Handled>();
+    try (var two = echo((short) 2);
+        var three = echo((short) 3);
+        var group =
+            new ShardGroup(
+                2,
+                (link, envelope) ->
+                    handled.add(
+                        new Handled(Thread.currentThread().getName(), link, envelope.traceId())))) {
+      // Given
+      var linkTwo = group.attach(connect(two), 16);
+      var linkThree = group.attach(connect(three), 16);
+
+      // When
+      group.send(envelope(TWO, 1));
+      group.send(envelope(THREE, 2));
+
+      // Then
+      assertNotEquals(linkTwo.shard(), linkThree.shard(), "Spread over shards");
+      for (int i = 0; i < 2; i++) {
+        var next = next(handled);
+        var expected = next.traceId() == 1 ? linkTwo : linkThree;
+        assertSame(expected, next.link());
+        assertEquals("elfo-shard-" + expected.shard(), next.thread());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should hand envelopes across shards in order")
+  void shouldHandOverAcrossShards() throws Exception {
+    var forwarded = new LinkedBlockingQueue<Long>();
+    var self = new AtomicReference<ShardGroup>();
+    try (var two = echo((short) 2);
+        var three = echo((short) 3);
+        var group =
+            new ShardGroup(
+                2,
+                4,
+                (link, envelope) -> {
+                  if (link.peerNodeNo() == 2) {
+                    // Echoed by node 2, on to node 3 owned by the other shard.
+                    self.get().send(envelope(THREE, envelope.traceId()));
+                  } else {
+                    forwarded.add(envelope.traceId());
+                  }
+                })) {
+      // Given
+      self.set(group);
+      group.attach(connect(two), Integer.MAX_VALUE / 2);
+      group.attach(connect(three), Integer.MAX_VALUE / 2);
+
+      // When: many more than queues hold.
+      for (long i = 1; i <= 1000; i++) {
+        group.send(envelope(TWO, i));
+      }
+
+      // Then
+      for (long i = 1; i <= 1000; i++) {
+        assertEquals(i, (long) next(forwarded));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should hold envelopes beyond the window until the peer grants more")
+  void shouldRespectWindow() throws Exception {
+    var pair = pair();
+    try (var server = pair[1];
+        var group = new ShardGroup(1, (link, envelope) -> {})) {
+      // Given
+      long other = TWO + 1;
+      group.attach(pair[0], 1);
+
+      // When
+      group.send(envelope(TWO, 1));
+      group.send(envelope(TWO, 2));
+      group.send(envelope(TWO, 3));
+      group.send(envelope(other, 4));
+
+      // Then: the other flow overtakes those waiting for window.
+      assertEquals(1, ((NetworkEnvelope) server.receive()).traceId());
+      assertEquals(4, ((NetworkEnvelope) server.receive()).traceId());
+
+      // When
+      server.send(new ProtocolMessages.UpdateFlow(TWO, 2));
+      server.flush();
+
+      // Then
+      assertEquals(2, ((NetworkEnvelope) server.receive()).traceId());
+      assertEquals(3, ((NetworkEnvelope) server.receive()).traceId());
+
+      // When
+      server.send(new ProtocolMessages.Ping(7));
+      server.flush();
+
+      // Then
+      assertEquals(new ProtocolMessages.Pong(7), server.receive());
+    }
+  }
+
+  @Test
+  @DisplayName("Should refuse sends to nodes without a connection")
+  void shouldRefuseUnknownNodes() throws Exception {
+    var pair = pair();
+    var group = new ShardGroup(2, (link, envelope) -> {});
+    try (var server = pair[1]) {
+      // Given
+      group.attach(pair[0], 16);
+
+      // When
+      server.close();
+
+      // Then: detached once the reader sees the connection over.
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (true) {
+        try {
+          group.send(envelope(TWO, 1));
+        } catch (IOException e) {
+          break;
+        }
+        assertTrue(System.nanoTime() < deadline, "Still attached");
+        Thread.sleep(10);
+      }
+      assertThrows(IOException.class, () -> group.send(envelope(THREE, 1)));
+    } finally {
+      group.close();
+    }
+    assertThrows(IOException.class, () -> group.send(envelope(TWO, 1)));
+  }
+}
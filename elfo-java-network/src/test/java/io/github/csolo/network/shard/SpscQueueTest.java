@@ -0,0 +1,64 @@
+package io.github.csolo.network.shard;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("SpscQueue Tests")
+class SpscQueueTest {
+
+  @Test
+  @DisplayName("Should keep order across wrap-arounds and refuse when full")
+  void shouldWrapAround() {
+    // Given
+    var queue = new SpscQueue<Integer>(3);
+
+    // When, Then
+    assertEquals(4, queue.capacity());
+    assertTrue(queue.isEmpty());
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(queue.offer(round * 4 + i));
+      }
+      assertFalse(queue.offer(-1));
+      for (int i = 0; i < 4; i++) {
+        assertEquals(round * 4 + i, (int) queue.poll());
+      }
+      assertNull(queue.poll());
+      assertTrue(queue.isEmpty());
+    }
+  }
+
+  @Test
+  @DisplayName("Should pass every element in order between two threads")
+  void shouldPassBetweenThreads() throws Exception {
+    // Given
+    int count = 100_000;
+    var queue = new SpscQueue<Integer>(64);
+    var producer =
+        Thread.ofPlatform()
+            .start(
+                () -> {
+                  for (int i = 0; i < count; i++) {
+                    while (!queue.offer(i)) {
+                      Thread.yield();
+                    }
+                  }
+                });
+
+    // When
+    int expected = 0;
+    while (expected < count) {
+      var next = queue.poll();
+      if (next == null) {
+        Thread.yield();
+        continue;
+      }
+      // Then
+      assertEquals(expected++, (int) next);
+    }
+    producer.join();
+    assertNull(queue.poll());
+  }
+}
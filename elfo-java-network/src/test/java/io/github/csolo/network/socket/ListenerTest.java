@@ -0,0 +1,143 @@
+package io.github.csolo.network.socket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.config.ListenerConfig;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.protocol.Handshake;
+import io.github.csolo.network.socket.raw.RawSocket;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Listener Tests")
+class ListenerTest {
+
+  static Listener start(ListenerConfig config, BlockingQueue<Socket> accepted)
+      throws IOException {
+    return Listener.start(
+        new Transport.Tcp("127.0.0.1:0"),
+        new SocketOptions(),
+        config,
+        (short) 2,
+        20L,
+        0,
+        accepted::add);
+  }
+
+  /** Reads until EOF, so the peer's handshake is skipped. */
+  static void awaitClosed(RawSocket raw) throws IOException {
+    var buffer = ByteBuffer.allocate(Handshake.HANDSHAKE_LENGTH);
+    while (raw.channel().read(buffer.clear()) >= 0) {
+      // Skip.
+    }
+  }
+
+  @Test
+  @DisplayName("Should accept TCP and UDS connections and perform handshake")
+  void shouldAcceptAndPerformHandshake() throws Exception {
+    var uds = new Transport.Uds(Files.createTempDirectory("elfo-uds").resolve("node.sock"));
+    for (var transport : List.of(new Transport.Tcp("127.0.0.1:0"), uds)) {
+      // Given
+      var accepted = new LinkedBlockingQueue<Socket>();
+      try (var listener = Listener.start(transport, (short) 2, 20L, 0, accepted::add)) {
+
+        // When
+        var client = Socket.connect(listener.transport(), (short) 1, 10L, 0);
+        var server = accepted.poll(5, TimeUnit.SECONDS);
+
+        // Then
+        assertNotNull(server, "No connection accepted on " + transport);
+        assertEquals(new Socket.Peer((short) 2, 20L), client.peer());
+        assertEquals(new Socket.Peer((short) 1, 10L), server.peer());
+        client.close();
+        server.close();
+      }
+    }
+    assertFalse(Files.exists(uds.path()), "Socket file must be removed on close");
+  }
+
+  @Test
+  @DisplayName("Should drop peers that don't complete handshake in time")
+  void shouldDropSlowPeers() throws Exception {
+    // Given: both handshake slots are taken by silent peers.
+    var config = new ListenerConfig(2, 0, Duration.ofMillis(300));
+    var accepted = new LinkedBlockingQueue<Socket>();
+    try (var listener = start(config, accepted)) {
+      var silent =
+          List.of(RawSocket.connect(listener.transport()), RawSocket.connect(listener.transport()));
+
+      // When
+      long start = System.nanoTime();
+      var client = Socket.connect(listener.transport(), (short) 1, 10L, 0);
+      long elapsed = System.nanoTime() - start;
+
+      // Then
+      assertTrue(elapsed >= Duration.ofMillis(200).toNanos(), "Waited " + elapsed + " ns");
+      for (var raw : silent) {
+        awaitClosed(raw);
+        raw.close();
+      }
+      var server = accepted.poll(5, TimeUnit.SECONDS);
+      assertEquals(new Socket.Peer((short) 1, 10L), server.peer());
+      assertTrue(accepted.isEmpty(), "Silent peers must not be handed over");
+      client.close();
+      server.close();
+    }
+  }
+
+  @Test
+  @DisplayName("Should limit handshake rate")
+  void shouldLimitHandshakeRate() throws Exception {
+    // Given: 10 per second, one at a time.
+    var config = new ListenerConfig(64, 10, ListenerConfig.DEFAULT_HANDSHAKE_TIMEOUT);
+    var accepted = new LinkedBlockingQueue<Socket>();
+    try (var listener = start(config, accepted)) {
+      var clients = new ArrayList<Socket>();
+
+      // When
+      long start = System.nanoTime();
+      for (int i = 0; i < 4; i++) {
+        clients.add(Socket.connect(listener.transport(), (short) 1, 10L + i, 0));
+      }
+      long elapsed = System.nanoTime() - start;
+
+      // Then
+      assertTrue(elapsed >= Duration.ofMillis(250).toNanos(), "Took " + elapsed + " ns");
+      for (var client : clients) {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should drop pending handshakes and refuse connections on close")
+  void shouldDropPendingHandshakesOnClose() throws Exception {
+    // Given
+    var accepted = new LinkedBlockingQueue<Socket>();
+    var listener = start(new ListenerConfig(), accepted);
+    var transport = listener.transport();
+    var silent = RawSocket.connect(transport);
+    while (listener.handshakesInProgress() == 0) {
+      Thread.sleep(1);
+    }
+
+    // When
+    listener.close();
+
+    // Then
+    awaitClosed(silent);
+    silent.close();
+    assertThrows(IOException.class, () -> Socket.connect(transport, (short) 1, 10L, 0));
+    assertTrue(accepted.isEmpty());
+  }
+}
@@ -2,8 +2,26 @@ package io.github.csolo.network.socket.raw;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import io.github.csolo.network.config.SocketOptions;
 import io.github.csolo.network.config.Transport;
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import jdk.net.ExtendedSocketOptions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -32,18 +50,165 @@ class RawSocketTest {
   }
 
   @Test
-  @DisplayName("Should handle UDS raw socket")
-  void shouldHandleUdsRawSocket() throws IOException {
-    Transport transport = new Transport.Uds(java.nio.file.Paths.get("/tmp/test.sock"));
+  @DisplayName("Should refuse or close in-process connections racing the listener's close")
+  void shouldNotLeaveInProcConnectionsBehindClose() throws Exception {
+    for (int i = 0; i < 200; i++) {
+      // Given
+      var transport = new Transport.InProc("raw-close-race-" + i);
+      var listener = InProcListener.bind(transport);
+      var connected = new CompletableFuture<RawSocket>();
+      Thread.ofVirtual()
+          .start(
+              () -> {
+                try {
+                  connected.complete(RawSocket.connect(transport));
+                } catch (IOException e) {
+                  connected.completeExceptionally(e);
+                }
+              });
 
-    assertDoesNotThrow(
-        () -> {
-          try {
-            RawSocket.connect(transport);
-            fail("Should have thrown UnsupportedOperationException");
-          } catch (Exception e) {
-            assertTrue(e.getMessage().contains("not yet implemented"));
-          }
-        });
+      // When
+      if (i % 2 == 0) {
+        // Lets the connect run first on a single core.
+        Thread.yield();
+      }
+      listener.close();
+
+      // Then: either refused or closed, never waiting for an accept.
+      RawSocket client;
+      try {
+        client = connected.get(5, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        assertInstanceOf(ConnectException.class, e.getCause());
+        continue;
+      }
+      var read =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return client.channel().read(ByteBuffer.allocate(1));
+                } catch (IOException e) {
+                  return -2;
+                }
+              });
+      assertEquals(-1, (int) read.get(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  @DisplayName("Should refuse UDS connection to missing socket")
+  void shouldRefuseUdsConnectionToMissingSocket() {
+    Transport transport = new Transport.Uds(Path.of("/tmp/elfo-no-such-socket.sock"));
+
+    assertThrows(IOException.class, () -> RawSocket.connect(transport));
+  }
+
+  @Test
+  @DisplayName("Should connect UDS raw socket")
+  void shouldConnectUdsRawSocket() throws Exception {
+    // Given
+    var path = Files.createTempDirectory("elfo-uds").resolve("node.sock");
+    try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(path));
+
+      // When
+      var rawSocket = RawSocket.connect(new Transport.Uds(path));
+
+      // Then
+      assertInstanceOf(RawSocket.Info.Uds.class, rawSocket.info());
+      assertEquals(path.toString(), ((RawSocket.Info.Uds) rawSocket.info()).path());
+      rawSocket.close();
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  @Test
+  @DisplayName("Should apply TCP socket options")
+  void shouldApplyTcpSocketOptions() throws Exception {
+    // Given
+    var options =
+        new SocketOptions()
+            .withBufferSizes(256 * 1024, 512 * 1024)
+            .withKeepAlive(Duration.ofSeconds(30), Duration.ofSeconds(5), 3);
+    try (var server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("127.0.0.1", 0));
+      var port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+      // When
+      var rawSocket = RawSocket.connect(new Transport.Tcp("127.0.0.1:" + port), options);
+      var channel = (SocketChannel) rawSocket.channel();
+
+      // Then
+      assertTrue(channel.getOption(StandardSocketOptions.TCP_NODELAY));
+      assertTrue(channel.getOption(StandardSocketOptions.SO_KEEPALIVE));
+      // The OS may round sizes up (Linux doubles them).
+      assertTrue(channel.getOption(StandardSocketOptions.SO_SNDBUF) >= 256 * 1024);
+      assertTrue(channel.getOption(StandardSocketOptions.SO_RCVBUF) >= 512 * 1024);
+      if (channel.supportedOptions().contains(ExtendedSocketOptions.TCP_KEEPIDLE)) {
+        assertEquals(30, (int) channel.getOption(ExtendedSocketOptions.TCP_KEEPIDLE));
+        assertEquals(5, (int) channel.getOption(ExtendedSocketOptions.TCP_KEEPINTERVAL));
+        assertEquals(3, (int) channel.getOption(ExtendedSocketOptions.TCP_KEEPCOUNT));
+      }
+      rawSocket.close();
+    }
+  }
+
+  @Test
+  @DisplayName("Should apply buffer sizes to UDS and skip TCP-only options")
+  void shouldApplyUdsSocketOptions() throws Exception {
+    // Given
+    var options =
+        new SocketOptions()
+            .withBufferSizes(256 * 1024, 256 * 1024)
+            .withKeepAlive(Duration.ofSeconds(30), null, 0);
+    var path = Files.createTempDirectory("elfo-uds").resolve("node.sock");
+    try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(path));
+
+      // When
+      var rawSocket = RawSocket.connect(new Transport.Uds(path), options);
+      var channel = (SocketChannel) rawSocket.channel();
+
+      // Then
+      assertTrue(channel.getOption(StandardSocketOptions.SO_SNDBUF) >= 256 * 1024);
+      rawSocket.close();
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  @Test
+  @DisplayName("Should give up connecting after the timeout")
+  void shouldGiveUpConnectingAfterTimeout() throws Exception {
+    // Given: a listener that never accepts, so its backlog fills up and connects start to hang.
+    var options = new SocketOptions().withConnectTimeout(Duration.ofMillis(200));
+    var connected = new ArrayList<RawSocket>();
+    try (var server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("127.0.0.1", 0), 1);
+      var transport =
+          new Transport.Tcp(
+              "127.0.0.1:" + ((InetSocketAddress) server.getLocalAddress()).getPort());
+
+      // When
+      IOException failure = null;
+      long start = 0;
+      while (failure == null && connected.size() < 16) {
+        start = System.nanoTime();
+        try {
+          connected.add(RawSocket.connect(transport, options));
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+
+      // Then
+      assertInstanceOf(SocketTimeoutException.class, failure);
+      assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    } finally {
+      for (var rawSocket : connected) {
+        rawSocket.close();
+      }
+    }
   }
 }
@@ -0,0 +1,200 @@
+package io.github.csolo.network.socket.raw;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.testing.EchoPeer;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Shared Memory Transport Tests")
+class ShmTransportTest {
+
+  static Transport.Shm tempTransport() throws Exception {
+    return new Transport.Shm(Files.createTempDirectory("elfo-shm").resolve("segment"));
+  }
+
+  @Nested
+  @DisplayName("Ring Tests")
+  class RingTests {
+
+    @Test
+    @DisplayName("Should preserve bytes across wraparound")
+    void shouldPreserveBytesAcrossWraparound() {
+      // Given
+      int capacity = 4096;
+      var ring = new ShmRing(ByteBuffer.allocateDirect(ShmRing.sizeFor(capacity)), 0, capacity);
+      var src = ByteBuffer.allocate(3000);
+      var dst = ByteBuffer.allocate(3000);
+
+      for (int round = 0; round < 10; round++) {
+        for (int i = 0; i < src.capacity(); i++) {
+          src.put(i, (byte) (round * 31 + i));
+        }
+        src.clear();
+        dst.clear();
+
+        // When
+        int written = ring.write(src);
+        int read = ring.read(dst);
+
+        // Then
+        assertEquals(3000, written);
+        assertEquals(3000, read);
+        assertEquals(src.flip(), dst.flip(), "Round " + round);
+      }
+    }
+
+    @Test
+    @DisplayName("Should report full and empty ring")
+    void shouldReportFullAndEmptyRing() {
+      // Given
+      int capacity = 4096;
+      var ring = new ShmRing(ByteBuffer.allocateDirect(ShmRing.sizeFor(capacity)), 0, capacity);
+
+      // When & Then
+      assertEquals(0, ring.read(ByteBuffer.allocate(16)));
+      assertEquals(capacity, ring.write(ByteBuffer.allocate(capacity + 100)));
+      assertEquals(0, ring.write(ByteBuffer.allocate(1)));
+      assertEquals(100, ring.read(ByteBuffer.allocate(100)));
+      assertEquals(100, ring.write(ByteBuffer.allocate(1000)));
+    }
+  }
+
+  @Nested
+  @DisplayName("Connection Tests")
+  class ConnectionTests {
+
+    @Test
+    @DisplayName("Should round-trip frames larger than the ring")
+    void shouldRoundTripFramesLargerThanRing() throws Exception {
+      // Given
+      var transport = tempTransport();
+      try (var peer = EchoPeer.start(transport, (short) 2, 20L)) {
+        var connection = Connection.of(Socket.connect(transport, (short) 1, 10L, 0));
+        var large = ByteBuffer.allocate(ShmListener.DEFAULT_CAPACITY * 3);
+        for (int i = 0; i < large.capacity(); i++) {
+          large.put(i, (byte) i);
+        }
+
+        // When
+        connection.send(new ProtocolMessages.Ping(1L));
+        connection.send(new NetworkEnvelope(1L, 2L, 3L, "Large", large));
+        connection.flush();
+
+        // Then
+        assertEquals(2, connection.socket().peer().nodeNo());
+        assertEquals(20L, connection.socket().peer().launchId());
+        assertEquals(new ProtocolMessages.Ping(1L), connection.receive());
+        assertEquals(large, ((NetworkEnvelope) connection.receive()).payload());
+        connection.close();
+      }
+    }
+
+    @Test
+    @DisplayName("Should accept next client after the previous one closes")
+    void shouldAcceptNextClient() throws Exception {
+      // Given
+      var transport = tempTransport();
+      try (var peer = EchoPeer.start(transport, (short) 2, 20L)) {
+        var first = Connection.of(Socket.connect(transport, (short) 1, 10L, 0));
+
+        // When
+        first.close();
+        Connection second = null;
+        for (int attempt = 0; second == null; attempt++) {
+          try {
+            second = Connection.of(Socket.connect(transport, (short) 1, 11L, 0));
+          } catch (ConnectException e) {
+            // The listener has not re-armed the segment yet.
+            assertTrue(attempt < 1000, "Listener did not re-arm the segment");
+            Thread.sleep(1);
+          }
+        }
+        second.send(new ProtocolMessages.Ping(2L));
+        second.flush();
+
+        // Then
+        assertEquals(new ProtocolMessages.Ping(2L), second.receive());
+        second.close();
+      }
+    }
+
+    @Test
+    @DisplayName("Should refuse connection to missing segment")
+    void shouldRefuseConnectionToMissingSegment() {
+      // Given
+      var transport = new Transport.Shm(Path.of("/tmp/elfo-no-such-segment"));
+
+      // When & Then
+      var exception = assertThrows(ConnectException.class, () -> RawSocket.connect(transport));
+      assertTrue(exception.getMessage().contains("Connection refused"));
+    }
+
+    @Test
+    @DisplayName("Should refuse connection to busy segment")
+    void shouldRefuseConnectionToBusySegment() throws Exception {
+      // Given
+      var transport = tempTransport();
+      try (var listener = ShmListener.bind(transport, 4096)) {
+        var acceptor = Thread.ofVirtual().start(() -> assertDoesNotThrow(listener::accept));
+        RawSocket first = null;
+        while (first == null) {
+          try {
+            first = RawSocket.connect(transport);
+          } catch (ConnectException e) {
+            Thread.sleep(1);
+          }
+        }
+        acceptor.join();
+
+        // When & Then
+        assertThrows(ConnectException.class, () -> RawSocket.connect(transport));
+        first.close();
+      }
+    }
+
+    @Test
+    @DisplayName("Should not reset rings until client detaches")
+    void shouldNotResetRingsUntilClientDetaches() throws Exception {
+      // Given
+      var transport = tempTransport();
+      try (var listener = ShmListener.bind(transport, 4096)) {
+        var client = RawSocket.connect(transport);
+        var server = listener.accept();
+        var buffer = ByteBuffer.allocate(16);
+
+        // When
+        server.close();
+        var next = Thread.ofVirtual().start(() -> assertDoesNotThrow(listener::accept));
+
+        // Then: the closed client's rings are kept until it lets go.
+        assertEquals(-1, client.channel().read(buffer));
+        next.join(50);
+        assertTrue(next.isAlive(), "Listener reset rings still in use");
+        assertThrows(ConnectException.class, () -> RawSocket.connect(transport));
+        client.close();
+        RawSocket second = null;
+        for (int attempt = 0; second == null; attempt++) {
+          try {
+            second = RawSocket.connect(transport);
+          } catch (ConnectException e) {
+            assertTrue(attempt < 1000, "Listener did not re-arm the segment");
+            Thread.sleep(1);
+          }
+        }
+        next.join();
+        second.close();
+      }
+    }
+  }
+}
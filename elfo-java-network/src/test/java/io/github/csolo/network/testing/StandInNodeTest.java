@@ -0,0 +1,139 @@
+package io.github.csolo.network.testing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("StandInNode Tests")
+class StandInNodeTest {
+
+  static final Duration WARMUP = Duration.ofMillis(100);
+  static final Duration DURATION = Duration.ofMillis(400);
+
+  @Nested
+  @DisplayName("Protocol Tests")
+  class ProtocolTests {
+
+    @Test
+    @DisplayName("Should answer control, data and ping messages")
+    void shouldAnswerProtocolMessages() throws Exception {
+      // Given
+      var groups = List.of(new ProtocolMessages.GroupInfo((short) 3, "gateway", List.of("api")));
+      try (var node = StandInNode.builder().groups(groups).initialWindow(500).start();
+          var connection =
+              Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0))) {
+
+        // When
+        connection.send(new ProtocolMessages.SwitchToControl(List.of()));
+        connection.send(new ProtocolMessages.SwitchToData((short) 7, (short) 3, 100));
+        connection.flush();
+        var control = connection.receive();
+        var data = connection.receive();
+        // Sent separately, as pings overtake queued frames.
+        connection.send(new ProtocolMessages.Ping(42L));
+        connection.flush();
+
+        // Then
+        assertEquals(new ProtocolMessages.SwitchToControl(groups), control);
+        assertEquals(new ProtocolMessages.SwitchToData((short) 3, (short) 7, 500), data);
+        assertEquals(new ProtocolMessages.Pong(42L), connection.receive());
+      }
+    }
+
+    @Test
+    @DisplayName("Should echo envelopes as is")
+    void shouldEchoEnvelopes() throws Exception {
+      // Given
+      var envelope = new NetworkEnvelope(1L, 2L, 3L, "Echo", ByteBuffer.wrap(new byte[] {1, 2}));
+      try (var node = StandInNode.builder().start();
+          var connection =
+              Connection.of(Socket.connect(node.transport(), (short) 1, 1L, 0))) {
+
+        // When
+        connection.send(envelope);
+        connection.flush();
+
+        // Then
+        var echoed = (NetworkEnvelope) connection.receive();
+        assertEquals(envelope.traceId(), echoed.traceId());
+        assertEquals(envelope.encodedPayload(), echoed.encodedPayload());
+        assertEquals(1, node.received());
+        assertEquals(1, node.sent());
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Load Harness Tests")
+  class LoadHarnessTests {
+
+    @Test
+    @DisplayName("Should measure round trips against an echoing node")
+    void shouldMeasureRoundTrips() throws Exception {
+      try (var node = StandInNode.builder().start()) {
+        // When
+        var report =
+            LoadHarness.builder(node.transport())
+                .rate(2_000)
+                .warmup(WARMUP)
+                .duration(DURATION)
+                .run();
+
+        // Then
+        assertTrue(report.sent() > 400, report.toString());
+        assertEquals(report.sent(), report.received(), report.toString());
+        assertEquals(report.received(), report.latency().count());
+        assertTrue(report.latency().quantile(0.5) > 0, report.toString());
+        assertTrue(report.sendRate() <= 2_200, report.toString());
+      }
+    }
+
+    @Test
+    @DisplayName("Should only count sent messages against a sink")
+    void shouldCountSentAgainstSink() throws Exception {
+      try (var node = StandInNode.builder().mode(StandInNode.Mode.SINK).start()) {
+        // When
+        var report =
+            LoadHarness.builder(node.transport())
+                .rate(0)
+                .warmup(WARMUP)
+                .duration(DURATION)
+                .run();
+
+        // Then
+        assertTrue(report.sent() > 0, report.toString());
+        assertEquals(0, report.received());
+        assertTrue(node.received() >= report.sent(), report.toString());
+      }
+    }
+
+    @Test
+    @DisplayName("Should receive messages from a generating node")
+    void shouldReceiveFromGenerator() throws Exception {
+      try (var node =
+          StandInNode.builder().mode(StandInNode.Mode.GENERATE).rate(1_000).start()) {
+        // When
+        var report =
+            LoadHarness.builder(node.transport())
+                .sending(false)
+                .warmup(WARMUP)
+                .duration(DURATION)
+                .run();
+
+        // Then
+        assertEquals(0, report.sent());
+        assertTrue(report.received() > 200, report.toString());
+        assertTrue(report.receiveRate() <= 1_100, report.toString());
+      }
+    }
+  }
+}
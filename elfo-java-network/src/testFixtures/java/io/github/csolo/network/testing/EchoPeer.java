@@ -0,0 +1,76 @@
+package io.github.csolo.network.testing;
+
+import io.github.csolo.network.config.ListenerConfig;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.socket.Listener;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Java stand-in for a remote node: accepts connections on any transport, performs the server side
+ * of the handshake and sends every received frame back.
+ *
+ * <pre>{@code
+ * try (var peer = EchoPeer.start(new Transport.Tcp("127.0.0.1:0"), (short) 2, 1L)) {
+ *   var connection = Connection.of(Socket.connect(peer.transport(), (short) 1, 1L, 0));
+ * }
+ * }</pre>
+ */
+public class EchoPeer implements AutoCloseable {
+  // No rate limit, tests and benchmarks connect as fast as they can.
+  private static final ListenerConfig UNLIMITED =
+      new ListenerConfig(1024, 0, ListenerConfig.DEFAULT_HANDSHAKE_TIMEOUT);
+
+  private final Listener listener;
+  private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+  private EchoPeer(Transport transport, short nodeNo, long launchId) throws IOException {
+    this.listener =
+        Listener.start(
+            transport,
+            new SocketOptions(),
+            UNLIMITED,
+            nodeNo,
+            launchId,
+            0,
+            socket -> echo(Connection.of(socket)));
+  }
+
+  /**
+   * Starts listening on the transport. For TCP, port 0 picks an ephemeral port, see {@link
+   * #transport()} for the actual address.
+   */
+  public static EchoPeer start(Transport transport, short nodeNo, long launchId)
+      throws IOException {
+    return new EchoPeer(transport, nodeNo, launchId);
+  }
+
+  /** Gets the transport clients should connect to. */
+  public Transport transport() {
+    return listener.transport();
+  }
+
+  private void echo(Connection connection) {
+    connections.add(connection);
+    try (connection) {
+      Object frame;
+      while ((frame = connection.receive()) != null) {
+        connection.send(frame);
+        connection.flush();
+      }
+    } catch (IOException e) {
+      // The connection is closed by any side, nothing to do.
+    } finally {
+      connections.remove(connection);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    listener.close();
+    connections.forEach(Connection::close);
+  }
+}
@@ -0,0 +1,194 @@
+package io.github.csolo.network.testing;
+
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.InProcListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * Cluster of nodes living in one JVM and connected through in-process transport.
+ *
+ * <p>Every link performs the real handshake, after that frames are passed by reference. Nodes are
+ * numbered from 1, and a link {@code (from, to)} is opened by {@code from}, so {@code
+ * connection(from, to)} is the client side and {@code connection(to, from)} is the server side.
+ *
+ * <pre>{@code
+ * try (var cluster = InProcCluster.builder().nodes(16).build()) {
+ *   cluster.connection(1, 2).send(envelope);
+ *   var received = cluster.connection(2, 1).receive();
+ * }
+ * }</pre>
+ */
+public class InProcCluster implements AutoCloseable {
+  private static final AtomicInteger CLUSTER_COUNTER = new AtomicInteger();
+
+  private final String name;
+  private final long[] launchIds;
+  private final Connection[][] connections;
+  private final List<InProcListener> listeners;
+
+  private InProcCluster(
+      String name, long[] launchIds, Connection[][] connections, List<InProcListener> listeners) {
+    this.name = name;
+    this.launchIds = launchIds;
+    this.connections = connections;
+    this.listeners = listeners;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Gets the number of nodes. */
+  public int size() {
+    return launchIds.length - 1;
+  }
+
+  /** Gets the launch id of the node. */
+  public long launchId(int nodeNo) {
+    return launchIds[nodeNo];
+  }
+
+  /** Gets the transport the node listens on. */
+  public Transport.InProc transport(int nodeNo) {
+    return new Transport.InProc(name + "-" + nodeNo);
+  }
+
+  /**
+   * Gets the connection of node {@code from} to node {@code to}.
+   *
+   * @throws IllegalArgumentException if nodes are not linked
+   */
+  public Connection connection(int from, int to) {
+    var connection = connections[from][to];
+    if (connection == null) {
+      throw new IllegalArgumentException(
+          String.format("Nodes %d and %d are not linked", from, to));
+    }
+    return connection;
+  }
+
+  @Override
+  public void close() {
+    for (var row : connections) {
+      for (var connection : row) {
+        if (connection != null) {
+          connection.close();
+        }
+      }
+    }
+    listeners.forEach(InProcListener::close);
+  }
+
+  /** Builder of {@link InProcCluster}. */
+  public static class Builder {
+    private int nodes = 2;
+    private int capabilities = 0;
+    private BiPredicate<Integer, Integer> links = (from, to) -> true;
+    private MemoryBudget budget = MemoryBudget.global();
+
+    /** Sets the number of nodes, 2 by default. */
+    public Builder nodes(int nodes) {
+      if (nodes < 1 || nodes > Short.MAX_VALUE) {
+        throw new IllegalArgumentException("Number of nodes must be in [1, 32767], got: " + nodes);
+      }
+      this.nodes = nodes;
+      return this;
+    }
+
+    /** Sets capabilities announced by every node in the handshake. */
+    public Builder capabilities(int capabilities) {
+      this.capabilities = capabilities;
+      return this;
+    }
+
+    /**
+     * Sets which pairs of nodes are linked, full mesh by default. The predicate is called only for
+     * {@code from < to}.
+     */
+    public Builder links(BiPredicate<Integer, Integer> links) {
+      this.links = links;
+      return this;
+    }
+
+    /** Sets the budget connections reserve from, the global one by default. */
+    public Builder budget(MemoryBudget budget) {
+      this.budget = budget;
+      return this;
+    }
+
+    public InProcCluster build() throws IOException {
+      var name = "cluster-" + CLUSTER_COUNTER.incrementAndGet();
+      var launchIds = new long[nodes + 1];
+      var connections = new Connection[nodes + 1][nodes + 1];
+      var listeners = new ArrayList<InProcListener>();
+      var cluster = new InProcCluster(name, launchIds, connections, listeners);
+
+      try {
+        for (int nodeNo = 1; nodeNo <= nodes; nodeNo++) {
+          launchIds[nodeNo] = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+          listeners.add(InProcListener.bind(cluster.transport(nodeNo)));
+        }
+
+        for (int from = 1; from <= nodes; from++) {
+          for (int to = from + 1; to <= nodes; to++) {
+            if (links.test(from, to)) {
+              link(cluster, from, to);
+            }
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        cluster.close();
+        throw e;
+      }
+      return cluster;
+    }
+
+    private void link(InProcCluster cluster, int from, int to) throws IOException {
+      var listener = cluster.listeners.get(to - 1);
+      var accepted = new Socket[1];
+      var failure = new Exception[1];
+      var acceptor =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      accepted[0] =
+                          Socket.accept(
+                              listener.accept(),
+                              (short) to,
+                              cluster.launchIds[to],
+                              capabilities);
+                    } catch (Exception e) {
+                      failure[0] = e;
+                    }
+                  });
+
+      var client =
+          Socket.connect(
+              cluster.transport(to), (short) from, cluster.launchIds[from], capabilities);
+      try {
+        acceptor.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while linking nodes", e);
+      }
+      if (failure[0] != null) {
+        throw new IOException("Failed to accept link " + from + " -> " + to, failure[0]);
+      }
+
+      var compression = new CompressionConfig(CompressionAlgorithm.LZ4);
+      cluster.connections[from][to] = Connection.of(client, compression, budget);
+      cluster.connections[to][from] = Connection.of(accepted[0], compression, budget);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package io.github.csolo.network.testing;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.metrics.Histogram;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a data connection to a node, usually a {@link StandInNode}, and reports throughput and
+ * latency.
+ *
+ * <p>Sends envelopes at a fixed rate, stamping each with {@link System#nanoTime()} as its trace id,
+ * and measures the latency of received envelopes by their stamps. So round trips are measured
+ * against an echoing node and one-way delivery against a generating one, which must live in the
+ * same JVM. Envelopes stamped during the warm-up are not counted.
+ *
+ * <pre>{@code
+ * try (var node = StandInNode.builder().start()) {
+ *   var report = LoadHarness.builder(node.transport()).rate(50_000).run();
+ *   System.out.println(report);
+ * }
+ * }</pre>
+ */
+public final class LoadHarness {
+  // Flush at least this often when sending without a rate limit.
+  private static final int FLUSH_EVERY = 64;
+  // Time to wait for envelopes still in flight once sending is done.
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(1);
+
+  private final Builder config;
+  private final Histogram latency = new Histogram();
+  private final LongAdder received = new LongAdder();
+  private volatile long measureStart = Long.MAX_VALUE;
+  private volatile long measureEnd = Long.MAX_VALUE;
+
+  private LoadHarness(Builder config) {
+    this.config = config;
+  }
+
+  public static Builder builder(Transport transport) {
+    return new Builder(transport);
+  }
+
+  private LoadReport run() throws IOException {
+    var socket = Socket.connect(config.transport, config.nodeNo, config.launchId, 0);
+    try (var connection = Connection.of(socket)) {
+      switchToData(connection);
+      var reader = Thread.ofVirtual().name("load-harness-reader").start(() -> read(connection));
+
+      long sent = send(connection);
+      awaitDrain(sent);
+      connection.close();
+      try {
+        reader.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while stopping the reader", e);
+      }
+      return new LoadReport(
+          sent,
+          received.sum(),
+          Duration.ofNanos(measureEnd - measureStart),
+          latency.snapshot());
+    }
+  }
+
+  private void switchToData(Connection connection) throws IOException {
+    connection.send(new ProtocolMessages.SwitchToData((short) 1, (short) 1, 100_000));
+    connection.flush();
+    var reply = connection.receive();
+    if (!(reply instanceof ProtocolMessages.SwitchToData)) {
+      throw new ProtocolException("Expected SwitchToData, got " + reply);
+    }
+  }
+
+  /** Sends during the warm-up and the measurement, returns the number sent in the latter. */
+  private long send(Connection connection) throws IOException {
+    long warmupEnd = System.nanoTime() + config.warmup.toNanos();
+    long end = warmupEnd + config.duration.toNanos();
+    measureStart = warmupEnd;
+    measureEnd = end;
+    if (!config.sending) {
+      sleepUntil(end);
+      return 0;
+    }
+
+    var payload = ByteBuffer.allocate(config.payloadSize).asReadOnlyBuffer();
+    var pacer = new Pacer(config.rate);
+    long sent = 0;
+    for (long i = 1; ; i++) {
+      pacer.await();
+      long now = System.nanoTime();
+      if (now >= end) {
+        break;
+      }
+      connection.send(new NetworkEnvelope(0L, 0L, now, "LoadHarness", payload));
+      if (now >= warmupEnd) {
+        sent++;
+      }
+      if (!pacer.unlimited() || i % FLUSH_EVERY == 0) {
+        connection.flush();
+      }
+    }
+    connection.flush();
+    return sent;
+  }
+
+  private void awaitDrain(long sent) throws IOException {
+    long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+    // Only an echoing node sends everything back, others time out.
+    while (received.sum() < sent && System.nanoTime() < deadline) {
+      sleepUntil(Math.min(deadline, System.nanoTime() + 1_000_000));
+    }
+  }
+
+  private static void sleepUntil(long deadline) throws IOException {
+    long wait;
+    while ((wait = deadline - System.nanoTime()) > 0) {
+      try {
+        Thread.sleep(Duration.ofNanos(wait));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted during the run", e);
+      }
+    }
+  }
+
+  private void read(Connection connection) {
+    try {
+      Object frame;
+      while ((frame = connection.receive()) != null) {
+        if (frame instanceof NetworkEnvelope envelope) {
+          long now = System.nanoTime();
+          long stamp = envelope.traceId();
+          if (stamp >= measureStart && stamp < measureEnd) {
+            latency.record(now - stamp);
+            received.increment();
+          }
+        }
+      }
+    } catch (IOException e) {
+      // Closed once the run is over.
+    }
+  }
+
+  /** Builder of {@link LoadHarness} runs. */
+  public static class Builder {
+    private final Transport transport;
+    private short nodeNo = 1;
+    private long launchId = 1L;
+    private boolean sending = true;
+    private int rate = 10_000;
+    private int payloadSize = 64;
+    private Duration warmup = Duration.ofSeconds(1);
+    private Duration duration = Duration.ofSeconds(5);
+
+    private Builder(Transport transport) {
+      this.transport = transport;
+    }
+
+    /** Sets the node number and launch id announced in the handshake, 1 and 1 by default. */
+    public Builder node(short nodeNo, long launchId) {
+      this.nodeNo = nodeNo;
+      this.launchId = launchId;
+      return this;
+    }
+
+    /** Sets whether to send, disable it to only receive from a generating node. */
+    public Builder sending(boolean sending) {
+      this.sending = sending;
+      return this;
+    }
+
+    /** Sets the rate of sent envelopes per second, 0 for as fast as possible. 10 000 by default. */
+    public Builder rate(int rate) {
+      if (rate < 0) {
+        throw new IllegalArgumentException("Rate cannot be negative: " + rate);
+      }
+      this.rate = rate;
+      return this;
+    }
+
+    /** Sets the payload size of sent envelopes, 64 bytes by default. */
+    public Builder payloadSize(int payloadSize) {
+      if (payloadSize < 0) {
+        throw new IllegalArgumentException("Payload size cannot be negative: " + payloadSize);
+      }
+      this.payloadSize = payloadSize;
+      return this;
+    }
+
+    /** Sets the time to run before measuring, 1 second by default. */
+    public Builder warmup(Duration warmup) {
+      this.warmup = warmup;
+      return this;
+    }
+
+    /** Sets the length of the measurement, 5 seconds by default. */
+    public Builder duration(Duration duration) {
+      if (duration.isNegative() || duration.isZero()) {
+        throw new IllegalArgumentException("Duration must be positive: " + duration);
+      }
+      this.duration = duration;
+      return this;
+    }
+
+    /** Connects, runs the load and disconnects. */
+    public LoadReport run() throws IOException {
+      return new LoadHarness(this).run();
+    }
+  }
+}
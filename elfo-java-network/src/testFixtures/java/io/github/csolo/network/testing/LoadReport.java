@@ -0,0 +1,45 @@
+package io.github.csolo.network.testing;
+
+import io.github.csolo.network.metrics.Histogram;
+import java.time.Duration;
+
+/**
+ * Result of a {@link LoadHarness} run, warm-up excluded.
+ *
+ * @param sent Number of envelopes sent during the measurement.
+ * @param received Number of envelopes received that were stamped during the measurement.
+ * @param duration Length of the measurement.
+ * @param latency Latency of received envelopes in nanoseconds, round trip for echoed ones and one
+ *     way for generated ones.
+ */
+public record LoadReport(long sent, long received, Duration duration, Histogram.Snapshot latency) {
+
+  /** Gets the rate of sent envelopes per second. */
+  public double sendRate() {
+    return perSecond(sent);
+  }
+
+  /** Gets the rate of received envelopes per second. */
+  public double receiveRate() {
+    return perSecond(received);
+  }
+
+  private double perSecond(long count) {
+    return duration.isZero() ? 0.0 : count * 1e9 / duration.toNanos();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "sent %d (%.0f msg/s), received %d (%.0f msg/s), latency us: p50 %.1f, p99 %.1f,"
+            + " p99.9 %.1f, max %.1f",
+        sent,
+        sendRate(),
+        received,
+        receiveRate(),
+        latency.quantile(0.5) / 1e3,
+        latency.quantile(0.99) / 1e3,
+        latency.quantile(0.999) / 1e3,
+        latency.max() / 1e3);
+  }
+}
@@ -0,0 +1,34 @@
+package io.github.csolo.network.testing;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces operations evenly at a fixed rate. Deadlines advance by a fixed period regardless of when
+ * the caller actually got to them, so a sender that falls behind catches up instead of drifting.
+ */
+final class Pacer {
+  private final long periodNanos;
+  private long next = System.nanoTime();
+
+  /** Creates a pacer for the rate per second, 0 for no limit. */
+  Pacer(int rate) {
+    this.periodNanos = rate > 0 ? 1_000_000_000L / rate : 0;
+  }
+
+  /** Checks if there is no limit, so callers may batch their flushes. */
+  boolean unlimited() {
+    return periodNanos == 0;
+  }
+
+  /** Waits for the next deadline, returns at once when there is no limit or it's behind. */
+  void await() {
+    if (periodNanos == 0) {
+      return;
+    }
+    long wait;
+    while ((wait = next - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(wait);
+    }
+    next += periodNanos;
+  }
+}
@@ -0,0 +1,251 @@
+package io.github.csolo.network.testing;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.ListenerConfig;
+import io.github.csolo.network.config.SocketOptions;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Listener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Java stand-in for a remote elfo node, so that the bridge can be tested end to end without a Rust
+ * build.
+ *
+ * <p>Accepts connections on any transport and speaks the node side of the protocol (see {@link
+ * ProtocolMessages}): answers the handshake, {@code SwitchToControl} with its groups, {@code
+ * SwitchToData} with the group numbers swapped, and every {@code Ping} with a {@code Pong}.
+ * Envelopes are handled according to the {@link Mode}.
+ *
+ * <pre>{@code
+ * try (var node = StandInNode.builder().mode(StandInNode.Mode.SINK).start()) {
+ *   var report = LoadHarness.builder(node.transport()).rate(100_000).run();
+ * }
+ * }</pre>
+ */
+public final class StandInNode implements AutoCloseable {
+  /** Name of generated messages. */
+  public static final String GENERATED_NAME = "StandInMessage";
+
+  // No rate limit, tests and benchmarks connect as fast as they can.
+  private static final ListenerConfig UNLIMITED =
+      new ListenerConfig(1024, 0, ListenerConfig.DEFAULT_HANDSHAKE_TIMEOUT);
+  // Flush at least this often when generating without a rate limit.
+  private static final int FLUSH_EVERY = 64;
+
+  /** How the node handles envelopes. */
+  public enum Mode {
+    /** Sends every envelope back as is, so trace ids carry the sender's timestamps back. */
+    ECHO,
+    /** Counts and drops envelopes. */
+    SINK,
+    /**
+     * Drops received envelopes and sends its own at the configured rate on every data connection.
+     * Generated envelopes carry {@link System#nanoTime()} at sending as their trace id.
+     */
+    GENERATE
+  }
+
+  private final Mode mode;
+  private final List<ProtocolMessages.GroupInfo> groups;
+  private final int initialWindow;
+  private final int rate;
+  private final int payloadSize;
+  private final Listener listener;
+  private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+  private final LongAdder received = new LongAdder();
+  private final LongAdder sent = new LongAdder();
+  private volatile boolean open = true;
+
+  private StandInNode(Builder config) throws IOException {
+    this.mode = config.mode;
+    this.groups = config.groups;
+    this.initialWindow = config.initialWindow;
+    this.rate = config.rate;
+    this.payloadSize = config.payloadSize;
+    this.listener =
+        Listener.start(
+            config.transport,
+            config.socketOptions,
+            UNLIMITED,
+            config.nodeNo,
+            config.launchId,
+            config.capabilities,
+            socket -> serve(Connection.of(socket)));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Gets the transport clients should connect to. */
+  public Transport transport() {
+    return listener.transport();
+  }
+
+  /** Gets the number of envelopes received over all connections. */
+  public long received() {
+    return received.sum();
+  }
+
+  /** Gets the number of envelopes sent back or generated over all connections. */
+  public long sent() {
+    return sent.sum();
+  }
+
+  private void serve(Connection connection) {
+    connections.add(connection);
+    try (connection) {
+      Object frame;
+      while ((frame = connection.receive()) != null) {
+        switch (frame) {
+          case NetworkEnvelope envelope -> {
+            received.increment();
+            if (mode == Mode.ECHO) {
+              // Counted first, the peer may see the echo before this thread runs on.
+              sent.increment();
+              connection.send(envelope);
+              connection.flush();
+            }
+          }
+          case ProtocolMessages.Ping ping -> {
+            connection.send(new ProtocolMessages.Pong(ping.payload()));
+            connection.flush();
+          }
+          case ProtocolMessages.SwitchToControl ignored -> {
+            connection.send(new ProtocolMessages.SwitchToControl(groups));
+            connection.flush();
+          }
+          case ProtocolMessages.SwitchToData request -> {
+            connection.send(
+                new ProtocolMessages.SwitchToData(
+                    request.yourGroupNo(), request.myGroupNo(), initialWindow));
+            connection.flush();
+            if (mode == Mode.GENERATE) {
+              Thread.ofVirtual().name("stand-in-generator").start(() -> generate(connection));
+            }
+          }
+          default -> {
+            // Flow control is not enforced by the stand-in.
+          }
+        }
+      }
+    } catch (IOException e) {
+      // The connection is closed by any side, nothing to do.
+    } finally {
+      connections.remove(connection);
+    }
+  }
+
+  private void generate(Connection connection) {
+    var payload = ByteBuffer.allocate(payloadSize).asReadOnlyBuffer();
+    var pacer = new Pacer(rate);
+    try {
+      for (long i = 1; open; i++) {
+        pacer.await();
+        connection.send(new NetworkEnvelope(0L, 0L, System.nanoTime(), GENERATED_NAME, payload));
+        sent.increment();
+        if (!pacer.unlimited() || i % FLUSH_EVERY == 0) {
+          connection.flush();
+        }
+      }
+    } catch (IOException e) {
+      // The connection is closed by any side, nothing to do.
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    open = false;
+    listener.close();
+    connections.forEach(Connection::close);
+  }
+
+  /** Builder of {@link StandInNode}. */
+  public static class Builder {
+    private Transport transport = new Transport.Tcp("127.0.0.1:0");
+    private SocketOptions socketOptions = new SocketOptions();
+    private short nodeNo = 2;
+    private long launchId = 2L;
+    private int capabilities = 0;
+    private List<ProtocolMessages.GroupInfo> groups = List.of();
+    private int initialWindow = 100_000;
+    private Mode mode = Mode.ECHO;
+    private int rate = 0;
+    private int payloadSize = 64;
+
+    /** Sets the transport to listen on, an ephemeral TCP port on loopback by default. */
+    public Builder transport(Transport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /** Sets options of accepted TCP and UDS sockets, the defaults by default. */
+    public Builder socketOptions(SocketOptions socketOptions) {
+      this.socketOptions = socketOptions;
+      return this;
+    }
+
+    /** Sets the node number and launch id announced in the handshake, 2 and 2 by default. */
+    public Builder node(short nodeNo, long launchId) {
+      this.nodeNo = nodeNo;
+      this.launchId = launchId;
+      return this;
+    }
+
+    /** Sets capabilities announced in the handshake, none by default. */
+    public Builder capabilities(int capabilities) {
+      this.capabilities = capabilities;
+      return this;
+    }
+
+    /** Sets groups announced in {@code SwitchToControl}, none by default. */
+    public Builder groups(List<ProtocolMessages.GroupInfo> groups) {
+      this.groups = List.copyOf(groups);
+      return this;
+    }
+
+    /** Sets the initial window answered in {@code SwitchToData}, 100 000 by default. */
+    public Builder initialWindow(int initialWindow) {
+      this.initialWindow = initialWindow;
+      return this;
+    }
+
+    /** Sets how envelopes are handled, {@link Mode#ECHO} by default. */
+    public Builder mode(Mode mode) {
+      this.mode = mode;
+      return this;
+    }
+
+    /**
+     * Sets the rate of generated envelopes per second and data connection, 0 for as fast as
+     * possible. Only used by {@link Mode#GENERATE}.
+     */
+    public Builder rate(int rate) {
+      if (rate < 0) {
+        throw new IllegalArgumentException("Rate cannot be negative: " + rate);
+      }
+      this.rate = rate;
+      return this;
+    }
+
+    /** Sets the payload size of generated envelopes, 64 bytes by default. */
+    public Builder payloadSize(int payloadSize) {
+      if (payloadSize < 0) {
+        throw new IllegalArgumentException("Payload size cannot be negative: " + payloadSize);
+      }
+      this.payloadSize = payloadSize;
+      return this;
+    }
+
+    public StandInNode start() throws IOException {
+      return new StandInNode(this);
+    }
+  }
+}
@@ -6,6 +6,8 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind:2.16.1")
     implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:2.16.1")
     
+    implementation("org.jetbrains:annotations:24.1.0")
+
     // Logging
     implementation("org.slf4j:slf4j-api:2.0.9")
     
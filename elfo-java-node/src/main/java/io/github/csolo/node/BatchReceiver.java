@@ -0,0 +1,177 @@
+package io.github.csolo.node;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.jfr.SlowHandlerEvent;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads a connection in batches and hands envelopes over to the handler a batch at a time, so that
+ * the per-message cost of waking up, polling and dispatching is paid once per batch.
+ *
+ * <p>A batch is whatever is at hand after the first frame arrives, see {@link
+ * Connection#receive(Object[], int)}, capped by a limit that follows the queue depth: it doubles
+ * while batches come full, up to {@code maxBatch}, and halves while they come mostly empty. So a
+ * backlog is drained in large batches, while a trickle doesn't make the handler scan a large
+ * array. The batch and its array are reused, handlers must not keep them. Used by the connection's
+ * single reader. Batches handled for longer than 20 ms are recorded as {@link SlowHandlerEvent}s.
+ *
+ * <pre>{@code
+ * new BatchReceiver(connection, 256)
+ *     .run(
+ *         batch -> {
+ *           for (int i = 0; i < batch.size(); i++) {
+ *             aggregate(batch.get(i));
+ *           }
+ *         },
+ *         flowSender::handle);
+ * }</pre>
+ */
+public final class BatchReceiver {
+  public static final int DEFAULT_MAX_BATCH = 256;
+  static final int MIN_BATCH = 8;
+
+  /** Handles a batch of envelopes. */
+  @FunctionalInterface
+  public interface Handler {
+    void handle(Batch batch) throws IOException;
+  }
+
+  /** Handles a protocol frame, e.g. {@code UpdateFlow}. */
+  @FunctionalInterface
+  public interface FrameHandler {
+    void handle(Object frame) throws IOException;
+  }
+
+  /** Envelopes received together, valid until the handler returns. */
+  public static final class Batch {
+    private final NetworkEnvelope[] envelopes;
+    private int size;
+
+    private Batch(int capacity) {
+      this.envelopes = new NetworkEnvelope[capacity];
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public NetworkEnvelope get(int index) {
+      if (index >= size) {
+        throw new IndexOutOfBoundsException(index);
+      }
+      return envelopes[index];
+    }
+  }
+
+  private final Connection connection;
+  private final int maxBatch;
+  private final Object[] frames;
+  private final Batch batch;
+  private int limit;
+  private long batches;
+  private long received;
+
+  public BatchReceiver(Connection connection) {
+    this(connection, DEFAULT_MAX_BATCH);
+  }
+
+  /**
+   * Creates a receiver of the connection.
+   *
+   * @param maxBatch Max number of frames taken at once
+   */
+  public BatchReceiver(Connection connection, int maxBatch) {
+    if (maxBatch < 1) {
+      throw new IllegalArgumentException("Max batch must be positive: " + maxBatch);
+    }
+    this.connection = connection;
+    this.maxBatch = maxBatch;
+    this.limit = Math.min(MIN_BATCH, maxBatch);
+    this.frames = new Object[maxBatch];
+    this.batch = new Batch(maxBatch);
+  }
+
+  /**
+   * Receives until the connection is closed by the peer.
+   *
+   * @param handler Handler of envelopes
+   * @param others Handler of other frames, called in order with envelopes, i.e. envelopes received
+   *     before a frame are handled before it
+   */
+  public void run(Handler handler, FrameHandler others) throws IOException {
+    while (receive(handler, others)) {
+      // Until closed.
+    }
+  }
+
+  /**
+   * Receives and handles a single batch, waiting for it.
+   *
+   * @return {@code false} if the connection is closed by the peer
+   */
+  public boolean receive(Handler handler, FrameHandler others) throws IOException {
+    int count = connection.receive(frames, limit);
+    if (count < 0) {
+      return false;
+    }
+    try {
+      for (int i = 0; i < count; i++) {
+        if (frames[i] instanceof NetworkEnvelope envelope) {
+          batch.envelopes[batch.size++] = envelope;
+        } else {
+          dispatch(handler);
+          others.handle(frames[i]);
+        }
+      }
+      dispatch(handler);
+    } finally {
+      Arrays.fill(frames, 0, count, null);
+    }
+    adapt(count);
+    received += count;
+    batches++;
+    return true;
+  }
+
+  private void dispatch(Handler handler) throws IOException {
+    if (batch.size == 0) {
+      return;
+    }
+    var event = new SlowHandlerEvent();
+    event.begin();
+    try {
+      handler.handle(batch);
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.addr = batch.envelopes[0].recipient();
+        event.message = batch.envelopes[0].name();
+        event.messages = batch.size;
+        event.commit();
+      }
+      // Envelopes are not kept reachable from the reused array.
+      Arrays.fill(batch.envelopes, 0, batch.size, null);
+      batch.size = 0;
+    }
+  }
+
+  private void adapt(int count) {
+    if (count == limit) {
+      limit = Math.min(limit * 2, maxBatch);
+    } else if (count < limit / 4) {
+      limit = Math.max(limit / 2, Math.min(MIN_BATCH, maxBatch));
+    }
+  }
+
+  /** Gets the current limit of a batch. */
+  public int limit() {
+    return limit;
+  }
+
+  /** Gets the mean number of frames taken at once so far. */
+  public double meanBatch() {
+    return batches == 0 ? 0 : (double) received / batches;
+  }
+}
@@ -0,0 +1,376 @@
+package io.github.csolo.node;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.CompressionAlgorithm;
+import io.github.csolo.network.config.CompressionConfig;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.discovery.InterestIndex;
+import io.github.csolo.network.flow.FlowPublisher;
+import io.github.csolo.network.flow.FlowSender;
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.metrics.TransportMetrics;
+import io.github.csolo.network.protocol.Capabilities;
+import io.github.csolo.network.protocol.Handshake;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Socket;
+import io.github.csolo.network.socket.raw.RawSocket;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Startup warm-up, so that the first seconds of real traffic don't run in the interpreter.
+ *
+ * <p>Runs synthetic envelopes through a pair of stream connections linked by OS pipes, with LZ4
+ * negotiated on both ends. Every envelope is routed by an {@link InterestIndex} to the remote
+ * groups interested in its sending group, sent by a {@link FlowSender} and received by a {@link
+ * FlowPublisher} per remote group, which grants the window back. That covers routing, flow control,
+ * the frame codec, batch compression and decompression, chunking of large messages and the socket
+ * read and write loops.
+ *
+ * <p>Nothing leaves the process. Memory is reserved from a {@link MemoryBudget} of its own and
+ * traffic is counted in {@link TransportMetrics} of its own, so the warm-up peer never shows up
+ * among real ones.
+ *
+ * <p>Iterations are timed in rounds. Once the last few rounds take about the same time, the hot
+ * paths are considered compiled and the time so far is reported as the time to steady state.
+ *
+ * <p>Nothing runs it implicitly. To have a node announce itself only once it's fast, call it from
+ * the startup code before {@link io.github.csolo.network.discovery.Discovery#start}.
+ */
+public final class Warmup {
+  private static final Logger log = LoggerFactory.getLogger(Warmup.class);
+
+  // Envelopes sent per iteration, each to every interested remote group.
+  static final int BATCH_SIZE = 16;
+  // Iterations per timed round.
+  static final int ROUND_ITERATIONS = 50;
+  // The steady state is reached when this many rounds in a row ...
+  static final int STEADY_ROUNDS = 5;
+  // ... differ in time by at most this factor.
+  static final double STEADY_SPREAD = 1.25;
+  // Node number of both ends, known only to the warm-up's own registries.
+  static final short NODE_NO = 1;
+  // Window of every flow, a few iterations' worth.
+  private static final int FLOW_WINDOW = 64;
+  // Fails the warm-up if an iteration takes this long, i.e. the receiving side is broken.
+  private static final Duration STALL_TIMEOUT = Duration.ofSeconds(10);
+
+  private static final String[] WORDS = {"order", "filled", "BTCUSDT", "price", "quantity"};
+  private static final String[] GROUPS = {"warmup-a", "warmup-b", "warmup-c", "warmup-d"};
+
+  private Warmup() {}
+
+  /** Runs the warm-up, see {@link WarmupConfig} for when it stops. */
+  public static WarmupReport run(WarmupConfig config) throws IOException {
+    var launchId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    var handshake = new Handshake(NODE_NO, launchId, Capabilities.LZ4);
+    var compression = new CompressionConfig(CompressionAlgorithm.LZ4);
+    var budget = new MemoryBudget(Long.MAX_VALUE);
+    var metrics = new TransportMetrics();
+    var toServer = Pipe.open();
+    var toClient = Pipe.open();
+    var info = new RawSocket.Info.Pipe();
+    var clientRaw = new RawSocket(new PipeChannel(toClient.source(), toServer.sink()), info);
+    var serverRaw = new RawSocket(new PipeChannel(toServer.source(), toClient.sink()), info);
+    var client = Connection.of(Socket.of(clientRaw, handshake, metrics), compression, budget);
+    var server = Connection.of(Socket.of(serverRaw, handshake, metrics), compression, budget);
+
+    var view = interests().view();
+    var received = new Semaphore(0);
+    var publishers = new HashMap<Long, FlowPublisher>();
+    for (var group : GROUPS) {
+      view.forEach(
+          view.id(group),
+          addr ->
+              publishers.computeIfAbsent(
+                  addr, ignored -> new FlowPublisher(server, addr, FLOW_WINDOW, budget)));
+    }
+    publishers.values().forEach(publisher -> publisher.subscribe(new Counter(received)));
+    var sender = new FlowSender(client, FLOW_WINDOW, budget);
+
+    var receiver =
+        Thread.ofVirtual().name("elfo-warmup").start(() -> receive(server, publishers));
+    var updater = Thread.ofVirtual().name("elfo-warmup").start(() -> update(client, sender));
+    try {
+      var report = run(config, sender, view, received, envelopes());
+      log.info("Warm-up: {}", report);
+      return report;
+    } finally {
+      sender.close();
+      client.close();
+      server.close();
+      try {
+        receiver.join();
+        updater.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Remote groups, each interested in two of the local ones. */
+  private static InterestIndex interests() {
+    var groups = new ArrayList<ProtocolMessages.GroupInfo>();
+    for (int i = 0; i < GROUPS.length; i++) {
+      groups.add(
+          new ProtocolMessages.GroupInfo(
+              (short) (i + 1),
+              "warmup-remote-" + i,
+              List.of(GROUPS[i], GROUPS[(i + 1) % GROUPS.length])));
+    }
+    var interests = new InterestIndex();
+    interests.join(NODE_NO, new ProtocolMessages.SwitchToControl(groups));
+    return interests;
+  }
+
+  private static WarmupReport run(
+      WarmupConfig config,
+      FlowSender sender,
+      InterestIndex.View view,
+      Semaphore received,
+      List<NetworkEnvelope> envelopes)
+      throws IOException {
+    var ids = new int[envelopes.size()];
+    var recipients = new int[envelopes.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = view.id(GROUPS[i % GROUPS.length]);
+      recipients[i] = view.count(ids[i]);
+    }
+
+    long start = System.nanoTime();
+    long deadline =
+        config.duration() == null ? Long.MAX_VALUE : start + config.duration().toNanos();
+    long maxIterations = config.iterations() == 0 ? Long.MAX_VALUE : config.iterations();
+
+    var rounds = new double[STEADY_ROUNDS];
+    double firstRound = -1;
+    double lastRound = 0;
+    long steadyAt = -1;
+    long roundStart = start;
+    long iteration = 0;
+    while (iteration < maxIterations && System.nanoTime() < deadline) {
+      int expected = 0;
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        int next = (int) ((iteration * BATCH_SIZE + i) % envelopes.size());
+        route(sender, view, ids[next], envelopes.get(next));
+        expected += recipients[next];
+      }
+      sender.connection().flush();
+      try {
+        if (!received.tryAcquire(expected, STALL_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+          throw new IOException("Warm-up stalled, envelopes are not received");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted during warm-up", e);
+      }
+      iteration++;
+
+      if (iteration % ROUND_ITERATIONS != 0) {
+        continue;
+      }
+      long now = System.nanoTime();
+      lastRound = (double) (now - roundStart) / ROUND_ITERATIONS;
+      roundStart = now;
+      long round = iteration / ROUND_ITERATIONS;
+      if (firstRound < 0) {
+        firstRound = lastRound;
+      }
+      rounds[(int) (round % STEADY_ROUNDS)] = lastRound;
+      if (steadyAt < 0 && round >= STEADY_ROUNDS && isSteady(rounds)) {
+        steadyAt = now;
+        if (config.untilSteady()) {
+          break;
+        }
+      }
+    }
+
+    long end = System.nanoTime();
+    long partial = iteration % ROUND_ITERATIONS;
+    if (partial > 0 && firstRound < 0) {
+      // Stopped before the first round was over.
+      firstRound = lastRound = (double) (end - roundStart) / partial;
+    }
+    return new WarmupReport(
+        iteration,
+        Duration.ofNanos(end - start),
+        steadyAt < 0 ? null : Duration.ofNanos(steadyAt - start),
+        Math.max(firstRound, 0),
+        lastRound);
+  }
+
+  private static boolean isSteady(double[] rounds) {
+    double min = Double.MAX_VALUE;
+    double max = 0;
+    for (double round : rounds) {
+      min = Math.min(min, round);
+      max = Math.max(max, round);
+    }
+    return max <= min * STEADY_SPREAD;
+  }
+
+  /** Sends the envelope to every remote group interested in the sending group. */
+  private static void route(
+      FlowSender sender, InterestIndex.View view, int id, NetworkEnvelope envelope)
+      throws IOException {
+    try {
+      view.forEach(
+          id,
+          addr -> {
+            var routed =
+                new NetworkEnvelope(
+                    envelope.sender(),
+                    addr,
+                    envelope.traceId(),
+                    envelope.name(),
+                    envelope.payload());
+            try {
+              if (sender.trySend(routed) != FlowSender.Result.SENT) {
+                // The window comes back only for envelopes written out.
+                sender.connection().flush();
+                sender.send(routed);
+              }
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static void receive(Connection server, Map<Long, FlowPublisher> publishers) {
+    try {
+      Object frame;
+      while ((frame = server.receive()) != null) {
+        if (frame instanceof NetworkEnvelope envelope) {
+          var publisher = publishers.get(envelope.recipient());
+          if (publisher != null) {
+            publisher.deliver(envelope);
+          }
+        }
+      }
+    } catch (IOException e) {
+      // Closed at the end of the warm-up.
+    }
+  }
+
+  /** Passes window updates to the sender. */
+  private static void update(Connection client, FlowSender sender) {
+    try {
+      Object frame;
+      while ((frame = client.receive()) != null) {
+        sender.handle(frame);
+      }
+    } catch (IOException e) {
+      // Closed at the end of the warm-up.
+    }
+  }
+
+  /**
+   * Envelopes of typical shapes: small and medium text-like ones that compress, random ones that
+   * don't, and a large one that is chunked. Recipients are filled in by routing.
+   */
+  private static List<NetworkEnvelope> envelopes() {
+    var random = new Random(42);
+    var envelopes = new ArrayList<NetworkEnvelope>();
+    int[] sizes = {64, 256, 1024, 4096};
+    for (int i = 0; i < 31; i++) {
+      int size = sizes[i % sizes.length];
+      var payload = i % 5 == 0 ? noise(random, size) : text(random, size);
+      envelopes.add(new NetworkEnvelope(0L, 0L, i, "Warmup" + i % 4, payload));
+    }
+    envelopes.add(new NetworkEnvelope(0L, 0L, 31, "WarmupSnapshot", text(random, 64 * 1024)));
+    return envelopes;
+  }
+
+  private static ByteBuffer text(Random random, int size) {
+    var text = new StringBuilder(size + 16);
+    while (text.length() < size) {
+      text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(1000)).append(' ');
+    }
+    var bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+    return ByteBuffer.wrap(bytes, 0, size).slice().asReadOnlyBuffer();
+  }
+
+  private static ByteBuffer noise(Random random, int size) {
+    var bytes = new byte[size];
+    random.nextBytes(bytes);
+    return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+  }
+
+  /** Counts received envelopes, requesting one more for each. */
+  private static final class Counter implements Flow.Subscriber<NetworkEnvelope> {
+    private final Semaphore received;
+    private Flow.Subscription subscription;
+
+    Counter(Semaphore received) {
+      this.received = received;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(FLOW_WINDOW);
+    }
+
+    @Override
+    public void onNext(NetworkEnvelope envelope) {
+      subscription.request(1);
+      received.release();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      // The connection is closed at the end of the warm-up, or broken, which stalls it.
+    }
+
+    @Override
+    public void onComplete() {}
+  }
+
+  /** One end of a duplex link made of two pipes. */
+  private record PipeChannel(Pipe.SourceChannel source, Pipe.SinkChannel sink)
+      implements ByteChannel {
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return source.read(dst);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      return sink.write(src);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return source.isOpen() && sink.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        sink.close();
+      } finally {
+        source.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package io.github.csolo.node;
+
+import java.time.Duration;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Configuration of the startup {@link Warmup}.
+ *
+ * <p>The warm-up stops at whichever budget runs out first, or earlier once the hot paths run at a
+ * steady speed if {@code untilSteady} is set.
+ *
+ * @param duration Max time to spend, {@code null} for no limit. Default is 2 seconds.
+ * @param iterations Max number of iterations, 0 for no limit. Default is no limit.
+ * @param untilSteady Whether to stop once iterations take steady time. Default is {@code true}.
+ */
+public record WarmupConfig(@Nullable Duration duration, long iterations, boolean untilSteady) {
+  public static final Duration DEFAULT_DURATION = Duration.ofSeconds(2);
+
+  public WarmupConfig {
+    if (duration == null && iterations == 0) {
+      throw new IllegalArgumentException("Warm-up needs a time or iteration limit");
+    }
+    if (duration != null && (duration.isNegative() || duration.isZero())) {
+      throw new IllegalArgumentException("Warm-up duration must be positive: " + duration);
+    }
+    if (iterations < 0) {
+      throw new IllegalArgumentException("Warm-up iterations cannot be negative: " + iterations);
+    }
+  }
+
+  /** Default config: up to 2 seconds, stopping once steady. */
+  public WarmupConfig() {
+    this(DEFAULT_DURATION, 0, true);
+  }
+
+  /** Gets a config that runs for exactly the given time. */
+  public static WarmupConfig ofDuration(Duration duration) {
+    return new WarmupConfig(duration, 0, false);
+  }
+
+  /** Gets a config that runs exactly the given number of iterations. */
+  public static WarmupConfig ofIterations(long iterations) {
+    return new WarmupConfig(null, iterations, false);
+  }
+}
@@ -0,0 +1,43 @@
+package io.github.csolo.node;
+
+import java.time.Duration;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Result of a {@link Warmup}.
+ *
+ * @param iterations Number of iterations run.
+ * @param elapsed Total time spent.
+ * @param timeToSteadyState Time until iterations started to take steady time, {@code null} if
+ *     they didn't within the budget.
+ * @param firstRoundNanos Mean time of an iteration in the first round, i.e. mostly interpreted.
+ * @param lastRoundNanos Mean time of an iteration in the last round.
+ */
+public record WarmupReport(
+    long iterations,
+    Duration elapsed,
+    @Nullable Duration timeToSteadyState,
+    double firstRoundNanos,
+    double lastRoundNanos) {
+
+  /** Checks if the steady state was reached. */
+  public boolean isSteady() {
+    return timeToSteadyState != null;
+  }
+
+  /** Gets how many times faster the last round was than the first one. */
+  public double speedup() {
+    return lastRoundNanos == 0 ? 0.0 : firstRoundNanos / lastRoundNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d iterations in %d ms, steady %s, %.1f us -> %.1f us per iteration",
+        iterations,
+        elapsed.toMillis(),
+        isSteady() ? "after " + timeToSteadyState.toMillis() + " ms" : "not reached",
+        firstRoundNanos / 1e3,
+        lastRoundNanos / 1e3);
+  }
+}
@@ -0,0 +1,180 @@
+package io.github.csolo.node;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.codec.NetworkEnvelope;
+import io.github.csolo.network.config.Transport;
+import io.github.csolo.network.connection.Connection;
+import io.github.csolo.network.jfr.SlowHandlerEvent;
+import io.github.csolo.network.protocol.ProtocolMessages;
+import io.github.csolo.network.socket.Listener;
+import io.github.csolo.network.socket.Socket;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("BatchReceiver Tests")
+class BatchReceiverTest {
+
+  /** Connects a pair of in-process connections: client and server sides. */
+  static Connection[] pair(String name) throws Exception {
+    var accepted = new CompletableFuture<Socket>();
+    try (var listener =
+        Listener.start(new Transport.InProc(name), (short) 2, 2L, 0, accepted::complete)) {
+      var client = Connection.of(Socket.connect(listener.transport(), (short) 1, 1L, 0));
+      return new Connection[] {client, Connection.of(accepted.get(5, TimeUnit.SECONDS))};
+    }
+  }
+
+  static NetworkEnvelope envelope(long traceId) {
+    return new NetworkEnvelope(1L, 2L, traceId, "Item", new Object());
+  }
+
+  @Test
+  @DisplayName("Should hand envelopes over in batches, in order with other frames")
+  void shouldReceiveBatches() throws Exception {
+    var pair = pair("batch-order");
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given
+      var receiver = new BatchReceiver(server, 64);
+      for (int i = 0; i < 5; i++) {
+        client.send(envelope(i));
+      }
+      client.send(new ProtocolMessages.CloseFlow(9L));
+      for (int i = 5; i < 8; i++) {
+        client.send(envelope(i));
+      }
+      var events = new ArrayList<String>();
+
+      // When
+      assertTrue(
+          receiver.receive(
+              batch -> {
+                var ids = new ArrayList<Long>();
+                for (int i = 0; i < batch.size(); i++) {
+                  ids.add(batch.get(i).traceId());
+                }
+                events.add(ids.toString());
+              },
+              frame -> events.add(frame.toString())));
+
+      // Then: the control frame overtakes queued envelopes, as on the wire.
+      assertEquals(List.of("CloseFlow[addr=9]", "[0, 1, 2, 3, 4, 5, 6]"), events);
+      assertEquals(BatchReceiver.MIN_BATCH * 2, receiver.limit(), "Full batch must grow");
+    }
+  }
+
+  @Test
+  @DisplayName("Should grow the batch with a backlog and shrink it with a trickle")
+  void shouldAdaptToDepth() throws Exception {
+    var pair = pair("batch-adapt");
+    try (var client = pair[0];
+        var server = pair[1]) {
+      // Given
+      var receiver = new BatchReceiver(server, 64);
+      for (int i = 0; i < 1000; i++) {
+        client.send(envelope(i));
+      }
+      var sizes = new ArrayList<Integer>();
+      int total = 0;
+
+      // When
+      while (total < 1000) {
+        receiver.receive(batch -> sizes.add(batch.size()), frame -> fail("Unexpected " + frame));
+        total += sizes.getLast();
+      }
+
+      // Then
+      assertEquals(List.of(8, 16, 32, 64, 64), sizes.subList(0, 5));
+      assertEquals(64, receiver.limit());
+
+      // When
+      for (int i = 0; i < 3; i++) {
+        client.send(envelope(i));
+        receiver.receive(batch -> assertEquals(1, batch.size()), frame -> {});
+      }
+
+      // Then
+      assertEquals(BatchReceiver.MIN_BATCH, receiver.limit());
+      assertTrue(receiver.meanBatch() > 10, "Mean " + receiver.meanBatch());
+    }
+  }
+
+  @Test
+  @DisplayName("Should stop once the peer closes")
+  void shouldStopOnClose() throws Exception {
+    var pair = pair("batch-close");
+    try (var server = pair[1]) {
+      // Given
+      var client = pair[0];
+      client.send(envelope(1));
+      var received = new ArrayList<Long>();
+
+      // When
+      var reader =
+          Thread.ofVirtual()
+              .start(
+                  () ->
+                      assertDoesNotThrow(
+                          () ->
+                              new BatchReceiver(server)
+                                  .run(batch -> received.add(batch.get(0).traceId()), f -> {})));
+      Thread.sleep(50);
+      client.close();
+
+      // Then
+      assertTrue(reader.join(Duration.ofSeconds(5)));
+      assertEquals(List.of(1L), received);
+    }
+  }
+
+  @Test
+  @DisplayName("Should record batches handled slowly")
+  void shouldRecordSlowBatches() throws Exception {
+    var pair = pair("batch-slow");
+    try (var client = pair[0];
+        var server = pair[1];
+        var recording = new Recording()) {
+      // Given
+      recording.enable(SlowHandlerEvent.class);
+      recording.start();
+      var receiver = new BatchReceiver(server, 64);
+      client.send(envelope(1));
+      client.send(envelope(2));
+
+      // When
+      receiver.receive(
+          batch -> {
+            try {
+              Thread.sleep(30);
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+          },
+          frame -> {});
+      recording.stop();
+
+      // Then
+      var file = Files.createTempFile("elfo-jfr-test", ".jfr");
+      recording.dump(file);
+      var events =
+          RecordingFile.readAllEvents(file).stream()
+              .filter(e -> e.getEventType().getName().equals("io.github.csolo.network.SlowHandler"))
+              .toList();
+      Files.delete(file);
+      assertEquals(1, events.size());
+      assertEquals(2L, events.getFirst().getLong("addr"));
+      assertEquals("Item", events.getFirst().getString("message"));
+      assertEquals(2, events.getFirst().getInt("messages"));
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package io.github.csolo.node;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.csolo.network.memory.MemoryBudget;
+import io.github.csolo.network.metrics.TransportMetrics;
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Warmup Tests")
+class WarmupTest {
+
+  @Test
+  @DisplayName("Should run exactly the configured number of iterations")
+  void shouldRunIterations() throws Exception {
+    // Given
+    int peersBefore = TransportMetrics.global().snapshot().peers().size();
+    long reservedBefore = MemoryBudget.global().reserved(Warmup.NODE_NO);
+
+    // When
+    var report = Warmup.run(WarmupConfig.ofIterations(120));
+
+    // Then
+    assertEquals(120, report.iterations());
+    assertTrue(report.firstRoundNanos() > 0, report.toString());
+    assertTrue(report.lastRoundNanos() > 0, report.toString());
+    assertEquals(peersBefore, TransportMetrics.global().snapshot().peers().size());
+    assertEquals(reservedBefore, MemoryBudget.global().reserved(Warmup.NODE_NO));
+  }
+
+  @Test
+  @DisplayName("Should stop when the time is up")
+  void shouldStopOnTime() throws Exception {
+    // When
+    var report = Warmup.run(WarmupConfig.ofDuration(Duration.ofMillis(300)));
+
+    // Then
+    assertTrue(report.elapsed().compareTo(Duration.ofMillis(300)) >= 0, report.toString());
+    assertTrue(report.elapsed().compareTo(Duration.ofSeconds(5)) < 0, report.toString());
+    assertTrue(report.iterations() > 0);
+  }
+
+  @Test
+  @DisplayName("Should stop once steady")
+  void shouldStopOnceSteady() throws Exception {
+    // When
+    var report = Warmup.run(new WarmupConfig(Duration.ofSeconds(20), 0, true));
+
+    // Then
+    assertTrue(report.isSteady(), report.toString());
+    assertEquals(report.elapsed().toMillis(), report.timeToSteadyState().toMillis(), 5);
+    assertEquals(0, report.iterations() % Warmup.ROUND_ITERATIONS);
+  }
+
+  @Test
+  @DisplayName("Should reject configs without limits")
+  void shouldRejectUnlimitedConfig() {
+    assertThrows(IllegalArgumentException.class, () -> new WarmupConfig(null, 0, true));
+    assertThrows(IllegalArgumentException.class, () -> WarmupConfig.ofIterations(-1));
+    assertThrows(IllegalArgumentException.class, () -> WarmupConfig.ofDuration(Duration.ZERO));
+  }
+}